@@ -22,7 +22,6 @@ package jolie.net;
 
 import cx.ath.matthew.unix.USOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -40,15 +39,12 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.Vector;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.stream.StreamResult;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import jolie.Interpreter;
 import jolie.lang.parse.ast.types.UInt32;
 import jolie.lang.parse.ast.types.UInt16;
@@ -76,17 +72,63 @@ import org.freedesktop.dbus.exceptions.DBusException;
 import org.freedesktop.dbus.exceptions.MessageProtocolVersionException;
 import org.freedesktop.dbus.Transport;
 import org.freedesktop.dbus.Variant;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.DOMImplementation;
-import org.w3c.dom.DocumentType;
 
 public class DBusProtocol extends ConcurrentCommProtocol {
-    private HashMap<Long,MethodCall> _inMethodCalls = new HashMap<Long, MethodCall>(); 
-    private HashMap<Long,MethodCall> _outMethodCalls = new HashMap<Long,MethodCall>();
-    private HashMap<Long,CommMessage> _inCommMessage = new HashMap<Long, CommMessage>();
-    private HashMap<Long,CommMessage> _outSerialMap = new HashMap<Long,CommMessage>();
-    private HashMap<Long,Integer> _inMap = new HashMap<Long, Integer>();      
+    /* A method call sent through this connection, waiting for its reply. */
+    private static class PendingCall {
+        private final MethodCall methodCall;
+        private final CommMessage request;
+        private PendingCall(MethodCall methodCall, CommMessage request) {
+            this.methodCall = methodCall;
+            this.request = request;
+        }
+    }
+    // received method calls waiting for a reply, by the id of the CommMessage created for them
+    private final ConcurrentMap<Long,MethodCall> _inMethodCalls = new ConcurrentHashMap<Long,MethodCall>();
+    // sent method calls waiting for a reply, by serial (the REPLY_SERIAL of their reply)
+    private final ConcurrentMap<Long,PendingCall> _pendingCalls = new ConcurrentHashMap<Long,PendingCall>();
+    private final Object _writeLock = new Object();
+    /* An introspection document, with the hash of the operation names it was generated from. */
+    private static class IntrospectionData {
+        private final int operationsHash;
+        private final String xml;
+        private IntrospectionData(int operationsHash, String xml) {
+            this.operationsHash = operationsHash;
+            this.xml = xml;
+        }
+    }
+    /*
+     * The D-Bus signature of a declared type and the sorted names of its sub types,
+     * computed once so that values of that type are marshalled by walking them
+     * in order instead of inferring their signature.
+     */
+    private static class MarshallingPlan {
+        private final String signature;
+        private final String[] names; // null for a type without sub types
+        private final MarshallingPlan[] subPlans;
+        private final boolean array;
+        private MarshallingPlan(String signature, String[] names, MarshallingPlan[] subPlans, boolean array) {
+            this.signature = signature;
+            this.names = names;
+            this.subPlans = subPlans;
+            this.array = array;
+        }
+    }
+    // marks the types whose values need their signature to be inferred
+    private static final MarshallingPlan NO_PLAN = new MarshallingPlan(null, null, null, false);
+    private static final Map<Type,MarshallingPlan> _marshallingPlans = Collections.synchronizedMap(new WeakHashMap<Type,MarshallingPlan>());
+    /* The signature and the arguments of a message. */
+    private static class MessageBody {
+        private final String signature;
+        private final Object[] objects;
+        private MessageBody(String signature, Object[] objects) {
+            this.signature = signature;
+            this.objects = objects;
+        }
+    }
+    // introspection documents of the interfaces of input and output ports
+    private static final Map<Interface,IntrospectionData> _inputIntrospectionCache = Collections.synchronizedMap(new WeakHashMap<Interface,IntrospectionData>());
+    private static final Map<Interface,IntrospectionData> _outputIntrospectionCache = Collections.synchronizedMap(new WeakHashMap<Interface,IntrospectionData>());
     static final byte ENDIAN = Message.Endian.BIG;
     private final boolean _inputport;
     private final UInt32 _nameRequestFlags;
@@ -95,12 +137,20 @@ public class DBusProtocol extends ConcurrentCommProtocol {
     private boolean _messageBus;
     private boolean _authenticated;
     private boolean _introspect;
-    private byte[] _messageBody;
+    private final boolean _pipelined;
     private ArrayList<String> _rules;
     @Override
     public String name() {
         return "dbus";
     }
+    /**
+     * Output port connections configured with pipelined = true are shared by
+     * concurrent calls, whose replies are matched by their reply serial.
+     */
+    @Override
+    public boolean isShareable() {
+        return _pipelined;
+    }
     public DBusProtocol(VariablePath configurationPath,boolean inputport) {
         super(configurationPath);
         _inputport = inputport;
@@ -108,14 +158,14 @@ public class DBusProtocol extends ConcurrentCommProtocol {
         _interperter = Interpreter.getInstance();
         _nameRequestFlags = getUInt32Parameter("nrFlags");      
         _introspect = checkBooleanParameter("introspect",true);
+        _pipelined = !inputport && checkBooleanParameter("pipelined");
     }
     private Message readMessage(InputStream in) throws IOException {
-        //read the 12 fixed bytes of the message header
-        byte[] buf = new byte[12];
-        byte[] tbuf;
-        _messageBody = null;
+        DataInputStream din = (in instanceof DataInputStream) ? (DataInputStream)in : new DataInputStream(in);
+        //read the 12 fixed bytes of the message header and the length of the variable header
+        byte[] buf = new byte[16];
         HashMap<Byte, Object> dbusHeaders = new HashMap<Byte, Object>();
-        in.read(buf);
+        din.readFully(buf);
         /* Parse the details from the header */
         byte endian = buf[0];
         byte messageType = buf[1];
@@ -137,86 +187,50 @@ public class DBusProtocol extends ConcurrentCommProtocol {
         if (version > Message.PROTOCOL) {
             throw new MessageProtocolVersionException(MessageFormat.format("Protocol version {0} is unsupported", new Object[]{version}));
         }
-        /* Read the length of the variable header */
-        tbuf = new byte[4];
-        in.read(tbuf);
         /* Parse the variable header length */
         int headerlen;
-        headerlen = (int) Message.demarshallint(tbuf, 0, endian, 4);
+        headerlen = (int) Message.demarshallint(buf, 12, endian, 4);
         if (0 != headerlen % 8) {
             headerlen += 8 - (headerlen % 8);
         }
-        /* Read the variable header */
-        byte[] headers;
-        headers = new byte[headerlen + 8];
-        //copy the length of the variable header into header (4 bytes)
-        // the next 4 bytes will be empty/padding
-        System.arraycopy(tbuf, 0, headers, 0, 4);
-        //read headerlength bytes into header starting with offset of 8 bytes.
-        in.read(headers, 8, headerlen);
+        /* Read the variable header and the body into one frame, they are
+           demarshalled in place so offsets keep their D-Bus alignment */
+        byte[] frame = new byte[buf.length + headerlen + bodyLength];
+        System.arraycopy(buf, 0, frame, 0, buf.length);
+        din.readFully(frame, buf.length, headerlen + bodyLength);
         /* parse variable headers */
         Object[] headerObjects;
         try {
-            headerObjects = JolieDBusUtils.extract("a(yv)", headers, endian, new int[]{0, 0});
+            headerObjects = JolieDBusUtils.extract("a(yv)", frame, endian, new int[]{0, 12});
             for (Object o : (Vector<Object>) headerObjects[0]) {
                 dbusHeaders.put((Byte) ((Object[]) o)[0], ((Variant<Object>) ((Object[]) o)[1]).getValue());
             }
         } catch (DBusException e) {
             throw new IOException("Error parssing DBus variable headers : " + e.toString());
         }
-        /* read body */
-        if (null == _messageBody) {
-            _messageBody = new byte[bodyLength];
-        }
-        in.read(_messageBody, 0, _messageBody.length);
-        /*parse body*/
-        Object[] bodyObjects;
-        String sig = (String) dbusHeaders.get(new Byte(Message.HeaderField.SIGNATURE));
-        if(sig != null && !sig.equals("")){
-            try {
-                bodyObjects = JolieDBusUtils.extract(sig, _messageBody, endian, new int[]{0, 0});
-            } catch (DBusException e) {
-                throw new IOException("Error parssing DBus message body : " + e.toString());
-            }
-        } else {
-            bodyObjects = null;
-        }
+        /* the body is only demarshalled once the receiving operation is known */
+        int bodyOffset = buf.length + headerlen;
         String path = (String)dbusHeaders.get(Message.HeaderField.PATH);
         String iface = (String)dbusHeaders.get(Message.HeaderField.INTERFACE);
         String member = (String)dbusHeaders.get(Message.HeaderField.MEMBER); 
         String errorName = (String)dbusHeaders.get(Message.HeaderField.ERROR_NAME);
-        UInt32 serial = (UInt32)dbusHeaders.get(Message.HeaderField.REPLY_SERIAL);
-        String dest = (String)dbusHeaders.get(Message.HeaderField.DESTINATION);
-        String source = (String)dbusHeaders.get(Message.HeaderField.SENDER);
         Message msg = null;
-        MethodCall mc;
         switch (messageType) {
             case Message.MessageType.METHOD_CALL:
                 if(_debug){
                     Interpreter.getInstance().logInfo("Message is a method call");
                 }
-                try{
-                    msg = new MethodCall(source,dest,path,iface,member,endian,flags,sig,bodyObjects);
-                    _inMap.put(msg.getSerial(), senderCookie );
-
-                } catch (DBusException de){
-                    Interpreter.getInstance().logSevere("Error while parsing message : " + de.toString());
+                if(member == null || path == null){
+                    _interperter.logSevere("Error while parsing message : Must specify destination, path and function name to MethodCalls.");
+                } else {
+                    msg = Message.createReceived(frame, dbusHeaders, bodyOffset);
                 }
                 break;
             case Message.MessageType.METHOD_RETURN:
                 if(_debug){
                     Interpreter.getInstance().logInfo("Message is a method return");
                 }
-                // get the outgoing methodCall.
-                mc = _outMethodCalls.get(serial.longValue());
-                try {
-                    if(bodyObjects == null){
-                        bodyObjects = new Object[0];
-                    }
-                    msg = new MethodReturn(mc,endian, sig, bodyObjects);
-                } catch(DBusException de) {
-                    _interperter.logSevere(de);
-                }
+                msg = Message.createReceived(frame, dbusHeaders, bodyOffset);
                 break;
             case Message.MessageType.SIGNAL:
                 if(_debug){
@@ -227,21 +241,18 @@ public class DBusProtocol extends ConcurrentCommProtocol {
                                             "\n interface : " + iface +
                                             "\n member : " + member + 
                                             "\n path : " + path);
-                }
-                try {
-                    msg = new DBusSignal(source, path, iface, member,endian, sig, bodyObjects);
-                } catch (DBusException de){
-                    _interperter.logSevere(de);
+                } else {
+                    msg = Message.createReceived(frame, dbusHeaders, bodyOffset);
                 }
                 break;
             case Message.MessageType.ERROR:
                 if(_debug){
                     Interpreter.getInstance().logInfo("Message is an error");
                 }
-                try {
-                    msg = new Error(dest, errorName, serial.longValue(), sig, bodyObjects);
-                } catch (DBusException de){
-                    _interperter.logSevere(de);
+                if(errorName == null){
+                    _interperter.logSevere("Error while parsing message : Must specify error name to Errors.");
+                } else {
+                    msg = Message.createReceived(frame, dbusHeaders, bodyOffset);
                 }
                 break;
         }
@@ -259,157 +270,29 @@ public class DBusProtocol extends ConcurrentCommProtocol {
                     Type requestType = operation.requestType();
                     Value bodyObjectsValue = Value.UNDEFINED_VALUE;
                     if (msg.getSig() != null && !msg.getSig().equals("")) {
-                        bodyObjectsValue = JolieDBusUtils.extract(msg.getSig(), _messageBody, msg.getEndian(), new int[]{0, 0}, requestType);
+                        bodyObjectsValue = JolieDBusUtils.extract(msg.getSig(), msg.getBody(), msg.getEndian(), new int[]{0, msg.getBodyOffset()}, requestType);
                     }
                     commMessage = CommMessage.createRequest(msg.getName(), msg.getPath(), bodyObjectsValue);
                     _inMethodCalls.put(commMessage.id(), (MethodCall) msg);
-                    _inCommMessage.put(commMessage.id(), commMessage);
                 } catch (DBusException de) {
                     _interperter.logSevere(de);
                 } catch (InvalidIdException iie) {
                     _interperter.logInfo("Recieved D-Bus method call for unsuported method " + iie);
                 }
             } else {
-                String output;
                 // if the method and interface matches introspect then create automatic introspection information.
                 if (_introspect && msg.getName().equals("Introspect") && msg.getInterface().equals("org.freedesktop.DBus.Introspectable")) {
                     try {
-                        DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-                        DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-                        DOMImplementation domImpl = docBuilder.getDOMImplementation();
-                        DocumentType doctype = domImpl.createDocumentType("node",
-                        "-//freedesktop//DTD D-BUS Object Introspection 1.0//EN",
-                        "http://www.freedesktop.org/standards/dbus/1.0/introspect.dtd");
-                        Document doc = docBuilder.newDocument();
-                        doc.appendChild(doctype);       
-                        // root elements
-                        Element rootElement = doc.createElement("node");
-                        doc.appendChild(rootElement);
-                        if (!_inputport) {
-                            TreeMap<String, TreeMap<String,OneWayTypeDescription>> interfaces = new TreeMap<String,TreeMap<String,OneWayTypeDescription>>();
-                            TreeMap<String,OneWayTypeDescription> ifaceMap;
-                            // get the interface of the outputport.
-                            Interface iface = channel().parentOutputPort().getInterface();
-                            Map<String, OneWayTypeDescription> oneway = iface.oneWayOperations();
-                            Iterator itr = oneway.entrySet().iterator();
-                            while (itr.hasNext()) {
-                                Map.Entry<String, OneWayTypeDescription> pair = (Map.Entry<String, OneWayTypeDescription>) itr.next();
-                                InterfaceDefinition def = iface.interfaceForOperation(pair.getKey());
-                                String ifaceName = def.name();
-                                ifaceMap = interfaces.get(ifaceName);
-                                if(ifaceMap != null){
-                                    if(ifaceMap.get(pair.getKey()) == null){
-                                      ifaceMap.put(pair.getKey(), pair.getValue());  
-                                    }                                     
-                                } else {
-                                    TreeMap<String,OneWayTypeDescription> newInterface = new TreeMap<String, OneWayTypeDescription>();
-                                    newInterface.put(pair.getKey(), pair.getValue());
-                                    interfaces.put(ifaceName, newInterface);
-                                }
-                            }
-                            for(Map.Entry<String,TreeMap<String,OneWayTypeDescription>> set : interfaces.entrySet()){
-                                String interfaceName = set.getKey();
-                                Element interfaceElement = doc.createElement("interface");
-                                interfaceElement.setAttribute("name", interfaceName);
-                                rootElement.appendChild(interfaceElement);
-                                for(Map.Entry<String,OneWayTypeDescription> setItem : set.getValue().entrySet()){
-                                    String signalName = setItem.getKey();
-                                    Element signalElement = doc.createElement("signal");
-                                    signalElement.setAttribute("name", signalName);
-                                    Element argumentOut = doc.createElement("arg");
-                                    try {
-                                        argumentOut.setAttribute("type", getDBusSignature(setItem.getValue().requestType()));
-                                    } catch (DBusException dbe){
-                                        _interperter.logSevere(dbe);
-                                    }
-                                    signalElement.appendChild(argumentOut);
-                                    interfaceElement.appendChild(signalElement);
-                                }
-                            }
-                        } else {
-                            //inputport
-                            TreeMap<String, TreeMap<String,RequestResponseTypeDescription>> interfaces = new TreeMap<String,TreeMap<String,RequestResponseTypeDescription>>();
-                            TreeMap<String,RequestResponseTypeDescription> ifaceMap;
-                            Interface iface = channel().parentInputPort().getInterface();
-                            Map<String, RequestResponseTypeDescription> rrDesc = iface.requestResponseOperations();
-                            Iterator itr = rrDesc.entrySet().iterator();
-                            while(itr.hasNext()){
-                                Map.Entry<String,RequestResponseTypeDescription> pair = (Map.Entry<String,RequestResponseTypeDescription>) itr.next();
-                                InterfaceDefinition def = iface.interfaceForOperation(pair.getKey());
-                                String ifaceName = def.name();
-                                ifaceMap = interfaces.get(ifaceName);
-                                if(ifaceMap != null){
-                                    if(ifaceMap.get(pair.getKey()) == null){
-                                        ifaceMap.put(pair.getKey(),pair.getValue());
-                                    }
-                                } else {
-                                    TreeMap<String,RequestResponseTypeDescription> newInterface = new TreeMap<String, RequestResponseTypeDescription>();
-                                    newInterface.put(pair.getKey(), pair.getValue());
-                                    interfaces.put(ifaceName, newInterface);
-                                }
-                            }
-                            //create xml 
-                            for(Map.Entry<String,TreeMap<String,RequestResponseTypeDescription>> set : interfaces.entrySet()){
-                                String interfaceName = set.getKey();
-                                Element interfaceElement = doc.createElement("interface");
-                                interfaceElement.setAttribute("name", interfaceName);
-                                rootElement.appendChild(interfaceElement);
-                                for(Map.Entry<String,RequestResponseTypeDescription> setItem : set.getValue().entrySet()){
-                                    String methodName = setItem.getKey();
-                                    Element methodElement = doc.createElement("method");
-                                    methodElement.setAttribute("name", methodName);
-                                    Element argumentIn = doc.createElement("arg");
-                                    Element argumentOut = doc.createElement("arg");
-                                    try {
-                                        argumentIn.setAttribute("type", getDBusSignature(setItem.getValue().requestType()));
-                                        argumentIn.setAttribute("direction", "in");
-                                        argumentOut.setAttribute("type", getDBusSignature(setItem.getValue().responseType()));
-                                        argumentOut.setAttribute("direction", "out");
-                                    } catch (DBusException dbe){
-                                        _interperter.logSevere(dbe);
-                                    }
-                                    methodElement.appendChild(argumentIn);
-                                    methodElement.appendChild(argumentOut);
-                                    interfaceElement.appendChild(methodElement);
-                                }
-                                rootElement.appendChild(interfaceElement);
-                            }
-                        }
-                        // add introspect information
-                        Element interfaceElement = doc.createElement("interface");
-                        interfaceElement.setAttribute("name", "org.freedesktop.DBus.Introspectable");
-                        Element methodElement = doc.createElement("method");
-                        methodElement.setAttribute("name", "Introspect");
-                        Element argumentOut = doc.createElement("arg");
-                        argumentOut.setAttribute("type", "s");
-                        argumentOut.setAttribute("direction", "out");
-                        methodElement.appendChild(argumentOut);
-                        interfaceElement.appendChild(methodElement);
-                        rootElement.appendChild(interfaceElement);
-                        try{
-                            TransformerFactory tf = TransformerFactory.newInstance();
-                            Transformer transformer = tf.newTransformer();
-                            transformer.setOutputProperty(OutputKeys.DOCTYPE_PUBLIC, "-//freedesktop//DTD D-BUS Object Introspection 1.0//EN");
-                            transformer.setOutputProperty(OutputKeys.DOCTYPE_SYSTEM,"http://www.freedesktop.org/standards/dbus/1.0/introspect.dtd");
-                            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-                            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-                            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-                            StringWriter writer = new StringWriter();
-                            transformer.transform(new DOMSource(doc), new StreamResult(writer));
-                            output = writer.getBuffer().toString();
-                            Value returnVal = Value.create(output);
-                            CommMessage requestMessage = CommMessage.createRequest(msg.getName(), "/", null, "", Value.UNDEFINED_VALUE);
-                            _inMethodCalls.put(requestMessage.id(), (MethodCall) msg);
-                            _inCommMessage.put(requestMessage.id(), requestMessage);
-                            CommMessage returnMessage = CommMessage.createResponse(requestMessage, returnVal);
-                            send(ostream, returnMessage, istream);
-                            channel().disposeForInput();
-                            commMessage = null;
-                        } catch(TransformerException te){
-                           _interperter.logSevere(te);
-                        }
-                    } catch (ParserConfigurationException pce) {
-                        _interperter.logSevere(pce);
+                        Interface iface = _inputport ? channel().parentInputPort().getInterface() : channel().parentOutputPort().getInterface();
+                        Value returnVal = Value.create(getIntrospectionData(iface));
+                        CommMessage requestMessage = CommMessage.createRequest(msg.getName(), "/", null, "", Value.UNDEFINED_VALUE);
+                        _inMethodCalls.put(requestMessage.id(), (MethodCall) msg);
+                        CommMessage returnMessage = CommMessage.createResponse(requestMessage, returnVal);
+                        send(ostream, returnMessage, istream);
+                        channel().disposeForInput();
+                        commMessage = null;
+                    } catch (XMLStreamException xse) {
+                        _interperter.logSevere(xse);
                     }
                 }
                 if (!(_introspect && msg.getName().equals("Introspect") && msg.getInterface().equals("org.freedesktop.DBus.Introspectable"))) {
@@ -417,26 +300,23 @@ public class DBusProtocol extends ConcurrentCommProtocol {
                         Value bodyObjectsValue = Value.UNDEFINED_VALUE;
                         commMessage = CommMessage.createRequest(msg.getName(), msg.getPath(), bodyObjectsValue);
                         _inMethodCalls.put(commMessage.id(), (MethodCall) msg);
-                        _inCommMessage.put(commMessage.id(), commMessage);
                 }                    
             }
         } else if(msg instanceof MethodReturn){
             // get the methodCall this is a Return for, and remove it from the outgoing method calls.
-            MethodCall mc = _outMethodCalls.remove(msg.getReplySerial());
+            PendingCall pending = _pendingCalls.remove(msg.getReplySerial());
+            MethodCall mc = (pending == null) ? null : pending.methodCall;
             if(mc!= null && channel().parentPort().getInterface().containsOperation(mc.getName())) {
                 try {
-                    OutputPort out = _interperter.getOutputPort(_outSerialMap.get(msg.getReplySerial()).getDestination());
+                    OutputPort out = _interperter.getOutputPort(pending.request.getDestination());
                     RequestResponseTypeDescription rrTypeDescription = out.getInterface().requestResponseOperations().get(mc.getName());
                     Type responseType = rrTypeDescription.responseType();
                     Value bodyObjectsValue = Value.UNDEFINED_VALUE;
                     if(msg.getSig() != null && !msg.getSig().equals("")){
-                        bodyObjectsValue = JolieDBusUtils.extract(msg.getSig(), _messageBody, msg.getEndian(), new int[]{0, 0},responseType);
+                        bodyObjectsValue = JolieDBusUtils.extract(msg.getSig(), msg.getBody(), msg.getEndian(), new int[]{0, msg.getBodyOffset()},responseType);
                     }    
                     // get the calling commMessage.
-                    CommMessage requestMessage = _outSerialMap.remove(Long.valueOf(mc.getSerial()));
-                    if(requestMessage != null){
-                        commMessage = CommMessage.createResponse(requestMessage, bodyObjectsValue);
-                    }
+                    commMessage = CommMessage.createResponse(pending.request, bodyObjectsValue);
                 } catch (DBusException de){
                     _interperter.logSevere(de);
                 } catch (UnsupportedOperationException uoe){
@@ -454,7 +334,7 @@ public class DBusProtocol extends ConcurrentCommProtocol {
                     Type requestType = operation.requestType();
                     Value bodyObjectsValue = Value.UNDEFINED_VALUE;
                     if(msg.getSig() != null && !msg.getSig().equals("")){
-                        bodyObjectsValue = JolieDBusUtils.extract(msg.getSig(), _messageBody, msg.getEndian(), new int[]{0, 0},requestType);
+                        bodyObjectsValue = JolieDBusUtils.extract(msg.getSig(), msg.getBody(), msg.getEndian(), new int[]{0, msg.getBodyOffset()},requestType);
                     } 
                     Interpreter.getInstance().getOneWayOperation(msg.getName());
                     commMessage = CommMessage.createRequest(msg.getName(), msg.getPath(), bodyObjectsValue);
@@ -469,8 +349,8 @@ public class DBusProtocol extends ConcurrentCommProtocol {
                  commMessage = CommMessage.createRequest("", "/", Value.UNDEFINED_VALUE);
             }
         } else if(msg instanceof Error){
-            MethodCall mc = _outMethodCalls.remove(msg.getReplySerial());
-            CommMessage comm = _outSerialMap.remove(msg.getReplySerial());
+            PendingCall pending = _pendingCalls.remove(msg.getReplySerial());
+            CommMessage comm = (pending == null) ? null : pending.request;
             if(comm != null){
                 try {
                     commMessage = CommMessage.createFaultResponse(comm, new FaultException(msg.getName(), (String)msg.getParameters()[0]));
@@ -494,27 +374,30 @@ public class DBusProtocol extends ConcurrentCommProtocol {
    @Override
     public void send(OutputStream ostream, CommMessage message, InputStream istream)throws IOException {
         authenticate(istream, ostream);
-        DataOutputStream oos = new DataOutputStream(ostream);
-        String sig = getDBusSignature(message.value());
-        Object[] objects = getObjectArray(message.value());
+        MessageBody body;
         Message msg = null;
-        CommMessage jmc = _inCommMessage.remove(message.id());
-        if(jmc != null) {
-            // this is a MethodReturn. Get the original MethodCall
-            MethodCall mc = _inMethodCalls.remove(jmc.id());
+        MethodCall mc = _inMethodCalls.remove(message.id());
+        if(mc != null) {
+            // this is a MethodReturn for the original MethodCall
             //check to se if reply contains a fault
             if(message.isFault()){
-                sig = getDBusSignature(message.fault().value());
-                objects = getObjectArray(message.fault().value());
+                body = createMessageBody(null, message.fault().value());
                 try{
-                    msg = new Error(mc.getSource(),this.channel().parentInputPort().name() + ".Error",_inMap.remove(mc.getSerial()), sig, objects);
+                    msg = new Error(mc.getSource(),this.channel().parentInputPort().name() + ".Error",mc.getSerial(), body.signature, body.objects);
                 } catch(DBusException de) {
                     _interperter.logSevere(de);
                 }
             } else {
-            
+                Type responseType = null;
+                if (_inputport) {
+                    RequestResponseTypeDescription rrTypeDescription = channel().parentInputPort().getInterface().requestResponseOperations().get(mc.getName());
+                    if (rrTypeDescription != null) {
+                        responseType = rrTypeDescription.responseType();
+                    }
+                }
+                body = createMessageBody(responseType, message.value());
                 try{
-                    msg = new MethodReturn(mc.getSource(), _inMap.remove(mc.getSerial()),Message.Endian.BIG, sig, objects);
+                    msg = new MethodReturn(mc.getSource(), mc.getSerial(),Message.Endian.BIG, body.signature, body.objects);
                 } catch(DBusException de) {
                     _interperter.logSevere(de);
                 }
@@ -523,16 +406,24 @@ public class DBusProtocol extends ConcurrentCommProtocol {
             //MethodCall or signal
             if(message.getDestination() != null){
                 boolean signal = false;
+                Type requestType = null;
                 try{
                     OutputPort out = _interperter.getOutputPort(message.getDestination()); 
                     OneWayTypeDescription signalTest = out.getInterface().oneWayOperations().get(message.operationName());
                     if(signalTest != null)
                     {
                         signal = true;
+                        requestType = signalTest.requestType();
+                    } else {
+                        RequestResponseTypeDescription rrTypeDescription = out.getInterface().requestResponseOperations().get(message.operationName());
+                        if (rrTypeDescription != null) {
+                            requestType = rrTypeDescription.requestType();
+                        }
                     }
                 } catch (InvalidIdException iie) {
                     signal = false;
                 }
+                body = createMessageBody(requestType, message.value());
                 String resourcePath = message.resourcePath();
                 if(hasParameter("object_path")){
                     resourcePath = getStringParameter("object_path");
@@ -546,12 +437,11 @@ public class DBusProtocol extends ConcurrentCommProtocol {
                 try {
                     if(!signal){
                         msg = new MethodCall(destination, resourcePath,
-                            null, message.operationName(),Message.Endian.BIG, (byte) 0, sig, objects);
-                        _outMethodCalls.put(msg.getSerial(), (MethodCall)msg);
-                        _outSerialMap.put(msg.getSerial(), message);
+                            null, message.operationName(),Message.Endian.BIG, (byte) 0, body.signature, body.objects);
+                        _pendingCalls.put(msg.getSerial(), new PendingCall((MethodCall)msg, message));
                     } else {
                         // TODO add interface information. 
-                        msg = new DBusSignal(null, resourcePath, message.getInterfaceDefinition().name(), message.operationName(),Message.Endian.BIG, sig, objects);
+                        msg = new DBusSignal(null, resourcePath, message.getInterfaceDefinition().name(), message.operationName(),Message.Endian.BIG, body.signature, body.objects);
                     }
                 } catch (DBusException dbe) {
                     _interperter.logSevere(dbe);
@@ -560,11 +450,10 @@ public class DBusProtocol extends ConcurrentCommProtocol {
              
         }
         if (msg != null){
-            for (byte[] buf : msg.getWireData()) {
-                if (null == buf) {
-                    break;
-                }
-                oos.write(buf);
+            // calls sharing a pipelined connection must not interleave their frames
+            synchronized (_writeLock) {
+                msg.writeTo(ostream);
+                ostream.flush();
             }
             if (message.isFault()){
                 _interperter.logInfo("Send fault  to : " + msg.getDestination() +" with name :  "+  msg.getName() + " is error:" + message.isFault());
@@ -724,6 +613,116 @@ public class DBusProtocol extends ConcurrentCommProtocol {
             }
         return authenticated;
     }
+    /*
+     * Returns the signature and the arguments for sending the given value.
+     * If the value matches the marshalling plan of its declared type the plan
+     * is followed, otherwise the signature is inferred from the value.
+     */
+    private MessageBody createMessageBody(Type type, Value val) {
+        MarshallingPlan plan = (type == null) ? null : getMarshallingPlan(type);
+        if (plan != null) {
+            ArrayList<Object> list = new ArrayList<Object>();
+            if (collectObjects(plan, val, list)) {
+                return new MessageBody(plan.signature, list.toArray());
+            }
+        }
+        return new MessageBody(getDBusSignature(val), getObjectArray(val));
+    }
+    private MarshallingPlan getMarshallingPlan(Type type) {
+        MarshallingPlan plan = _marshallingPlans.get(type);
+        if (plan == null) {
+            try {
+                plan = createMarshallingPlan(type);
+            } catch (DBusException dbe) {
+                _interperter.logSevere(dbe);
+            }
+            if (plan == null) {
+                plan = NO_PLAN;
+            }
+            _marshallingPlans.put(type, plan);
+        }
+        return (plan == NO_PLAN) ? null : plan;
+    }
+    /*
+     * Returns null for types whose values can not be marshalled with a fixed
+     * signature: untyped leaves, dictionaries and arrays of structures.
+     */
+    private MarshallingPlan createMarshallingPlan(Type t) throws DBusException {
+        Iterator subItr = getSubTypesIterator(t);
+        if (subItr == null) {
+            return new MarshallingPlan(getNativeTypeSignature(getNativeType(t)), null, null, false);
+        }
+        ArrayList<String> names = new ArrayList<String>();
+        ArrayList<MarshallingPlan> subPlans = new ArrayList<MarshallingPlan>();
+        String sig = "";
+        while (subItr.hasNext()) {
+            Map.Entry<String,Type> subType = (Map.Entry<String,Type>) subItr.next();
+            boolean array = isArray(subType.getValue());
+            MarshallingPlan subPlan;
+            if (getSubTypesIterator(subType.getValue()) != null) {
+                subPlan = createMarshallingPlan(subType.getValue());
+                if (array || subPlan == null || subPlan.names.length == 2 && subPlan.names[0].equals("key") && subPlan.names[1].equals("value")) {
+                    return null;
+                }
+                sig += "(" + subPlan.signature + ")";
+            } else {
+                subPlan = new MarshallingPlan(getNativeTypeSignature(getNativeType(subType.getValue())), null, null, array);
+                if (subPlan.signature.equals("")) {
+                    return null;
+                }
+                sig += array ? "a" + subPlan.signature : subPlan.signature;
+            }
+            names.add(subType.getKey());
+            subPlans.add(subPlan);
+        }
+        return new MarshallingPlan(sig, names.toArray(new String[names.size()]), subPlans.toArray(new MarshallingPlan[subPlans.size()]), false);
+    }
+    /*
+     * Adds the arguments for val to list following plan, returning false
+     * if val does not have the shape described by the plan.
+     */
+    private boolean collectObjects(MarshallingPlan plan, Value val, List<Object> list) {
+        if (plan.names == null) {
+            if (val.hasChildren() || !plan.signature.equals(getDBusValueObjectSignature(val.valueObject()))) {
+                return false;
+            }
+            list.add(val.valueObject());
+            return true;
+        }
+        if (val.children().size() != plan.names.length) {
+            return false;
+        }
+        for (int i = 0; i < plan.names.length; i++) {
+            ValueVector vv = val.children().get(plan.names[i]);
+            MarshallingPlan subPlan = plan.subPlans[i];
+            if (vv == null) {
+                return false;
+            } else if (subPlan.array) {
+                Object[] elements = new Object[vv.size()];
+                for (int j = 0; j < elements.length; j++) {
+                    Value element = vv.get(j);
+                    if (element.hasChildren() || !subPlan.signature.equals(getDBusValueObjectSignature(element.valueObject()))) {
+                        return false;
+                    }
+                    elements[j] = element.valueObject();
+                }
+                list.add(elements);
+            } else if (vv.size() != 1) {
+                return false;
+            } else if (subPlan.names == null) {
+                if (!collectObjects(subPlan, vv.first(), list)) {
+                    return false;
+                }
+            } else {
+                ArrayList<Object> struct = new ArrayList<Object>();
+                if (!collectObjects(subPlan, vv.first(), struct)) {
+                    return false;
+                }
+                list.add(struct.toArray());
+            }
+        }
+        return true;
+    }
     private Object[] getObjectArray(Value val) {
         ArrayList list = new ArrayList();
         Map<String, ValueVector> map = new TreeMap(val.children());
@@ -765,8 +764,9 @@ public class DBusProtocol extends ConcurrentCommProtocol {
             subTypesMethod = Type.class.getDeclaredMethod("subTypeSet");
             subTypesMethod.setAccessible(true);
             subTypes = (Set<Map.Entry<String,Type>>)subTypesMethod.invoke(t);
-            
-            subTypesSorted.addAll(subTypes);
+            if (subTypes != null) {
+                subTypesSorted.addAll(subTypes);
+            }
             Collections.sort(subTypesSorted, new Comparator<Map.Entry<String,Type>>(){
                 @Override
                 public int compare(Map.Entry<String,Type> o1, Map.Entry<String,Type> o2) {
@@ -822,6 +822,119 @@ public class DBusProtocol extends ConcurrentCommProtocol {
         
         return range;
     }
+    /*
+     * Returns true if the values of a child of type t are sent as a D-Bus array.
+     * Used both by marshalling and by introspection, so that sent messages
+     * have the signature declared in the introspection data.
+     */
+    private boolean isArray(Type t) throws DBusException {
+        jolie.util.Range range = getRange(t);
+        return range.min() < range.max() || range.max() > 1;
+    }
+    /*
+     * Returns the introspection document of the given interface, generating it
+     * only the first time it is requested or when the operations of the
+     * interface have changed since it was generated.
+     */
+    private String getIntrospectionData(Interface iface) throws XMLStreamException {
+        Map<Interface,IntrospectionData> cache = _inputport ? _inputIntrospectionCache : _outputIntrospectionCache;
+        int operationsHash = 31 * iface.oneWayOperations().keySet().hashCode() + iface.requestResponseOperations().keySet().hashCode();
+        IntrospectionData data = cache.get(iface);
+        if (data == null || data.operationsHash != operationsHash) {
+            data = new IntrospectionData(operationsHash, createIntrospectionData(iface));
+            cache.put(iface, data);
+        }
+        return data.xml;
+    }
+    private String createIntrospectionData(Interface iface) throws XMLStreamException {
+        StringWriter output = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output);
+        writer.writeDTD("<!DOCTYPE node PUBLIC \"-//freedesktop//DTD D-BUS Object Introspection 1.0//EN\" \"http://www.freedesktop.org/standards/dbus/1.0/introspect.dtd\">");
+        writer.writeCharacters("\n");
+        writer.writeStartElement("node");
+        if (!_inputport) {
+            // the one-way operations of an outputport are the signals it can receive
+            for (Map.Entry<String,TreeMap<String,OneWayTypeDescription>> set : groupByInterface(iface, iface.oneWayOperations()).entrySet()) {
+                writeStartElement(writer, 1, "interface", set.getKey());
+                for (Map.Entry<String,OneWayTypeDescription> setItem : set.getValue().entrySet()) {
+                    writeStartElement(writer, 2, "signal", setItem.getKey());
+                    writeArgument(writer, 3, introspectionSignature(setItem.getValue().requestType()), null);
+                    writeEndElement(writer, 2);
+                }
+                writeEndElement(writer, 1);
+            }
+        } else {
+            for (Map.Entry<String,TreeMap<String,RequestResponseTypeDescription>> set : groupByInterface(iface, iface.requestResponseOperations()).entrySet()) {
+                writeStartElement(writer, 1, "interface", set.getKey());
+                for (Map.Entry<String,RequestResponseTypeDescription> setItem : set.getValue().entrySet()) {
+                    writeStartElement(writer, 2, "method", setItem.getKey());
+                    writeArgument(writer, 3, introspectionSignature(setItem.getValue().requestType()), "in");
+                    writeArgument(writer, 3, introspectionSignature(setItem.getValue().responseType()), "out");
+                    writeEndElement(writer, 2);
+                }
+                writeEndElement(writer, 1);
+            }
+        }
+        // add introspect information
+        writeStartElement(writer, 1, "interface", "org.freedesktop.DBus.Introspectable");
+        writeStartElement(writer, 2, "method", "Introspect");
+        writeArgument(writer, 3, "s", "out");
+        writeEndElement(writer, 2);
+        writeEndElement(writer, 1);
+        writer.writeCharacters("\n");
+        writer.writeEndElement();
+        writer.writeCharacters("\n");
+        writer.writeEndDocument();
+        writer.close();
+        return output.toString();
+    }
+    // sorts the given operations by name, grouped by the name of the interface defining them.
+    private static <T> TreeMap<String,TreeMap<String,T>> groupByInterface(Interface iface, Map<String,T> operations) {
+        TreeMap<String,TreeMap<String,T>> interfaces = new TreeMap<String,TreeMap<String,T>>();
+        for (Map.Entry<String,T> pair : operations.entrySet()) {
+            InterfaceDefinition def = iface.interfaceForOperation(pair.getKey());
+            TreeMap<String,T> ifaceMap = interfaces.get(def.name());
+            if (ifaceMap == null) {
+                ifaceMap = new TreeMap<String,T>();
+                interfaces.put(def.name(), ifaceMap);
+            }
+            ifaceMap.put(pair.getKey(), pair.getValue());
+        }
+        return interfaces;
+    }
+    private String introspectionSignature(Type t) {
+        try {
+            return getDBusSignature(t);
+        } catch (DBusException dbe) {
+            _interperter.logSevere(dbe);
+            return null;
+        }
+    }
+    private static void writeIndentation(XMLStreamWriter writer, int depth) throws XMLStreamException {
+        writer.writeCharacters("\n");
+        for (int i = 0; i < depth; i++) {
+            writer.writeCharacters("  ");
+        }
+    }
+    private static void writeStartElement(XMLStreamWriter writer, int depth, String element, String name) throws XMLStreamException {
+        writeIndentation(writer, depth);
+        writer.writeStartElement(element);
+        writer.writeAttribute("name", name);
+    }
+    private static void writeEndElement(XMLStreamWriter writer, int depth) throws XMLStreamException {
+        writeIndentation(writer, depth);
+        writer.writeEndElement();
+    }
+    private static void writeArgument(XMLStreamWriter writer, int depth, String signature, String direction) throws XMLStreamException {
+        writeIndentation(writer, depth);
+        writer.writeEmptyElement("arg");
+        if (direction != null) {
+            writer.writeAttribute("direction", direction);
+        }
+        if (signature != null) {
+            writer.writeAttribute("type", signature);
+        }
+    }
     private String getDBusSignature(Type t) throws DBusException{
         String sig = "";
         Iterator subItr = getSubTypesIterator(t);
@@ -837,9 +950,7 @@ public class DBusProtocol extends ConcurrentCommProtocol {
                     sig += ")";
                 } else {
                     // no children
-                    //check range for array type?
-                    jolie.util.Range typeRange = getRange(subType.getValue());
-                    if(typeRange.min() < typeRange.max()){
+                    if(isArray(subType.getValue())){
                         sig += "a";
                         sig += getDBusSignature(subType.getValue());
                     } else {
@@ -55,14 +55,13 @@ public class DBusSignal extends Message
          setArgs(args);
       }
 
-      blen = new byte[4];
-      appendBytes(blen);
+      blen = reserve(4);
       append("ua(yv)", ++serial, hargs.toArray());
       pad((byte)8);
 
       long c = bytecounter;
       if (null != sig) append(sig, args);
-      marshallint(bytecounter-c, blen, 0, 4);
+      marshallint(bytecounter-c, wiredata, blen, 4);
       bodydone = true;
    }
    static class internalsig extends DBusSignal
@@ -79,7 +78,7 @@ public class DBusSignal extends Message
    private static Map<String, String> intnames = new HashMap<String, String>();
    private Class<? extends DBusSignal> c;
    private boolean bodydone = false;
-   private byte[] blen;
+   private int blen;
 
    static void addInterfaceMap(String java, String dbus)
    {
@@ -241,8 +240,7 @@ public class DBusSignal extends Message
          }
       }
 
-      blen = new byte[4];
-      appendBytes(blen);
+      blen = reserve(4);
       append("ua(yv)", ++serial, hargs.toArray());
       pad((byte)8);
    }*/
@@ -258,7 +256,7 @@ public class DBusSignal extends Message
 
       long c = bytecounter;
       if (null != args && 0 < args.length) append(sig, args);
-      marshallint(bytecounter-c, blen, 0, 4);
+      marshallint(bytecounter-c, wiredata, blen, 4);
       bodydone = true;
    }*/
 }
@@ -53,13 +53,12 @@ public class Error extends Message
          setArgs(args);
       }
       
-      byte[] blen = new byte[4];
-      appendBytes(blen);
+      int blen = reserve(4);
       append("ua(yv)", serial, hargs.toArray());
       pad((byte)8);
 
       long c = bytecounter;
       if (null != sig) append(sig, args);
-      marshallint(bytecounter-c, blen, 0, 4);
+      marshallint(bytecounter-c, wiredata, blen, 4);
    }
 }
@@ -12,6 +12,8 @@ package jolie.net.dbus;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Type;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.text.MessageFormat;
 import java.util.Arrays;
@@ -26,6 +28,7 @@ import cx.ath.matthew.utils.Hexdump;
 //import jolie.lang.parse.ast.types.UInt16;
 import jolie.lang.parse.ast.types.UInt64;
 //import jolie.lang.parse.ast.types.UInt64;
+import jolie.runtime.typing.JolieDBusUtils;
 
 import org.freedesktop.dbus.Marshalling;
 import org.freedesktop.dbus.Variant;
@@ -122,24 +125,12 @@ public class Message
       public static final byte DICT_ENTRY1='{';
       public static final byte DICT_ENTRY2='}';
    }
-   /** Keep a static reference to each size of padding array to prevent allocation. */
-   private static byte[][] padding;
-   static {
-      padding = new byte[][] {
-         null,
-            new byte[1],
-            new byte[2],
-            new byte[3],
-            new byte[4],
-            new byte[5],
-            new byte[6],
-            new byte[7] };
-   }
-   /** Steps to increment the buffer array. */
-   private static final int BUFFERINCREMENT = 20;
+   /** Initial size of the wire buffer; it grows by doubling. */
+   private static final int INITIALBUFFERSIZE = 256;
 
    private boolean big;
-   protected byte[][] wiredata;
+   /** The message in wire format; only the first bytecounter bytes are used. */
+   protected byte[] wiredata;
    protected long bytecounter;
    protected Map<Byte, Object> headers;
    protected static long globalserial = 0;
@@ -149,11 +140,8 @@ public class Message
    protected byte protover;
    private Object[] args;
    private byte[] body;
+   private int bodyofs = 0;
    private long bodylen = 0;
-   private int preallocated = 0;
-   private int paofs = 0;
-   private byte[] pabuf;
-   private int bufferuse = 0;
 
    /**
     * Returns the name of the given header field.
@@ -181,7 +169,7 @@ public class Message
     */
    protected Message(byte endian, byte type, byte flags) throws DBusException
    {
-      wiredata = new byte[BUFFERINCREMENT][];
+      wiredata = new byte[INITIALBUFFERSIZE];
       headers = new HashMap<Byte, Object>();
       big = (Endian.BIG == endian);
       bytecounter = 0;
@@ -191,7 +179,6 @@ public class Message
       if (Debug.debug) Debug.print(Debug.DEBUG, "Creating message with serial "+serial);
       this.type = type;
       this.flags = flags;
-      preallocate(4);
       append("yyyy", endian, type, flags, Message.PROTOCOL);
    }
    /**
@@ -199,7 +186,7 @@ public class Message
     */
    protected Message()
    {
-      wiredata = new byte[BUFFERINCREMENT][];
+      wiredata = new byte[0];
       headers = new HashMap<Byte, Object>();
       bytecounter = 0;
    }
@@ -216,14 +203,12 @@ public class Message
       type = msg[1];
       flags = msg[2];
       protover = msg[3];
-      wiredata[0] = msg;
-      wiredata[1] = headers;
-      wiredata[2] = body;
+      appendBytes(msg);
+      appendBytes(headers);
+      appendBytes(body);
       this.body = body;
-      bufferuse = 3;
       bodylen = ((Number) extract(Message.ArgumentType.UINT32_STRING, msg, 4)[0]).longValue();
       serial = ((Number) extract(Message.ArgumentType.UINT32_STRING, msg, 8)[0]).longValue();
-      bytecounter = msg.length+headers.length+body.length;
       if (Debug.debug) Debug.print(Debug.VERBOSE, headers);
       Object[] hs = extract("a(yv)", headers, 0);
       if (Debug.debug) Debug.print(Debug.VERBOSE, Arrays.deepToString(hs));
@@ -232,73 +217,106 @@ public class Message
       }
    }
    /**
-    * Create a buffer of num bytes.
-    * Data is copied to this rather than added to the buffer list.
+    * Create a message from wire-format data whose header fields have already
+    * been demarshalled. The body is kept in wire format and is only
+    * demarshalled when the parameters are asked for.
+    * @param frame The whole D-Bus serialized message, starting with the
+    *              fixed header of type yyyyuu.
+    * @param headers The demarshalled header fields.
+    * @param bodyofs The offset of the body into frame.
+    */
+   void populate(byte[] frame, Map<Byte, Object> headers, int bodyofs)
+   {
+      big = (frame[0] == Endian.BIG);
+      type = frame[1];
+      flags = frame[2];
+      protover = frame[3];
+      this.body = frame;
+      this.bodyofs = bodyofs;
+      bodylen = frame.length - bodyofs;
+      serial = demarshallint(frame, 8, 4);
+      this.headers.putAll(headers);
+   }
+   /**
+    * Create a received message of the type given in its fixed header.
+    * @param frame The whole D-Bus serialized message.
+    * @param headers The demarshalled header fields.
+    * @param bodyofs The offset of the body into frame.
+    * @return The message, or null if the message type is unknown.
     */
-   private void preallocate(int num)
+   public static Message createReceived(byte[] frame, Map<Byte, Object> headers, int bodyofs)
    {
-      preallocated = 0;
-      pabuf = new byte[num];
-      appendBytes(pabuf);
-      preallocated = num;
-      paofs = 0;
+      Message m;
+      switch (frame[1]) {
+         case MessageType.METHOD_CALL:
+            m = new MethodCall();
+            break;
+         case MessageType.METHOD_RETURN:
+            m = new MethodReturn();
+            break;
+         case MessageType.ERROR:
+            m = new Error();
+            break;
+         case MessageType.SIGNAL:
+            m = new DBusSignal();
+            break;
+         default:
+            return null;
+      }
+      m.populate(frame, headers, bodyofs);
+      return m;
    }
    /**
-    * Ensures there are enough free buffers.
-    * @param num number of free buffers to create.
+    * Ensures the wire buffer can hold num more bytes.
     */
-   private void ensureBuffers(int num)
+   private void ensureCapacity(int num)
    {
-      int increase = num - wiredata.length + bufferuse;
-      if (increase > 0) {
-         if (increase < BUFFERINCREMENT) increase = BUFFERINCREMENT;
-         if (Debug.debug) Debug.print(Debug.VERBOSE, "Resizing "+bufferuse);
-         byte[][] temp = new byte[wiredata.length+increase][];
-         System.arraycopy(wiredata, 0, temp, 0, wiredata.length);
-         wiredata = temp;
+      int needed = (int) bytecounter + num;
+      if (needed > wiredata.length) {
+         int size = Math.max(wiredata.length, INITIALBUFFERSIZE);
+         while (size < needed) size <<= 1;
+         if (Debug.debug) Debug.print(Debug.VERBOSE, "Resizing "+wiredata.length+" to "+size);
+         wiredata = Arrays.copyOf(wiredata, size);
       }
    }
    /**
-    * Appends a buffer to the buffer list.
+    * Appends a buffer to the message.
     */
    protected void appendBytes(byte[] buf) 
    {
       if (null == buf) return;
-      if (preallocated > 0) {
-         if (paofs+buf.length > pabuf.length)
-            throw new ArrayIndexOutOfBoundsException(MessageFormat.format(("Array index out of bounds, paofs={0}, pabuf.length={1}, buf.length={2}."), new Object[] { paofs, pabuf.length, buf.length }));
-         System.arraycopy(buf, 0, pabuf, paofs, buf.length);
-         paofs += buf.length;
-         preallocated -= buf.length;
-      } else {
-         if (bufferuse == wiredata.length) {
-            if (Debug.debug) Debug.print(Debug.VERBOSE, "Resizing "+bufferuse);
-            byte[][] temp = new byte[wiredata.length+BUFFERINCREMENT][];
-            System.arraycopy(wiredata, 0, temp, 0, wiredata.length);
-            wiredata = temp;
-         }
-         wiredata[bufferuse++] = buf;
-         bytecounter += buf.length; 
-      }
+      appendBytes(buf, 0, buf.length);
+   }
+   /**
+    * Appends len bytes of a buffer, starting from ofs, to the message.
+    */
+   protected void appendBytes(byte[] buf, int ofs, int len) 
+   {
+      ensureCapacity(len);
+      System.arraycopy(buf, ofs, wiredata, (int) bytecounter, len);
+      bytecounter += len; 
    }
    /**
-    * Appends a byte to the buffer list.
+    * Appends a byte to the message.
     */
    protected void appendByte(byte b) 
    {
-      if (preallocated > 0) {
-         pabuf[paofs++] = b;
-         preallocated--;
-      } else {
-         if (bufferuse == wiredata.length) {
-            if (Debug.debug) Debug.print(Debug.VERBOSE, "Resizing "+bufferuse);
-            byte[][] temp = new byte[wiredata.length+BUFFERINCREMENT][];
-            System.arraycopy(wiredata, 0, temp, 0, wiredata.length);
-            wiredata = temp;
-         }
-         wiredata[bufferuse++] = new byte[] { b };
-         bytecounter++; 
-      }
+      ensureCapacity(1);
+      wiredata[(int) bytecounter++] = b;
+   }
+   /**
+    * Appends width zero bytes to the message, to be filled in later
+    * with marshallint (e.g. with a length known only after the
+    * following data has been appended).
+    * @return The offset of the reserved bytes in the wire buffer.
+    */
+   protected int reserve(int width)
+   {
+      ensureCapacity(width);
+      int ofs = (int) bytecounter;
+      Arrays.fill(wiredata, ofs, ofs+width, (byte) 0);
+      bytecounter += width;
+      return ofs;
    }
    /**
     * Demarshalls an integer of a given width from a buffer.
@@ -356,9 +374,9 @@ public class Message
     */
    public void appendint(long l, int width)
    { 
-      byte[] buf = new byte[width];
-      marshallint(l, buf, 0, width);
-      appendBytes(buf);
+      ensureCapacity(width);
+      marshallint(l, wiredata, (int) bytecounter, width);
+      bytecounter += width;
    }
    /**
     * Marshalls an integer of a given width into a buffer.
@@ -401,9 +419,12 @@ public class Message
          l >>= 8;
       }
    }
-   public byte[][] getWireData()
+   /**
+    * Writes the message in wire format to out with a single write.
+    */
+   public void writeTo(OutputStream out) throws IOException
    {
-      return wiredata;
+      out.write(wiredata, 0, (int) bytecounter);
    }
    /**
     * Formats the message in a human-readable format.
@@ -552,20 +573,17 @@ public class Message
                if (Debug.debug) Debug.print(Debug.VERBOSE, "Appending String of length "+payloadbytes.length);
                appendint(payloadbytes.length, 4);
                appendBytes(payloadbytes);
-               appendBytes(padding[1]);
+               appendByte((byte) 0);
                //pad(ArgumentType.STRING);? do we need this?
                break;
             case ArgumentType.SIGNATURE:
                // Signatures are marshalled as a byte with the length,
                // followed by the String, followed by a null byte.
-               // Signatures are generally short, so preallocate the array
-               // for the string, length and null byte.
                if (data instanceof Type[])
                   payload = Marshalling.getDBusType((Type[]) data);
                else
                   payload = (String) data;
                byte[] pbytes = payload.getBytes();
-               preallocate(2+pbytes.length);
                appendByte((byte) pbytes.length);
                appendBytes(pbytes);
                appendByte((byte) 0);
@@ -580,8 +598,7 @@ public class Message
                      Debug.print(Debug.VERBOSE, "Appending array: "+Arrays.deepToString((Object[])data));
                }
 
-               byte[] alen = new byte[4];
-               appendBytes(alen);
+               int alen = reserve(4);
                pad(sigb[++i]);
                long c = bytecounter;
 
@@ -632,13 +649,11 @@ public class Message
                } else if (data instanceof List) {
                   Object[] contents = ((List) data).toArray();
                   int diff = i;
-                  ensureBuffers(contents.length*4);
                   for (Object o: contents) 
                      diff = appendone(sigb, i, o);
                   i = diff;
                } else if (data instanceof Map) {
                   int diff = i;
-                  ensureBuffers(((Map) data).size()*6);
                   for (Map.Entry<Object,Object> o: ((Map<Object,Object>) data).entrySet())
                      diff = appendone(sigb, i, o);
                   if (i == diff) {
@@ -653,7 +668,6 @@ public class Message
                   i = diff;
                } else {
                   Object[] contents = (Object[]) data;
-                  ensureBuffers(contents.length*4);
                   int diff = i;
                   for (Object o: contents) 
                       //if(o instanceof arra)
@@ -661,7 +675,7 @@ public class Message
                   i = diff;
                }
                if (Debug.debug) Debug.print(Debug.VERBOSE, "start: "+c+" end: "+bytecounter+" length: "+(bytecounter-c));
-               marshallint(bytecounter-c, alen, 0, 4);
+               marshallint(bytecounter-c, wiredata, alen, 4);
                break;
             case ArgumentType.STRUCT1:
                // Structs are aligned to 8 bytes
@@ -672,7 +686,6 @@ public class Message
                   contents = ((Container) data).getParameters();
                else*/
                   contents = (Object[]) data;
-               ensureBuffers(contents.length*4);
                
                for (i++; sigb[i] != ArgumentType.STRUCT2; i++)
                   i = appendone(sigb, i, contents[j++]);
@@ -724,16 +737,11 @@ public class Message
    {
       if (Debug.debug) Debug.print(Debug.VERBOSE, "padding for "+(char)type);
       int a = getAlignment(type);
-      if (Debug.debug) Debug.print(Debug.VERBOSE, preallocated+" "+paofs+" "+bytecounter+" "+a);
-      int b = (int) ((bytecounter-preallocated)%a);
+      if (Debug.debug) Debug.print(Debug.VERBOSE, bytecounter+" "+a);
+      int b = (int) (bytecounter%a);
       if (0 == b) return;
-      a = (a-b);
-      if (preallocated > 0) {
-         paofs += a;
-         preallocated -= a;
-      } else
-         appendBytes(padding[a]);
-      if (Debug.debug) Debug.print(Debug.VERBOSE, preallocated+" "+paofs+" "+bytecounter+" "+a);
+      reserve(a-b);
+      if (Debug.debug) Debug.print(Debug.VERBOSE, bytecounter+" "+a);
    }
    /**
     * Return the alignment for a given type.
@@ -1119,12 +1127,20 @@ public class Message
    { 
       if (null == args && null != body) {
          String sig = (String) headers.get(HeaderField.SIGNATURE);
-         if (null != sig && 0 != body.length) {
-            args = extract(sig, body, 0);
+         if (null != sig && 0 != bodylen) {
+            args = JolieDBusUtils.extract(sig, body, getEndian(), new int[] { 0, bodyofs });
          } else args = new Object[0];
       }
       return args; 
    }
+   /**
+    * Returns the buffer holding the body of a received message in wire format.
+    */
+   public byte[] getBody() { return body; }
+   /**
+    * Returns the offset of the body into the buffer returned by getBody.
+    */
+   public int getBodyOffset() { return bodyofs; }
    protected void setArgs(Object[] args) { this.args = args; }
    /**
     * Warning, do not use this method unless you really know what you are doing.
@@ -1132,10 +1148,8 @@ public class Message
    public void setSource(String source) throws DBusException
    {
       if (null != body) {
-         wiredata = new byte[BUFFERINCREMENT][];
-         bufferuse = 0;
+         wiredata = new byte[INITIALBUFFERSIZE];
          bytecounter = 0;
-         preallocate(12);
          append("yyyyuu", big ? Endian.BIG : Endian.LITTLE, type, flags, protover, bodylen, serial);
          headers.put(HeaderField.SENDER, source);
          Object[][] newhead = new Object[headers.size()][];
@@ -1148,7 +1162,7 @@ public class Message
          }
          append("a(yv)", (Object) newhead);
          pad((byte) 8);
-         appendBytes(body);
+         appendBytes(body, bodyofs, body.length-bodyofs);
       }
    }
 }
@@ -60,16 +60,15 @@ public class MethodCall extends Message
          setArgs(args);
       }
 
-      byte[] blen = new byte[4];
-      appendBytes(blen);
+      int blen = reserve(4);
       append("ua(yv)", serial, hargs.toArray());
       pad((byte)8);
 
       long c = bytecounter;
       if (null != sig) append(sig, args);
       if (Debug.debug) Debug.print(Debug.DEBUG, "Appended body, type: "+sig+" start: "+c+" end: "+bytecounter+" size: "+(bytecounter-c));
-      marshallint(bytecounter-c, blen, 0, 4);
-      if (Debug.debug) Debug.print("marshalled size ("+blen+"): "+Hexdump.format(blen));
+      marshallint(bytecounter-c, wiredata, blen, 4);
+      if (Debug.debug) Debug.print("marshalled size ("+blen+"): "+Hexdump.toHex(wiredata, blen, 4));
    }
    private static long REPLY_WAIT_TIMEOUT = 20000;
    /**
@@ -45,14 +45,13 @@ public class MethodReturn extends Message
          setArgs(args);
       }
 
-      byte[] blen = new byte[4];
-      appendBytes(blen);
+      int blen = reserve(4);
       append("ua(yv)", serial, hargs.toArray());
       pad((byte)8);
 
       long c = bytecounter;
       if (null != sig) append(sig, args);
-      marshallint(bytecounter-c, blen, 0, 4);
+      marshallint(bytecounter-c, wiredata, blen, 4);
    }
    public MethodReturn(MethodCall mc,byte endian, String sig, Object... args) throws DBusException
    {
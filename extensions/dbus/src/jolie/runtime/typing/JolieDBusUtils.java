@@ -448,58 +448,78 @@ public static Value extract(String sig, byte[] buf, byte endian, int[] ofs,Type
                     case Message.ArgumentType.BYTE:
                         byte[] byteArray = new byte[length];
                         System.arraycopy(buf, ofs[1], byteArray, 0, length);
-                        vv = ValueVector.create();
-                        for(int i = 0; i < byteArray.length;i++){
-                            //val.add(Value.create(new ByteArray(new byte[]{byteArray[i]})));
-                            vv.set(i,Value.create((byte)byteArray[i]));
-                        }
                         ofs[1] += size;
-                        rv = vv;
+                        rv = ValueVector.create(byteArray);
                         break;
                     case Message.ArgumentType.INT16:
-                        rv = new short[length];
-                        vv = ValueVector.create();
+                        short[] shortArray = new short[length];
                         for (int j = 0; j < length; j++, ofs[1] += algn) {
-                            //((short[]) rv)[j] = (short) Message.demarshallint(buf, ofs[1], endian, algn);
-                            vv.set(j,Value.create((short) Message.demarshallint(buf, ofs[1], endian, algn)));
+                            shortArray[j] = (short) Message.demarshallint(buf, ofs[1], endian, algn);
                         }
-                        rv = vv;
+                        rv = ValueVector.create(shortArray);
                         break;
                     case Message.ArgumentType.INT32:
-                        vv = ValueVector.create();
+                        int[] intArray = new int[length];
+                        for (int j = 0; j < length; j++, ofs[1] += algn) {
+                            intArray[j] = (int) Message.demarshallint(buf, ofs[1], endian, algn);
+                        }
+                        rv = ValueVector.create(intArray);
+                        break;
+                    case Message.ArgumentType.UINT16:
+                        int[] uint16Array = new int[length];
+                        for (int j = 0; j < length; j++, ofs[1] += algn) {
+                            uint16Array[j] = (int) Message.demarshallint(buf, ofs[1], endian, algn);
+                        }
+                        rv = ValueVector.createUInt16(uint16Array);
+                        break;
+                    case Message.ArgumentType.UINT32:
+                        long[] uint32Array = new long[length];
+                        for (int j = 0; j < length; j++, ofs[1] += algn) {
+                            uint32Array[j] = Message.demarshallint(buf, ofs[1], endian, algn);
+                        }
+                        rv = ValueVector.createUInt32(uint32Array);
+                        break;
+                    case Message.ArgumentType.UINT64:
+                        long[] uint64Array = new long[length];
                         for (int j = 0; j < length; j++, ofs[1] += algn) {
-                            vv.set(j,Value.create((int) Message.demarshallint(buf, ofs[1], endian, algn)));
+                            long high = Message.demarshallint(buf, ofs[1], endian, 4);
+                            long low = Message.demarshallint(buf, ofs[1] + 4, endian, 4);
+                            if (endian != Message.Endian.BIG) {
+                                long swap = high;
+                                high = low;
+                                low = swap;
+                            }
+                            uint64Array[j] = (high << 32) | (low & 0xFFFFFFFFL);
                         }
-                        rv = vv;
+                        rv = ValueVector.createUInt64(uint64Array);
                         break;
                     case Message.ArgumentType.INT64:
-                        vv = ValueVector.create();
+                        long[] longArray = new long[length];
                         for (int j = 0; j < length; j++, ofs[1] += algn) {
-                            vv.set(j,Value.create(Message.demarshallint(buf, ofs[1], endian, algn)));
+                            longArray[j] = Message.demarshallint(buf, ofs[1], endian, algn);
                         }
-                        rv = vv;
+                        rv = ValueVector.create(longArray);
                         break;
                     case Message.ArgumentType.BOOLEAN:
-                        vv = ValueVector.create();
+                        boolean[] booleanArray = new boolean[length];
                         for (int j = 0; j < length; j++, ofs[1] += algn) {
-                            vv.set(j,Value.create(1 == Message.demarshallint(buf,ofs[1], endian, algn)));
+                            booleanArray[j] = (1 == Message.demarshallint(buf,ofs[1], endian, algn));
                         }
-                        rv = vv;
+                        rv = ValueVector.create(booleanArray);
                         break;
                     case Message.ArgumentType.FLOAT:
-                        vv = ValueVector.create();
+                        double[] floatArray = new double[length];
                         for (int j = 0; j < length; j++, ofs[1] += algn) {
-                            Float fl = Float.intBitsToFloat((int) Message.demarshallint(buf, ofs[1], endian, algn));
-                            vv.set(j,Value.create(fl.doubleValue()));
+                            floatArray[j] = Float.intBitsToFloat((int) Message.demarshallint(buf, ofs[1], endian, algn));
                         }
-                        rv = vv;
+                        rv = ValueVector.create(floatArray);
                         break;
                     case Message.ArgumentType.DOUBLE:
-                        vv = ValueVector.create();
+                        double[] doubleArray = new double[length];
                         for (int j = 0; j < length; j++, ofs[1] += algn) {
-                            vv.set(j,Value.create(Double.longBitsToDouble(Message.demarshallint(buf, ofs[1], endian, algn))));
+                            doubleArray[j] = Double.longBitsToDouble(Message.demarshallint(buf, ofs[1], endian, algn));
                         }
-                        rv = vv;
+                        rv = ValueVector.create(doubleArray);
                         break;
                     case Message.ArgumentType.DICT_ENTRY1:
                         if (0 == size) {
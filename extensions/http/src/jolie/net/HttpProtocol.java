@@ -24,39 +24,39 @@ package jolie.net;
 import com.google.gwt.user.client.rpc.SerializationException;
 import com.google.gwt.user.server.rpc.RPC;
 import com.google.gwt.user.server.rpc.RPCRequest;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.regex.Matcher;
 
 import java.util.regex.Pattern;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import jolie.Interpreter;
 import jolie.lang.NativeType;
+import jolie.net.http.ChunkedOutputStream;
 import jolie.net.http.HttpMessage;
 import jolie.net.http.HttpParser;
 import jolie.net.http.HttpUtils;
@@ -76,13 +76,9 @@ import jolie.runtime.typing.Type;
 import jolie.runtime.typing.TypeCastingException;
 import jolie.util.LocationParser;
 
+import jolie.xml.XmlFactories;
 import jolie.xml.XmlUtils;
 import joliex.gwt.client.JolieService;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 /**
  * HTTP protocol implementation
@@ -180,6 +176,7 @@ public class HttpProtocol extends CommProtocol
 		private static final String HEADERS = "headers";
 		private static final String STATUS_CODE = "statusCode";
 		private static final String REDIRECT = "redirect";
+		private static final String CHUNKED = "chunked";
 
 		private static class MultiPartHeaders {
 			private static final String FILENAME = "filename";
@@ -191,9 +188,6 @@ public class HttpProtocol extends CommProtocol
 	}
 
 	private String inputId = null;
-	private final Transformer transformer;
-	private final DocumentBuilderFactory docBuilderFactory;
-	private final DocumentBuilder docBuilder;
 	private final URI uri;
 	private final boolean inInputPort;
 	private MultiPartFormDataParser multiPartFormDataParser = null;
@@ -213,49 +207,12 @@ public class HttpProtocol extends CommProtocol
 	public HttpProtocol(
 		VariablePath configurationPath,
 		URI uri,
-		boolean inInputPort,
-		TransformerFactory transformerFactory,
-		DocumentBuilderFactory docBuilderFactory,
-		DocumentBuilder docBuilder
+		boolean inInputPort
 	)
-		throws TransformerConfigurationException
 	{
 		super( configurationPath );
 		this.uri = uri;
 		this.inInputPort = inInputPort;
-		this.transformer = transformerFactory.newTransformer();
-		this.docBuilderFactory = docBuilderFactory;
-		this.docBuilder = docBuilder;
-		transformer.setOutputProperty( OutputKeys.OMIT_XML_DECLARATION, "yes" );
-	}
-		
-	private void valueToDocument(
-			Value value,
-			Node node,
-			Document doc
-			)
-	{
-		node.appendChild( doc.createTextNode( value.strValue() ) );
-
-		Element currentElement;
-		for( Entry< String, ValueVector > entry : value.children().entrySet() ) {
-			if ( !entry.getKey().startsWith( "@" ) ) {
-				for( Value val : entry.getValue() ) {
-					currentElement = doc.createElement( entry.getKey() );
-					node.appendChild( currentElement );
-					Map< String, ValueVector > attrs = jolie.xml.XmlUtils.getAttributesOrNull( val );
-					if ( attrs != null ) {
-						for( Entry< String, ValueVector > attrEntry : attrs.entrySet() ) {
-							currentElement.setAttribute(
-								attrEntry.getKey(),
-								attrEntry.getValue().first().strValue()
-								);
-						}
-					}
-					valueToDocument( val, currentElement, doc );
-				}
-			}
-		}
 	}
 
 	public String getMultipartHeaderForPart( String operationName, String partName )
@@ -342,6 +299,36 @@ public class HttpProtocol extends CommProtocol
 	}
 	
 	private String requestFormat = null;
+	// false if the last received request was an HTTP/1.0 one, which can not be answered with chunks
+	private boolean chunkedAllowed = true;
+	private static final int CHUNK_SIZE = 8192;
+	private static final int FILE_BUFFER_SIZE = 8192;
+
+	/*
+	 * A request received on an input port, waiting for its response.
+	 * HTTP/1.1 clients may pipeline requests on a keep-alive connection:
+	 * these are dispatched concurrently, but responses must be written in
+	 * the same order in which their requests arrived.
+	 */
+	private static class PipelinedRequest
+	{
+		private final long id;
+		private final String requestFormat;
+		private final boolean chunkedAllowed;
+		private boolean toBeClosed;
+		private byte[] response = null;
+
+		private PipelinedRequest( long id, String requestFormat, boolean chunkedAllowed, boolean toBeClosed )
+		{
+			this.id = id;
+			this.requestFormat = requestFormat;
+			this.chunkedAllowed = chunkedAllowed;
+			this.toBeClosed = toBeClosed;
+		}
+	}
+
+	// Requests whose responses have not been written yet, in arrival order
+	private final LinkedList< PipelinedRequest > pipeline = new LinkedList< PipelinedRequest >();
 
 	private void send_appendQuerystring( Value value, String charset, StringBuilder headerBuilder )
 		throws IOException
@@ -418,8 +405,39 @@ public class HttpProtocol extends CommProtocol
 	
 	private static class EncodedContent {
 		private ByteArray content = null;
+		// Sent instead of content, reading it from disk while sending
+		private File file = null;
 		private String contentType = "";
 		private String contentDisposition = "";
+
+		private boolean isEmpty()
+		{
+			return content == null && file == null;
+		}
+
+		private long size()
+		{
+			return ( file == null ) ? content.size() : file.length();
+		}
+
+		private void writeTo( OutputStream ostream )
+			throws IOException
+		{
+			if ( file == null ) {
+				ostream.write( content.getBytes() );
+			} else {
+				InputStream istream = new FileInputStream( file );
+				try {
+					byte[] buffer = new byte[ FILE_BUFFER_SIZE ];
+					int n;
+					while( (n = istream.read( buffer )) != -1 ) {
+						ostream.write( buffer, 0, n );
+					}
+				} finally {
+					istream.close();
+				}
+			}
+		}
 	}
 
 	private EncodedContent send_encodeContent( CommMessage message, Method method, String charset, String format )
@@ -432,22 +450,20 @@ public class HttpProtocol extends CommProtocol
 		}
 
 		if ( "xml".equals( format ) ) {
-			Document doc = docBuilder.newDocument();
-			Element root = doc.createElement( message.operationName() + (( inInputPort ) ? "Response" : "") );
-			doc.appendChild( root );
-			if ( message.isFault() ) {
-				Element faultElement = doc.createElement( message.fault().faultName() );
-				root.appendChild( faultElement );
-				valueToDocument( message.fault().value(), faultElement, doc );
-			} else {
-				valueToDocument( message.value(), root, doc );
-			}
-			Source src = new DOMSource( doc );
 			ByteArrayOutputStream tmpStream = new ByteArrayOutputStream();
-			Result dest = new StreamResult( tmpStream );
 			try {
-				transformer.transform( src, dest );
-			} catch( TransformerException e ) {
+				XMLStreamWriter writer = XmlFactories.createXMLStreamWriter( tmpStream, ( charset == null ) ? "UTF-8" : charset );
+				writer.writeStartElement( message.operationName() + (( inInputPort ) ? "Response" : "") );
+				if ( message.isFault() ) {
+					writer.writeStartElement( message.fault().faultName() );
+					XmlUtils.valueToXmlStream( message.fault().value(), writer );
+					writer.writeEndElement();
+				} else {
+					XmlUtils.valueToXmlStream( message.value(), writer );
+				}
+				writer.writeEndElement();
+				writer.close();
+			} catch( XMLStreamException e ) {
 				throw new IOException( e );
 			}
 			ret.content = new ByteArray( tmpStream.toByteArray() );
@@ -458,6 +474,15 @@ public class HttpProtocol extends CommProtocol
 				ret.content = (ByteArray) message.value().valueObject();
 				ret.contentType = "application/octet-stream";
 			}
+		} else if ( "file".equals( format ) ) {
+			// The value is the path of the file to send
+			if ( message.isFault() == false && message.value().isDefined() ) {
+				ret.file = new File( message.value().strValue() );
+				if ( ret.file.isFile() == false ) {
+					throw new IOException( "File not found: " + ret.file.getPath() );
+				}
+				ret.contentType = "application/octet-stream";
+			}
 		} else if ( "html".equals( format ) ) {
 			ret.content = new ByteArray( message.value().strValue().getBytes( charset ) );
 			ret.contentType = "text/html";
@@ -508,9 +533,11 @@ public class HttpProtocol extends CommProtocol
 			}
 		} else if ( "json".equals( format ) || "application/json".equals( format ) ) {
 			ret.contentType = "application/json";
-			StringBuilder jsonStringBuilder = new StringBuilder();
-			JsonUtils.valueToJsonString( message.value(), jsonStringBuilder );
-			ret.content = new ByteArray( jsonStringBuilder.toString().getBytes( charset ) );
+			ByteArrayOutputStream jsonStream = new ByteArrayOutputStream();
+			Writer jsonWriter = new BufferedWriter( new OutputStreamWriter( jsonStream, charset ) );
+			JsonUtils.valueToJson( message.value(), jsonWriter );
+			jsonWriter.flush();
+			ret.content = new ByteArray( jsonStream.toByteArray() );
 		}
 		return ret;
 	}
@@ -641,6 +668,13 @@ public class HttpProtocol extends CommProtocol
 		send_appendAuthorizationHeader( message, headerBuilder );
 	}
 	
+	private boolean send_isChunked( EncodedContent encodedContent )
+	{
+		return encodedContent.isEmpty() == false
+			&& (inInputPort == false || chunkedAllowed)
+			&& checkBooleanParameter( Parameters.CHUNKED );
+	}
+
 	private void send_appendGenericHeaders(
 		CommMessage message,
 		EncodedContent encodedContent,
@@ -657,7 +691,7 @@ public class HttpProtocol extends CommProtocol
 			headerBuilder.append( Headers.JOLIE_MESSAGE_ID ).append( ": " ).append( message.id() ).append( CRLF );
 		}
 		
-		if ( encodedContent.content != null ) {
+		if ( encodedContent.isEmpty() == false ) {
 			String contentType = getStringParameter( "contentType" );
 			if ( contentType.length() > 0 ) {
 				encodedContent.contentType = contentType;
@@ -680,7 +714,11 @@ public class HttpProtocol extends CommProtocol
 				headerBuilder.append( "Content-Disposition: " + encodedContent.contentDisposition + CRLF );
 			}
 			
-			headerBuilder.append( "Content-Length: " + (encodedContent.content.size() + 2) + CRLF );
+			if ( send_isChunked( encodedContent ) ) {
+				headerBuilder.append( "Transfer-Encoding: chunked" + CRLF );
+			} else {
+				headerBuilder.append( "Content-Length: " + (encodedContent.size() + 2) + CRLF );
+			}
 		} else {
 			headerBuilder.append( "Content-Length: 0" + CRLF );
 		}
@@ -702,8 +740,58 @@ public class HttpProtocol extends CommProtocol
 		}
 	}
 	
+	@Override
+	public boolean hasPendingResponses()
+	{
+		return pipeline.isEmpty() == false;
+	}
+
+	private PipelinedRequest send_getPipelinedRequest( CommMessage message )
+	{
+		for( PipelinedRequest request : pipeline ) {
+			if ( request.id == message.id() && request.response == null ) {
+				return request;
+			}
+		}
+		return null;
+	}
+
 	public void send( OutputStream ostream, CommMessage message, InputStream istream )
 		throws IOException
+	{
+		PipelinedRequest request = ( inInputPort ) ? send_getPipelinedRequest( message ) : null;
+		if ( request == null ) {
+			send_writeMessage( ostream, message );
+			return;
+		}
+
+		// Restore the state of the connection as it was when the request was received
+		requestFormat = request.requestFormat;
+		chunkedAllowed = request.chunkedAllowed;
+		channel().setToBeClosed( request.toBeClosed );
+		if ( request == pipeline.getFirst() ) {
+			send_writeMessage( ostream, message );
+			pipeline.removeFirst();
+			boolean toBeClosed = channel().toBeClosed();
+			// Write the responses to the following requests that were ready before this one
+			while( pipeline.isEmpty() == false && pipeline.getFirst().response != null ) {
+				request = pipeline.removeFirst();
+				ostream.write( request.response );
+				toBeClosed = request.toBeClosed;
+			}
+			channel().setToBeClosed( toBeClosed );
+		} else {
+			// Responses to previous requests are still missing, keep this one until they are sent
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			send_writeMessage( buffer, message );
+			request.response = buffer.toByteArray();
+			request.toBeClosed = channel().toBeClosed();
+			channel().setToBeClosed( false );
+		}
+	}
+
+	private void send_writeMessage( OutputStream ostream, CommMessage message )
+		throws IOException
 	{
 		Method method = send_getRequestMethod( message );
 		String charset = getCharset();
@@ -728,33 +816,34 @@ public class HttpProtocol extends CommProtocol
 			charset = "UTF8";
 		}*/
 		ostream.write( headerBuilder.toString().getBytes( charset ) );
-		if ( encodedContent.content != null ) {
-			ostream.write( encodedContent.content.getBytes() );
+		if ( send_isChunked( encodedContent ) ) {
+			OutputStream chunkedStream = new ChunkedOutputStream( ostream, CHUNK_SIZE );
+			encodedContent.writeTo( chunkedStream );
+			chunkedStream.close();
+		} else if ( encodedContent.isEmpty() == false ) {
+			encodedContent.writeTo( ostream );
 			ostream.write( CRLF.getBytes( charset ) );
 		}
 	}
 
-	private void parseXML( HttpMessage message, Value value )
+	private static void parseXML( HttpMessage message, Value value )
 		throws IOException
 	{
 		try {
 			if ( message.size() > 0 ) {
-				DocumentBuilder builder = docBuilderFactory.newDocumentBuilder();
-				InputSource src = new InputSource( new ByteArrayInputStream( message.content() ) );
-				Document doc = builder.parse( src );
-				XmlUtils.documentToValue( doc, value );
+				XMLStreamReader reader = XmlFactories.createXMLStreamReader( new ByteArrayInputStream( message.content() ) );
+				XmlUtils.xmlStreamToValue( reader, value, true );
+				reader.close();
 			}
-		} catch( ParserConfigurationException pce ) {
-			throw new IOException( pce );
-		} catch( SAXException saxe ) {
-			throw new IOException( saxe );
+		} catch( XMLStreamException e ) {
+			throw new IOException( e );
 		}
 	}
 
-	private static void parseJson( HttpMessage message, Value value )
+	private static void parseJson( HttpMessage message, Value value, String charset )
 		throws IOException
 	{
-		JsonUtils.parseJsonIntoValue( new InputStreamReader( new ByteArrayInputStream( message.content() ) ), value );
+		JsonUtils.parseJsonIntoValue( new InputStreamReader( new ByteArrayInputStream( message.content() ), charset ), value );
 	}
 	
 	private static void parseForm( HttpMessage message, Value value, String charset )
@@ -988,11 +1077,11 @@ public class HttpProtocol extends CommProtocol
 		} else if ( "application/octet-stream".equals( type ) || type.startsWith( "image/" ) ) {
 			decodedMessage.value.setValue( new ByteArray( message.content() ) );
 		} else if ( "application/json".equals( type ) ) {
-			parseJson( message, decodedMessage.value );
+			parseJson( message, decodedMessage.value, charset );
 		} else if ( "xml".equals( format ) || "rest".equals( format ) ) {
 			parseXML( message, decodedMessage.value );
 		} else if ( "json".equals( format ) ) {
-			parseJson( message, decodedMessage.value );
+			parseJson( message, decodedMessage.value, charset );
 		} else {
 			decodedMessage.value.setValue( new String( message.content() ) );
 		}
@@ -1076,14 +1165,48 @@ public class HttpProtocol extends CommProtocol
 		} 
 	}
 	
+	private void recv_enqueueRequest( DecodedMessage decodedMessage )
+	{
+		if ( decodedMessage.id == CommMessage.GENERIC_ID ) {
+			// We need to tell apart the responses to pipelined requests
+			decodedMessage.id = CommMessage.getNewMessageId();
+		}
+		boolean hasPreviousRequests = pipeline.isEmpty() == false;
+		pipeline.add( new PipelinedRequest( decodedMessage.id, requestFormat, chunkedAllowed, channel().toBeClosed() ) );
+		if ( hasPreviousRequests ) {
+			// The connection must stay open until the previous responses are sent
+			channel().setToBeClosed( false );
+		}
+	}
+
 	public CommMessage recv( InputStream istream, OutputStream ostream )
 		throws IOException
 	{
 		CommMessage retVal = null;
 		DecodedMessage decodedMessage = new DecodedMessage();
-		HttpMessage message = new HttpParser( istream ).parse();
+		HttpMessage message;
+		File contentFile = null;
+		if ( "file".equals( getStringParameter( "format" ) ) ) {
+			// Write the body to a temporary file while reading it, without keeping it in memory
+			contentFile = File.createTempFile( "jolie-http", null );
+			OutputStream contentStream = new BufferedOutputStream( new FileOutputStream( contentFile ), FILE_BUFFER_SIZE );
+			try {
+				message = new HttpParser( istream ).parse( contentStream );
+			} finally {
+				contentStream.close();
+			}
+			if ( contentFile.length() == 0 ) {
+				contentFile.delete();
+				contentFile = null;
+			}
+		} else {
+			message = new HttpParser( istream ).parse();
+		}
 
 		if ( message.isSupported() == false ) {
+			if ( contentFile != null ) {
+				contentFile.delete();
+			}
 			ostream.write( NOT_IMPLEMENTED_HEADER );
 			ostream.write( CRLF.getBytes() );
 			ostream.write( CRLF.getBytes() );
@@ -1093,6 +1216,10 @@ public class HttpProtocol extends CommProtocol
 
 		String charset = getCharset();
 
+		if ( inInputPort && message.isResponse() == false ) {
+			chunkedAllowed = message.version() == null || message.version().equals( HttpMessage.Version.HTTP_1_1 );
+		}
+
 		if ( message.getProperty( "connection" ) != null ) {
 			HttpUtils.recv_checkForChannelClosing( message, channel() );
 		} else {
@@ -1106,7 +1233,10 @@ public class HttpProtocol extends CommProtocol
 		recv_checkForStatusCode( message );
 		
 		recv_parseRequestFormat( message );
-		if ( message.size() > 0 ) {
+		if ( contentFile != null ) {
+			// The receiver gets the path of the file and is in charge of deleting it
+			decodedMessage.value.setValue( contentFile.getPath() );
+		} else if ( message.size() > 0 ) {
 			recv_parseMessage( message, decodedMessage, charset );
 		}
 
@@ -1128,6 +1258,9 @@ public class HttpProtocol extends CommProtocol
 			}
 			recv_checkReceivingOperation( message, decodedMessage );
 			recv_checkForMessageProperties( message, decodedMessage );
+			if ( inInputPort ) {
+				recv_enqueueRequest( decodedMessage );
+			}
 			retVal = new CommMessage( decodedMessage.id, decodedMessage.operationName, decodedMessage.resourcePath, decodedMessage.value, null );
 		}
 
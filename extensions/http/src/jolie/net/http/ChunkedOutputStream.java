@@ -0,0 +1,120 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.net.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream writing to another stream with the HTTP/1.1 chunked
+ * transfer coding.
+ * Closing this stream writes the last chunk, but does not close the
+ * underlying stream.
+ * @author Fabrizio Montesi
+ */
+public class ChunkedOutputStream extends OutputStream
+{
+	private static final byte[] CRLF = { 13, 10 };
+	private static final byte[] LAST_CHUNK = { '0', 13, 10, 13, 10 };
+
+	private final OutputStream ostream;
+	private final byte[] buffer;
+	private int count = 0;
+	private boolean closed = false;
+
+	/**
+	 * @param ostream the stream to write chunks to
+	 * @param chunkSize the maximum size of the chunks
+	 */
+	public ChunkedOutputStream( OutputStream ostream, int chunkSize )
+	{
+		this.ostream = ostream;
+		this.buffer = new byte[ chunkSize ];
+	}
+
+	private void writeChunk( byte[] b, int off, int len )
+		throws IOException
+	{
+		if ( len > 0 ) {
+			ostream.write( Integer.toHexString( len ).getBytes( "US-ASCII" ) );
+			ostream.write( CRLF );
+			ostream.write( b, off, len );
+			ostream.write( CRLF );
+		}
+	}
+
+	private void writeBuffer()
+		throws IOException
+	{
+		writeChunk( buffer, 0, count );
+		count = 0;
+	}
+
+	@Override
+	public void write( int b )
+		throws IOException
+	{
+		buffer[ count++ ] = (byte) b;
+		if ( count == buffer.length ) {
+			writeBuffer();
+		}
+	}
+
+	@Override
+	public void write( byte[] b, int off, int len )
+		throws IOException
+	{
+		if ( count + len < buffer.length ) {
+			System.arraycopy( b, off, buffer, count, len );
+			count += len;
+		} else {
+			// Large writes go out as chunks straight from the caller's array
+			writeBuffer();
+			int end = off + len;
+			for( ; off + buffer.length <= end; off += buffer.length ) {
+				writeChunk( b, off, buffer.length );
+			}
+			System.arraycopy( b, off, buffer, 0, end - off );
+			count = end - off;
+		}
+	}
+
+	@Override
+	public void flush()
+		throws IOException
+	{
+		writeBuffer();
+		ostream.flush();
+	}
+
+	@Override
+	public void close()
+		throws IOException
+	{
+		if ( !closed ) {
+			closed = true;
+			writeBuffer();
+			ostream.write( LAST_CHUNK );
+			ostream.flush();
+		}
+	}
+}
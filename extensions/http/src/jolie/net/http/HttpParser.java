@@ -22,11 +22,12 @@
 package jolie.net.http;
 
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URLDecoder;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -223,7 +224,14 @@ public class HttpParser
 		throws IOException
 	{
 		int r = 0;
-		while( (r+=stream.read( buffer, offset+r, length-r )) < length ); 
+		int n;
+		while( r < length ) {
+			n = stream.read( buffer, offset + r, length - r );
+			if ( n < 0 ) {
+				throw new EOFException( "Stream ended before the end of the message content" );
+			}
+			r += n;
+		}
 	}
 	
 	private static final int BLOCK_SIZE = 1024;
@@ -244,7 +252,38 @@ public class HttpParser
 		return c.toByteArray();
 	}
 	
-	private void readContent( HttpMessage message )
+	private static final int COPY_BUFFER_SIZE = 8192;
+
+	private static void copy( InputStream istream, OutputStream ostream, int length, byte[] buffer )
+		throws IOException
+	{
+		int n;
+		while( length > 0 ) {
+			n = Math.min( length, buffer.length );
+			blockingRead( istream, buffer, 0, n );
+			ostream.write( buffer, 0, n );
+			length -= n;
+		}
+	}
+
+	private static void copyAll( InputStream istream, OutputStream ostream, byte[] buffer )
+		throws IOException
+	{
+		int n;
+		try {
+			while( (n = istream.read( buffer )) != -1 ) {
+				ostream.write( buffer, 0, n );
+			}
+		} catch( IOException e ) {
+			// End of stream, as in readAll
+		}
+	}
+
+	/*
+	 * If contentStream is not null, the content is written to it
+	 * through a buffer of fixed size, and the message gets an empty content.
+	 */
+	private void readContent( HttpMessage message, OutputStream contentStream )
 		throws IOException
 	{
 		String p;
@@ -268,9 +307,11 @@ public class HttpParser
 			chunked = true;
 		
 		byte buffer[] = null;
+		byte copyBuffer[] = ( contentStream == null ) ? null : new byte[ COPY_BUFFER_SIZE ];
 		if ( chunked ) {
+			// Each chunk is read into an array of its size, and the arrays are joined at the end
 			InputStream stream = scanner.inputStream();
-			List< byte[] > chunks = new ArrayList< byte[] > ();
+			List< byte[] > chunks = new ArrayList< byte[] >();
 			byte[] chunk;
 			
 			int l;
@@ -278,29 +319,61 @@ public class HttpParser
 			boolean keepRun = true;
 			String lStr = scanner.readWord();
 			while( keepRun ) {
+				if ( lStr.indexOf( ';' ) >= 0 ) { // chunk extensions are ignored
+					lStr = lStr.substring( 0, lStr.indexOf( ';' ) );
+				}
 				l = Integer.parseInt( lStr, 16 );
 				if ( l > 0 ) {
-					scanner.eatSeparators();
-					total += l;
-					chunk = new byte[ l ];
-					chunk[0] = (byte) (scanner.currentCharacter());
-					blockingRead( stream, chunk, 1, l - 1 );
-					chunks.add( chunk );
+					// The chunk data starts right after the line with its size
+					scanner.eatLine();
+					if ( contentStream == null ) {
+						chunk = new byte[ l ];
+						blockingRead( stream, chunk, 0, l );
+						chunks.add( chunk );
+						total += l;
+					} else {
+						copy( stream, contentStream, l, copyBuffer );
+					}
 					scanner.readChar();
-					scanner.eatSeparators();
-					lStr = scanner.readWord( false );
+					scanner.eatLine();
+					lStr = scanner.readWord();
 				} else
 					keepRun = false;
 			}
-			ByteBuffer b = ByteBuffer.allocate( total );
-			for( byte[] c : chunks )
-				b.put( c );
-			buffer = b.array();
+			// The last chunk is followed by the (ignored) trailer fields and an empty line
+			scanner.eatLine();
+			scanner.readChar();
+			while( scanner.currentCharacter() != '\r' && scanner.currentCharacter() != '\n' ) {
+				scanner.eatLine();
+				scanner.readChar();
+			}
+			if ( scanner.currentCharacter() == '\r' ) {
+				scanner.eatLine();
+			}
+			if ( contentStream != null ) {
+				buffer = new byte[ 0 ];
+			} else if ( chunks.size() == 1 ) {
+				buffer = chunks.get( 0 );
+			} else {
+				buffer = new byte[ total ];
+				int offset = 0;
+				for( byte[] c : chunks ) {
+					System.arraycopy( c, 0, buffer, offset, c.length );
+					offset += c.length;
+				}
+			}
 		} else if ( contentLength > 0 ) {
-			buffer = new byte[ contentLength ];
 			InputStream stream = scanner.inputStream();
-			blockingRead( stream, buffer, 0, contentLength );
-		} else {
+			if ( contentStream == null ) {
+				buffer = new byte[ contentLength ];
+				blockingRead( stream, buffer, 0, contentLength );
+			} else {
+				copy( stream, contentStream, contentLength, copyBuffer );
+				buffer = new byte[ 0 ];
+			}
+		} else if ( message.isResponse() ) {
+			// Requests without a length have no content (RFC 2616, 4.4):
+			// only responses may be delimited by the closing of the connection
 			HttpMessage.Version version = message.version();
 			if ( // Will the connection be closed?
 				// HTTP 1.1
@@ -314,7 +387,12 @@ public class HttpParser
 				!message.getPropertyOrEmptyString( "connection" ).equalsIgnoreCase( "keep-alive" )
 				)
 			) {
-				buffer = readAll( scanner.inputStream() );
+				if ( contentStream == null ) {
+					buffer = readAll( scanner.inputStream() );
+				} else {
+					copyAll( scanner.inputStream(), contentStream, copyBuffer );
+					buffer = new byte[ 0 ];
+				}
 			}
 		}
 		
@@ -323,11 +401,26 @@ public class HttpParser
 
 	public HttpMessage parse()
 		throws IOException
+	{
+		return parse( null );
+	}
+
+	/**
+	 * Parses a message, writing its content to the passed stream instead
+	 * of keeping it in the returned message. The content is copied through
+	 * a buffer of fixed size, so it is never held in memory as a whole.
+	 * @param contentStream the stream to write the content to,
+	 * or <code>null</code> to keep the content in the returned message
+	 * @return the parsed message
+	 * @throws IOException if the message can not be read or is malformed
+	 */
+	public HttpMessage parse( OutputStream contentStream )
+		throws IOException
 	{
 		getToken();
 		HttpMessage message = parseMessageType();
 		parseHeaderProperties( message );
-		readContent( message );
+		readContent( message, contentStream );
 		scanner.eatSeparatorsUntilEOF();
 		return message;
 	}
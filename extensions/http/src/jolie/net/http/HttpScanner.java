@@ -21,6 +21,7 @@
 
 package jolie.net.http;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -89,6 +90,21 @@ public class HttpScanner
 		}
 	}
 	
+	/**
+	 * Reads characters up to the end of the current line.
+	 * After this call, the current character is the line feed ending it.
+	 */
+	public void eatLine()
+		throws IOException
+	{
+		while( ch != '\n' ) {
+			if ( currInt == -1 ) {
+				throw new EOFException( "Stream ended before the end of the line" );
+			}
+			readChar();
+		}
+	}
+	
 	public void eatSeparatorsUntilEOF()
 		throws IOException
 	{
@@ -23,17 +23,15 @@ package jolie.net.http.json;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.util.Map;
+import java.io.Writer;
 import java.util.Map.Entry;
 import jolie.runtime.Value;
 import jolie.runtime.ValueVector;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.JSONValue;
-import org.json.simple.parser.ParseException;
 
 /**
- *
+ * Converts between JSON documents and Jolie values.
+ * Documents are written and parsed as streams, without building an
+ * intermediate object model.
  * @author Fabrizio Montesi
  */
 public class JsonUtils
@@ -42,155 +40,446 @@ public class JsonUtils
 
 	public static void valueToJsonString( Value value, StringBuilder builder )
 		throws IOException
+	{
+		appendValue( value, builder );
+	}
+
+	/**
+	 * Writes the JSON representation of value to writer.
+	 * The writer is not flushed.
+	 */
+	public static void valueToJson( Value value, Writer writer )
+		throws IOException
+	{
+		appendValue( value, writer );
+	}
+
+	private static void appendValue( Value value, Appendable out )
+		throws IOException
 	{
 		if ( value.children().isEmpty() ) {
 			if ( value.isDefined() ) {
-				builder.append( nativeValueToJsonString( value ) );
+				appendNativeValue( value, out );
 			}
 		} else {
-			builder.append( '{' );
+			out.append( '{' );
+			boolean first = true;
 			if ( value.isDefined() ) {
-				appendKeyColon( builder, ROOT_SIGN );
-				builder.append( nativeValueToJsonString( value ) );
+				appendKeyColon( out, ROOT_SIGN );
+				appendNativeValue( value, out );
+				first = false;
 			}
-			int size = value.children().size();
-			int i = 0;
 			for( Entry< String, ValueVector > child : value.children().entrySet() ) {
 				if ( child.getValue().isEmpty() == false ) {
-					appendKeyColon( builder, child.getKey() );
-					valueVectorToJsonString( child.getValue(), builder );
-				}
-				if ( i++ < size - 1 ) {
-					builder.append( ',' );
+					if ( !first ) {
+						out.append( ',' );
+					}
+					appendKeyColon( out, child.getKey() );
+					appendValueVector( child.getValue(), out );
+					first = false;
 				}
 			}
-			builder.append( '}' );
-		}	
-		
+			out.append( '}' );
+		}
 	}
 
-	private static void valueVectorToJsonString( ValueVector vector, StringBuilder builder )
+	private static void appendValueVector( ValueVector vector, Appendable out )
 		throws IOException
 	{
 		if ( vector.size() > 1 ) {
-			builder.append( '[' );
+			out.append( '[' );
 			for( int i = 0; i < vector.size(); i++ ) {
-				valueToJsonString( vector.get( i ), builder );
+				appendChildValue( vector.get( i ), out );
 				if ( i < vector.size() - 1 ) {
-					builder.append( ',' );
+					out.append( ',' );
 				}
 			}
-			builder.append( ']' );
+			out.append( ']' );
 		} else {
-			valueToJsonString( vector.first(), builder );
+			appendChildValue( vector.first(), out );
 		}
 	}
 
-	private static void appendKeyColon( StringBuilder builder, String key )
+	/*
+	 * Like appendValue, but writes null for undefined values without
+	 * children, which can not be left out after a key or in an array.
+	 */
+	private static void appendChildValue( Value value, Appendable out )
+		throws IOException
 	{
-		builder.append( '"' )
+		if ( value.isDefined() == false && value.children().isEmpty() ) {
+			out.append( "null" );
+		} else {
+			appendValue( value, out );
+		}
+	}
+
+	private static void appendKeyColon( Appendable out, String key )
+		throws IOException
+	{
+		out.append( '"' )
 			.append( key )
 			.append( "\":" );
 	}
 
-	private static String nativeValueToJsonString( Value value )
+	private static void appendNativeValue( Value value, Appendable out )
 		throws IOException
 	{
-		if ( value.isInt() || value.isDouble() ) {
-			return value.strValue();
+		if ( value.isInt() || value.isLong() || value.isDouble() ) {
+			out.append( value.strValue() );
 		} else {
-			return '"' + JSONValue.escape( value.strValue() ) + '"';
+			out.append( '"' );
+			appendEscaped( value.strValue(), out );
+			out.append( '"' );
 		}
 	}
 
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	private static void appendEscaped( String s, Appendable out )
+		throws IOException
+	{
+		int start = 0;
+		char c;
+		for( int i = 0; i < s.length(); i++ ) {
+			c = s.charAt( i );
+			String escape;
+			switch( c ) {
+			case '"': escape = "\\\""; break;
+			case '\\': escape = "\\\\"; break;
+			case '\b': escape = "\\b"; break;
+			case '\f': escape = "\\f"; break;
+			case '\n': escape = "\\n"; break;
+			case '\r': escape = "\\r"; break;
+			case '\t': escape = "\\t"; break;
+			case '/': escape = "\\/"; break;
+			default:
+				if ( c <= '\u001F' || (c >= '\u007F' && c <= '\u009F') || (c >= '\u2000' && c <= '\u20FF') ) {
+					escape = new String( new char[] {
+						'\\', 'u', HEX_DIGITS[ (c >> 12) & 0xF ], HEX_DIGITS[ (c >> 8) & 0xF ], HEX_DIGITS[ (c >> 4) & 0xF ], HEX_DIGITS[ c & 0xF ]
+					} );
+				} else {
+					continue;
+				}
+			}
+			out.append( s, start, i ).append( escape );
+			start = i + 1;
+		}
+		out.append( s, start, s.length() );
+	}
+
+	/**
+	 * Parses the JSON object read from reader into value.
+	 * Parsing stops at the end of the object, but the characters following
+	 * it may have been read already (the parser reads ahead up to 4096
+	 * characters, and readers decoding a stream buffer their input too),
+	 * so nothing else can be read from reader afterwards.
+	 */
 	public static void parseJsonIntoValue( Reader reader, Value value )
 		throws IOException
 	{
-		try {
-			jsonObjectToValue( (JSONObject)JSONValue.parseWithException( reader ), value );
-		} catch( ParseException e ) {
-			throw new IOException( e );
-		} catch( ClassCastException e ) {
-			throw new IOException( e );
+		Parser parser = new Parser( reader );
+		if ( parser.nextNonSpace() != '{' ) {
+			throw parser.error( "a JSON object" );
 		}
+		parser.parseObject( value );
 	}
 
-	private static void jsonObjectToValue( JSONObject obj, Value value )
+	/*
+	 * A JSON tokenizer that fills values as it reads.
+	 * Values with children are parsed from objects and repeated children
+	 * from arrays; arrays nested in arrays, and objects or arrays used as
+	 * the root value ($), are kept as their JSON text.
+	 */
+	private static class Parser
 	{
-		Map< String, Object > map = (Map< String, Object >)obj;
-		ValueVector vec;
-		for( Entry< String, Object > entry : map.entrySet() ) {
-			if ( entry.getKey().equals( ROOT_SIGN ) ) {
-				if ( entry.getValue() instanceof String ) {
-					value.setValue( (String) entry.getValue() );
-				} else if ( entry.getValue() instanceof Double ) {
-					value.setValue( (Double)entry.getValue() );
-				} else if ( entry.getValue() instanceof Integer ) {
-					value.setValue( (Integer)entry.getValue() );
-				} else if ( entry.getValue() instanceof Long ) {
-					value.setValue( ((Long)entry.getValue()).intValue() );
-				} else if ( entry.getValue() instanceof Boolean ){
-					Boolean b = (Boolean)entry.getValue();
-					if ( b ) {
-						value.setValue( 1 );
+		private final Reader reader;
+		private final char[] buffer = new char[ 4096 ];
+		private final StringBuilder token = new StringBuilder();
+		private int position = 0;
+		private int limit = 0;
+		private long offset = 0;
+
+		private Parser( Reader reader )
+		{
+			this.reader = reader;
+		}
+
+		private int peek()
+			throws IOException
+		{
+			if ( position == limit ) {
+				offset += limit;
+				position = 0;
+				limit = reader.read( buffer );
+				if ( limit < 0 ) {
+					limit = 0;
+					return -1;
+				}
+			}
+			return buffer[ position ];
+		}
+
+		private int read()
+			throws IOException
+		{
+			int c = peek();
+			if ( c >= 0 ) {
+				position++;
+			}
+			return c;
+		}
+
+		private int nextNonSpace()
+			throws IOException
+		{
+			int c = peek();
+			while( c == ' ' || c == '\t' || c == '\n' || c == '\r' ) {
+				position++;
+				c = peek();
+			}
+			return c;
+		}
+
+		private IOException error( String expected )
+			throws IOException
+		{
+			int c = peek();
+			return new IOException(
+				"Expected " + expected + " at position " + (offset + position) + ", found "
+				+ ((c < 0) ? "end of stream" : "'" + (char) c + "'")
+			);
+		}
+
+		private void expect( char c, String expected )
+			throws IOException
+		{
+			if ( nextNonSpace() != c ) {
+				throw error( expected );
+			}
+			position++;
+		}
+
+		private boolean skipComma()
+			throws IOException
+		{
+			if ( nextNonSpace() == ',' ) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void parseObject( Value value )
+			throws IOException
+		{
+			expect( '{', "'{'" );
+			if ( nextNonSpace() == '}' ) {
+				position++;
+				return;
+			}
+			String key;
+			int c;
+			do {
+				if ( nextNonSpace() != '"' ) {
+					throw error( "a string key" );
+				}
+				key = parseString();
+				expect( ':', "':'" );
+				if ( key.equals( ROOT_SIGN ) ) {
+					c = nextNonSpace();
+					if ( c == '{' || c == '[' ) {
+						token.setLength( 0 );
+						copyJson( token );
+						value.setValue( token.toString() );
+					} else {
+						parseNativeValue( value );
+					}
+				} else {
+					value.children().put( key, parseValueVector() );
+				}
+			} while( skipComma() );
+			expect( '}', "',' or '}'" );
+		}
+
+		private ValueVector parseValueVector()
+			throws IOException
+		{
+			ValueVector vec = ValueVector.create();
+			Value element;
+			int c = nextNonSpace();
+			if ( c == '[' ) {
+				position++;
+				if ( nextNonSpace() == ']' ) {
+					position++;
+					return vec;
+				}
+				do {
+					c = nextNonSpace();
+					element = Value.create();
+					if ( c == '{' ) {
+						parseObject( element );
+					} else if ( c == '[' ) {
+						StringBuilder text = new StringBuilder();
+						copyJson( text );
+						element.setValue( text.toString() );
 					} else {
-						value.setValue( 0 );
+						parseNativeValue( element );
 					}
+					vec.add( element );
+				} while( skipComma() );
+				expect( ']', "',' or ']'" );
+			} else {
+				element = Value.create();
+				if ( c == '{' ) {
+					parseObject( element );
 				} else {
-					value.setValue( entry.getValue().toString() );
+					parseNativeValue( element );
 				}
+				vec.add( element );
+			}
+			return vec;
+		}
+
+		private void parseNativeValue( Value value )
+			throws IOException
+		{
+			int c = nextNonSpace();
+			if ( c == '"' ) {
+				value.setValue( parseString() );
+			} else if ( c == '-' || (c >= '0' && c <= '9') ) {
+				parseNumber( value );
+			} else if ( c == 't' ) {
+				expectLiteral( "true" );
+				value.setValue( 1 );
+			} else if ( c == 'f' ) {
+				expectLiteral( "false" );
+				value.setValue( 0 );
+			} else if ( c == 'n' ) {
+				expectLiteral( "null" );
 			} else {
-				vec = jsonObjectToValueVector( entry.getValue() );
-				value.children().put( entry.getKey(), vec );
+				throw error( "a JSON value" );
 			}
 		}
-	}
 
-	private static ValueVector jsonObjectToValueVector( Object obj )
-	{
-		ValueVector vec = ValueVector.create();
-		if ( obj instanceof JSONObject ) {
-			Value val = Value.create();
-			jsonObjectToValue( (JSONObject)obj, val );
-			vec.add( val );
-		} else if ( obj instanceof JSONArray ) {
-			JSONArray array = (JSONArray) obj;
-			for ( Object element : array ) {
-				if ( element instanceof JSONObject ) {
-					Value val = Value.create();
-					jsonObjectToValue( (JSONObject)element, val );
-					vec.add( val );
+		private void expectLiteral( String literal )
+			throws IOException
+		{
+			for( int i = 0; i < literal.length(); i++ ) {
+				if ( peek() != literal.charAt( i ) ) {
+					throw error( "'" + literal + "'" );
+				}
+				position++;
+			}
+		}
+
+		private void parseNumber( Value value )
+			throws IOException
+		{
+			token.setLength( 0 );
+			boolean isDouble = false;
+			int c = peek();
+			while( c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9') ) {
+				if ( c == '.' || c == 'e' || c == 'E' ) {
+					isDouble = true;
+				}
+				token.append( (char) c );
+				position++;
+				c = peek();
+			}
+			try {
+				if ( isDouble ) {
+					value.setValue( Double.parseDouble( token.toString() ) );
 				} else {
-					vec.add( getBasicValue( element ) );
+					long l = Long.parseLong( token.toString() );
+					if ( l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE ) {
+						value.setValue( (int) l );
+					} else {
+						value.setValue( l );
+					}
 				}
+			} catch( NumberFormatException e ) {
+				throw new IOException( "Invalid JSON number: " + token );
 			}
-		} else {
-			vec.add( getBasicValue( obj ) );
 		}
-		return vec;
-	}
-	
-	private static Value getBasicValue( Object obj )
-	{
-		Value val = Value.create();
-		if ( obj instanceof String ) {
-			val.setValue( (String) obj );
-		} else if ( obj instanceof Double ) {
-			val.setValue( (Double) obj );
-		} else if ( obj instanceof Integer ) {
-			val.setValue( (Integer) obj );
-		} else if ( obj instanceof Long ) {
-			val.setValue( ((Long) obj).intValue() );
-		} else if ( obj instanceof Boolean ) {
-			Boolean b = (Boolean) obj;
-			if ( b ) {
-				val.setValue( 1 );
-			} else {
-				val.setValue( 0 );
+
+		private String parseString()
+			throws IOException
+		{
+			position++; // the opening quote
+			token.setLength( 0 );
+			int c;
+			while( (c = read()) != '"' ) {
+				if ( c < 0 ) {
+					throw error( "the end of a string" );
+				} else if ( c == '\\' ) {
+					c = read();
+					switch( c ) {
+					case 'b': token.append( '\b' ); break;
+					case 'f': token.append( '\f' ); break;
+					case 'n': token.append( '\n' ); break;
+					case 'r': token.append( '\r' ); break;
+					case 't': token.append( '\t' ); break;
+					case 'u':
+						int code = 0;
+						for( int i = 0; i < 4; i++ ) {
+							int digit = Character.digit( read(), 16 );
+							if ( digit < 0 ) {
+								throw error( "a hexadecimal digit" );
+							}
+							code = (code << 4) | digit;
+						}
+						token.append( (char) code );
+						break;
+					case '"':
+					case '\\':
+					case '/':
+						token.append( (char) c );
+						break;
+					default:
+						throw error( "an escape sequence" );
+					}
+				} else {
+					token.append( (char) c );
+				}
 			}
-		} else {
-			val.setValue( obj.toString() );
+			return token.toString();
+		}
+
+		/*
+		 * Copies the JSON value starting at the current position to out,
+		 * leaving out the whitespace between tokens.
+		 */
+		private void copyJson( StringBuilder out )
+			throws IOException
+		{
+			int depth = 0;
+			int c;
+			do {
+				c = nextNonSpace();
+				if ( c < 0 ) {
+					throw error( "a JSON value" );
+				} else if ( c == '"' ) {
+					out.append( (char) read() );
+					while( (c = read()) != '"' ) {
+						if ( c < 0 ) {
+							throw error( "the end of a string" );
+						}
+						out.append( (char) c );
+						if ( c == '\\' ) {
+							out.append( (char) read() );
+						}
+					}
+					out.append( '"' );
+				} else {
+					if ( c == '{' || c == '[' ) {
+						depth++;
+					} else if ( c == '}' || c == ']' ) {
+						depth--;
+					}
+					out.append( (char) read() );
+				}
+			} while( depth > 0 );
 		}
-		return val;
 	}
 }
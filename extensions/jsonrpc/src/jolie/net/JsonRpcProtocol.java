@@ -23,10 +23,13 @@
 
 package jolie.net;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import jolie.net.http.json.JsonUtils;
 import jolie.net.protocols.ConcurrentCommProtocol;
 import jolie.runtime.FaultException;
@@ -41,6 +44,9 @@ import jolie.runtime.VariablePath;
  */
 public class JsonRpcProtocol extends ConcurrentCommProtocol
 {
+	// JSON text is encoded in Unicode, UTF-8 being the default (RFC 4627)
+	private static final String CHARSET = "UTF-8";
+
 	private final boolean inInputPort;
 	
 	public String name()
@@ -83,9 +89,9 @@ public class JsonRpcProtocol extends ConcurrentCommProtocol
 				}
 			}
 		}
-		StringBuilder builder = new StringBuilder();
-		JsonUtils.valueToJsonString( value, builder );
-		ostream.write( builder.toString().getBytes() );
+		Writer writer = new BufferedWriter( new OutputStreamWriter( ostream, CHARSET ) );
+		JsonUtils.valueToJson( value, writer );
+		writer.flush();
 	}
 
 	public CommMessage recv( InputStream istream, OutputStream ostream )
@@ -98,7 +104,7 @@ public class JsonRpcProtocol extends ConcurrentCommProtocol
 		}
 		
 		Value value = Value.create();
-		JsonUtils.parseJsonIntoValue( new InputStreamReader( istream ), value );
+		JsonUtils.parseJsonIntoValue( new InputStreamReader( istream, CHARSET ), value );
 
 		long id = value.getFirstChild( "id" ).intValue();
 		String operationName = value.getFirstChild( "method" ).strValue();
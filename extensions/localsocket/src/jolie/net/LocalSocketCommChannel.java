@@ -35,6 +35,7 @@ public class LocalSocketCommChannel extends StreamingCommChannel implements Poll
 	private final UnixSocket socket;
 	private final PreBufferedInputStream bufferedInputStream;
 	private final InputStream socketInputStream;
+	private final InputStream bufferedSocketInputStream;
 	private final OutputStream socketOutputStream;
 	
 	public LocalSocketCommChannel( UnixSocket socket, URI location, CommProtocol protocol )
@@ -45,7 +46,8 @@ public class LocalSocketCommChannel extends StreamingCommChannel implements Poll
 		this.socket = socket;
 		this.socketInputStream = socket.getInputStream();
 		this.socketOutputStream = socket.getOutputStream();
-		this.bufferedInputStream = new PreBufferedInputStream( new BufferedInputStream(socketInputStream));
+		this.bufferedSocketInputStream = new BufferedInputStream( socketInputStream );
+		this.bufferedInputStream = new PreBufferedInputStream( bufferedSocketInputStream );
 		
 		setToBeClosed( false ); // LocalSocket connections are kept open by default
 	}
@@ -69,6 +71,12 @@ public class LocalSocketCommChannel extends StreamingCommChannel implements Poll
 		socket.close();
 	}
 
+	/**
+	 * Blocks until some input is available on this channel.
+	 * The read goes through the channel buffer, so data that has already been
+	 * buffered is detected without touching the socket.
+	 * @return <code>true</code> if some input is available, <code>false</code> if the end of the stream has been reached
+	 */
 	public synchronized boolean isReady()
 		throws IOException
 	{
@@ -77,9 +85,9 @@ public class LocalSocketCommChannel extends StreamingCommChannel implements Poll
 		if ( bufferedInputStream.hasCachedData() ) {
 			ret = true;
 		} else {
-			byte[] r = new byte[1];
-			if ( socketInputStream.read( r ) > 0 ) {
-				bufferedInputStream.append( r[0] );
+			int r = bufferedSocketInputStream.read();
+			if ( r != -1 ) {
+				bufferedInputStream.append( (byte)r );
 				ret = true;
 			}
 		}
@@ -91,6 +99,6 @@ public class LocalSocketCommChannel extends StreamingCommChannel implements Poll
 	public void disposeForInputImpl()
 		throws IOException
 	{
-		Interpreter.getInstance().commCore().registerForPolling( this );
+		Interpreter.getInstance().commCore().registerForWaiting( this );
 	}
 }
@@ -58,6 +58,7 @@ import jolie.runtime.FaultException;
 import jolie.runtime.Value;
 import jolie.runtime.ValueVector;
 import jolie.runtime.VariablePath;
+import jolie.xml.XmlFactories;
 
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
@@ -95,13 +96,11 @@ import javax.wsdl.WSDLException;
 import javax.wsdl.extensions.ExtensibilityElement;
 import javax.wsdl.extensions.soap.SOAPOperation;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
@@ -142,7 +141,6 @@ public class SoapProtocol extends SequentialCommProtocol
 	private URI uri = null;
 	private Definition wsdlDefinition = null;
 	private Port wsdlPort = null;
-	private final TransformerFactory transformerFactory;
 	private final Map< String, String > namespacePrefixMap = new HashMap< String, String >();
 	private boolean received = false;
 	private final static String CRLF = new String( new char[]{13, 10} );
@@ -185,7 +183,6 @@ public class SoapProtocol extends SequentialCommProtocol
 	{
 		super( configurationPath );
 		this.uri = uri;
-		this.transformerFactory = TransformerFactory.newInstance();
 		this.interpreter = interpreter;
 		this.messageFactory = MessageFactory.newInstance( SOAPConstants.SOAP_1_1_PROTOCOL );
 	}
@@ -194,12 +191,14 @@ public class SoapProtocol extends SequentialCommProtocol
 		throws IOException
 	{
 		try {
-			Transformer transformer = transformerFactory.newTransformer();
-			transformer.setOutputProperty( "indent", "yes" );
+			Transformer transformer = XmlFactories.acquireTransformer();
 			StringWriter sw = new StringWriter();
-			StreamResult result = new StreamResult( sw );
-			DOMSource source = new DOMSource( element );
-			transformer.transform( source, result );
+			try {
+				transformer.setOutputProperty( "indent", "yes" );
+				transformer.transform( new DOMSource( element ), new StreamResult( sw ) );
+			} finally {
+				XmlFactories.releaseTransformer( transformer );
+			}
 			InputSource schemaSource = new InputSource( new StringReader( sw.toString() ) );
 			schemaSource.setSystemId( definition.getDocumentBaseURI() );
 			schemaParser.parse( schemaSource );
@@ -951,17 +950,19 @@ public class SoapProtocol extends SequentialCommProtocol
 				}
 
 				SOAPMessage soapMessage = messageFactory.createMessage();
-				DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 				/*
 				 * Schema messageSchema = getRecvMessageValidationSchema(); if (
 				 * messageSchema != null ) {
 				 * factory.setIgnoringElementContentWhitespace( true );
 				 * factory.setSchema( messageSchema ); }
 				 */
-				factory.setNamespaceAware( true );
-				DocumentBuilder builder = factory.newDocumentBuilder();
-				InputSource src = new InputSource( new ByteArrayInputStream( message.content() ) );
-				Document doc = builder.parse( src );
+				DocumentBuilder builder = XmlFactories.acquireDocumentBuilder();
+				Document doc;
+				try {
+					doc = builder.parse( new InputSource( new ByteArrayInputStream( message.content() ) ) );
+				} finally {
+					XmlFactories.releaseDocumentBuilder( builder );
+				}
 				DOMSource dom = new DOMSource( doc );
 				soapMessage.getSOAPPart().setContent( dom );
 
@@ -29,7 +29,7 @@ import jolie.net.protocols.CommProtocol;
 import jolie.runtime.AndJarDeps;
 import jolie.runtime.VariablePath;
 
-@AndJarDeps({"relaxngDatatype.jar","xsom.jar","wsdl4j.jar"})
+@AndJarDeps({"jolie-xml.jar","relaxngDatatype.jar","xsom.jar","wsdl4j.jar"})
 public class SoapProtocolFactory extends CommProtocolFactory
 {
 	public SoapProtocolFactory( CommCore commCore )
@@ -21,7 +21,6 @@
 
 package jolie.net;
 
-import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutput;
@@ -29,8 +28,6 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.LinkedList;
 import java.util.List;
@@ -39,7 +36,11 @@ import java.util.Map.Entry;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
+import jolie.lang.parse.ast.types.UInt16;
+import jolie.lang.parse.ast.types.UInt32;
+import jolie.lang.parse.ast.types.UInt64;
 import jolie.net.protocols.ConcurrentCommProtocol;
+import jolie.net.sodep.StringCodec;
 import jolie.runtime.ByteArray;
 import jolie.runtime.FaultException;
 import jolie.runtime.Value;
@@ -56,6 +57,11 @@ public class SodepProtocol extends ConcurrentCommProtocol
 		private static final int BYTE_ARRAY = 4;
 		private static final int BOOL = 5;
 		private static final int LONG = 6;
+		private static final int BYTE = 7;
+		private static final int INT16 = 8;
+		private static final int UINT16 = 9;
+		private static final int UINT32 = 10;
+		private static final int UINT64 = 11;
 	}
 	
 	public String name()
@@ -63,34 +69,45 @@ public class SodepProtocol extends ConcurrentCommProtocol
 		return "sodep";
 	}
 
-	private Charset stringCharset = Charset.forName( "UTF8" );
+	/*
+	 * Peers that do not know the extended type headers can not read them,
+	 * so they are sent only if the extendedTypes parameter is set.
+	 * Reading them is always supported.
+	 */
+	private boolean extendedTypes = false;
 	
+	/*
+	 * Names are sent through a string table only if the stringTable parameter
+	 * is set on both peers. The requester offers the table by setting a flag
+	 * in the id of its requests, which the responder strips and answers with
+	 * another flag. Old responders echo the id unchanged, so the requester
+	 * never uses the table with them; old requesters never offer it.
+	 */
+	private static final long STRING_TABLE_OFFER_FLAG = 1L << 62;
+	private static final long STRING_TABLE_ACCEPT_FLAG = 1L << 61;
+	private static final long STRING_TABLE_FLAGS = STRING_TABLE_OFFER_FLAG | STRING_TABLE_ACCEPT_FLAG;
+
+	private final boolean inInputPort;
+	private boolean stringTable = false;
+	private boolean peerUsesStringTable = false;
+	private final StringCodec stringCodec = new StringCodec( Charset.forName( "UTF8" ) );
+
 	private String readString( DataInput in )
 		throws IOException
 	{
-		int len = in.readInt();
-		if ( len > 0 ) {
-			byte[] bb = new byte[ len ];
-			in.readFully( bb );
-			return new String( bb, stringCharset );
-		}
-		return "";
+		return stringCodec.readString( in );
 	}
 	
 	private void writeString( DataOutput out, String str )
 		throws IOException
 	{
-		if ( str.isEmpty() ) {
-			out.writeInt( 0 );
-		} else {
-			ByteArrayOutputStream bos = new ByteArrayOutputStream();
-			Writer writer = new OutputStreamWriter( bos, stringCharset );
-			writer.write( str );
-			writer.close();
-			byte[] bb = bos.toByteArray();
-			out.writeInt( bb.length );
-			out.write( bb );
-		}
+		stringCodec.writeString( out, str );
+	}
+
+	private void writeName( DataOutput out, String name )
+		throws IOException
+	{
+		stringCodec.writeName( out, name, stringTable && peerUsesStringTable );
 	}
 	
 	private ByteArray readByteArray( DataInput in )
@@ -121,10 +138,59 @@ public class SodepProtocol extends ConcurrentCommProtocol
 	private void writeFault( DataOutput out, FaultException fault )
 		throws IOException
 	{
-		writeString( out, fault.faultName() );
+		writeName( out, fault.faultName() );
 		writeValue( out, fault.value() );
 	}
 	
+	private void writeExtendedValueObject( DataOutput out, Object valueObject )
+		throws IOException
+	{
+		if ( valueObject instanceof Byte ) {
+			out.writeByte( DataTypeHeaderId.BYTE );
+			out.writeByte( ((Byte)valueObject).byteValue() );
+		} else if ( valueObject instanceof Short ) {
+			out.writeByte( DataTypeHeaderId.INT16 );
+			out.writeShort( ((Short)valueObject).shortValue() );
+		} else if ( valueObject instanceof UInt16 ) {
+			out.writeByte( DataTypeHeaderId.UINT16 );
+			out.writeShort( ((UInt16)valueObject).intValue() );
+		} else if ( valueObject instanceof UInt32 ) {
+			out.writeByte( DataTypeHeaderId.UINT32 );
+			out.writeInt( (int)((UInt32)valueObject).longValue() );
+		} else if ( valueObject instanceof UInt64 ) {
+			out.writeByte( DataTypeHeaderId.UINT64 );
+			out.writeLong( ((UInt64)valueObject).value().longValue() );
+		} else {
+			out.writeByte( DataTypeHeaderId.NULL );
+		}
+	}
+
+	/*
+	 * Encodes the extended types with the nearest type known by every peer.
+	 */
+	private void writeCompatibleValueObject( DataOutput out, Object valueObject )
+		throws IOException
+	{
+		if ( valueObject instanceof Byte || valueObject instanceof Short || valueObject instanceof UInt16 ) {
+			out.writeByte( DataTypeHeaderId.INT );
+			out.writeInt( ((Number)valueObject).intValue() );
+		} else if ( valueObject instanceof UInt32 ) {
+			out.writeByte( DataTypeHeaderId.LONG );
+			out.writeLong( ((UInt32)valueObject).longValue() );
+		} else if ( valueObject instanceof UInt64 ) {
+			UInt64 uint64 = (UInt64)valueObject;
+			if ( uint64.value().bitLength() < 64 ) {
+				out.writeByte( DataTypeHeaderId.LONG );
+				out.writeLong( uint64.longValue() );
+			} else {
+				out.writeByte( DataTypeHeaderId.STRING );
+				writeString( out, uint64.toString() );
+			}
+		} else {
+			out.writeByte( DataTypeHeaderId.NULL );
+		}
+	}
+
 	private void writeValue( DataOutput out, Value value )
 		throws IOException
 	{
@@ -149,8 +215,10 @@ public class SodepProtocol extends ConcurrentCommProtocol
 		} else if ( valueObject instanceof Long ) {
 			out.writeByte( DataTypeHeaderId.LONG );
 			out.writeLong( ((Long)valueObject).longValue() );
+		} else if ( extendedTypes ) {
+			writeExtendedValueObject( out, valueObject );
 		} else {
-			out.writeByte( DataTypeHeaderId.NULL );
+			writeCompatibleValueObject( out, valueObject );
 		}
 
 		Map< String, ValueVector > children = value.children();
@@ -164,7 +232,7 @@ public class SodepProtocol extends ConcurrentCommProtocol
 
 		out.writeInt( entries.size() );
 		for( Entry< String, ValueVector > entry : entries ) {
-			writeString( out, entry.getKey() );
+			writeName( out, entry.getKey() );
 			out.writeInt( entry.getValue().size() );
 			for( Value v : entry.getValue() ) {
 				writeValue( out, v );
@@ -175,9 +243,17 @@ public class SodepProtocol extends ConcurrentCommProtocol
 	private void writeMessage( DataOutput out, CommMessage message )
 		throws IOException
 	{
-		out.writeLong( message.id() );
-		writeString( out, message.resourcePath() );
-		writeString( out, message.operationName() );
+		long id = message.id();
+		if ( stringTable ) {
+			if ( inInputPort == false ) {
+				id |= STRING_TABLE_OFFER_FLAG;
+			} else if ( peerUsesStringTable ) {
+				id |= STRING_TABLE_ACCEPT_FLAG;
+			}
+		}
+		out.writeLong( id );
+		writeName( out, message.resourcePath() );
+		writeName( out, message.operationName() );
 		FaultException fault = message.fault();
 		if ( fault == null ) {
 			out.writeBoolean( false );
@@ -213,6 +289,22 @@ public class SodepProtocol extends ConcurrentCommProtocol
 			case DataTypeHeaderId.BOOL:
 				valueObject = Boolean.valueOf( in.readBoolean() );
 				break;
+			case DataTypeHeaderId.BYTE:
+				valueObject = Byte.valueOf( in.readByte() );
+				break;
+			case DataTypeHeaderId.INT16:
+				valueObject = Short.valueOf( in.readShort() );
+				break;
+			case DataTypeHeaderId.UINT16:
+				valueObject = new UInt16( in.readUnsignedShort() );
+				break;
+			case DataTypeHeaderId.UINT32:
+				valueObject = new UInt32( in.readInt() & 0xFFFFFFFFL );
+				break;
+			case DataTypeHeaderId.UINT64:
+				long l = in.readLong();
+				valueObject = ( l >= 0 ) ? new UInt64( l ) : new UInt64( l >>> 32, l & 0xFFFFFFFFL );
+				break;
 			case DataTypeHeaderId.NULL:
 			default:
 				break;
@@ -249,7 +341,12 @@ public class SodepProtocol extends ConcurrentCommProtocol
 	private CommMessage readMessage( DataInput in )
 		throws IOException
 	{
-		Long id = in.readLong();
+		long id = in.readLong();
+		long flag = inInputPort ? STRING_TABLE_OFFER_FLAG : STRING_TABLE_ACCEPT_FLAG;
+		if ( (id & flag) != 0 ) {
+			peerUsesStringTable = true;
+		}
+		id &= ~STRING_TABLE_FLAGS;
 		String resourcePath = readString( in );
 		String operationName = readString( in );
 		FaultException fault = null;
@@ -261,8 +358,22 @@ public class SodepProtocol extends ConcurrentCommProtocol
 	}
 	
 	public SodepProtocol( VariablePath configurationPath )
+	{
+		this( configurationPath, false );
+	}
+
+	public SodepProtocol( VariablePath configurationPath, boolean inInputPort )
 	{
 		super( configurationPath );
+		this.inInputPort = inInputPort;
+	}
+
+	private void setStringCharset()
+	{
+		String charset = getStringParameter( "charset" );
+		if ( !charset.isEmpty() ) {
+			stringCodec.setCharset( Charset.forName( charset ) );
+		}
 	}
 
 	public void send( OutputStream ostream, CommMessage message, InputStream istream )
@@ -270,10 +381,9 @@ public class SodepProtocol extends ConcurrentCommProtocol
 	{
 		channel().setToBeClosed( !checkBooleanParameter( "keepAlive", true ) );
 
-		String charset = getStringParameter( "charset" );
-		if ( !charset.isEmpty() ) {
-			stringCharset = Charset.forName( charset );
-		}
+		setStringCharset();
+		extendedTypes = checkBooleanParameter( "extendedTypes", false );
+		stringTable = checkBooleanParameter( "stringTable", false );
 		GZIPOutputStream gzip = null;
 		String compression = getStringParameter( "compression" );
 		if ( "gzip".equals( compression ) ) {
@@ -292,10 +402,7 @@ public class SodepProtocol extends ConcurrentCommProtocol
 	{
 		channel().setToBeClosed( !checkBooleanParameter( "keepAlive", true ) );
 
-		String charset = getStringParameter( "charset" );
-		if ( !charset.isEmpty() ) {
-			stringCharset = Charset.forName( charset );
-		}
+		setStringCharset();
 		String compression = getStringParameter( "compression" );
 		if ( "gzip".equals( compression ) ) {
 			istream = new GZIPInputStream( istream );
@@ -0,0 +1,205 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.net.sodep;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the strings of a sodep connection.
+ *
+ * Strings are encoded in a buffer reused for the whole connection,
+ * instead of allocating new streams for each of them.
+ * Names (operation names, resource paths, fault names and node names) may also
+ * be sent through a string table: the first time a name is sent it is marked
+ * as a new table entry, after that only its index in the table is sent.
+ * Both directions of a connection have their own table, so a codec must be
+ * used by one connection only.
+ * Table references are always understood when reading, but they must be
+ * written only to peers known to understand them.
+ * @author Fabrizio Montesi
+ */
+public class StringCodec
+{
+	/*
+	 * Length prefixes. A positive length is followed by the string bytes, as in
+	 * the original format. NEW_ENTRY is followed by a length and the bytes of
+	 * a string to be added to the table. Lengths lower than NEW_ENTRY are
+	 * references to the table entry with index (NEW_ENTRY - 1 - length).
+	 */
+	private static final int NEW_ENTRY = -1;
+
+	private static final int MAX_TABLE_SIZE = 4096;
+	private static final int MAX_TABLE_STRING_LENGTH = 256;
+
+	// Buffers bigger than this are used only for the string that needed them
+	private static final int MAX_KEPT_BUFFER_SIZE = 64 * 1024;
+
+	private Charset charset;
+	private CharsetEncoder encoder;
+	private ByteBuffer encodeBuffer = ByteBuffer.allocate( 256 );
+	private byte[] decodeBuffer = new byte[ 256 ];
+
+	private final Map< String, Integer > sentStrings = new HashMap< String, Integer >();
+	private final List< String > receivedStrings = new ArrayList< String >();
+
+	public StringCodec( Charset charset )
+	{
+		setCharset( charset );
+	}
+
+	public void setCharset( Charset charset )
+	{
+		if ( !charset.equals( this.charset ) ) {
+			this.charset = charset;
+			encoder = charset.newEncoder()
+				.onMalformedInput( CodingErrorAction.REPLACE )
+				.onUnmappableCharacter( CodingErrorAction.REPLACE );
+		}
+	}
+
+	/**
+	 * Writes a string, without using the string table.
+	 * @param out the output to write to
+	 * @param str the string to write
+	 * @throws IOException if writing fails
+	 */
+	public void writeString( DataOutput out, String str )
+		throws IOException
+	{
+		if ( str.isEmpty() ) {
+			out.writeInt( 0 );
+		} else {
+			ByteBuffer buffer = encode( str );
+			out.writeInt( buffer.position() );
+			out.write( buffer.array(), 0, buffer.position() );
+		}
+	}
+
+	/**
+	 * Writes a name, using the string table if <code>useTable</code> is <code>true</code>.
+	 * @param out the output to write to
+	 * @param name the name to write
+	 * @param useTable <code>true</code> if the peer understands table references
+	 * @throws IOException if writing fails
+	 */
+	public void writeName( DataOutput out, String name, boolean useTable )
+		throws IOException
+	{
+		if ( useTable == false || name.isEmpty() ) {
+			writeString( out, name );
+			return;
+		}
+
+		Integer index = sentStrings.get( name );
+		if ( index != null ) {
+			out.writeInt( NEW_ENTRY - 1 - index.intValue() );
+		} else if ( name.length() <= MAX_TABLE_STRING_LENGTH && sentStrings.size() < MAX_TABLE_SIZE ) {
+			sentStrings.put( name, sentStrings.size() );
+			out.writeInt( NEW_ENTRY );
+			writeString( out, name );
+		} else {
+			writeString( out, name );
+		}
+	}
+
+	/**
+	 * Reads a string or a name, resolving string table entries and references.
+	 * @param in the input to read from
+	 * @return the read string
+	 * @throws IOException if reading fails or a reference is invalid
+	 */
+	public String readString( DataInput in )
+		throws IOException
+	{
+		int len = in.readInt();
+		if ( len > 0 ) {
+			return decode( in, len );
+		} else if ( len == NEW_ENTRY ) {
+			if ( receivedStrings.size() >= MAX_TABLE_SIZE ) {
+				throw new IOException( "Sodep string table is full" );
+			}
+			len = in.readInt();
+			String str = ( len > 0 ) ? decode( in, len ) : "";
+			receivedStrings.add( str );
+			return str;
+		} else if ( len < NEW_ENTRY ) {
+			int index = NEW_ENTRY - 1 - len;
+			if ( index >= receivedStrings.size() ) {
+				throw new IOException( "Invalid sodep string table reference: " + index );
+			}
+			return receivedStrings.get( index );
+		}
+		return "";
+	}
+
+	private ByteBuffer encode( String str )
+		throws IOException
+	{
+		int maxSize = (int)Math.ceil( str.length() * (double)encoder.maxBytesPerChar() );
+		ByteBuffer buffer;
+		if ( maxSize <= encodeBuffer.capacity() ) {
+			buffer = encodeBuffer;
+			buffer.clear();
+		} else if ( maxSize <= MAX_KEPT_BUFFER_SIZE ) {
+			buffer = encodeBuffer = ByteBuffer.allocate( Math.max( maxSize, encodeBuffer.capacity() * 2 ) );
+		} else {
+			buffer = ByteBuffer.allocate( maxSize );
+		}
+
+		encoder.reset();
+		CoderResult result = encoder.encode( CharBuffer.wrap( str ), buffer, true );
+		if ( result.isUnderflow() ) {
+			result = encoder.flush( buffer );
+		}
+		if ( result.isError() || result.isOverflow() ) {
+			result.throwException();
+		}
+		return buffer;
+	}
+
+	private String decode( DataInput in, int len )
+		throws IOException
+	{
+		byte[] bytes;
+		if ( len <= decodeBuffer.length ) {
+			bytes = decodeBuffer;
+		} else if ( len <= MAX_KEPT_BUFFER_SIZE ) {
+			bytes = decodeBuffer = new byte[ Math.max( len, decodeBuffer.length * 2 ) ];
+		} else {
+			bytes = new byte[ len ];
+		}
+		in.readFully( bytes, 0, len );
+		return new String( bytes, 0, len, charset );
+	}
+}
@@ -25,13 +25,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URI;
 import java.util.Map.Entry;
-import javax.xml.transform.Result;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import jolie.Interpreter;
 import jolie.runtime.FaultException;
 import jolie.runtime.Value;
@@ -41,18 +40,15 @@ import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 import java.io.ByteArrayInputStream;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Source;
-import javax.xml.transform.dom.DOMSource;
 import jolie.net.http.HttpMessage;
 import jolie.net.http.HttpParser;
 import jolie.net.http.HttpUtils;
 import jolie.net.protocols.SequentialCommProtocol;
+import jolie.xml.XmlFactories;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.xml.sax.InputSource;
-import java.io.ByteArrayOutputStream;
 import org.w3c.dom.NodeList;
 
 /** Implements the XML-RPC over HTTP protocol.
@@ -87,10 +83,7 @@ import org.w3c.dom.NodeList;
 public class XmlRpcProtocol extends SequentialCommProtocol
 {
 	private String inputId = null;
-	final private Transformer transformer;
 	final private Interpreter interpreter;
-	final private DocumentBuilderFactory docBuilderFactory;
-	final private DocumentBuilder docBuilder;
 	final private URI uri;
 	private boolean received = false;
 	final private static String CRLF = new String( new char[]{13, 10} );
@@ -103,17 +96,11 @@ public class XmlRpcProtocol extends SequentialCommProtocol
 	public XmlRpcProtocol(
 		VariablePath configurationPath,
 		URI uri,
-		Transformer transformer,
-		DocumentBuilderFactory docBuilderFactory,
-		DocumentBuilder docBuilder,
 		Interpreter interpreter )
 	{
 		super( configurationPath );
 		this.uri = uri;
-		this.transformer = transformer;
 		this.interpreter = interpreter;
-		this.docBuilderFactory = docBuilderFactory;
-		this.docBuilder = docBuilder;
 	}
 
 	private static Element getFirstElement( Element element, String name )
@@ -183,196 +170,119 @@ public class XmlRpcProtocol extends SequentialCommProtocol
 		}
 	}
 
-	private void valueToDocument(
-		Value value,
-		Node node,
-		Document doc )
+	private static void writeTextElement( String name, String text, XMLStreamWriter writer )
+		throws XMLStreamException
 	{
-		Element v = doc.createElement( "value" );
+		writer.writeStartElement( name );
+		writer.writeCharacters( text );
+		writer.writeEndElement();
+	}
 
-		// node value creation in case the contents is a value
+	private static void valueToXmlStream( Value value, XMLStreamWriter writer )
+		throws XMLStreamException
+	{
+		writer.writeStartElement( "value" );
 		if ( value.isInt() ) {
-
-			Element i = doc.createElement( "int" );
-			i.appendChild( doc.createTextNode( value.strValue() ) );
-			v.appendChild( i );
-			node.appendChild( v );
+			writeTextElement( "int", value.strValue(), writer );
 		} else if ( value.isString() ) {
-
-			Element i = doc.createElement( "string" );
-			i.appendChild( doc.createTextNode( value.strValue() ) );
-			v.appendChild( i );
-			node.appendChild( v );
+			writeTextElement( "string", value.strValue(), writer );
 		} else if ( value.isDouble() ) {
-
-			Element i = doc.createElement( "double" );
-			i.appendChild( doc.createTextNode( value.strValue() ) );
-			v.appendChild( i );
-			node.appendChild( v );
+			writeTextElement( "double", value.strValue(), writer );
 		} else if ( value.hasChildren( "array" ) ) {
 			// array creation
-
-			Element a = doc.createElement( "array" );
-			Element d = doc.createElement( "data" );
-			for ( int i = 0; i < value.getChildren( "array" ).size(); i++ ) {
-				valueToDocument( value.getChildren( "array" ).get( i ), d, doc );
+			writer.writeStartElement( "array" );
+			writer.writeStartElement( "data" );
+			for( Value element : value.getChildren( "array" ) ) {
+				valueToXmlStream( element, writer );
 			}
-			a.appendChild( d );
-			v.appendChild( a );
-			node.appendChild( v );
+			writer.writeEndElement();
+			writer.writeEndElement();
 		} else if ( value.hasChildren( "boolean" ) ) {
-			Element b = doc.createElement( "boolean" );
-			b.appendChild( doc.createTextNode( value.getFirstChild( "boolean" ).strValue() ) );
-			v.appendChild( b );
-			node.appendChild( v );
+			writeTextElement( "boolean", value.getFirstChild( "boolean" ).strValue(), writer );
 		} else {
-			for ( Entry<String, ValueVector> entry : value.children().entrySet() ) {
+			for( Entry< String, ValueVector > entry : value.children().entrySet() ) {
 				if ( !entry.getKey().startsWith( "@" ) ) {
-					Element st = doc.createElement( "struct" );
-					Element m = doc.createElement( "member" );
-					Element n = doc.createElement( "name" );
-					n.appendChild( doc.createTextNode( entry.getKey() ) );
-					m.appendChild( n );
-					for ( Value val : entry.getValue() ) {
-						valueToDocument( val, m, doc );
+					writer.writeStartElement( "struct" );
+					writer.writeStartElement( "member" );
+					writeTextElement( "name", entry.getKey(), writer );
+					for( Value val : entry.getValue() ) {
+						valueToXmlStream( val, writer );
 					}
-					st.appendChild( m );
-					v.appendChild( st );
+					writer.writeEndElement();
+					writer.writeEndElement();
 				}
 			}
 		}
+		writer.writeEndElement();
+	}
 
-
+	private void faultToXmlStream( FaultException f, XMLStreamWriter writer )
+		throws XMLStreamException
+	{
+		writer.writeStartElement( "fault" );
+		writer.writeStartElement( "value" );
+		writer.writeStartElement( "struct" );
+		writer.writeStartElement( "member" );
+		writer.writeStartElement( "value" );
+		writeTextElement( "i4", "0", writer ); // Jolie generates always zero code faults
+		writer.writeEndElement();
+		writeTextElement( "name", "faultCode", writer );
+		writer.writeEndElement();
+		writer.writeStartElement( "member" );
+		writer.writeStartElement( "value" );
+		writeTextElement( "string", f.faultName(), writer ); // fault name is insertied into faultString tag of XMLRPC message
+		writer.writeEndElement();
+		writer.writeEmptyElement( "name" );
+		writer.writeEndElement();
+		writer.writeEndElement();
+		writer.writeEndElement();
+		writer.writeEndElement();
 	}
 
 	public void send( OutputStream ostream, CommMessage message, InputStream istream )
 		throws IOException
 	{
-		Document doc = docBuilder.newDocument();
-		// root element <methodCall>
-		String rootName = "methodCall";
-		if ( received ) {
-			// We're responding to a request
-			rootName = "methodResponse";
-		}
-
-		Element root = doc.createElement( rootName );
-		doc.appendChild( root );
-
-		if ( !received ) {
-			// element <methodName>
-			Element methodName;
-			methodName = doc.createElement( "methodName" );
-			Value aliases = getParameterFirstValue( "aliases" );
-			String alias;
-			if ( aliases.hasChildren( message.operationName() ) ) {
-				alias = aliases.getFirstChild( message.operationName() ).strValue();
+		StringWriter xmlWriter = new StringWriter();
+		try {
+			XMLStreamWriter writer = XmlFactories.createXMLStreamWriter( xmlWriter );
+			if ( received ) {
+				// We're responding to a request
+				writer.writeStartElement( "methodResponse" );
 			} else {
-				alias = message.operationName();
+				writer.writeStartElement( "methodCall" );
+				// element <methodName>
+				Value aliases = getParameterFirstValue( "aliases" );
+				String alias;
+				if ( aliases.hasChildren( message.operationName() ) ) {
+					alias = aliases.getFirstChild( message.operationName() ).strValue();
+				} else {
+					alias = message.operationName();
+				}
+				writeTextElement( "methodName", alias, writer );
 			}
-			methodName.appendChild( doc.createTextNode( alias ) );
-			inputId = message.operationName();
-			root.appendChild( methodName );
-		}
-
-		if ( message.isFault() ) {
-			FaultException f = message.fault();
-			Element fault = doc.createElement( "fault" );
-			Element v = doc.createElement( "value" );
-			Element s = doc.createElement( "struct" );
-			Element m1 = doc.createElement( "member" );
-			Element n1 = doc.createElement( "name" );
-			Element v1 = doc.createElement( "value" );
-			Element i1 = doc.createElement( "i4" );
-			Element m2 = doc.createElement( "member" );
-			Element n2 = doc.createElement( "name" );
-			Element v2 = doc.createElement( "value" );
-			Element i2 = doc.createElement( "string" );
-			i1.setTextContent( "0" ); // Jolie generates always zero code faults
-			i2.setTextContent( f.faultName() ); // fault name is insertied into faultString tag of XMLRPC message
-			v1.appendChild( i1 );
-			v2.appendChild( i2 );
-			n1.setTextContent( "faultCode" );
-			m1.appendChild( v1 );
-			m1.appendChild( n1 );
-			m2.appendChild( v2 );
-			m2.appendChild( n2 );
-			s.appendChild( m1 );
-			s.appendChild( m2 );
-			v.appendChild( s );
-			fault.appendChild( v );
-			root.appendChild( fault );
-
-		} else if ( message.value().hasChildren( "param" ) == true ) {
-			// params exist
-			Element params = doc.createElement( "params" );
-			for ( int i = 0; i < message.value().getChildren( "param" ).size(); i++ ) {
-				Element p = doc.createElement( "param" );
-				Element v = doc.createElement( "value" );
-				if ( message.value().getChildren( "param" ).get( i ).isInt() ) {
-					Element in = doc.createElement( "int" );
-					in.appendChild( doc.createTextNode( message.value().getChildren( "param" ).get( i ).strValue() ) );
-					v.appendChild( in );
-				} else if ( message.value().getChildren( "param" ).get( i ).isString() ) {
-					Element s = doc.createElement( "string" );
-					s.appendChild( doc.createTextNode( message.value().getChildren( "param" ).get( i ).strValue() ) );
-					v.appendChild( s );
-				} else if ( message.value().getChildren( "param" ).get( i ).isDouble() ) {
-					Element d = doc.createElement( "double" );
-					d.appendChild( doc.createTextNode( message.value().getChildren( "param" ).get( i ).strValue() ) );
-					v.appendChild( d );
-				} else if ( message.value().getChildren( "param" ).get( i ).hasChildren( "array" ) ) {
-					// array creation
-					Element a = doc.createElement( "array" );
-					Element d = doc.createElement( "data" );
-					for ( int x = 0; x < message.value().getChildren( "param" ).get( i ).getChildren( "array" ).size(); x++ ) {
-						valueToDocument( message.value().getChildren( "param" ).get( i ).getChildren( "array" ).get( x ), d, doc );
-					}
-					a.appendChild( d );
-					v.appendChild( a );
-				} else if ( message.value().getChildren( "param" ).get( i ).hasChildren( "boolean" ) ) {
-					Element b = doc.createElement( "boolean" );
-					b.appendChild( doc.createTextNode( message.value().getChildren( "param" ).get( i ).getFirstChild( "boolean" ).strValue() ) );
-					v.appendChild( b );
-				} else if ( message.value().getChildren( "param" ).get( i ).hasChildren() ) {
-					for ( Entry<String, ValueVector> entry : message.value().getChildren( "param" ).get( i ).children().entrySet() ) {
-						if ( !entry.getKey().startsWith( "@" ) ) {
-							Element st = doc.createElement( "struct" );
-							Element m = doc.createElement( "member" );
-							Element n = doc.createElement( "name" );
-							n.appendChild( doc.createTextNode( entry.getKey() ) );
-							m.appendChild( n );
-							for ( Value val : entry.getValue() ) {
-								valueToDocument( val, m, doc );
-							}
-							st.appendChild( m );
-							v.appendChild( st );
-						}
 
-					}
+			if ( message.isFault() ) {
+				faultToXmlStream( message.fault(), writer );
+			} else if ( message.value().hasChildren( "param" ) == true ) {
+				// params exist
+				writer.writeStartElement( "params" );
+				for( Value param : message.value().getChildren( "param" ) ) {
+					writer.writeStartElement( "param" );
+					valueToXmlStream( param, writer );
+					writer.writeEndElement();
 				}
-				p.appendChild( v );
-				params.appendChild( p );
+				writer.writeEndElement();
 			}
-			root.appendChild( params );
-		}
-
-
-		inputId = message.operationName();
-
-		Source src = new DOMSource( doc );
-		ByteArrayOutputStream tmpStream = new ByteArrayOutputStream();
-		Result dest = new StreamResult( tmpStream );
-		try {
-			transformer.transform( src, dest );
-		} catch ( TransformerException e ) {
+			writer.writeEndElement();
+			writer.close();
+		} catch( XMLStreamException e ) {
 			throw new IOException( e );
 		}
 
-
+		inputId = message.operationName();
 
 		String xmlrpcString = CRLF + "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
-			new String( tmpStream.toByteArray() );
+			xmlWriter.toString();
 
 		String messageString = "";
 
@@ -432,9 +342,12 @@ public class XmlRpcProtocol extends SequentialCommProtocol
 		if ( message.content() != null ) {
 			try {
 				if ( message.size() > 0 ) {
-					DocumentBuilder builder = docBuilderFactory.newDocumentBuilder();
-					InputSource src = new InputSource( new ByteArrayInputStream( message.content() ) );
-					doc = builder.parse( src );
+					DocumentBuilder builder = XmlFactories.acquireDocumentBuilder();
+					try {
+						doc = builder.parse( new InputSource( new ByteArrayInputStream( message.content() ) ) );
+					} finally {
+						XmlFactories.releaseDocumentBuilder( builder );
+					}
 					if ( message.isResponse() ) {
 						// test if the message contains a fault
 						try {
@@ -28,31 +28,14 @@ import java.net.URI;
 import jolie.net.ext.CommProtocolFactory;
 import jolie.net.protocols.CommProtocol;
 import jolie.runtime.VariablePath;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Transformer;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.OutputKeys;
 import jolie.runtime.AndJarDeps;
 
 @AndJarDeps( {"jolie-xml.jar"} )
 public class XmlRpcProtocolFactory extends CommProtocolFactory
 {
-	final private Transformer transformer;
-	final private DocumentBuilderFactory docBuilderFactory;
-	final private DocumentBuilder docBuilder;
-
 	public XmlRpcProtocolFactory( CommCore commCore )
-		throws ParserConfigurationException, TransformerConfigurationException
 	{
 		super( commCore );
-		docBuilderFactory = DocumentBuilderFactory.newInstance();
-		docBuilderFactory.setNamespaceAware( true );
-		docBuilder = docBuilderFactory.newDocumentBuilder();
-		transformer = TransformerFactory.newInstance().newTransformer();
-		transformer.setOutputProperty( OutputKeys.OMIT_XML_DECLARATION, "yes" );
 	}
 
 	public CommProtocol createInputProtocol( VariablePath configurationPath, URI location )
@@ -61,9 +44,6 @@ public class XmlRpcProtocolFactory extends CommProtocolFactory
 		return new XmlRpcProtocol(
 			configurationPath,
 			location,
-			transformer,
-			docBuilderFactory,
-			docBuilder,
 			commCore().interpreter()
 		);
 	}
@@ -74,9 +54,6 @@ public class XmlRpcProtocolFactory extends CommProtocolFactory
 		return new XmlRpcProtocol(
 			configurationPath,
 			location,
-			transformer,
-			docBuilderFactory,
-			docBuilder,
 			commCore().interpreter()
 		);
 	}
@@ -27,6 +27,7 @@ import java.io.Writer;
 import jolie.lang.Constants;
 import jolie.ExecutionThread;
 import jolie.Interpreter;
+import jolie.monitoring.MonitoringEventPublisher;
 import jolie.lang.Constants.EmbeddedServiceType;
 import jolie.net.CommListener;
 import jolie.net.LocalCommChannel;
@@ -61,7 +62,34 @@ public class RuntimeService extends JavaService
 	
 	@RequestResponse
 	public void setMonitor( final Value request )
+		throws FaultException
 	{
+		int queueSize = MonitoringEventPublisher.DEFAULT_QUEUE_SIZE;
+		if ( request.hasChildren( "queueSize" ) ) {
+			queueSize = request.getFirstChild( "queueSize" ).intValue();
+		}
+		int batchSize = MonitoringEventPublisher.DEFAULT_MAX_BATCH_SIZE;
+		if ( request.hasChildren( "batchSize" ) ) {
+			batchSize = request.getFirstChild( "batchSize" ).intValue();
+		}
+		if ( queueSize < 1 || batchSize < 1 ) {
+			throw new FaultException( "RuntimeException", new IllegalArgumentException( "Monitoring queue and batch sizes must be positive" ) );
+		}
+		MonitoringEventPublisher.OverflowPolicy overflowPolicy = MonitoringEventPublisher.OverflowPolicy.DROP;
+		if ( request.hasChildren( "overflowPolicy" ) ) {
+			String policyName = request.getFirstChild( "overflowPolicy" ).strValue();
+			if ( "drop".equals( policyName ) ) {
+				overflowPolicy = MonitoringEventPublisher.OverflowPolicy.DROP;
+			} else if ( "dropOldest".equals( policyName ) ) {
+				overflowPolicy = MonitoringEventPublisher.OverflowPolicy.DROP_OLDEST;
+			} else if ( "block".equals( policyName ) ) {
+				overflowPolicy = MonitoringEventPublisher.OverflowPolicy.BLOCK;
+			} else {
+				throw new FaultException( "RuntimeException", new IllegalArgumentException( "Unknown monitoring overflow policy: " + policyName ) );
+			}
+		}
+
+
 		final VariablePath locationPath = new VariablePathBuilder( true )
 			.add( Constants.MONITOR_OUTPUTPORT_NAME, 0 )
 			.add( Constants.LOCATION_NODE_NAME, 0 ).toVariablePath();
@@ -82,7 +110,20 @@ public class RuntimeService extends JavaService
 		);
 		port.optimizeLocation();
 
-		interpreter.setMonitor( port );
+		interpreter.setMonitor( new MonitoringEventPublisher( interpreter, port, queueSize, batchSize, overflowPolicy ) );
+	}
+
+	public Value getMonitorStatistics()
+	{
+		Value ret = Value.create();
+		MonitoringEventPublisher publisher = interpreter.monitor();
+		ret.getFirstChild( "active" ).setValue( publisher != null );
+		if ( publisher != null ) {
+			ret.getFirstChild( "queued" ).setValue( publisher.queuedEvents() );
+			ret.getFirstChild( "published" ).setValue( publisher.publishedEvents() );
+			ret.getFirstChild( "dropped" ).setValue( publisher.droppedEvents() );
+		}
+		return ret;
 	}
 
 	@RequestResponse
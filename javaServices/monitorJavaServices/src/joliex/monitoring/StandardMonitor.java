@@ -57,15 +57,33 @@ public class StandardMonitor extends AbstractMonitorJavaService
 	{
 		
 		synchronized( this ) {
-			if ( q.size() >= queueMax ) {
-				q.removeFirst();
+			addEvent( e );
+		}
+	}
+
+	/*
+	 * request:
+	 *     .events*: MonitorEvent
+	 */
+	public void pushEvents( Value request )
+	{
+		synchronized( this ) {
+			for( Value v : request.getChildren( "events" ) ) {
+				addEvent( MonitoringEvent.fromValue( v ) );
 			}
-			q.addLast( e );
-			if ( triggerEnabled && !alert ) {
-				if ( q.size() >= triggerThreshold ) {
-					sendMessage( CommMessage.createRequest( "monitorAlert", "/", Value.create( ) ) );
-					alert = true;
-				}
+		}
+	}
+
+	private void addEvent( MonitoringEvent e )
+	{
+		if ( q.size() >= queueMax ) {
+			q.removeFirst();
+		}
+		q.addLast( e );
+		if ( triggerEnabled && !alert ) {
+			if ( q.size() >= triggerThreshold ) {
+				sendMessage( CommMessage.createRequest( "monitorAlert", "/", Value.create( ) ) );
+				alert = true;
 			}
 		}
 	}
@@ -48,6 +48,7 @@ public class CommandLineParser
 
 	private final int connectionsLimit;
 	private final int connectionsCache;
+	private final int executionThreads;
 	private final CorrelationEngine.Type correlationAlgorithmType;
 	private final String[] includePaths;
 	private final String[] optionArgs;
@@ -61,6 +62,9 @@ public class CommandLineParser
 	private final JolieClassLoader jolieClassLoader;
 	private final boolean isProgramCompiled;
 	private final boolean typeCheck;
+	private final boolean pooledSessions;
+	private final int metricsPort;
+	private final File includeCacheDirectory;
 	private File programDirectory = null;
 	
 	/**
@@ -137,6 +141,46 @@ public class CommandLineParser
 		return connectionsCache;
 	}
 	
+	/**
+	 * Returns the number of pooled threads to keep for running parallel
+	 * and spawn branches, passed by command line with the --executionThreads option.
+	 * @return the number of pooled threads to keep for running branches
+	 */
+	public int executionThreads()
+	{
+		return executionThreads;
+	}
+	
+	/**
+	 * Returns <code>true</code> if the --pooledSessions option has been specified, false otherwise.
+	 * @return <code>true</code> if the --pooledSessions option has been specified, false otherwise
+	 */
+	public boolean pooledSessions()
+	{
+		return pooledSessions;
+	}
+
+	/**
+	 * Returns the port of the metrics scrape endpoint, passed by command line
+	 * with the --metricsPort option, or -1 if the endpoint is disabled.
+	 * @return the port of the metrics scrape endpoint, or -1
+	 */
+	public int metricsPort()
+	{
+		return metricsPort;
+	}
+
+	/**
+	 * Returns the directory where the tokens of included files are stored,
+	 * passed by command line with the --includeCache option, or <code>null</code>
+	 * if they are cached in memory only.
+	 * @return the directory of the include cache, or <code>null</code>
+	 */
+	public File includeCacheDirectory()
+	{
+		return includeCacheDirectory;
+	}
+	
 	private static String getOptionString( String option, String description )
 	{
 		return( '\t' + option + "\t\t" + description + '\n' );
@@ -173,6 +217,14 @@ public class CommandLineParser
 				getOptionString( "--conncache [number]", "Set the maximum number of cached persistent output connections" ) );
 		helpBuilder.append(
 				getOptionString( "--correlationAlgorithm [simple|hash]", "Set the algorithm to use for message correlation" ) );
+		helpBuilder.append(
+				getOptionString( "--executionThreads [number]", "Set the number of pooled threads kept for running parallel and spawn branches (default: number of processors)" ) );
+		helpBuilder.append(
+				getOptionString( "--pooledSessions", "Run concurrent sessions on the pooled execution threads instead of a new thread each" ) );
+		helpBuilder.append(
+				getOptionString( "--metricsPort [number]", "Serve the runtime metrics over HTTP on port [number], at path /metrics" ) );
+		helpBuilder.append(
+				getOptionString( "--includeCache [dir]", "Store the scanned included files in directory [dir], for reuse by later executions" ) );
 		helpBuilder.append(
 				getOptionString( "--typecheck [true|false]", "Check for correlation and other data related typing errors (default: false)" ) );
 		helpBuilder.append(
@@ -249,6 +301,9 @@ public class CommandLineParser
 		String csetAlgorithmName = "simple";
 		List< String > optionsList = new ArrayList< String >();
 		boolean bVerbose = false;
+		boolean bPooledSessions = false;
+		int mPort = -1;
+		String includeCacheDir = null;
 		boolean bTypeCheck = false; // Default for typecheck
 		List< String > programArgumentsList = new ArrayList< String >();
 		List< String > whitepageList = new ArrayList< String >();
@@ -256,6 +311,7 @@ public class CommandLineParser
 		List< String > libList = new ArrayList< String >();
 		int cLimit = -1;
 		int cCache = 100;
+		int eThreads = Runtime.getRuntime().availableProcessors();
 		String pwd = new File( "" ).getCanonicalPath();
 		includeList.add( pwd );
 		includeList.add( "include" );
@@ -309,6 +365,11 @@ public class CommandLineParser
 				i++;
 				cCache = Integer.parseInt( argsList.get( i ) );
 				optionsList.add( argsList.get( i ) );
+			} else if ( "--executionThreads".equals( argsList.get( i ) ) ) {
+				optionsList.add( argsList.get( i ) );
+				i++;
+				eThreads = Integer.parseInt( argsList.get( i ) );
+				optionsList.add( argsList.get( i ) );
 			} else if ( "--correlationAlgorithm".equals( argsList.get( i ) ) ) {
 				optionsList.add( argsList.get( i ) );
 				i++;
@@ -324,6 +385,18 @@ public class CommandLineParser
 				} else if ( "true".equals( typeCheckStr ) ) {
 					bTypeCheck = true;
 				}
+			} else if ( "--pooledSessions".equals( argsList.get( i ) ) ) {
+				optionsList.add( argsList.get( i ) );
+				bPooledSessions = true;
+			} else if ( "--metricsPort".equals( argsList.get( i ) ) ) {
+				// Not added to the options passed to embedded services, which would try to use the same port
+				i++;
+				mPort = Integer.parseInt( argsList.get( i ) );
+			} else if ( "--includeCache".equals( argsList.get( i ) ) ) {
+				optionsList.add( argsList.get( i ) );
+				i++;
+				includeCacheDir = argsList.get( i );
+				optionsList.add( argsList.get( i ) );
 			} else if ( "--verbose".equals( argsList.get( i ) ) ) {
 				optionsList.add( argsList.get( i ) );
 				bVerbose = true;
@@ -373,6 +446,7 @@ public class CommandLineParser
 		}
 
 		verbose = bVerbose;
+		pooledSessions = bPooledSessions;
 		typeCheck = bTypeCheck;
 
 		correlationAlgorithmType = CorrelationEngine.Type.fromString( csetAlgorithmName );
@@ -395,6 +469,15 @@ public class CommandLineParser
 		
 		connectionsLimit = cLimit;
 		connectionsCache = cCache;
+		if ( eThreads < 0 ) {
+			throw new CommandLineException( "The number of execution threads can not be negative" );
+		}
+		executionThreads = eThreads;
+		if ( mPort < -1 || mPort > 65535 ) {
+			throw new CommandLineException( "Invalid metrics port: " + mPort );
+		}
+		metricsPort = mPort;
+		includeCacheDirectory = ( includeCacheDir == null ) ? null : new File( includeCacheDir );
 
 		List< URL > urls = new ArrayList< URL >();
 		for( String path : libList ) {
@@ -160,6 +160,8 @@ public abstract class ExecutionThread extends JolieThread
 			new LinkedList< WeakReference< Future< ? > > >();
 	private boolean canBeInterrupted = false;
 	private FaultException killerFault = null;
+	private final Object workerMutex = new Object();
+	private Thread worker = null;
 	
 	/**
 	 * Sets if this thread can be interrupted by a fault signal or not.
@@ -215,6 +217,47 @@ public abstract class ExecutionThread extends JolieThread
 		}
 	}
 	
+	/**
+	 * Interrupts this thread or, if it is being run by a pooled worker thread, the worker.
+	 */
+	@Override
+	public void interrupt()
+	{
+		synchronized( workerMutex ) {
+			if ( worker != null ) {
+				worker.interrupt();
+				return;
+			}
+		}
+		super.interrupt();
+	}
+
+	/**
+	 * Runs the activity of this thread in the pool of its interpreter,
+	 * instead of starting a new thread for it.
+	 * @see Interpreter#runInPool(ExecutionThread)
+	 */
+	public void startInPool()
+	{
+		interpreter().runInPool( this );
+	}
+
+	void attachWorker( Thread worker )
+	{
+		synchronized( workerMutex ) {
+			this.worker = worker;
+		}
+	}
+
+	void detachWorker()
+	{
+		synchronized( workerMutex ) {
+			worker = null;
+			// Do not leak an interruption directed to us to the next user of the worker
+			Thread.interrupted();
+		}
+	}
+
 	/**
 	 * Returns the fault which killed this thread, if any. null otherwise.
 	 * @return the fault which killed this thread, if any. null otherwise.
@@ -416,6 +459,8 @@ public abstract class ExecutionThread extends JolieThread
 		Thread currThread = Thread.currentThread();
 		if ( currThread instanceof ExecutionThread ) {
 			return ((ExecutionThread) currThread);
+		} else if ( currThread instanceof ExecutionWorkerThread ) {
+			return ((ExecutionWorkerThread)currThread).executionThread();
 		} else if ( currThread instanceof CommChannelHandler ) {
 			return ((CommChannelHandler)currThread).executionThread();
 		}
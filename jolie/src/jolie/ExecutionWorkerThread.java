@@ -0,0 +1,76 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+
+package jolie;
+
+/**
+ * A <code>JolieThread</code> of the pool used by an <code>Interpreter</code>
+ * to run <code>ExecutionThread</code>s without starting a new thread for each of them.
+ * While an <code>ExecutionThread</code> is being run, this thread refers to it
+ * for variable state resolution.
+ * @see Interpreter#runInPool(ExecutionThread)
+ * @see ExecutionThread#currentThread()
+ * @author Fabrizio Montesi
+ */
+public class ExecutionWorkerThread extends JolieThread
+{
+	private ExecutionThread executionThread = null;
+
+	/**
+	 * Constructor
+	 * @param interpreter the interpreter owning the pool of this thread
+	 * @param r the <code>Runnable</code> to execute in this thread
+	 */
+	public ExecutionWorkerThread( Interpreter interpreter, Runnable r )
+	{
+		super( interpreter, r );
+		setDaemon( true );
+	}
+
+	/**
+	 * Runs the passed <code>ExecutionThread</code> in this thread.
+	 * Interruptions directed to the <code>ExecutionThread</code> reach this thread
+	 * until it returns.
+	 * @param thread the <code>ExecutionThread</code> to run
+	 */
+	public void runExecutionThread( ExecutionThread thread )
+	{
+		executionThread = thread;
+		setContextClassLoader( thread.getContextClassLoader() );
+		thread.attachWorker( this );
+		try {
+			thread.run();
+		} finally {
+			thread.detachWorker();
+			executionThread = null;
+		}
+	}
+
+	/**
+	 * Returns the <code>ExecutionThread</code> this thread is running, if any.
+	 * @return the <code>ExecutionThread</code> this thread is running, or <code>null</code>
+	 */
+	public ExecutionThread executionThread()
+	{
+		return executionThread;
+	}
+}
@@ -23,6 +23,7 @@ package jolie;
 
 import java.io.*;
 import java.lang.ref.WeakReference;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
@@ -36,11 +37,17 @@ import jolie.lang.Constants;
 import jolie.lang.parse.Scanner;
 import jolie.lang.parse.*;
 import jolie.lang.parse.ast.Program;
+import jolie.lang.parse.util.CompiledProgram;
 import jolie.monitoring.MonitoringEvent;
+import jolie.monitoring.MonitoringEventPublisher;
 import jolie.monitoring.events.MonitorAttachedEvent;
 import jolie.monitoring.events.OperationStartedEvent;
 import jolie.monitoring.events.SessionEndedEvent;
 import jolie.monitoring.events.SessionStartedEvent;
+import jolie.monitoring.metrics.Gauge;
+import jolie.monitoring.metrics.InterpreterMetrics;
+import jolie.monitoring.metrics.MetricsHttpEndpoint;
+import jolie.monitoring.metrics.MetricsRegistry;
 import jolie.net.CommChannel;
 import jolie.net.CommCore;
 import jolie.net.CommMessage;
@@ -148,6 +155,20 @@ public class Interpreter
 		}
 	}
 	
+	private static class ExecutionWorkerThreadFactory implements ThreadFactory {
+		private final Interpreter interpreter;
+
+		public ExecutionWorkerThreadFactory( Interpreter interpreter )
+		{
+			this.interpreter = interpreter;
+		}
+
+		public Thread newThread( Runnable r )
+		{
+			return new ExecutionWorkerThread( interpreter, r );
+		}
+	}
+	
 	public static class SessionStarter
 	{
 		private final InputOperationProcess guard;
@@ -214,6 +235,7 @@ public class Interpreter
 	private final String[] optionArgs;
 	private final String logPrefix;
 	private final boolean verbose;
+	private final boolean pooledSessions;
 	private final Timer timer;
 	// private long inputMessageTimeout = 24 * 60 * 60 * 1000; // 1 day
 	private long persistentConnectionTimeout = 24 * 60 * 60 * 1000 * 10; // 10 days
@@ -228,13 +250,106 @@ public class Interpreter
 
 	private final String programFilename;
 	private final File programDirectory;
-	private OutputPort monitor = null;
+	private volatile MonitoringEventPublisher monitor = null;
+	private final InterpreterMetrics metrics = new InterpreterMetrics();
+	private final int metricsPort;
+	private volatile MetricsHttpEndpoint metricsEndpoint = null;
 
+	/**
+	 * Returns the runtime metrics of this interpreter.
+	 * @return the runtime metrics of this interpreter
+	 */
+	public InterpreterMetrics metrics()
+	{
+		return metrics;
+	}
+
+	private void registerMetricsGauges()
+	{
+		MetricsRegistry registry = metrics.registry();
+		registry.gauge( "jolie_comm_pending_tasks", "Received messages and other communication tasks waiting for a thread", new Gauge() {
+			public long value()
+			{
+				return commCore.pendingTaskCount();
+			}
+		} );
+		registry.gauge( "jolie_comm_active_threads", "Threads handling communications", new Gauge() {
+			public long value()
+			{
+				return commCore.activeThreadCount();
+			}
+		} );
+		registry.gauge( "jolie_comm_persistent_channels", "Output channels kept open for reuse", new Gauge() {
+			public long value()
+			{
+				return commCore.persistentChannelCount();
+			}
+		} );
+		registry.gauge( "jolie_execution_pool_threads", "Pooled execution threads", new Gauge() {
+			public long value()
+			{
+				return executionThreadPool.getPoolSize();
+			}
+		} );
+		registry.gauge( "jolie_execution_pool_active_threads", "Pooled execution threads running a task", new Gauge() {
+			public long value()
+			{
+				return executionThreadPool.getActiveCount();
+			}
+		} );
+		registry.gauge( "jolie_monitoring_queued_events", "Monitoring events waiting to be sent to the monitor", new Gauge() {
+			public long value()
+			{
+				MonitoringEventPublisher publisher = monitor;
+				return ( publisher == null ) ? 0 : publisher.queuedEvents();
+			}
+		} );
+	}
+
+	/**
+	 * Sets the monitor of this interpreter, with the default queue and batch sizes.
+	 * Events fired when the queue is full are dropped.
+	 * @param monitor the output port of the monitor
+	 */
 	public void setMonitor( OutputPort monitor )
 	{
-		this.monitor = monitor;
+		setMonitor( new MonitoringEventPublisher(
+			this,
+			monitor,
+			MonitoringEventPublisher.DEFAULT_QUEUE_SIZE,
+			MonitoringEventPublisher.DEFAULT_MAX_BATCH_SIZE,
+			MonitoringEventPublisher.OverflowPolicy.DROP
+		) );
+	}
+
+	/**
+	 * Sets the publisher delivering the monitoring events of this interpreter,
+	 * stopping the previous one (if any).
+	 * @param publisher the publisher to use
+	 */
+	public void setMonitor( MonitoringEventPublisher publisher )
+	{
+		MonitoringEventPublisher previous;
+		synchronized( this ) {
+			previous = monitor;
+			monitor = publisher;
+		}
+		if ( previous != null ) {
+			previous.stop();
+		}
+		publisher.start();
 		fireMonitorEvent( new MonitorAttachedEvent() );
 	}
+
+	/**
+	 * Returns the publisher delivering the monitoring events of this interpreter,
+	 * or <code>null</code> if no monitor is set.
+	 * @return the monitoring event publisher, or <code>null</code>
+	 */
+	public MonitoringEventPublisher monitor()
+	{
+		return monitor;
+	}
 	
 	public boolean isMonitoring()
 	{
@@ -246,31 +361,16 @@ public class Interpreter
 		return inputMessageTimeout;
 	}*/
 	
+	/**
+	 * Queues a monitoring event to be sent to the monitor, if one is set.
+	 * Events are sent by a background thread.
+	 * @param event the event to send
+	 */
 	public void fireMonitorEvent( MonitoringEvent event )
 	{
-		if ( monitor != null ) {
-			CommMessage m = CommMessage.createRequest( "pushEvent", "/", MonitoringEvent.toValue( event ) );
-			CommChannel channel = null;
-			try {
-				channel = monitor.getCommChannel();
-				channel.send( m );
-				CommMessage response = null;
-				do {
-					response = channel.recvResponseFor( m );
-				} while( response == null );
-			} catch( URISyntaxException e ) {
-				logWarning( e );
-			} catch( IOException e ) {
-				logWarning( e );
-			} finally {
-				if ( channel != null ) {
-					try {
-						channel.release();
-					} catch( IOException e ) {
-						logWarning( e );
-					}
-				}
-			}
+		MonitoringEventPublisher publisher = monitor;
+		if ( publisher != null ) {
+			publisher.publish( event );
 		}
 	}
 
@@ -547,7 +647,15 @@ public class Interpreter
 		} finally {
 			exitingLock.unlock();
 		}
+		MonitoringEventPublisher publisher = monitor;
+		if ( publisher != null ) {
+			publisher.stop();
+		}
+		if ( metricsEndpoint != null ) {
+			metricsEndpoint.stop();
+		}
 		executorService.shutdown();
+		executionThreadPool.shutdown();
 		commCore.shutdown();
 		timer.cancel();
 	}
@@ -731,6 +839,18 @@ public class Interpreter
 		arguments = cmdParser.arguments();
 		this.correlationEngine = cmdParser.correlationAlgorithmType().createInstance( this );
 		commCore = new CommCore( this, cmdParser.connectionsLimit() /*, cmdParser.connectionsCache() */ );
+		/*
+		 * Pooled threads may block waiting for messages or for other pooled threads,
+		 * so the pool must never queue a task: it grows when all its threads are busy
+		 * and shrinks back to the configured size when they are idle.
+		 */
+		executionThreadPool = new ThreadPoolExecutor(
+			cmdParser.executionThreads(), Integer.MAX_VALUE,
+			60L, TimeUnit.SECONDS,
+			new SynchronousQueue< Runnable >(),
+			new ExecutionWorkerThreadFactory( this )
+		);
+		registerMetricsGauges();
 		includePaths = cmdParser.includePaths();
 
 		StringBuilder builder = new StringBuilder();
@@ -740,6 +860,11 @@ public class Interpreter
 		logPrefix = builder.toString();
 
 		verbose = cmdParser.verbose();
+		pooledSessions = cmdParser.pooledSessions();
+		metricsPort = cmdParser.metricsPort();
+		if ( cmdParser.includeCacheDirectory() != null ) {
+			IncludeCache.getInstance().setDirectory( cmdParser.includeCacheDirectory() );
+		}
 		timer = new Timer( programFilename + "-Timer" );
 		exitingLock = new ReentrantLock();
 		exitingCondition = exitingLock.newCondition();
@@ -927,6 +1052,14 @@ public class Interpreter
 
 			commCore.init();
 
+			if ( metricsPort >= 0 ) {
+				metricsEndpoint = new MetricsHttpEndpoint(
+					metrics.registry(),
+					new InetSocketAddress( metricsPort )
+				);
+				metricsEndpoint.start();
+			}
+
 			// Initialize program arguments in the args variabile.
 			ValueVector jArgs = ValueVector.create();
 			for( String s : arguments ) {
@@ -1002,6 +1135,40 @@ public class Interpreter
 		executorService.execute( r );
 	}
 
+	private final ThreadPoolExecutor executionThreadPool;
+
+	/**
+	 * Starts a session which no other thread waits for with {@link Thread#join()}.
+	 * If this Interpreter runs in pooled sessions mode, the session is run
+	 * in the pool of <code>ExecutionWorkerThread</code>s, otherwise in a new thread.
+	 * @param session the session to start
+	 * @see #runInPool(ExecutionThread)
+	 */
+	public void startSession( SessionThread session )
+	{
+		if ( pooledSessions ) {
+			session.startInPool();
+		} else {
+			session.start();
+		}
+	}
+
+	/**
+	 * Runs an <code>ExecutionThread</code> in this Interpreter pool of
+	 * <code>ExecutionWorkerThread</code>s, instead of starting it as a new thread.
+	 * @param thread the <code>ExecutionThread</code> to run
+	 * @see ExecutionThread#startInPool()
+	 */
+	public void runInPool( final ExecutionThread thread )
+	{
+		executionThreadPool.execute( new Runnable() {
+			public void run()
+			{
+				((ExecutionWorkerThread)Thread.currentThread()).runExecutionThread( thread );
+			}
+		} );
+	}
+
 	private static final AtomicInteger starterThreadCounter = new AtomicInteger();
 
 	private static String createStarterThreadName( String programFilename )
@@ -1069,14 +1236,10 @@ public class Interpreter
 	{
 		try {
 			Program program = null;
+			CompiledProgram compiledProgram = null;
 			if ( cmdParser.isProgramCompiled() ) {
-				ObjectInputStream istream = new ObjectInputStream( cmdParser.programStream() );
-				Object o = istream.readObject();
-				if ( o instanceof Program ) {
-					program = (Program)o;
-				} else {
-					throw new InterpreterException( "Input compiled program is not a JOLIE program" );
-				}
+				compiledProgram = CompiledProgram.readFrom( cmdParser.programStream() );
+				program = compiledProgram.program();
 			} else {
 				OLParser olParser = new OLParser( new Scanner( cmdParser.programStream(), new URI( "file:" + cmdParser.programFilepath() ) ), includePaths, classLoader );
 				olParser.putConstants( cmdParser.definedConstants() );
@@ -1084,16 +1247,30 @@ public class Interpreter
 				OLParseTreeOptimizer optimizer = new OLParseTreeOptimizer( program );
 				program = optimizer.optimize();
 			}
-			SemanticVerifier semanticVerifier = new SemanticVerifier( program );
-			if ( !semanticVerifier.validate() ) {
-				throw new InterpreterException( "Exiting" );
+
+			Constants.ExecutionMode programExecutionMode;
+			Map< String, Boolean > isConstantMap;
+			CorrelationFunctionInfo correlationFunctionInfo;
+			if ( compiledProgram != null && compiledProgram.isVerified() ) {
+				// joliec has already verified the program
+				programExecutionMode = compiledProgram.executionMode();
+				isConstantMap = compiledProgram.isConstantMap();
+				correlationFunctionInfo = compiledProgram.correlationFunctionInfo();
+			} else {
+				SemanticVerifier semanticVerifier = new SemanticVerifier( program );
+				if ( !semanticVerifier.validate() ) {
+					throw new InterpreterException( "Exiting" );
+				}
+				programExecutionMode = semanticVerifier.executionMode();
+				isConstantMap = semanticVerifier.isConstantMap();
+				correlationFunctionInfo = semanticVerifier.correlationFunctionInfo();
 			}
 
 			if ( cmdParser.typeCheck() ) {
 				TypeChecker typeChecker = new TypeChecker(
 					program,
-					semanticVerifier.executionMode(),
-					semanticVerifier.correlationFunctionInfo()
+					programExecutionMode,
+					correlationFunctionInfo
 				);
 				if ( !typeChecker.check() ) {
 					throw new InterpreterException( "Exiting" );
@@ -1103,16 +1280,14 @@ public class Interpreter
 			return (new OOITBuilder(
 				this,
 				program,
-				semanticVerifier.isConstantMap(),
-				semanticVerifier.correlationFunctionInfo() )).build();
+				isConstantMap,
+				correlationFunctionInfo )).build();
 		} catch( IOException e ) {
 			throw new InterpreterException( e );
 		} catch( URISyntaxException e ) {
 			throw new InterpreterException( e );
 		} catch( ParserException e ) {
 			throw new InterpreterException( e );
-		} catch( ClassNotFoundException e ) {
-			throw new InterpreterException( e );
 		} finally {
 			cmdParser = null; // Free memory
 		}
@@ -1166,7 +1341,7 @@ public class Interpreter
 					logSessionEnd( message.operationName(), session.getSessionId() );
 				}
 			} );
-			spawnedSession.start();
+			startSession( spawnedSession );
 		} else if ( executionMode == Constants.ExecutionMode.SEQUENTIAL ) {
 			/*
 			 * We use mainSession as a reference to the latest arrived
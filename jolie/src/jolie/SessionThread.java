@@ -35,6 +35,7 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import jolie.lang.Constants;
+import jolie.monitoring.metrics.InterpreterMetrics;
 import jolie.net.SessionMessage;
 import jolie.process.Process;
 import jolie.process.TransformationReason;
@@ -454,40 +455,48 @@ public class SessionThread extends ExecutionThread
 
 	public void run()
 	{
+		InterpreterMetrics metrics = interpreter().metrics();
+		metrics.sessionStarted();
+		boolean faulted = false;
 		try {
 			try {
-				process().run();
-			} catch( ExitingException e ) {}
-			for( SessionListener listener : listeners ) {
-				listener.onSessionExecuted( this );
-			}
-		} catch( FaultException f ) {
-			Process p = null;
-			while( hasScope() && (p = getFaultHandler( f.faultName(), true )) == null ) {
-				popScope();
-			}
+				try {
+					process().run();
+				} catch( ExitingException e ) {}
+				for( SessionListener listener : listeners ) {
+					listener.onSessionExecuted( this );
+				}
+			} catch( FaultException f ) {
+				Process p = null;
+				while( hasScope() && (p = getFaultHandler( f.faultName(), true )) == null ) {
+					popScope();
+				}
 
-			try {
-				if ( p == null ) {
-					Interpreter.getInstance().logUnhandledFault( f );
-					throw f;
-				} else {
-					Value scopeValue =
-						new VariablePathBuilder( false ).add( currentScopeId(), 0 ).toVariablePath().getValue();
-					scopeValue.getChildren( f.faultName() ).set( 0, f.value() );
-					try {
-						p.run();
-					} catch( ExitingException e ) {}
+				try {
+					if ( p == null ) {
+						Interpreter.getInstance().logUnhandledFault( f );
+						throw f;
+					} else {
+						Value scopeValue =
+							new VariablePathBuilder( false ).add( currentScopeId(), 0 ).toVariablePath().getValue();
+						scopeValue.getChildren( f.faultName() ).set( 0, f.value() );
+						try {
+							p.run();
+						} catch( ExitingException e ) {}
+					}
+				} catch( FaultException fault ) {
+					faulted = true;
+					for( SessionListener listener : listeners ) {
+						listener.onSessionError( this, fault );
+					}
 				}
-			} catch( FaultException fault ) {
+
 				for( SessionListener listener : listeners ) {
-					listener.onSessionError( this, fault );
+					listener.onSessionExecuted( this );
 				}
 			}
-
-			for( SessionListener listener : listeners ) {
-				listener.onSessionExecuted( this );
-			}
+		} finally {
+			metrics.sessionEnded( faulted );
 		}
 	}
 
@@ -0,0 +1,350 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.monitoring;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import jolie.Interpreter;
+import jolie.net.CommChannel;
+import jolie.net.CommChannelHandler;
+import jolie.net.CommMessage;
+import jolie.net.ports.OutputPort;
+import jolie.runtime.Value;
+import jolie.runtime.ValueVector;
+
+/**
+ * Delivers monitoring events to a monitor from a background thread.
+ *
+ * Events are put in a bounded queue, which does not block the threads
+ * firing them (unless the {@link OverflowPolicy#BLOCK} policy is used).
+ * The publisher thread sends all the queued events, up to a maximum, with a
+ * single <code>pushEvents</code> request. Monitors not supporting
+ * <code>pushEvents</code> receive each event with <code>pushEvent</code>.
+ * @author Fabrizio Montesi
+ */
+public class MonitoringEventPublisher
+{
+	/**
+	 * What to do with an event fired when the queue is full.
+	 */
+	public static enum OverflowPolicy
+	{
+		/** The new event is dropped. */
+		DROP,
+		/** The oldest queued event is dropped. */
+		DROP_OLDEST,
+		/** The firing thread waits for space in the queue. */
+		BLOCK
+	}
+
+	public static final int DEFAULT_QUEUE_SIZE = 4096;
+	public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+	private static final String PUSH_EVENT_OPERATION = "pushEvent";
+	private static final String PUSH_EVENTS_OPERATION = "pushEvents";
+	private static final String EVENTS_NODE = "events";
+
+	// How long the publisher waits for events before checking for termination
+	private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos( 500 );
+	// How long the interpreter waits for the remaining events to be sent when exiting
+	private static final long FLUSH_TIMEOUT = 2000;
+
+	private final Interpreter interpreter;
+	private final OutputPort port;
+	private final int queueSize;
+	private final int maxBatchSize;
+	private final OverflowPolicy overflowPolicy;
+
+	private final Queue< MonitoringEvent > queue = new ConcurrentLinkedQueue< MonitoringEvent >();
+	private final AtomicInteger queuedEvents = new AtomicInteger( 0 );
+	private final AtomicLong droppedEvents = new AtomicLong( 0 );
+	private final AtomicLong publishedEvents = new AtomicLong( 0 );
+	private final AtomicLong failedEvents = new AtomicLong( 0 );
+	private final Object spaceLock = new Object(); // Used only by the BLOCK policy
+
+	private final CommChannelHandler thread;
+	private volatile boolean batching = true;
+	private volatile boolean stopped = false;
+
+	/**
+	 * Constructor
+	 * @param interpreter the interpreter firing the events
+	 * @param port the output port of the monitor
+	 * @param queueSize the maximum number of events waiting to be sent
+	 * @param maxBatchSize the maximum number of events sent with a single request
+	 * @param overflowPolicy what to do with events fired when the queue is full
+	 */
+	public MonitoringEventPublisher(
+		Interpreter interpreter,
+		OutputPort port,
+		int queueSize,
+		int maxBatchSize,
+		OverflowPolicy overflowPolicy
+	) {
+		if ( queueSize < 1 || maxBatchSize < 1 ) {
+			throw new IllegalArgumentException( "Monitoring queue and batch sizes must be positive" );
+		}
+		this.interpreter = interpreter;
+		this.port = port;
+		this.queueSize = queueSize;
+		this.maxBatchSize = maxBatchSize;
+		this.overflowPolicy = overflowPolicy;
+		this.thread = new CommChannelHandler( interpreter, new Runnable() {
+			public void run()
+			{
+				publishEvents();
+			}
+		} );
+		thread.setExecutionThread( interpreter.initThread() );
+		thread.setDaemon( true );
+	}
+
+	/**
+	 * Starts the publisher thread.
+	 */
+	public void start()
+	{
+		thread.start();
+	}
+
+	/**
+	 * Stops this publisher, waiting for a short time for the queued
+	 * events to be sent. Events fired afterwards are dropped.
+	 */
+	public void stop()
+	{
+		stopped = true;
+		synchronized( spaceLock ) {
+			spaceLock.notifyAll();
+		}
+		LockSupport.unpark( thread );
+		if ( Thread.currentThread() != thread && thread.isAlive() ) {
+			try {
+				thread.join( FLUSH_TIMEOUT );
+			} catch( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Queues an event to be sent to the monitor.
+	 * @param event the event to send
+	 */
+	public void publish( MonitoringEvent event )
+	{
+		if ( stopped ) {
+			droppedEvents.incrementAndGet();
+			return;
+		}
+		while( queuedEvents.incrementAndGet() > queueSize ) {
+			if ( stopped ) {
+				queuedEvents.decrementAndGet();
+				droppedEvents.incrementAndGet();
+				return;
+			}
+			switch( overflowPolicy ) {
+			case DROP_OLDEST:
+				if ( queue.poll() != null ) {
+					queuedEvents.decrementAndGet();
+					droppedEvents.incrementAndGet();
+				}
+				// Our slot is reserved now
+				enqueue( event );
+				return;
+			case BLOCK:
+				queuedEvents.decrementAndGet();
+				if ( !waitForSpace() ) {
+					droppedEvents.incrementAndGet();
+					return;
+				}
+				break;
+			case DROP:
+			default:
+				queuedEvents.decrementAndGet();
+				droppedEvents.incrementAndGet();
+				return;
+			}
+		}
+		enqueue( event );
+	}
+
+	private void enqueue( MonitoringEvent event )
+	{
+		queue.add( event );
+		LockSupport.unpark( thread );
+	}
+
+	/*
+	 * Returns false if the calling thread was interrupted.
+	 */
+	private boolean waitForSpace()
+	{
+		synchronized( spaceLock ) {
+			while( queuedEvents.get() >= queueSize && !stopped ) {
+				try {
+					spaceLock.wait();
+				} catch( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of events waiting to be sent.
+	 * @return the number of events waiting to be sent
+	 */
+	public int queuedEvents()
+	{
+		return Math.max( 0, Math.min( queuedEvents.get(), queueSize ) );
+	}
+
+	/**
+	 * Returns the number of events dropped because the queue was full,
+	 * or because they were fired after this publisher was stopped.
+	 * @return the number of dropped events
+	 */
+	public long droppedEvents()
+	{
+		return droppedEvents.get();
+	}
+
+	/**
+	 * Returns the number of events received by the monitor.
+	 * @return the number of events received by the monitor
+	 */
+	public long publishedEvents()
+	{
+		return publishedEvents.get();
+	}
+
+	/**
+	 * Returns the number of events that could not be sent to the monitor,
+	 * because of a communication error or of a fault sent by the monitor.
+	 * @return the number of events that could not be sent
+	 */
+	public long failedEvents()
+	{
+		return failedEvents.get();
+	}
+
+	private void publishEvents()
+	{
+		List< MonitoringEvent > batch = new ArrayList< MonitoringEvent >();
+		MonitoringEvent event;
+		while( true ) {
+			while( batch.size() < maxBatchSize && (event = queue.poll()) != null ) {
+				batch.add( event );
+			}
+			if ( batch.isEmpty() ) {
+				if ( stopped ) {
+					return;
+				}
+				LockSupport.parkNanos( this, IDLE_WAIT );
+			} else {
+				queuedEvents.addAndGet( -batch.size() );
+				if ( overflowPolicy == OverflowPolicy.BLOCK ) {
+					synchronized( spaceLock ) {
+						spaceLock.notifyAll();
+					}
+				}
+				int sent = send( batch );
+				publishedEvents.addAndGet( sent );
+				failedEvents.addAndGet( batch.size() - sent );
+				batch.clear();
+			}
+		}
+	}
+
+	/*
+	 * Returns the number of events received by the monitor.
+	 */
+	private int send( List< MonitoringEvent > batch )
+	{
+		if ( batching && batch.size() > 1 ) {
+			Value request = Value.create();
+			ValueVector events = request.getChildren( EVENTS_NODE );
+			for( MonitoringEvent e : batch ) {
+				events.add( MonitoringEvent.toValue( e ) );
+			}
+			CommMessage response = sendRequest( PUSH_EVENTS_OPERATION, request );
+			if ( response == null ) {
+				return 0;
+			} else if ( !response.isFault() ) {
+				return batch.size();
+			}
+			// The monitor does not support pushEvents
+			batching = false;
+		}
+
+		int sent = 0;
+		CommMessage response;
+		for( MonitoringEvent e : batch ) {
+			response = sendRequest( PUSH_EVENT_OPERATION, MonitoringEvent.toValue( e ) );
+			if ( response != null && !response.isFault() ) {
+				sent++;
+			}
+		}
+		return sent;
+	}
+
+	/*
+	 * Returns null if the request could not be sent or its response received.
+	 */
+	private CommMessage sendRequest( String operationName, Value value )
+	{
+		CommMessage m = CommMessage.createRequest( operationName, "/", value );
+		CommMessage response = null;
+		CommChannel channel = null;
+		try {
+			channel = port.getCommChannel();
+			channel.send( m );
+			do {
+				response = channel.recvResponseFor( m );
+			} while( response == null );
+		} catch( URISyntaxException e ) {
+			interpreter.logWarning( e );
+		} catch( IOException e ) {
+			interpreter.logWarning( e );
+		} finally {
+			if ( channel != null ) {
+				try {
+					channel.release();
+				} catch( IOException e ) {
+					interpreter.logWarning( e );
+				}
+			}
+		}
+		return response;
+	}
+}
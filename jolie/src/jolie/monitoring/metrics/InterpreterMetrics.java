@@ -0,0 +1,322 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+
+package jolie.monitoring.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import jolie.JolieThread;
+
+/**
+ * The runtime metrics of an interpreter.
+ *
+ * This class keeps references to the metrics updated by the runtime,
+ * so that updating them does not require a registry lookup.
+ * Other metrics can be added through {@link #registry()}.
+ * @author Fabrizio Montesi
+ */
+public class InterpreterMetrics
+{
+	private final MetricsRegistry registry = new MetricsRegistry();
+
+	private final StripedCounter messagesReceived = registry.counter(
+		"jolie_messages_received_total", "Messages received by the input ports" );
+	private final LatencyHistogram messageHandling = registry.histogram(
+		"jolie_message_handling_seconds", "Time taken to receive an input message and deliver it to a session" );
+	private final StripedCounter typeMismatches = registry.counter(
+		"jolie_messages_rejected_total", "Input messages rejected by the runtime", "reason", "typeMismatch" );
+	private final StripedCounter undefinedOperations = registry.counter(
+		"jolie_messages_rejected_total", "Input messages rejected by the runtime", "reason", "undefinedOperation" );
+
+	private final StripedCounter correlatedMessages = registry.counter(
+		"jolie_correlation_messages_total", "Input messages handled by the correlation engine", "outcome", "routed" );
+	private final StripedCounter sessionStarterMessages = registry.counter(
+		"jolie_correlation_messages_total", "Input messages handled by the correlation engine", "outcome", "started" );
+	private final StripedCounter correlationErrors = registry.counter(
+		"jolie_correlation_messages_total", "Input messages handled by the correlation engine", "outcome", "rejected" );
+	private final LatencyHistogram correlationTime = registry.histogram(
+		"jolie_correlation_seconds", "Time taken to correlate an input message, including waiting for the correlation engine" );
+
+	private final StripedCounter sessionsStarted = registry.counter(
+		"jolie_sessions_started_total", "Sessions started" );
+	private final StripedCounter sessionsFaulted = registry.counter(
+		"jolie_sessions_faulted_total", "Sessions terminated by an unhandled fault" );
+	private final StripedCounter activeSessions = new StripedCounter();
+
+	private final ConcurrentMap< String, OperationMetrics > operations =
+		new ConcurrentHashMap< String, OperationMetrics >();
+	private final ConcurrentMap< String, ChannelMetrics > channels =
+		new ConcurrentHashMap< String, ChannelMetrics >();
+
+	public InterpreterMetrics()
+	{
+		registry.gauge( "jolie_sessions_active", "Sessions being executed", new Gauge() {
+			public long value()
+			{
+				return activeSessions.sum();
+			}
+		} );
+	}
+
+	/**
+	 * Returns the metrics of the interpreter of the current thread,
+	 * or <code>null</code> if the current thread is not a <code>JolieThread</code>.
+	 * @return the metrics of the interpreter of the current thread, or <code>null</code>
+	 */
+	public static InterpreterMetrics current()
+	{
+		Thread thread = Thread.currentThread();
+		return ( thread instanceof JolieThread ) ? ((JolieThread)thread).interpreter().metrics() : null;
+	}
+
+	/**
+	 * Returns the registry holding these metrics.
+	 * @return the registry holding these metrics
+	 */
+	public MetricsRegistry registry()
+	{
+		return registry;
+	}
+
+	/**
+	 * Records the handling of an input message.
+	 * @param startNanos the value of {@link System#nanoTime()} before receiving the message
+	 */
+	public void messageHandled( long startNanos )
+	{
+		messagesReceived.increment();
+		messageHandling.recordSince( startNanos );
+	}
+
+	/**
+	 * Records the rejection of an input message not matching the type of its operation.
+	 */
+	public void typeMismatch()
+	{
+		typeMismatches.increment();
+	}
+
+	/**
+	 * Records the rejection of an input message for an undefined operation.
+	 */
+	public void undefinedOperation()
+	{
+		undefinedOperations.increment();
+	}
+
+	/**
+	 * Records an input message routed to a running session.
+	 * @param startNanos the value of {@link System#nanoTime()} before correlating the message
+	 */
+	public void messageCorrelated( long startNanos )
+	{
+		correlatedMessages.increment();
+		correlationTime.recordSince( startNanos );
+	}
+
+	/**
+	 * Records an input message starting a new session.
+	 * @param startNanos the value of {@link System#nanoTime()} before correlating the message
+	 */
+	public void sessionStarterMessage( long startNanos )
+	{
+		sessionStarterMessages.increment();
+		correlationTime.recordSince( startNanos );
+	}
+
+	/**
+	 * Records an input message which could not be correlated.
+	 * @param startNanos the value of {@link System#nanoTime()} before correlating the message
+	 */
+	public void correlationError( long startNanos )
+	{
+		correlationErrors.increment();
+		correlationTime.recordSince( startNanos );
+	}
+
+	/**
+	 * Records the start of a session.
+	 */
+	public void sessionStarted()
+	{
+		sessionsStarted.increment();
+		activeSessions.increment();
+	}
+
+	/**
+	 * Records the end of a session.
+	 * @param faulted <code>true</code> if the session was terminated by an unhandled fault
+	 */
+	public void sessionEnded( boolean faulted )
+	{
+		activeSessions.decrement();
+		if ( faulted ) {
+			sessionsFaulted.increment();
+		}
+	}
+
+	/**
+	 * Returns the metrics of an input operation.
+	 * @param operationName the name of the operation
+	 * @return the metrics of the operation
+	 */
+	public OperationMetrics operation( String operationName )
+	{
+		OperationMetrics ret = operations.get( operationName );
+		if ( ret == null ) {
+			OperationMetrics newMetrics = new OperationMetrics( registry, operationName );
+			ret = operations.putIfAbsent( operationName, newMetrics );
+			if ( ret == null ) {
+				ret = newMetrics;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the metrics of the channels using a protocol.
+	 * @param protocolName the name of the protocol
+	 * @return the metrics of the channels using the protocol
+	 */
+	public ChannelMetrics channel( String protocolName )
+	{
+		ChannelMetrics ret = channels.get( protocolName );
+		if ( ret == null ) {
+			ChannelMetrics newMetrics = new ChannelMetrics( registry, protocolName );
+			ret = channels.putIfAbsent( protocolName, newMetrics );
+			if ( ret == null ) {
+				ret = newMetrics;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * The metrics of an input operation.
+	 */
+	public static class OperationMetrics
+	{
+		private final StripedCounter calls;
+		private final StripedCounter faults;
+		private final LatencyHistogram duration;
+
+		private OperationMetrics( MetricsRegistry registry, String operationName )
+		{
+			calls = registry.counter(
+				"jolie_operation_calls_total", "Messages received for the input operation",
+				"operation", operationName );
+			faults = registry.counter(
+				"jolie_operation_faults_total", "Request-responses of the input operation answered with a fault",
+				"operation", operationName );
+			duration = registry.histogram(
+				"jolie_operation_duration_seconds", "Time from receiving a request to sending its response",
+				"operation", operationName );
+		}
+
+		/**
+		 * Records the reception of a message for this operation.
+		 */
+		public void called()
+		{
+			calls.increment();
+		}
+
+		/**
+		 * Records the sending of a response for this operation.
+		 * @param startNanos the value of {@link System#nanoTime()} when the request was received
+		 * @param fault <code>true</code> if the response is a fault
+		 */
+		public void responded( long startNanos, boolean fault )
+		{
+			duration.recordSince( startNanos );
+			if ( fault ) {
+				faults.increment();
+			}
+		}
+	}
+
+	/**
+	 * The metrics of the channels using a protocol.
+	 * Receiving times include waiting for the message to arrive.
+	 */
+	public static class ChannelMetrics
+	{
+		private final StripedCounter sent;
+		private final StripedCounter received;
+		private final StripedCounter sendErrors;
+		private final StripedCounter recvErrors;
+		private final LatencyHistogram sendTime;
+		private final LatencyHistogram recvTime;
+
+		private ChannelMetrics( MetricsRegistry registry, String protocolName )
+		{
+			sent = registry.counter(
+				"jolie_channel_messages_sent_total", "Messages sent through communication channels",
+				"protocol", protocolName );
+			received = registry.counter(
+				"jolie_channel_messages_received_total", "Messages received from communication channels",
+				"protocol", protocolName );
+			sendErrors = registry.counter(
+				"jolie_channel_errors_total", "Communication channel I/O errors",
+				"protocol", protocolName, "direction", "send" );
+			recvErrors = registry.counter(
+				"jolie_channel_errors_total", "Communication channel I/O errors",
+				"protocol", protocolName, "direction", "recv" );
+			sendTime = registry.histogram(
+				"jolie_channel_send_seconds", "Time taken to send a message",
+				"protocol", protocolName );
+			recvTime = registry.histogram(
+				"jolie_channel_recv_seconds", "Time taken to receive a message",
+				"protocol", protocolName );
+		}
+
+		/**
+		 * Records the sending of a message.
+		 * @param startNanos the value of {@link System#nanoTime()} before sending the message
+		 * @param success <code>false</code> if sending the message failed
+		 */
+		public void sent( long startNanos, boolean success )
+		{
+			if ( success ) {
+				sent.increment();
+				sendTime.recordSince( startNanos );
+			} else {
+				sendErrors.increment();
+			}
+		}
+
+		/**
+		 * Records the reception of a message.
+		 * @param startNanos the value of {@link System#nanoTime()} before receiving the message
+		 * @param success <code>false</code> if receiving the message failed
+		 */
+		public void received( long startNanos, boolean success )
+		{
+			if ( success ) {
+				received.increment();
+				recvTime.recordSince( startNanos );
+			} else {
+				recvErrors.increment();
+			}
+		}
+	}
+}
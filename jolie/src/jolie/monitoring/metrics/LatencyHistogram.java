@@ -0,0 +1,179 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+
+package jolie.monitoring.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations, in nanoseconds, with a bounded relative error.
+ *
+ * Durations are counted in log-linear buckets: every power of two is split
+ * in {@value #SUB_BUCKETS} buckets of the same width, so the bucket of a
+ * duration is at most 12.5% wider than the duration itself.
+ * Recording a duration takes no locks and allocates nothing; percentiles are
+ * computed on a {@link Snapshot} of the histogram.
+ * @author Fabrizio Montesi
+ */
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray( BUCKETS );
+	private final StripedCounter sum = new StripedCounter();
+	private final AtomicLong max = new AtomicLong( 0L );
+
+	private static int bucketIndex( long value )
+	{
+		if ( value < SUB_BUCKETS ) {
+			return (int)value;
+		}
+		int exponent = (Long.SIZE - 1) - Long.numberOfLeadingZeros( value );
+		int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	private static long bucketUpperBound( int index )
+	{
+		if ( index < SUB_BUCKETS ) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lowerBound = (long)(SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+
+	/**
+	 * Records a duration.
+	 * @param nanos the duration to record, in nanoseconds
+	 */
+	public void record( long nanos )
+	{
+		if ( nanos < 0L ) {
+			nanos = 0L;
+		}
+		buckets.getAndIncrement( bucketIndex( nanos ) );
+		sum.add( nanos );
+		long currentMax;
+		while( nanos > (currentMax = max.get()) ) {
+			if ( max.compareAndSet( currentMax, nanos ) ) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Records the time elapsed since <code>startNanos</code>.
+	 * @param startNanos a value previously returned by {@link System#nanoTime()}
+	 */
+	public void recordSince( long startNanos )
+	{
+		record( System.nanoTime() - startNanos );
+	}
+
+	/**
+	 * Returns a snapshot of the durations recorded so far.
+	 * Durations recorded while the snapshot is taken may or may not be part of it.
+	 * @return a snapshot of this histogram
+	 */
+	public Snapshot snapshot()
+	{
+		long[] counts = new long[ BUCKETS ];
+		long count = 0L;
+		for( int i = 0; i < BUCKETS; i++ ) {
+			counts[ i ] = buckets.get( i );
+			count += counts[ i ];
+		}
+		return new Snapshot( counts, count, sum.sum(), max.get() );
+	}
+
+	/**
+	 * The durations recorded by a histogram at a given time.
+	 */
+	public static class Snapshot
+	{
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long max;
+
+		private Snapshot( long[] counts, long count, long sum, long max )
+		{
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		/**
+		 * Returns the number of recorded durations.
+		 * @return the number of recorded durations
+		 */
+		public long count()
+		{
+			return count;
+		}
+
+		/**
+		 * Returns the sum of the recorded durations, in nanoseconds.
+		 * @return the sum of the recorded durations
+		 */
+		public long sum()
+		{
+			return sum;
+		}
+
+		/**
+		 * Returns the longest recorded duration, in nanoseconds.
+		 * @return the longest recorded duration
+		 */
+		public long max()
+		{
+			return max;
+		}
+
+		/**
+		 * Returns (an upper bound of) the duration below which the passed
+		 * fraction of the recorded durations falls, in nanoseconds.
+		 * @param quantile the fraction, between 0 and 1
+		 * @return the duration at the passed quantile, or 0 if no durations were recorded
+		 */
+		public long valueAt( double quantile )
+		{
+			if ( count == 0L ) {
+				return 0L;
+			}
+			long rank = Math.max( 1L, (long)Math.ceil( quantile * count ) );
+			long seen = 0L;
+			for( int i = 0; i < counts.length; i++ ) {
+				seen += counts[ i ];
+				if ( seen >= rank ) {
+					return Math.min( bucketUpperBound( i ), max );
+				}
+			}
+			return max;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+
+package jolie.monitoring.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+/**
+ * Serves the metrics of a registry over HTTP, in the Prometheus text
+ * exposition format, at the <code>/metrics</code> path.
+ *
+ * The endpoint is served by a single thread of its own, so scraping
+ * the metrics does not use the threads of the interpreter.
+ * @author Fabrizio Montesi
+ */
+public class MetricsHttpEndpoint
+{
+	public static final String PATH = "/metrics";
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final HttpServer server;
+
+	/**
+	 * Constructor. The endpoint is not started.
+	 * @param registry the registry whose metrics are served
+	 * @param address the address to listen on
+	 * @throws IOException if the address can not be bound
+	 */
+	public MetricsHttpEndpoint( final MetricsRegistry registry, InetSocketAddress address )
+		throws IOException
+	{
+		server = HttpServer.create( address, 0 );
+		server.createContext( PATH, new HttpHandler() {
+			public void handle( HttpExchange exchange )
+				throws IOException
+			{
+				try {
+					String method = exchange.getRequestMethod();
+					if ( "GET".equals( method ) || "HEAD".equals( method ) ) {
+						byte[] body = registry.toText().getBytes( "UTF-8" );
+						exchange.getResponseHeaders().set( "Content-Type", CONTENT_TYPE );
+						if ( "HEAD".equals( method ) ) {
+							exchange.sendResponseHeaders( 200, -1 );
+						} else {
+							exchange.sendResponseHeaders( 200, body.length );
+							OutputStream ostream = exchange.getResponseBody();
+							ostream.write( body );
+							ostream.close();
+						}
+					} else {
+						exchange.getResponseHeaders().set( "Allow", "GET, HEAD" );
+						exchange.sendResponseHeaders( 405, -1 );
+					}
+				} finally {
+					exchange.close();
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Starts serving the metrics.
+	 */
+	public void start()
+	{
+		server.start();
+	}
+
+	/**
+	 * Stops serving the metrics, closing the listening socket.
+	 */
+	public void stop()
+	{
+		server.stop( 0 );
+	}
+
+	/**
+	 * Returns the address this endpoint listens on.
+	 * @return the address this endpoint listens on
+	 */
+	public InetSocketAddress address()
+	{
+		return server.getAddress();
+	}
+}
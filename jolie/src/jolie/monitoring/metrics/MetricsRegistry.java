@@ -0,0 +1,297 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+
+package jolie.monitoring.metrics;
+
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import jolie.runtime.Value;
+
+/**
+ * A registry of named metrics: counters, gauges and latency histograms.
+ *
+ * Metrics with the same name form a family and are told apart by their labels,
+ * given as alternating label names and values, e.g.
+ * <code>counter( "calls_total", "Calls", "operation", "echo" )</code>.
+ * Looking up a metric builds its key, so code on a hot path should keep
+ * a reference to the metrics it updates instead of looking them up every time.
+ *
+ * The registry can be read in the Prometheus text exposition format, where
+ * histograms are exposed as summaries in seconds, or as a Jolie value.
+ * @author Fabrizio Montesi
+ */
+public class MetricsRegistry
+{
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+	private static final String[] QUANTILE_NODES = { "p50", "p90", "p99", "p999" };
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	private static enum Kind
+	{
+		COUNTER( "counter" ),
+		GAUGE( "gauge" ),
+		HISTOGRAM( "summary" );
+
+		private final String exposedType;
+
+		private Kind( String exposedType )
+		{
+			this.exposedType = exposedType;
+		}
+	}
+
+	private static class Family
+	{
+		private final String name;
+		private final String help;
+		private final Kind kind;
+		// Label string -> metric
+		private final ConcurrentMap< String, Series > series = new ConcurrentSkipListMap< String, Series >();
+
+		private Family( String name, String help, Kind kind )
+		{
+			this.name = name;
+			this.help = help;
+			this.kind = kind;
+		}
+	}
+
+	private static class Series
+	{
+		private final String[] labels;
+		private final Object metric;
+
+		private Series( String[] labels, Object metric )
+		{
+			this.labels = labels;
+			this.metric = metric;
+		}
+	}
+
+	private final ConcurrentMap< String, Family > families = new ConcurrentSkipListMap< String, Family >();
+
+	/**
+	 * Returns the counter with the passed name and labels, creating it if it does not exist.
+	 * @param name the name of the counter
+	 * @param help a description of the counter
+	 * @param labels alternating label names and values
+	 * @return the counter
+	 * @throws IllegalArgumentException if a metric of another kind has the same name
+	 */
+	public StripedCounter counter( String name, String help, String... labels )
+	{
+		return (StripedCounter)getOrCreate( name, help, Kind.COUNTER, labels, null );
+	}
+
+	/**
+	 * Returns the histogram with the passed name and labels, creating it if it does not exist.
+	 * @param name the name of the histogram
+	 * @param help a description of the histogram
+	 * @param labels alternating label names and values
+	 * @return the histogram
+	 * @throws IllegalArgumentException if a metric of another kind has the same name
+	 */
+	public LatencyHistogram histogram( String name, String help, String... labels )
+	{
+		return (LatencyHistogram)getOrCreate( name, help, Kind.HISTOGRAM, labels, null );
+	}
+
+	/**
+	 * Registers a gauge with the passed name and labels, replacing
+	 * the gauge previously registered with them (if any).
+	 * @param name the name of the gauge
+	 * @param help a description of the gauge
+	 * @param gauge the gauge
+	 * @param labels alternating label names and values
+	 * @throws IllegalArgumentException if a metric of another kind has the same name
+	 */
+	public void gauge( String name, String help, Gauge gauge, String... labels )
+	{
+		getOrCreate( name, help, Kind.GAUGE, labels, gauge );
+	}
+
+	private Object getOrCreate( String name, String help, Kind kind, String[] labels, Gauge gauge )
+	{
+		if ( labels.length % 2 != 0 ) {
+			throw new IllegalArgumentException( "Metric labels must be name/value pairs: " + name );
+		}
+		Family family = families.get( name );
+		if ( family == null ) {
+			Family newFamily = new Family( name, help, kind );
+			family = families.putIfAbsent( name, newFamily );
+			if ( family == null ) {
+				family = newFamily;
+			}
+		}
+		if ( family.kind != kind ) {
+			throw new IllegalArgumentException( "Metric " + name + " is a " + family.kind.exposedType );
+		}
+
+		String key = labelString( labels );
+		if ( kind == Kind.GAUGE ) {
+			family.series.put( key, new Series( labels.clone(), gauge ) );
+			return gauge;
+		}
+		Series series = family.series.get( key );
+		if ( series == null ) {
+			Object metric = ( kind == Kind.COUNTER ) ? new StripedCounter() : new LatencyHistogram();
+			Series newSeries = new Series( labels.clone(), metric );
+			series = family.series.putIfAbsent( key, newSeries );
+			if ( series == null ) {
+				series = newSeries;
+			}
+		}
+		return series.metric;
+	}
+
+	private static String labelString( String[] labels )
+	{
+		if ( labels.length == 0 ) {
+			return "";
+		}
+		StringBuilder builder = new StringBuilder();
+		for( int i = 0; i < labels.length; i += 2 ) {
+			builder.append( ( i == 0 ) ? '{' : ',' )
+				.append( labels[ i ] )
+				.append( "=\"" );
+			escape( labels[ i + 1 ], builder );
+			builder.append( '"' );
+		}
+		return builder.append( '}' ).toString();
+	}
+
+	private static void escape( String str, StringBuilder builder )
+	{
+		for( int i = 0; i < str.length(); i++ ) {
+			char c = str.charAt( i );
+			switch( c ) {
+			case '\\':
+				builder.append( "\\\\" );
+				break;
+			case '"':
+				builder.append( "\\\"" );
+				break;
+			case '\n':
+				builder.append( "\\n" );
+				break;
+			default:
+				builder.append( c );
+			}
+		}
+	}
+
+	private static String withLabel( String key, String name, String value )
+	{
+		String label = name + "=\"" + value + "\"";
+		return key.isEmpty() ? ( "{" + label + "}" ) : ( key.substring( 0, key.length() - 1 ) + "," + label + "}" );
+	}
+
+	private static String seconds( long nanos )
+	{
+		return Double.toString( nanos / NANOS_PER_SECOND );
+	}
+
+	/**
+	 * Returns all the metrics in the Prometheus text exposition format.
+	 * @return all the metrics in the Prometheus text exposition format
+	 */
+	public String toText()
+	{
+		StringBuilder builder = new StringBuilder();
+		for( Family family : families.values() ) {
+			builder.append( "# HELP " ).append( family.name ).append( ' ' ).append( family.help ).append( '\n' );
+			builder.append( "# TYPE " ).append( family.name ).append( ' ' ).append( family.kind.exposedType ).append( '\n' );
+			for( Entry< String, Series > entry : family.series.entrySet() ) {
+				String key = entry.getKey();
+				Object metric = entry.getValue().metric;
+				switch( family.kind ) {
+				case COUNTER:
+					appendSample( builder, family.name, key, Long.toString( ((StripedCounter)metric).sum() ) );
+					break;
+				case GAUGE:
+					appendSample( builder, family.name, key, Long.toString( ((Gauge)metric).value() ) );
+					break;
+				case HISTOGRAM:
+					LatencyHistogram.Snapshot snapshot = ((LatencyHistogram)metric).snapshot();
+					for( double quantile : QUANTILES ) {
+						appendSample(
+							builder, family.name,
+							withLabel( key, "quantile", Double.toString( quantile ) ),
+							seconds( snapshot.valueAt( quantile ) )
+						);
+					}
+					appendSample( builder, family.name + "_sum", key, seconds( snapshot.sum() ) );
+					appendSample( builder, family.name + "_count", key, Long.toString( snapshot.count() ) );
+					break;
+				}
+			}
+		}
+		return builder.toString();
+	}
+
+	private static void appendSample( StringBuilder builder, String name, String labels, String value )
+	{
+		builder.append( name ).append( labels ).append( ' ' ).append( value ).append( '\n' );
+	}
+
+	/**
+	 * Returns all the metrics as a Jolie value, with a <code>metric</code>
+	 * child for each of them. Histogram durations are in nanoseconds.
+	 * @return all the metrics as a Jolie value
+	 */
+	public Value toValue()
+	{
+		Value ret = Value.create();
+		for( Family family : families.values() ) {
+			for( Series series : family.series.values() ) {
+				Value m = ret.getNewChild( "metric" );
+				m.getFirstChild( "name" ).setValue( family.name );
+				m.getFirstChild( "type" ).setValue( family.kind.exposedType );
+				if ( series.labels.length > 0 ) {
+					Value labels = m.getFirstChild( "labels" );
+					for( int i = 0; i < series.labels.length; i += 2 ) {
+						labels.getFirstChild( series.labels[ i ] ).setValue( series.labels[ i + 1 ] );
+					}
+				}
+				switch( family.kind ) {
+				case COUNTER:
+					m.getFirstChild( "value" ).setValue( ((StripedCounter)series.metric).sum() );
+					break;
+				case GAUGE:
+					m.getFirstChild( "value" ).setValue( ((Gauge)series.metric).value() );
+					break;
+				case HISTOGRAM:
+					LatencyHistogram.Snapshot snapshot = ((LatencyHistogram)series.metric).snapshot();
+					m.getFirstChild( "count" ).setValue( snapshot.count() );
+					m.getFirstChild( "sum" ).setValue( snapshot.sum() );
+					m.getFirstChild( "max" ).setValue( snapshot.max() );
+					for( int i = 0; i < QUANTILES.length; i++ ) {
+						m.getFirstChild( QUANTILE_NODES[ i ] ).setValue( snapshot.valueAt( QUANTILES[ i ] ) );
+					}
+					break;
+				}
+			}
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,96 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.monitoring.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which can be updated by many threads without contending
+ * on a single memory location.
+ *
+ * Each thread updates one of a fixed number of cells, chosen by its id.
+ * Cells are spaced so that they do not share cache lines.
+ * Reading the counter sums all the cells, so it is slower than updating it.
+ * @author Fabrizio Montesi
+ */
+public class StripedCounter
+{
+	private static final int STRIPES = stripes();
+	private static final int PADDING = 8; // Longs in a (64 bytes) cache line
+
+	private final AtomicLongArray cells = new AtomicLongArray( STRIPES * PADDING );
+
+	private static int stripes()
+	{
+		int n = Math.min( Runtime.getRuntime().availableProcessors() * 2, 64 );
+		int stripes = 1;
+		while( stripes < n ) {
+			stripes <<= 1;
+		}
+		return stripes;
+	}
+
+	private static int cell()
+	{
+		long id = Thread.currentThread().getId();
+		return (int)((id ^ (id >>> 16)) & (STRIPES - 1)) * PADDING;
+	}
+
+	/**
+	 * Adds the passed amount to this counter.
+	 * @param amount the amount to add, which may be negative
+	 */
+	public void add( long amount )
+	{
+		cells.getAndAdd( cell(), amount );
+	}
+
+	/**
+	 * Adds one to this counter.
+	 */
+	public void increment()
+	{
+		cells.getAndIncrement( cell() );
+	}
+
+	/**
+	 * Subtracts one from this counter.
+	 */
+	public void decrement()
+	{
+		cells.getAndDecrement( cell() );
+	}
+
+	/**
+	 * Returns the value of this counter.
+	 * The value is not an atomic snapshot if the counter is being updated concurrently.
+	 * @return the value of this counter
+	 */
+	public long sum()
+	{
+		long sum = 0L;
+		for( int i = 0; i < cells.length(); i += PADDING ) {
+			sum += cells.get( i );
+		}
+		return sum;
+	}
+}
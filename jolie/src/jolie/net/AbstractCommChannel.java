@@ -222,7 +222,12 @@ public abstract class AbstractCommChannel extends CommChannel
 			while( keepRun ) {
 				synchronized( parent.responseRecvMutex ) {
 					try {
-						response = parent.recv();
+						/*
+						 * Shareable channels are not locked while waiting for a response,
+						 * so that other requesters can send through them in the meantime.
+						 * Receivers are serialized by responseRecvMutex anyway.
+						 */
+						response = parent.isShareable() ? parent.measuredRecvImpl() : parent.recv();
 						if ( response != null ) {
 							if ( response.hasGenericId() ) {
 								handleGenericMessage( response );
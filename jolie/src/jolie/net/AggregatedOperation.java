@@ -180,7 +180,7 @@ public abstract class AggregatedOperation
 				State state = initThread.state().clone();
 				Process p = new RequestResponseProcess( operation, inputVariablePath, outputVariablePath, courierProcess )
 								.receiveMessage( new SessionMessage( requestMessage, channel ), state );
-				new SessionThread( p, state, initThread ).start();
+				interpreter.startSession( new SessionThread( p, state, initThread ) );
 			} catch( TypeCheckingException e ) {
 				interpreter.logWarning( "Received message TypeMismatch (input operation " + operation.id() + "): " + e.getMessage() );
 				try {
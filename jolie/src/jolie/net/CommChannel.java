@@ -24,6 +24,7 @@ package jolie.net;
 
 import java.io.IOException;
 import java.util.concurrent.locks.ReentrantLock;
+import jolie.monitoring.metrics.InterpreterMetrics;
 import jolie.net.ports.InputPort;
 import jolie.net.ports.OutputPort;
 import jolie.net.ports.Port;
@@ -57,6 +58,13 @@ public abstract class CommChannel
 	
 	private TimeoutHandler timeoutHandler = null;
 
+	/*
+	 * Requesters that took this (shareable) channel from the persistent
+	 * channel cache and have not released it yet.
+	 * Guarded by the persistent channel cache of CommCore.
+	 */
+	private int inFlightCalls = 0;
+
 	protected void setTimeoutHandler( TimeoutHandler timeoutHandler )
 	{
 		this.timeoutHandler = timeoutHandler;
@@ -67,6 +75,22 @@ public abstract class CommChannel
 		return timeoutHandler;
 	}
 
+	void addInFlightCall()
+	{
+		inFlightCalls++;
+	}
+
+	/*
+	 * Returns the number of the requesters still using this channel.
+	 */
+	int removeInFlightCall()
+	{
+		if ( inFlightCalls > 0 ) {
+			inFlightCalls--;
+		}
+		return inFlightCalls;
+	}
+
 	protected long redirectionMessageId()
 	{
 		return redirectionMessageId;
@@ -181,6 +205,16 @@ public abstract class CommChannel
 		return false;
 	}
 
+	/**
+	 * Returns <code>true</code> if this channel can be used concurrently
+	 * by many requesters, without waiting for each other's responses.
+	 * @return <code>true</code> if this channel can be shared
+	 */
+	protected boolean isShareable()
+	{
+		return false;
+	}
+
 	/**
 	 * Receives a message from the channel. This is a blocking operation.
 	 * @return the received message
@@ -191,11 +225,11 @@ public abstract class CommChannel
 	{
 		CommMessage ret;
 		if ( lock.isHeldByCurrentThread() ) {
-			ret = recvImpl();
+			ret = measuredRecvImpl();
 		} else {
 			lock.lock();
 			try {
-				ret = recvImpl();
+				ret = measuredRecvImpl();
 			} finally {
 				lock.unlock();
 			}
@@ -221,11 +255,11 @@ public abstract class CommChannel
 		throws IOException
 	{
 		if ( lock.isHeldByCurrentThread() ) {
-			sendImpl( message );
+			measuredSendImpl( message );
 		} else {
 			lock.lock();
 			try {
-				sendImpl( message );
+				measuredSendImpl( message );
 			} finally {
 				lock.unlock();
 			}
@@ -237,6 +271,66 @@ public abstract class CommChannel
 	
 	protected abstract void sendImpl( CommMessage message )
 		throws IOException;
+
+	/**
+	 * Returns the name of the protocol used by this channel, under which
+	 * the runtime metrics of the channel are recorded.
+	 * Channels not using a protocol, e.g. those of embedded services, are <code>local</code>.
+	 * @return the name of the protocol used by this channel
+	 */
+	protected String protocolName()
+	{
+		return "local";
+	}
+
+	/**
+	 * Calls {@link #recvImpl()}, recording the reception in the runtime metrics.
+	 * @return the received message
+	 * @throws IOException in case of some communication error
+	 */
+	protected final CommMessage measuredRecvImpl()
+		throws IOException
+	{
+		InterpreterMetrics metrics = InterpreterMetrics.current();
+		if ( metrics == null ) {
+			return recvImpl();
+		}
+		long startNanos = System.nanoTime();
+		CommMessage ret;
+		try {
+			ret = recvImpl();
+		} catch( IOException e ) {
+			metrics.channel( protocolName() ).received( startNanos, false );
+			throw e;
+		}
+		if ( ret != null ) {
+			metrics.channel( protocolName() ).received( startNanos, true );
+		}
+		return ret;
+	}
+
+	/**
+	 * Calls {@link #sendImpl(CommMessage)}, recording the sending in the runtime metrics.
+	 * @param message the message to send
+	 * @throws IOException in case of some communication error
+	 */
+	protected final void measuredSendImpl( CommMessage message )
+		throws IOException
+	{
+		InterpreterMetrics metrics = InterpreterMetrics.current();
+		if ( metrics == null ) {
+			sendImpl( message );
+			return;
+		}
+		long startNanos = System.nanoTime();
+		try {
+			sendImpl( message );
+		} catch( IOException e ) {
+			metrics.channel( protocolName() ).sent( startNanos, false );
+			throw e;
+		}
+		metrics.channel( protocolName() ).sent( startNanos, true );
+	}
 	
 	/**
 	 * Releases this CommChannel, making it available
@@ -41,6 +41,7 @@ import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.logging.Logger;
 
 import java.util.regex.Pattern;
@@ -111,7 +112,19 @@ public class CommCore
 			if ( protocolChannels != null ) {
 				ret = protocolChannels.get( protocol );
 				if ( ret != null ) {
-					if ( ret.lock.tryLock() ) {
+					if ( ret.isShareable() ) {
+						/*
+						 * Shareable channels stay in the cache while in use,
+						 * so that concurrent requesters pipeline their requests on them.
+						 */
+						if ( ret.isOpen() ) {
+							ret.addInFlightCall();
+							ret.setTimeoutHandler( null );
+						} else {
+							removePersistentChannel( location, protocol, protocolChannels );
+							ret = null;
+						}
+					} else if ( ret.lock.tryLock() ) {
 						if ( ret.isOpen() ) {
 							/*
 							 * We are going to return this channel, but first
@@ -176,6 +189,14 @@ public class CommCore
 	public void putPersistentChannel( URI location, String protocol, final CommChannel channel )
 	{
 		synchronized( persistentChannels ) {
+			if ( channel.isShareable() && channel.removeInFlightCall() > 0 ) {
+				/*
+				 * Other requesters are still using this channel,
+				 * so it must not time out: the last one to release it
+				 * will put it back.
+				 */
+				return;
+			}
 			Map< String, CommChannel > protocolChannels = persistentChannels.get( location );
 			if ( protocolChannels == null ) {
 				protocolChannels = new HashMap< String, CommChannel >();
@@ -538,6 +559,7 @@ public class CommCore
 						//channel.release();
 					}
 				} catch( TypeCheckingException e ) {
+					interpreter.metrics().typeMismatch();
 					interpreter.logWarning( "Received message TypeMismatch (input operation " + operation.id() + "): " + e.getMessage() );
 					try {
 						channel.send( CommMessage.createFaultResponse( message, new FaultException( jolie.lang.Constants.TYPE_MISMATCH_FAULT_NAME, e.getMessage() ) ) );
@@ -549,6 +571,7 @@ public class CommCore
 					channel.send( CommMessage.createFaultResponse( message, new FaultException( "CorrelationError", "The message you sent can not be correlated with any session and can not be used to start a new session." ) ) );
 				}
 			} catch( InvalidIdException e ) {
+				interpreter.metrics().undefinedOperation();
 				interpreter.logWarning( "Received a message for undefined operation " + message.operationName() + ". Sending IOException to the caller." );
 				channel.send( CommMessage.createFaultResponse( message, new FaultException( "IOException", "Invalid operation: " + message.operationName() ) ) );
 			} finally {
@@ -569,6 +592,7 @@ public class CommCore
 					} else {
 						AggregatedOperation operation = port.getAggregatedOperation( message.operationName() );
 						if ( operation == null ) {
+							interpreter.metrics().undefinedOperation();
 							interpreter.logWarning(
 								"Received a message for operation " + message.operationName() +
 									", not specified in the input port at the receiving service. Sending IOException to the caller."
@@ -593,9 +617,11 @@ public class CommCore
 			try {
 				if ( channel.redirectionChannel() == null ) {
 					assert( port != null );
+					long startNanos = System.nanoTime();
 					CommMessage message = channel.recv();
 					if ( message != null ) {
 						handleMessage( message );
+						interpreter.metrics().messageHandled( startNanos );
 					}
 				} else {
 					channel.lock.unlock();
@@ -638,6 +664,46 @@ public class CommCore
 	{
 		executorService.execute( r );
 	}
+
+	/**
+	 * Returns the number of tasks, e.g. received messages, waiting for
+	 * a thread of this CommCore to handle them.
+	 * @return the number of tasks waiting for a thread
+	 */
+	public int pendingTaskCount()
+	{
+		if ( executorService instanceof ThreadPoolExecutor ) {
+			return ((ThreadPoolExecutor)executorService).getQueue().size();
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the number of threads of this CommCore which are handling a task.
+	 * @return the number of threads handling a task
+	 */
+	public int activeThreadCount()
+	{
+		if ( executorService instanceof ThreadPoolExecutor ) {
+			return ((ThreadPoolExecutor)executorService).getActiveCount();
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the number of output channels kept open for reuse.
+	 * @return the number of persistent channels
+	 */
+	public int persistentChannelCount()
+	{
+		int count = 0;
+		synchronized( persistentChannels ) {
+			for( Map< String, CommChannel > protocolChannels : persistentChannels.values() ) {
+				count += protocolChannels.size();
+			}
+		}
+		return count;
+	}
 	
 	/**
 	 * Initializes the communication core, starting its communication listeners.
@@ -748,7 +814,83 @@ public class CommCore
 	{
 		pollingThread().register( channel );
 	}
-	
+
+	private final Set< CommChannel > waitingChannels = new HashSet< CommChannel >();
+	private ExecutorService waitingExecutorService = null;
+
+	private ExecutorService waitingExecutorService()
+	{
+		synchronized( this ) {
+			if ( waitingExecutorService == null ) {
+				waitingExecutorService = Executors.newCachedThreadPool( new CommThreadFactory() );
+			}
+		}
+		return waitingExecutorService;
+	}
+
+	private class WaitingRunnable implements Runnable {
+		private final CommChannel channel;
+
+		private WaitingRunnable( CommChannel channel )
+		{
+			this.channel = channel;
+		}
+
+		public void run()
+		{
+			boolean ready = false;
+			try {
+				ready = ((PollableCommChannel)channel).isReady();
+			} catch( IOException e ) {
+				if ( active && interpreter.verbose() ) {
+					interpreter.logWarning( e );
+				}
+			}
+
+			synchronized( waitingChannels ) {
+				waitingChannels.remove( channel );
+			}
+
+			if ( ready && active ) {
+				scheduleReceive( channel, channel.parentInputPort() );
+			} else {
+				try {
+					channel.closeImpl();
+				} catch( IOException e ) {
+					interpreter.logWarning( e );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Registers a <code>CommChannel</code> for blocking input waiting.
+	 * The registered channel must implement the {@link PollableCommChannel <code>PollableCommChannel</code>} interface,
+	 * and its <code>isReady</code> method must block until some input is available
+	 * (returning <code>true</code>) or the end of the stream is reached (returning <code>false</code>).
+	 * Instead of being polled periodically, the channel is waited on by a thread of an
+	 * internal pool, which schedules the receiving of a message as soon as the channel is ready.
+	 * Channels reaching the end of their stream are closed.
+	 * @param channel the channel to register for waiting
+	 * @throws java.io.IOException in case the channel could not be registered for waiting
+	 * @see CommChannel
+	 * @see PollableCommChannel
+	 */
+	public void registerForWaiting( CommChannel channel )
+		throws IOException
+	{
+		if ( !(channel instanceof PollableCommChannel) ) {
+			throw new IOException( "Channels registering for waiting must implement PollableCommChannel interface" );
+		}
+
+		synchronized( waitingChannels ) {
+			if ( waitingChannels.add( channel ) == false ) {
+				return;
+			}
+		}
+		waitingExecutorService().execute( new WaitingRunnable( channel ) );
+	}
+
 	private SelectorThread selectorThread = null;
 	
 	private SelectorThread selectorThread()
@@ -948,6 +1090,19 @@ public class CommCore
 				selectorThread.selector.wakeup();
 			}
 			executorService.shutdown();
+			if ( waitingExecutorService != null ) {
+				// Closing the waited channels releases the threads blocked on them
+				synchronized( waitingChannels ) {
+					for( CommChannel c : waitingChannels ) {
+						try {
+							c.closeImpl();
+						} catch( IOException e ) {
+							interpreter.logWarning( e );
+						}
+					}
+				}
+				waitingExecutorService.shutdown();
+			}
 			threadGroup.interrupt();
 		}
 	}
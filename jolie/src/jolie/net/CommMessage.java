@@ -112,7 +112,11 @@ public class CommMessage implements Serializable
 		return id;
 	}
 
-	private static long getNewMessageId()
+	/**
+	 * Returns a new message identifier, unique in this interpreter.
+	 * @return a new message identifier
+	 */
+	public static long getNewMessageId()
 	{
 		return idCounter.getAndIncrement();
 	}
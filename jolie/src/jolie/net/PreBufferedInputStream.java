@@ -60,7 +60,35 @@ public class PreBufferedInputStream extends InputStream
 			readPos = 0;
 		}
 
-		return buffer[ readPos++ ];
+		return buffer[ readPos++ ] & 0xFF;
+	}
+
+	@Override
+	public synchronized int read( byte[] b, int off, int len )
+		throws IOException
+	{
+		if ( buffer == null ) {
+			throw new IOException( "Stream closed" );
+		}
+
+		if ( len == 0 ) {
+			return 0;
+		}
+
+		if ( count < 1 ) { // No cached bytes, read in bulk from the underlying stream
+			return istream.read( b, off, len );
+		}
+
+		int n = 0;
+		while( count > 0 && n < len ) {
+			if ( readPos >= buffer.length ) {
+				readPos = 0;
+			}
+			b[ off + n ] = buffer[ readPos++ ];
+			count--;
+			n++;
+		}
+		return n;
 	}
 
 	public synchronized void append( byte b )
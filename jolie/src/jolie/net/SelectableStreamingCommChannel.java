@@ -76,10 +76,10 @@ public abstract class SelectableStreamingCommChannel extends StreamingCommChanne
 		final CommCore commCore = Interpreter.getInstance().commCore();
 		if ( commCore.isSelecting( this ) ) {
 			commCore.unregisterForSelection( this );
-			sendImpl( message );
+			measuredSendImpl( message );
 			commCore.registerForSelection( this );
 		} else {
-			sendImpl( message );
+			measuredSendImpl( message );
 		}
 	}
 
@@ -112,14 +112,14 @@ public abstract class SelectableStreamingCommChannel extends StreamingCommChanne
 	{
 		if ( lock.isHeldByCurrentThread() ) {
 			final CommCore commCore = Interpreter.getInstance().commCore();
-			if ( commCore.isSelecting( this ) == false ) {
+			if ( commCore.isSelecting( this ) == false && protocol().hasPendingResponses() == false ) {
 				super.releaseImpl();
 			}
 		} else {
 			lock.lock();
 			try {
 				final CommCore commCore = Interpreter.getInstance().commCore();
-				if ( commCore.isSelecting( this ) == false ) {
+				if ( commCore.isSelecting( this ) == false && protocol().hasPendingResponses() == false ) {
 					super.releaseImpl();
 				}
 			} finally {
@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.net.URI;
 import jolie.Interpreter;
 import jolie.net.protocols.CommProtocol;
+import jolie.net.protocols.ConcurrentCommProtocol;
 
 /**
  * This abstract class implements a communication channel based on a <code>CommProtocol</code>.
@@ -46,6 +47,12 @@ public abstract class StreamingCommChannel extends AbstractCommChannel
 	{
 		return protocol;
 	}
+
+	@Override
+	protected String protocolName()
+	{
+		return protocol.name();
+	}
 	
 	@Override
 	protected boolean isThreadSafe()
@@ -53,6 +60,13 @@ public abstract class StreamingCommChannel extends AbstractCommChannel
 		return protocol.isThreadSafe();
 	}
 
+	@Override
+	protected boolean isShareable()
+	{
+		return protocol instanceof ConcurrentCommProtocol
+			&& ((ConcurrentCommProtocol)protocol).isShareable();
+	}
+
 	private void _releaseImpl()
 		throws IOException
 	{
@@ -218,4 +218,15 @@ public abstract class CommProtocol
 		throws IOException;
 
 	abstract public boolean isThreadSafe();
+
+	/**
+	 * Returns <code>true</code> if this protocol has received requests whose
+	 * responses have not been sent yet, e.g. because they are being answered in order.
+	 * A channel using this protocol must not be closed while this holds.
+	 * @return <code>true</code> if there are responses waiting to be sent
+	 */
+	public boolean hasPendingResponses()
+	{
+		return false;
+	}
 }
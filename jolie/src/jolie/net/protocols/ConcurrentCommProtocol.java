@@ -38,4 +38,16 @@ public abstract class ConcurrentCommProtocol extends CommProtocol
 	{
 		return true;
 	}
+
+	/**
+	 * Returns <code>true</code> if a channel using this protocol can be
+	 * shared by many concurrent requesters, which send their requests
+	 * without waiting for the responses to the others.
+	 * Responses must then be matched to their requests by this protocol.
+	 * @return <code>true</code> if a channel using this protocol can be shared
+	 */
+	public boolean isShareable()
+	{
+		return false;
+	}
 }
@@ -62,6 +62,7 @@ public class OneWayProcess implements InputOperationProcess
 
 	public Process receiveMessage( final SessionMessage sessionMessage, jolie.State state )
 	{
+		Interpreter.getInstance().metrics().operation( operation.id() ).called();
 		if ( Interpreter.getInstance().isMonitoring() && !isSessionStarter ) {
 			Interpreter.getInstance().fireMonitorEvent( new OperationStartedEvent( operation.id(), ExecutionThread.currentThread().getSessionId() ) );
 		}
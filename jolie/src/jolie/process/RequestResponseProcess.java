@@ -91,6 +91,8 @@ public class RequestResponseProcess implements InputOperationProcess
 	
 	public Process receiveMessage( final SessionMessage sessionMessage, jolie.State state )
 	{
+		final long startNanos = System.nanoTime();
+		Interpreter.getInstance().metrics().operation( operation.id() ).called();
 		if ( Interpreter.getInstance().isMonitoring() && !isSessionStarter ) {
 			Interpreter.getInstance().fireMonitorEvent( new OperationStartedEvent( operation.id(), ExecutionThread.currentThread().getSessionId() ) );
 		}
@@ -104,7 +106,7 @@ public class RequestResponseProcess implements InputOperationProcess
 			public void run()
 				throws FaultException, ExitingException
 			{
-				runBehaviour( sessionMessage.channel(), sessionMessage.message() );
+				runBehaviour( sessionMessage.channel(), sessionMessage.message(), startNanos );
 			}
 
 			public Process clone( TransformationReason reason )
@@ -164,7 +166,7 @@ public class RequestResponseProcess implements InputOperationProcess
 		return CommMessage.createFaultResponse( request, f );
 	}
 	
-	private void runBehaviour( CommChannel channel, CommMessage message )
+	private void runBehaviour( CommChannel channel, CommMessage message, long startNanos )
 		throws FaultException
 	{
 		// Variables for monitor
@@ -226,6 +228,7 @@ public class RequestResponseProcess implements InputOperationProcess
 		try {
 			channel.send( response );
 			log( "sent response for message " + message.id() );
+			Interpreter.getInstance().metrics().operation( operation.id() ).responded( startNanos, response.isFault() );
 			if ( Interpreter.getInstance().isMonitoring() ) {
 				Interpreter.getInstance().fireMonitorEvent( new OperationEndedEvent( operation.id(), ExecutionThread.currentThread().getSessionId(), responseStatus, details));
 			}
@@ -90,7 +90,7 @@ public class ParallelExecution
 	{
 		synchronized( this ) {
 			for( ParallelThread t : threads ) {
-				t.start();
+				t.startInPool();
 			}
 
 			ExecutionThread ethread;
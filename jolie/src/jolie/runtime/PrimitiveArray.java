@@ -0,0 +1,233 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.runtime;
+
+import java.io.Serializable;
+import jolie.lang.parse.ast.types.UInt16;
+import jolie.lang.parse.ast.types.UInt32;
+import jolie.lang.parse.ast.types.UInt64;
+
+/**
+ * The primitive content of a homogeneous value vector.
+ * Each element is boxed only when the value holding it is created,
+ * i.e., the first time the element is accessed.
+ * @author Fabrizio Montesi
+ */
+abstract class PrimitiveArray implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	public abstract int length();
+	public abstract Object get( int i );
+
+	static class Bytes extends PrimitiveArray
+	{
+		private static final long serialVersionUID = 1L;
+		private final byte[] array;
+
+		Bytes( byte[] array )
+		{
+			this.array = array;
+		}
+
+		public int length()
+		{
+			return array.length;
+		}
+
+		public Object get( int i )
+		{
+			return Byte.valueOf( array[ i ] );
+		}
+	}
+
+	static class Shorts extends PrimitiveArray
+	{
+		private static final long serialVersionUID = 1L;
+		private final short[] array;
+
+		Shorts( short[] array )
+		{
+			this.array = array;
+		}
+
+		public int length()
+		{
+			return array.length;
+		}
+
+		public Object get( int i )
+		{
+			return Short.valueOf( array[ i ] );
+		}
+	}
+
+	static class Ints extends PrimitiveArray
+	{
+		private static final long serialVersionUID = 1L;
+		private final int[] array;
+
+		Ints( int[] array )
+		{
+			this.array = array;
+		}
+
+		public int length()
+		{
+			return array.length;
+		}
+
+		public Object get( int i )
+		{
+			return Integer.valueOf( array[ i ] );
+		}
+	}
+
+	static class Longs extends PrimitiveArray
+	{
+		private static final long serialVersionUID = 1L;
+		private final long[] array;
+
+		Longs( long[] array )
+		{
+			this.array = array;
+		}
+
+		public int length()
+		{
+			return array.length;
+		}
+
+		public Object get( int i )
+		{
+			return Long.valueOf( array[ i ] );
+		}
+	}
+
+	static class Doubles extends PrimitiveArray
+	{
+		private static final long serialVersionUID = 1L;
+		private final double[] array;
+
+		Doubles( double[] array )
+		{
+			this.array = array;
+		}
+
+		public int length()
+		{
+			return array.length;
+		}
+
+		public Object get( int i )
+		{
+			return Double.valueOf( array[ i ] );
+		}
+	}
+
+	static class Booleans extends PrimitiveArray
+	{
+		private static final long serialVersionUID = 1L;
+		private final boolean[] array;
+
+		Booleans( boolean[] array )
+		{
+			this.array = array;
+		}
+
+		public int length()
+		{
+			return array.length;
+		}
+
+		public Object get( int i )
+		{
+			return Boolean.valueOf( array[ i ] );
+		}
+	}
+
+	static class UInt16s extends PrimitiveArray
+	{
+		private static final long serialVersionUID = 1L;
+		private final int[] array;
+
+		UInt16s( int[] array )
+		{
+			this.array = array;
+		}
+
+		public int length()
+		{
+			return array.length;
+		}
+
+		public Object get( int i )
+		{
+			return new UInt16( array[ i ] );
+		}
+	}
+
+	static class UInt32s extends PrimitiveArray
+	{
+		private static final long serialVersionUID = 1L;
+		private final long[] array;
+
+		UInt32s( long[] array )
+		{
+			this.array = array;
+		}
+
+		public int length()
+		{
+			return array.length;
+		}
+
+		public Object get( int i )
+		{
+			return new UInt32( array[ i ] );
+		}
+	}
+
+	/*
+	 * Elements are the bits of unsigned 64-bit numbers.
+	 */
+	static class UInt64s extends PrimitiveArray
+	{
+		private static final long serialVersionUID = 1L;
+		private final long[] array;
+
+		UInt64s( long[] array )
+		{
+			this.array = array;
+		}
+
+		public int length()
+		{
+			return array.length;
+		}
+
+		public Object get( int i )
+		{
+			return new UInt64( array[ i ] >>> 32, array[ i ] & 0xFFFFFFFFL );
+		}
+	}
+}
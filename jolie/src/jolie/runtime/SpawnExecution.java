@@ -91,7 +91,7 @@ public class SpawnExecution
 
 			for( SpawnedThread t : threads ) {
 				// We start threads in this other cycle to avoid race conditions on inPath
-				t.start();
+				t.startInPool();
 			}
 
 			while( !threads.isEmpty() ) {
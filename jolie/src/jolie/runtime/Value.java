@@ -27,15 +27,22 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.math.BigInteger;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import jolie.lang.parse.ast.types.UInt16;
 import jolie.lang.parse.ast.types.UInt64;
 import jolie.net.CommChannel;
 import jolie.process.TransformationReason;
+import jolie.runtime.correlation.CorrelationValueListener;
 import jolie.runtime.typing.TypeCastingException;
 
 class ValueLink extends Value implements Cloneable
@@ -124,16 +131,152 @@ class ValueLink extends Value implements Cloneable
 class ValueImpl extends Value implements Cloneable, Serializable
 {
 	private static final long serialVersionUID = 1L;
-	
-	private Object valueObject = null;
-	private Map< String, ValueVector > children = null;
+
+	/*
+	 * Copy-on-write support.
+	 *
+	 * A lazy copy of a value does not copy its children: it reads the children
+	 * map of the copied value (its source) until it is materialized, which
+	 * happens the first time its own children are requested. Materializing a
+	 * lazy copy creates only the vectors of its first level, filled with lazy
+	 * copies of the children of the source, so a copy costs as much as the
+	 * part of it that is actually accessed.
+	 *
+	 * A children map keeps track of the lazy copies reading it. Whenever its
+	 * owner exposes it (and thus may change it or one of the values in it),
+	 * those copies are materialized first, so they keep seeing the content
+	 * the map had when they were created. The owner keeps its own children,
+	 * so references to them (e.g., correlation values) remain valid.
+	 *
+	 * The lazy copies of a children map are tracked by weak references,
+	 * guarded by the monitor of the map. That monitor is held only to update
+	 * them and never while acquiring another lock: materialized children are
+	 * built outside of it, and discarded if another thread has materialized
+	 * the same copy in the meantime.
+	 */
+
+	/*
+	 * Children can be read without locking, while they are changed
+	 * under the monitor of their owner.
+	 */
+	static class Children extends ConcurrentHashMap< String, ValueVector >
+	{
+		private static final long serialVersionUID = 1L;
+
+		private static final int MIN_PRUNE_SIZE = 16;
+
+		// Guarded by the monitor of this map
+		private transient volatile Set< WeakReference< ValueImpl > > lazyCopies = null;
+		private transient int pruneSize;
+
+		Children()
+		{
+			super( INITIAL_CAPACITY, LOAD_FACTOR, 1 );
+		}
+
+		// Requires the monitor of this map
+		private void addLazyCopy( WeakReference< ValueImpl > ref )
+		{
+			if ( lazyCopies == null ) {
+				lazyCopies = new HashSet< WeakReference< ValueImpl > >( 4 );
+				pruneSize = MIN_PRUNE_SIZE;
+			} else if ( lazyCopies.size() >= pruneSize ) {
+				// Forget the copies that have been collected, every time the set doubles
+				pruneCollected();
+				pruneSize = Math.max( MIN_PRUNE_SIZE, lazyCopies.size() * 2 );
+			}
+			lazyCopies.add( ref );
+		}
+
+		// Requires the monitor of this map
+		private void removeLazyCopy( WeakReference< ValueImpl > ref )
+		{
+			if ( lazyCopies != null ) {
+				lazyCopies.remove( ref );
+				if ( lazyCopies.isEmpty() ) {
+					lazyCopies = null;
+				}
+			}
+		}
+
+		// Requires the monitor of this map
+		private void pruneCollected()
+		{
+			Iterator< WeakReference< ValueImpl > > it = lazyCopies.iterator();
+			while( it.hasNext() ) {
+				if ( it.next().get() == null ) {
+					it.remove();
+				}
+			}
+		}
+
+		/*
+		 * Materializes the lazy copies of this map. Each of them
+		 * removes itself, so that the map can be changed afterwards.
+		 */
+		private void materializeLazyCopies()
+		{
+			List< ValueImpl > copies = new ArrayList< ValueImpl >();
+			synchronized( this ) {
+				if ( lazyCopies == null ) {
+					return;
+				}
+				pruneCollected();
+				ValueImpl copy;
+				for( WeakReference< ValueImpl > ref : lazyCopies ) {
+					if ( (copy = ref.get()) != null ) {
+						copies.add( copy );
+					}
+				}
+				if ( lazyCopies.isEmpty() ) {
+					lazyCopies = null;
+				}
+			}
+			for( ValueImpl copy : copies ) {
+				copy.materialize();
+			}
+		}
+	}
+
+	private volatile Object valueObject = null;
+	private volatile Children children = null;
+	private volatile Children lazySource = null;
+	// The reference to this value in the lazy copies of lazySource
+	private transient WeakReference< ValueImpl > lazyCopyRef = null;
 	
 	public void setValueObject( Object object )
 	{
 		valueObject = object;
 	}
 
-	public synchronized ValueVector getChildren( String childId )
+	public ValueVector getChildren( String childId )
+	{
+		Children c = ownedChildren();
+		if ( c != null ) {
+			ValueVector v = c.get( childId );
+			if ( v != null ) {
+				return v;
+			}
+		}
+		return getOrCreateChildren( childId );
+	}
+
+	/*
+	 * Returns the children of this value if they can be changed
+	 * without materializing lazy copies first, null otherwise.
+	 */
+	private Children ownedChildren()
+	{
+		if ( lazySource == null ) { // Read first: materialize sets children before clearing it
+			Children c = children;
+			if ( c != null && c.lazyCopies == null ) {
+				return c;
+			}
+		}
+		return null;
+	}
+
+	private synchronized ValueVector getOrCreateChildren( String childId )
 	{
 		ValueVector v = children().get( childId );
 		if ( v == null ) {
@@ -147,14 +290,103 @@ class ValueImpl extends Value implements Cloneable, Serializable
 	public ValueImpl clone()
 	{
 		ValueImpl ret = new ValueImpl();
-		ret._deepCopy( this, true );
+		ret.copyLazily( this );
 		return ret;
 	}
 
+	/**
+	 * Makes this (new) value a lazy copy of the passed one.
+	 * Links in the children of other are copied as links.
+	 */
+	protected final void copyLazily( ValueImpl other )
+	{
+		valueObject = other.valueObject;
+		Children source = other.lazySource;
+		Children otherChildren = other.children;
+		if ( otherChildren != null ) {
+			source = otherChildren;
+		}
+		if ( source != null && !source.isEmpty() ) {
+			synchronized( source ) {
+				lazyCopyRef = new WeakReference< ValueImpl >( this );
+				lazySource = source;
+				source.addLazyCopy( lazyCopyRef );
+			}
+		}
+	}
+
+	/*
+	 * Gives this lazy copy its own children. It may be called both by
+	 * the owner of the copy and by the owner of its source: the children
+	 * built by the first one to finish are kept.
+	 */
+	private void materialize()
+	{
+		Children source = lazySource;
+		if ( source == null ) {
+			return;
+		}
+		// The source does not change until this copy is materialized
+		Children copy = new Children();
+		for( Entry< String, ValueVector > entry : source.entrySet() ) {
+			// Values are cloned lazily, links are cloned as links
+			copy.put( entry.getKey(), ValueVector.createClone( entry.getValue() ) );
+		}
+		synchronized( source ) {
+			if ( lazySource == source ) {
+				children = copy;
+				lazySource = null;
+				source.removeLazyCopy( lazyCopyRef );
+				lazyCopyRef = null;
+			}
+		}
+	}
+
+	/*
+	 * Returns the children map of this value, which must not be changed.
+	 * Used for reading without materializing a lazy copy.
+	 */
+	private Map< String, ValueVector > readChildren()
+	{
+		Children source = lazySource; // Read first: materialize sets children before clearing it
+		Children ret = children;
+		return ( ret == null ) ? source : ret;
+	}
+
 	protected void _refCopy( Value value )
 	{
 		setValueObject( value.valueObject() );
-		this.children = value.children();
+		Map< String, ValueVector > valueChildren = value.children();
+		dropLazySource();
+		this.children = (Children)valueChildren;
+	}
+
+	/*
+	 * Returns the children of the passed value without materializing it,
+	 * for reading them while copying.
+	 */
+	static Map< String, ValueVector > childrenToCopy( Value value )
+	{
+		Value v = value.evaluate();
+		if ( v instanceof ValueImpl ) {
+			Map< String, ValueVector > ret = ((ValueImpl)v).readChildren();
+			return ( ret == null ) ? Collections.<String, ValueVector>emptyMap() : ret;
+		}
+		return v.children();
+	}
+
+	private void dropLazySource()
+	{
+		Children source = lazySource;
+		if ( source != null ) {
+			synchronized( source ) {
+				if ( lazySource == source ) {
+					lazySource = null;
+					source.removeLazyCopy( lazyCopyRef );
+					lazyCopyRef = null;
+				}
+			}
+		}
 	}
 
 	public final Value evaluate()
@@ -165,6 +397,7 @@ class ValueImpl extends Value implements Cloneable, Serializable
 	public void erase()
 	{
 		valueObject = null;
+		dropLazySource();
 		children = null;
 	}
 	
@@ -177,15 +410,17 @@ class ValueImpl extends Value implements Cloneable, Serializable
 
 	public boolean hasChildren()
 	{
-		if ( children == null ) {
+		Map< String, ValueVector > c = readChildren();
+		if ( c == null ) {
 			return false;
 		}
-		return !children.isEmpty();
+		return !c.isEmpty();
 	}
 
 	public boolean hasChildren( String childId )
 	{
-		return ( children != null && children.containsKey( childId ) );
+		Map< String, ValueVector > c = readChildren();
+		return ( c != null && c.containsKey( childId ) );
 	}
 	
 	protected void _deepCopy( Value value, boolean copyLinks )
@@ -199,7 +434,7 @@ class ValueImpl extends Value implements Cloneable, Serializable
 			int i;
 			ValueImpl newValue;
 			Map< String, ValueVector > myChildren = children();
-			for( Entry< String, ValueVector > entry : value.children().entrySet() ) {
+			for( Entry< String, ValueVector > entry : ValueImpl.childrenToCopy( value ).entrySet() ) {
 				if ( copyLinks && entry.getValue().isLink() ) {
 					myChildren.put( entry.getKey(), ValueVector.createClone( entry.getValue() ) );
 				} else {
@@ -232,15 +467,31 @@ class ValueImpl extends Value implements Cloneable, Serializable
 		return vec;
 	}
 
-	private final static int INITIAL_CAPACITY = 8;
+	// Most values have few children: start with small tables
+	private final static int INITIAL_CAPACITY = 2;
 	private final static float LOAD_FACTOR = 0.75f;
 	
-	public synchronized Map< String, ValueVector > children()
+	public Map< String, ValueVector > children()
 	{
-		if ( children == null ) {
-			children = new HashMap< String, ValueVector > ( INITIAL_CAPACITY, LOAD_FACTOR );
+		Children c = ownedChildren();
+		return ( c == null ) ? materializedChildren() : c;
+	}
+
+	private synchronized Children materializedChildren()
+	{
+		Children c = children;
+		if ( lazySource != null || (c != null && c.lazyCopies != null) ) {
+			// The returned map may be changed: stop sharing it
+			materialize();
+			c = children;
+			if ( c != null ) {
+				c.materializeLazyCopies();
+			}
 		}
-		return children;
+		if ( c == null ) {
+			children = c = new Children();
+		}
+		return c;
 	}
 	
 	public Object valueObject()
@@ -264,15 +515,19 @@ class RootValueImpl extends Value implements Cloneable
 {
 	private static final long serialVersionUID = 1L;
 
-	private final static int INITIAL_CAPACITY = 8;
-	private final static float LOAD_FACTOR = 0.75f;
-
-	private final Map< String, ValueVector > children = new HashMap< String, ValueVector > ( INITIAL_CAPACITY, LOAD_FACTOR );
+	private final ValueImpl.Children children = new ValueImpl.Children();
 
+	/**
+	 * Copies the first level of this tree, whose values are copied lazily.
+	 */
 	public RootValueImpl clone()
 	{
 		RootValueImpl ret = new RootValueImpl();
-		ret._deepCopy( this, true );
+		synchronized( this ) {
+			for( Entry< String, ValueVector > entry : children.entrySet() ) {
+				ret.children.put( entry.getKey(), ValueVector.createClone( entry.getValue() ) );
+			}
+		}
 		return ret;
 	}
 
@@ -283,12 +538,15 @@ class RootValueImpl extends Value implements Cloneable
 	{}
 
 
-	public synchronized ValueVector getChildren( String childId )
+	public ValueVector getChildren( String childId )
 	{
 		ValueVector v = children.get( childId );
 		if ( v == null ) {
-			v = ValueVector.create();
-			children.put( childId, v );
+			ValueVector newVector = ValueVector.create();
+			v = children.putIfAbsent( childId, newVector );
+			if ( v == null ) {
+				v = newVector;
+			}
 		}
 
 		return v;
@@ -329,7 +587,7 @@ class RootValueImpl extends Value implements Cloneable
 		if ( value.hasChildren() ) {
 			int i;
 			ValueImpl newValue;
-			for( Entry< String, ValueVector > entry : value.children().entrySet() ) {
+			for( Entry< String, ValueVector > entry : ValueImpl.childrenToCopy( value ).entrySet() ) {
 				if ( copyLinks && entry.getValue().isLink() ) {
 					children.put( entry.getKey(), ValueVector.createClone( entry.getValue() ) );
 				} else {
@@ -370,22 +628,41 @@ class RootValueImpl extends Value implements Cloneable
 
 class CSetValue extends ValueImpl
 {
+	private final CorrelationValueListener listener;
+
+	public CSetValue()
+	{
+		this.listener = null;
+	}
+
+	public CSetValue( CorrelationValueListener listener )
+	{
+		this.listener = listener;
+	}
+
 	@Override
 	public void setValueObject( Object object )
 	{
-		//CommCore commCore = Interpreter.getInstance().commCore();
-		//synchronized( commCore.correlationLock() )
-			//removeFromRadixTree();
-			super.setValueObject( object );
-			//addToRadixTree();
-		//}
+		super.setValueObject( object );
+		if ( listener != null ) {
+			listener.onCorrelationValueChange( this );
+		}
+	}
+
+	@Override
+	public void erase()
+	{
+		super.erase();
+		if ( listener != null ) {
+			listener.onCorrelationValueChange( this );
+		}
 	}
 
 	@Override
 	public CSetValue clone()
 	{
 		CSetValue ret = new CSetValue();
-		ret._deepCopy( this, true );
+		ret.copyLazily( this );
 		return ret;
 	}
 
@@ -428,10 +705,29 @@ public abstract class Value implements Expression, Cloneable
 		return new ValueImpl();
 	}
 
+	/*
+	 * Creates the value of an element of a primitive array.
+	 */
+	static Value createFromPrimitive( Object object )
+	{
+		return new ValueImpl( object );
+	}
+
 	public final static Value createCSetValue()
 	{
 		return new CSetValue();
 	}
+
+	/**
+	 * Creates a value to be used in correlation, notifying the given listener
+	 * every time its content changes.
+	 * @param listener the listener to notify
+	 * @return a value to be used in correlation
+	 */
+	public final static Value createCSetValue( CorrelationValueListener listener )
+	{
+		return new CSetValue( listener );
+	}
 	
 	public final static Value create( Boolean bool )
 	{
@@ -498,6 +794,15 @@ public abstract class Value implements Expression, Cloneable
 		return value.clone();
 	}
 	
+	/**
+	 * Creates a copy (by value) of the parameter, considering also its sub-tree.
+	 * In case of a sub-link, its pointed Value tree is copied.
+	 * The copy is eager: message values are handed to other services
+	 * (Java services included), which may keep them, while the sender
+	 * may still hold references to the sub-values of the original tree.
+	 * @param value The value to be copied.
+	 * @return the copy
+	 */
 	public final static Value createDeepCopy( Value value )
 	{
 		Value ret = Value.create();
@@ -533,7 +838,7 @@ public abstract class Value implements Expression, Cloneable
 	@Override
 	public abstract Value clone();
 	
-	public final synchronized Value getNewChild( String childId )
+	public final Value getNewChild( String childId )
 	{
 		final ValueVector vec = getChildren( childId );
 		Value retVal = new ValueImpl();
@@ -542,7 +847,7 @@ public abstract class Value implements Expression, Cloneable
 		return retVal;
 	}
 	
-	public final synchronized Value getFirstChild( String childId )
+	public final Value getFirstChild( String childId )
 	{
 		return getChildren( childId ).get( 0 );
 	}
@@ -603,7 +908,7 @@ public abstract class Value implements Expression, Cloneable
 		setValueObject( object );
 	}
 		
-	public final synchronized boolean equals( Value val )
+	public final boolean equals( Value val )
 	{
 		boolean r = false;
 		if ( val.isDefined() ) {
@@ -639,67 +944,67 @@ public abstract class Value implements Expression, Cloneable
 		return r;
 	}
 	
-	public synchronized final boolean isInt()
+	public final boolean isInt()
 	{
 		return ( valueObject() instanceof Integer );
 	}
 	
-        public synchronized final boolean isUInt32()
+        public final boolean isUInt32()
         {
                 return ( valueObject() instanceof UInt32);
         }
 
-        public synchronized final boolean isByte()
+        public final boolean isByte()
         {
                 return ( valueObject() instanceof Byte);
         }
 
-        public synchronized final boolean isInt16()
+        public final boolean isInt16()
         {
                 return ( valueObject() instanceof Short);
         }
 
-        public synchronized final boolean isUInt16()
+        public final boolean isUInt16()
         {
                 return ( valueObject() instanceof UInt16);
         }
 
-        public synchronized final boolean isUInt64()
+        public final boolean isUInt64()
         {
                 return ( valueObject() instanceof UInt64);
         }
         
-	public synchronized final boolean isLong()
+	public final boolean isLong()
 	{
 		return ( valueObject() instanceof Long );
 	}
 	
-	public synchronized final boolean isBool()
+	public final boolean isBool()
 	{
 		return ( valueObject() instanceof Boolean );
 	}
 	
-	public synchronized final boolean isByteArray()
+	public final boolean isByteArray()
 	{
 		return ( valueObject() instanceof ByteArray );
 	}
 	
-	public synchronized final boolean isDouble()
+	public final boolean isDouble()
 	{
 		return ( valueObject() instanceof Double );
 	}
 	
-	public synchronized final boolean isString()
+	public final boolean isString()
 	{
 		return ( valueObject() instanceof String );
 	}
 	
-	public synchronized final boolean isChannel()
+	public final boolean isChannel()
 	{
 		return ( valueObject() instanceof CommChannel );
 	}
 	
-	public synchronized final boolean isDefined()
+	public final boolean isDefined()
 	{
 		return ( valueObject() != null );
 	}
@@ -709,12 +1014,13 @@ public abstract class Value implements Expression, Cloneable
 		setValueObject( value );
 	}
 	
-	public final synchronized CommChannel channelValue()
+	public final CommChannel channelValue()
 	{
-		if( isChannel() == false ) {
-			return null;
+		Object o = valueObject();
+		if( o instanceof CommChannel ) {
+			return (CommChannel)o;
 		}
-		return (CommChannel)valueObject();
+		return null;
 	}
 	
 	public String strValue()
@@ -726,7 +1032,7 @@ public abstract class Value implements Expression, Cloneable
 		}
 	}
 
-	public final synchronized String strValueStrict()
+	public final String strValueStrict()
 		throws TypeCastingException
 	{
 		Object o = valueObject();
@@ -747,7 +1053,7 @@ public abstract class Value implements Expression, Cloneable
 		}
 	}
 
-	public final synchronized ByteArray byteArrayValueStrict()
+	public final ByteArray byteArrayValueStrict()
 		throws TypeCastingException
 	{
 		ByteArray r = null;
@@ -846,7 +1152,7 @@ public abstract class Value implements Expression, Cloneable
             }
         }
         
-        public final synchronized Byte byteValueStrict()
+        public final Byte byteValueStrict()
                 throws TypeCastingException
         {
                 Byte r = new Byte((byte)0);
@@ -890,7 +1196,7 @@ public abstract class Value implements Expression, Cloneable
             }
         }
         
-        public final synchronized UInt16 uInt16ValueStrict()
+        public final UInt16 uInt16ValueStrict()
                 throws TypeCastingException
         {
             UInt16 r = new UInt16(0);
@@ -934,7 +1240,7 @@ public abstract class Value implements Expression, Cloneable
             }
         }
         
-        public final synchronized Short int16ValueStrict()
+        public final Short int16ValueStrict()
                 throws TypeCastingException
         {
                 Short r = new Short((short)0);
@@ -978,7 +1284,7 @@ public abstract class Value implements Expression, Cloneable
             }
         }
         
-        public final synchronized UInt32 uInt32ValueStrict()
+        public final UInt32 uInt32ValueStrict()
             throws TypeCastingException {
             UInt32 r = new UInt32(0);
             Object o = valueObject();
@@ -1023,7 +1329,7 @@ public abstract class Value implements Expression, Cloneable
 		}
 	}
 	
-	public final synchronized int intValueStrict()
+	public final int intValueStrict()
 		throws TypeCastingException
 	{
 		int r = 0;
@@ -1067,7 +1373,7 @@ public abstract class Value implements Expression, Cloneable
 		}
 	}
 	
-	public synchronized boolean boolValueStrict()
+	public boolean boolValueStrict()
 		throws TypeCastingException
 	{
 		boolean r = false;
@@ -1096,7 +1402,7 @@ public abstract class Value implements Expression, Cloneable
 		}
 	}
 	
-	public final synchronized UInt64 uInt64ValueStrict()
+	public final UInt64 uInt64ValueStrict()
 		throws TypeCastingException
 	{
             UInt64 r = new UInt64(0);
@@ -1140,7 +1446,7 @@ public abstract class Value implements Expression, Cloneable
 		}
 	}
 	
-	public final synchronized long longValueStrict()
+	public final long longValueStrict()
 		throws TypeCastingException
 	{
 		long r = 0;
@@ -1176,7 +1482,7 @@ public abstract class Value implements Expression, Cloneable
 		}
 	}
 	
-	public final synchronized double doubleValueStrict()
+	public final double doubleValueStrict()
 		throws TypeCastingException
 	{
 		double r = 0;
@@ -22,9 +22,11 @@
 package jolie.runtime;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.Iterator;
 import java.util.List;
+import jolie.lang.parse.ast.types.UInt16;
+import jolie.lang.parse.ast.types.UInt32;
 
 class ValueVectorLink extends ValueVector implements Cloneable
 {
@@ -60,43 +62,230 @@ class ValueVectorLink extends ValueVector implements Cloneable
 	{
 		return linkPath.getValueVector();
 	}
-	
+
 	protected List< Value > values()
 	{
 		return getLinkedValueVector().values();
 	}
 }
 
+/**
+ * Values are kept in an array which is replaced when it needs to grow.
+ * Reading needs no locking: changes are made under the monitor of the vector
+ * and published by writing the (volatile) size after the array and its content.
+ *
+ * A vector created from a primitive array keeps it and creates the value
+ * of an element only when the element is accessed: until then, its slot
+ * in the array of values is empty (and the array itself may be missing).
+ * Primitive arrays are never changed, so they can be shared by copies.
+ */
 class ValueVectorImpl extends ValueVector implements Serializable
 {
-	private final ArrayList< Value > values;
+	private static final long serialVersionUID = 1L;
+
+	private volatile Value[] values;
+	private volatile int size = 0;
+	private volatile PrimitiveArray primitives = null;
+
+	private transient List< Value > valuesView = null;
+
+	private class ValuesView extends AbstractList< Value >
+	{
+		@Override
+		public Value get( int i )
+		{
+			if ( i >= size ) {
+				throw new IndexOutOfBoundsException( "Index: " + i + ", Size: " + size );
+			}
+			return ValueVectorImpl.this.get( i );
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+
+		@Override
+		public Value set( int i, Value value )
+		{
+			synchronized( ValueVectorImpl.this ) {
+				Value ret = get( i );
+				ValueVectorImpl.this.set( i, value );
+				return ret;
+			}
+		}
+
+		@Override
+		public void add( int i, Value value )
+		{
+			insert( i, value );
+		}
+
+		@Override
+		public Value remove( int i )
+		{
+			return ValueVectorImpl.this.remove( i );
+		}
+	}
 	
 	protected List< Value > values()
 	{
-		return values;
+		if ( valuesView == null ) {
+			valuesView = new ValuesView();
+		}
+		return valuesView;
 	}
 
-	public synchronized Value get( int i )
+	public Value get( int i )
 	{
-		if ( i >= values.size() ) {
-			values.ensureCapacity( i + 1 );
-			for( int k = values.size(); k <= i; k++ ) {
-				values.add( Value.create() );
+		if ( i < size ) { // Read the size before the array
+			Value[] a = values;
+			if ( a != null && a[ i ] != null ) {
+				return a[ i ];
 			}
 		}
-		return values.get( i );
+		return getOrCreate( i );
+	}
+
+	private synchronized Value getOrCreate( int i )
+	{
+		if ( i >= size ) {
+			ensureCapacity( i + 1 );
+			for( int k = size; k <= i; k++ ) {
+				values[ k ] = Value.create();
+			}
+			size = i + 1;
+		} else if ( values == null || values[ i ] == null ) {
+			ensureCapacity( size );
+			values[ i ] = Value.createFromPrimitive( primitives.get( i ) );
+			size = size; // Publish the new value
+		}
+		return values[ i ];
+	}
+
+	/*
+	 * Copies this vector, cloning its values. Elements kept in the primitive
+	 * array are not created. No lock is taken, as when reading.
+	 */
+	ValueVectorImpl copy()
+	{
+		ValueVectorImpl ret = new ValueVectorImpl();
+		int n = size; // Read the size first
+		ret.primitives = primitives;
+		Value[] a = values;
+		if ( n > 0 ) {
+			ret.values = new Value[ n ];
+			for( int i = 0; i < n; i++ ) {
+				if ( a != null && a[ i ] != null ) {
+					ret.values[ i ] = Value.createClone( a[ i ] );
+				}
+			}
+		}
+		ret.size = n;
+		return ret;
+	}
+
+	// Requires the monitor of this vector
+	private void createAll()
+	{
+		PrimitiveArray p = primitives;
+		if ( p != null ) {
+			ensureCapacity( size );
+			for( int i = 0; i < size; i++ ) {
+				if ( values[ i ] == null ) {
+					values[ i ] = Value.createFromPrimitive( p.get( i ) );
+				}
+			}
+			primitives = null;
+		}
 	}
 
 	public synchronized void set( int i, Value value )
 	{
-		if ( i >= values.size() ) {
-			values.ensureCapacity( i + 1 );
-			for( int k = values.size(); k < i; k++ ) {
-				values.add( Value.create() );
+		if ( i >= size ) {
+			ensureCapacity( i + 1 );
+			for( int k = size; k < i; k++ ) {
+				values[ k ] = Value.create();
 			}
-			values.add( value );
+			values[ i ] = value;
+			size = i + 1;
 		} else {
-			values.set( i, value );
+			ensureCapacity( size ); // The array is missing in vectors created from primitive arrays
+			values[ i ] = value;
+			size = size; // Publish the new value
+		}
+	}
+
+	@Override
+	public synchronized void add( Value value )
+	{
+		ensureCapacity( size + 1 );
+		values[ size ] = value;
+		size = size + 1;
+	}
+
+	private synchronized void insert( int i, Value value )
+	{
+		if ( i < 0 || i > size ) {
+			throw new IndexOutOfBoundsException( "Index: " + i + ", Size: " + size );
+		}
+		createAll(); // Elements are going to move
+		if ( i == size ) {
+			ensureCapacity( size + 1 );
+		} else { // Readers may still be using the current array
+			Value[] newValues = new Value[ Math.max( size + 1, values.length ) ];
+			System.arraycopy( values, 0, newValues, 0, i );
+			System.arraycopy( values, i, newValues, i + 1, size - i );
+			values = newValues;
+		}
+		values[ i ] = value;
+		size = size + 1;
+	}
+
+	@Override
+	public synchronized Value remove( int i )
+	{
+		if ( i >= size ) {
+			throw new IndexOutOfBoundsException( "Index: " + i + ", Size: " + size );
+		}
+		createAll(); // Elements are going to move
+		Value[] newValues = values.clone(); // Readers may still be using the old array
+		Value ret = newValues[ i ];
+		System.arraycopy( values, i + 1, newValues, i, size - i - 1 );
+		newValues[ size - 1 ] = null;
+		values = newValues;
+		size = size - 1;
+		return ret;
+	}
+
+	@Override
+	public Value first()
+	{
+		return get( 0 );
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	// Requires the monitor of this vector
+	private void ensureCapacity( int capacity )
+	{
+		if ( values == null ) {
+			values = new Value[ Math.max( capacity, 1 ) ];
+		} else if ( capacity > values.length ) {
+			Value[] newValues = new Value[ Math.max( capacity, values.length * 2 ) ];
+			System.arraycopy( values, 0, newValues, 0, size );
+			values = newValues;
 		}
 	}
 	
@@ -107,7 +296,14 @@ class ValueVectorImpl extends ValueVector implements Serializable
 	
 	public ValueVectorImpl()
 	{
-		values = new ArrayList< Value >( 1 );
+		values = new Value[ 1 ];
+	}
+
+	public ValueVectorImpl( PrimitiveArray primitives )
+	{
+		values = null;
+		this.primitives = primitives;
+		size = primitives.length();
 	}
 }
 
@@ -135,20 +331,120 @@ public abstract class ValueVector implements Iterable< Value >
 		if ( vec.isLink() ) {
 			retVec = ((ValueVectorLink)vec).clone();
 		} else {
-			retVec = create();
-			for( Value v : vec )
-				retVec.add( Value.createClone( v ) );
+			retVec = ((ValueVectorImpl)vec).copy();
 		}
 		
 		return retVec;
 	}
+
+	/**
+	 * Creates a vector of byte values. The array must not be changed afterwards.
+	 * @param array the values of the vector
+	 * @return a vector holding the values in <code>array</code>
+	 */
+	public static ValueVector create( byte[] array )
+	{
+		return new ValueVectorImpl( new PrimitiveArray.Bytes( array ) );
+	}
+
+	/**
+	 * Creates a vector of short values. The array must not be changed afterwards.
+	 * @param array the values of the vector
+	 * @return a vector holding the values in <code>array</code>
+	 */
+	public static ValueVector create( short[] array )
+	{
+		return new ValueVectorImpl( new PrimitiveArray.Shorts( array ) );
+	}
+
+	/**
+	 * Creates a vector of int values. The array must not be changed afterwards.
+	 * @param array the values of the vector
+	 * @return a vector holding the values in <code>array</code>
+	 */
+	public static ValueVector create( int[] array )
+	{
+		return new ValueVectorImpl( new PrimitiveArray.Ints( array ) );
+	}
+
+	/**
+	 * Creates a vector of long values. The array must not be changed afterwards.
+	 * @param array the values of the vector
+	 * @return a vector holding the values in <code>array</code>
+	 */
+	public static ValueVector create( long[] array )
+	{
+		return new ValueVectorImpl( new PrimitiveArray.Longs( array ) );
+	}
+
+	/**
+	 * Creates a vector of double values. The array must not be changed afterwards.
+	 * @param array the values of the vector
+	 * @return a vector holding the values in <code>array</code>
+	 */
+	public static ValueVector create( double[] array )
+	{
+		return new ValueVectorImpl( new PrimitiveArray.Doubles( array ) );
+	}
+
+	/**
+	 * Creates a vector of boolean values. The array must not be changed afterwards.
+	 * @param array the values of the vector
+	 * @return a vector holding the values in <code>array</code>
+	 */
+	public static ValueVector create( boolean[] array )
+	{
+		return new ValueVectorImpl( new PrimitiveArray.Booleans( array ) );
+	}
+
+	/**
+	 * Creates a vector of UInt16 values. The array must not be changed afterwards.
+	 * @param array the values of the vector
+	 * @return a vector holding the values in <code>array</code>
+	 * @throws NumberFormatException if a value is not a valid UInt16
+	 */
+	public static ValueVector createUInt16( int[] array )
+	{
+		for( int v : array ) {
+			if ( v < UInt16.MIN_VALUE || v > UInt16.MAX_VALUE ) {
+				throw new NumberFormatException( v + " is not a valid UInt16" );
+			}
+		}
+		return new ValueVectorImpl( new PrimitiveArray.UInt16s( array ) );
+	}
+
+	/**
+	 * Creates a vector of UInt32 values. The array must not be changed afterwards.
+	 * @param array the values of the vector
+	 * @return a vector holding the values in <code>array</code>
+	 * @throws NumberFormatException if a value is not a valid UInt32
+	 */
+	public static ValueVector createUInt32( long[] array )
+	{
+		for( long v : array ) {
+			if ( v < UInt32.MIN_VALUE || v > UInt32.MAX_VALUE ) {
+				throw new NumberFormatException( v + " is not a valid UInt32" );
+			}
+		}
+		return new ValueVectorImpl( new PrimitiveArray.UInt32s( array ) );
+	}
+
+	/**
+	 * Creates a vector of UInt64 values. The array must not be changed afterwards.
+	 * @param array the bits of the (unsigned) values of the vector
+	 * @return a vector holding the values in <code>array</code>
+	 */
+	public static ValueVector createUInt64( long[] array )
+	{
+		return new ValueVectorImpl( new PrimitiveArray.UInt64s( array ) );
+	}
 	
-	public synchronized Value first()
+	public Value first()
 	{
 		return get( 0 );
 	}
 	
-	public synchronized boolean isEmpty()
+	public boolean isEmpty()
 	{
 		return values().isEmpty();
 	}
@@ -161,7 +457,7 @@ public abstract class ValueVector implements Iterable< Value >
 	public abstract Value get( int i );
 	public abstract void set( int i, Value value );
 	
-	public synchronized int size()
+	public int size()
 	{
 		return values().size();
 	}
@@ -232,6 +232,31 @@ public class VariablePath implements Expression, Cloneable
 		}
 	}
 
+	/**
+	 * Replaces the value pointed by this path in the tree rooted in <code>rootValue</code>,
+	 * even if the replaced value is used in correlation.
+	 * @param rootValue the root of the tree to modify
+	 * @param value the new value
+	 */
+	public final void replaceValue( Value rootValue, Value value )
+	{
+		Pair< Expression, Expression > pair;
+		ValueVector currVector;
+		Value currValue = rootValue;
+		int index;
+
+		for( int i = 0; i < path.length; i++ ) {
+			pair = path[i];
+			currVector = currValue.getChildren( pair.key().evaluate().strValue() );
+			index = ( pair.value() == null ) ? 0 : pair.value().evaluate().intValue();
+			if ( (i+1) < path.length ) {
+				currValue = currVector.get( index );
+			} else {
+				currVector.set( index, value );
+			}
+		}
+	}
+
 	public final Value getValueOrNull()
 	{
 		return getValueOrNull( getRootValue() );
@@ -28,6 +28,7 @@ import jolie.net.CommChannel;
 import jolie.net.CommMessage;
 import jolie.runtime.Value;
 import jolie.runtime.correlation.CorrelationSet.CorrelationPair;
+import jolie.runtime.correlation.impl.HashCorrelationEngine;
 import jolie.runtime.correlation.impl.SimpleCorrelationEngine;
 
 /**
@@ -44,8 +45,7 @@ public abstract class CorrelationEngine implements SessionListener
 		},
 		HASH {
 			public CorrelationEngine createInstance( Interpreter interpreter ) {
-				//return new HashCorrelationEngine( interpreter );
-				return null;
+				return new HashCorrelationEngine( interpreter );
 			}
 		};
 
@@ -94,16 +94,49 @@ public abstract class CorrelationEngine implements SessionListener
 		}
 	}
 
-	public synchronized void onMessageReceive( final CommMessage message, final CommChannel channel )
+	/**
+	 * Delivers a received message to the session correlating with it,
+	 * or to a new session if the message can start one.
+	 * @param message the received message
+	 * @param channel the channel the message was received from
+	 * @throws CorrelationError if the message can not be delivered to any session
+	 */
+	public void onMessageReceive( final CommMessage message, final CommChannel channel )
+		throws CorrelationError
+	{
+		// Timed outside of correlate, so that waiting for this engine is included
+		long startNanos = System.nanoTime();
+		try {
+			if ( correlate( message, channel ) ) {
+				interpreter.metrics().messageCorrelated( startNanos );
+			} else {
+				interpreter.metrics().sessionStarterMessage( startNanos );
+			}
+		} catch( CorrelationError e ) {
+			interpreter.metrics().correlationError( startNanos );
+			throw e;
+		}
+	}
+
+	/**
+	 * Delivers a received message to the session correlating with it,
+	 * or to a new session if the message can start one.
+	 * @param message the received message
+	 * @param channel the channel the message was received from
+	 * @return <code>true</code> if the message was routed to a running session,
+	 * <code>false</code> if it started a new session
+	 * @throws CorrelationError if the message can not be delivered to any session
+	 */
+	protected synchronized boolean correlate( final CommMessage message, final CommChannel channel )
 		throws CorrelationError
 	{
 		if ( routeMessage( message, channel ) ) {
-			return;
+			return true;
 		}
 
 		// We did not find any correlating session
 		if ( interpreter.startServiceSession( message, channel ) ) {
-			return;
+			return false;
 		}
 
 		// We can not handle the message, send an error to the invoker
@@ -21,105 +21,466 @@
 
 package jolie.runtime.correlation.impl;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import jolie.Interpreter;
 import jolie.SessionThread;
+import jolie.lang.Constants.ExecutionMode;
 import jolie.net.CommChannel;
 import jolie.net.CommMessage;
 import jolie.net.SessionMessage;
 import jolie.runtime.FaultException;
 import jolie.runtime.Value;
+import jolie.runtime.VariablePath;
 import jolie.runtime.correlation.CorrelationEngine;
+import jolie.runtime.correlation.CorrelationError;
 import jolie.runtime.correlation.CorrelationSet;
 import jolie.runtime.correlation.CorrelationSet.CorrelationPair;
+import jolie.runtime.correlation.CorrelationValueListener;
 
 /**
  * A hash table based correlation algorithm.
+ *
+ * For each correlating operation, running sessions are indexed by the
+ * values of their correlation variables, so that an incoming message is
+ * routed with a single lookup instead of checking every session.
+ * Sessions with the same values share a key and are checked in indexing order.
+ * Keys follow the type-insensitive Value.equals: a message value is converted
+ * to the type of the session value it may be compared with, so a message is
+ * looked up once for each type of the indexed values.
+ * The correlation variables of a session are replaced by values that notify
+ * this engine when they change, keeping the indexes up to date.
+ * Routing does not hold a global lock: only the starting of new sessions is serialized.
  * @author Fabrizio Montesi
  */
 public class HashCorrelationEngine extends CorrelationEngine
 {
-	private final Set< SessionThread > sessions = new HashSet< SessionThread >();
+	private class SessionEntry implements CorrelationValueListener
+	{
+		private final SessionThread session;
+		// Operation name -> key this session is indexed with
+		private final Map< String, List< String > > keys = new HashMap< String, List< String > >();
+		private final AtomicBoolean dirty = new AtomicBoolean( false );
+		private boolean active = true;
+
+		private SessionEntry( SessionThread session )
+		{
+			this.session = session;
+		}
+
+		/*
+		 * We are called while the changed value is locked, so we can not
+		 * read the other correlation values here: the session gets indexed
+		 * again by the next routing attempt.
+		 */
+		public void onCorrelationValueChange( Value value )
+		{
+			if ( dirty.compareAndSet( false, true ) ) {
+				dirtySessions.add( this );
+			}
+		}
+
+		private synchronized void index()
+		{
+			if ( !active ) {
+				return;
+			}
+			unindex();
+			List< String > key;
+			for( CorrelationSet cset : interpreter().correlationSets() ) {
+				for( String operationName : cset.correlatingOperations() ) {
+					key = sessionKey( session, cset.getOperationCorrelationPairs( operationName ) );
+					if ( key != null ) {
+						addToIndex( operationName, key, session );
+						keys.put( operationName, key );
+					}
+				}
+			}
+		}
+
+		private void unindex()
+		{
+			for( Entry< String, List< String > > entry : keys.entrySet() ) {
+				removeFromIndex( entry.getKey(), entry.getValue(), session );
+			}
+			keys.clear();
+		}
+
+		private synchronized void dispose()
+		{
+			active = false;
+			unindex();
+		}
+	}
+
+	private final ConcurrentMap< SessionThread, SessionEntry > sessions =
+		new ConcurrentHashMap< SessionThread, SessionEntry >();
+	// Operation name -> correlation values -> sessions
+	private final ConcurrentMap< String, ConcurrentMap< List< String >, List< SessionThread > > > indexes =
+		new ConcurrentHashMap< String, ConcurrentMap< List< String >, List< SessionThread > > >();
+	private final Queue< SessionEntry > dirtySessions = new ConcurrentLinkedQueue< SessionEntry >();
+	// The kinds of the indexed key components (see keyComponent)
+	private final Set< Character > indexedKinds = new CopyOnWriteArraySet< Character >();
+	private volatile SessionThread initialisingSession = null;
 
 	public HashCorrelationEngine( Interpreter interpreter )
 	{
 		super( interpreter );
 	}
 
-	public synchronized boolean routeMessage( CommMessage message, CommChannel channel )
+	private ConcurrentMap< List< String >, List< SessionThread > > operationIndex( String operationName )
 	{
-		for( SessionThread session : sessions ) {
-			if ( correlate( session, message ) ) {
-				session.pushMessage( new SessionMessage( message, channel ) );
-				return true;
+		ConcurrentMap< List< String >, List< SessionThread > > index = indexes.get( operationName );
+		if ( index == null ) {
+			index = new ConcurrentHashMap< List< String >, List< SessionThread > >();
+			ConcurrentMap< List< String >, List< SessionThread > > old = indexes.putIfAbsent( operationName, index );
+			if ( old != null ) {
+				index = old;
 			}
 		}
-		return false;
+		return index;
 	}
 
-	public synchronized void onSingleExecutionSessionStart( SessionThread session )
+	/*
+	 * Changes to the session lists of an index are made under its monitor,
+	 * so that a list is never changed after having been removed. Lookups
+	 * read the lists without locking.
+	 */
+	private void addToIndex( String operationName, List< String > key, SessionThread session )
 	{
-		sessions.add( session );
+		for( String component : key ) {
+			// Before indexing, so that lookups finding the session build its key
+			indexedKinds.add( component.charAt( 0 ) );
+		}
+		ConcurrentMap< List< String >, List< SessionThread > > index = operationIndex( operationName );
+		synchronized( index ) {
+			List< SessionThread > list = index.get( key );
+			if ( list == null ) {
+				list = new CopyOnWriteArrayList< SessionThread >();
+				index.put( key, list );
+			}
+			list.add( session );
+		}
 	}
 
-	public synchronized void onSessionStart( SessionThread session, Interpreter.SessionStarter starter, CommMessage message )
+	private void removeFromIndex( String operationName, List< String > key, SessionThread session )
 	{
-		sessions.add( session );
-		initCorrelationValues( session, starter, message );
+		ConcurrentMap< List< String >, List< SessionThread > > index = operationIndex( operationName );
+		synchronized( index ) {
+			List< SessionThread > list = index.get( key );
+			if ( list != null ) {
+				list.remove( session );
+				if ( list.isEmpty() ) {
+					index.remove( key );
+				}
+			}
+		}
 	}
 
-	public synchronized void onSessionExecuted( SessionThread session )
+	private static final char STRING_KIND = 's';
+	private static final char INT_KIND = 'i';
+	private static final char LONG_KIND = 'l';
+	private static final char DOUBLE_KIND = 'd';
+	private static final char BOOL_KIND = 'b';
+	// Other values are not hashed: their sessions are told apart by correlate
+	private static final char OTHER_KIND = 'o';
+
+	// Above this, a message is checked against all the sessions instead
+	private static final int MAX_MESSAGE_KEYS = 64;
+
+	private static char kindOf( Value value )
 	{
-		sessions.remove( session );
+		if ( value.isString() ) {
+			return STRING_KIND;
+		} else if ( value.isInt() ) {
+			return INT_KIND;
+		} else if ( value.isDouble() ) {
+			return DOUBLE_KIND;
+		} else if ( value.isBool() ) {
+			return BOOL_KIND;
+		} else if ( value.isLong() ) {
+			return LONG_KIND;
+		}
+		return OTHER_KIND;
 	}
 
-	public synchronized void onSessionError( SessionThread session, FaultException fault )
+	/*
+	 * Returns the key component of a value converted to the given kind,
+	 * as Value.equals converts the value it compares with.
+	 */
+	private static String keyComponent( char kind, Value value )
 	{
-		onSessionExecuted( session );
+		switch( kind ) {
+		case STRING_KIND:
+			return STRING_KIND + value.strValue();
+		case INT_KIND:
+			return INT_KIND + Integer.toString( value.intValue() );
+		case LONG_KIND:
+			return LONG_KIND + Long.toString( value.longValue() );
+		case DOUBLE_KIND:
+			double d = value.doubleValue();
+			// 0.0 == -0.0
+			return DOUBLE_KIND + Double.toString( d == 0.0 ? 0.0 : d );
+		case BOOL_KIND:
+			return BOOL_KIND + Boolean.toString( value.boolValue() );
+		default:
+			return String.valueOf( OTHER_KIND );
+		}
+	}
+
+	/**
+	 * Returns the hashing key of the given session, or <code>null</code>
+	 * if some of its correlation values is not defined.
+	 */
+	private static List< String > sessionKey( SessionThread session, List< CorrelationPair > pairs )
+	{
+		List< String > key = new ArrayList< String >( pairs.size() );
+		Value value;
+		for( CorrelationPair pair : pairs ) {
+			value = pair.sessionPath().getValueOrNull( session.state().root() );
+			if ( value == null || !value.isDefined() ) {
+				return null;
+			}
+			key.add( keyComponent( kindOf( value ), value ) );
+		}
+		return key;
+	}
+
+	/**
+	 * Returns the keys of the sessions the given message may correlate with,
+	 * one for each combination of the kinds of the indexed values.
+	 * Returns an empty list if some of the correlation values of the message
+	 * is not defined, or <code>null</code> if there are too many keys.
+	 */
+	private List< List< String > > messageKeys( CommMessage message, List< CorrelationPair > pairs )
+	{
+		List< List< String > > keys = new ArrayList< List< String > >();
+		keys.add( new ArrayList< String >( pairs.size() ) );
+		Value value;
+		List< List< String > > extendedKeys;
+		List< String > extendedKey;
+		for( CorrelationPair pair : pairs ) {
+			value = pair.messagePath().getValueOrNull( message.value() );
+			if ( value == null || !value.isDefined() ) {
+				return new ArrayList< List< String > >();
+			}
+			extendedKeys = new ArrayList< List< String > >();
+			for( Character kind : indexedKinds ) {
+				String component = keyComponent( kind, value );
+				for( List< String > key : keys ) {
+					extendedKey = new ArrayList< String >( pairs.size() );
+					extendedKey.addAll( key );
+					extendedKey.add( component );
+					extendedKeys.add( extendedKey );
+				}
+			}
+			if ( extendedKeys.size() > MAX_MESSAGE_KEYS ) {
+				return null;
+			}
+			keys = extendedKeys;
+		}
+		return keys;
+	}
+
+	@Override
+	protected boolean correlate( final CommMessage message, final CommChannel channel )
+		throws CorrelationError
+	{
+		if ( routeMessage( message, channel ) ) {
+			return true;
+		}
+
+		synchronized( this ) {
+			// A session able to receive the message may have started in the meantime
+			if ( routeMessage( message, channel ) ) {
+				return true;
+			}
+
+			// We did not find any correlating session
+			if ( interpreter().startServiceSession( message, channel ) ) {
+				return false;
+			}
+		}
+
+		// We can not handle the message, send an error to the invoker
+		throw new CorrelationError();
+	}
+
+	public boolean routeMessage( CommMessage message, CommChannel channel )
+	{
+		SessionThread session = findSession( message );
+		if ( session != null ) {
+			session.pushMessage( new SessionMessage( message, channel ) );
+			return true;
+		}
+		return false;
+	}
+
+	private void indexDirtySessions()
+	{
+		SessionEntry entry;
+		while( (entry = dirtySessions.poll()) != null ) {
+			entry.dirty.set( false );
+			entry.index();
+		}
 	}
 
-	private boolean correlate( SessionThread session, CommMessage message )
+	private SessionThread findSession( CommMessage message )
+	{
+		indexDirtySessions();
+
+		SessionThread session = initialisingSession;
+		if ( session != null ) {
+			return session;
+		}
+
+		CorrelationSet cset = interpreter().getCorrelationSetForOperation( message.operationName() );
+		if ( cset == null ) {
+			if ( interpreter().executionMode() == ExecutionMode.SINGLE ) {
+				for( SessionThread s : sessions.keySet() ) {
+					return s;
+				}
+			}
+			// It must be a session starter.
+			return null;
+		}
+
+		List< CorrelationPair > pairs = cset.getOperationCorrelationPairs( message.operationName() );
+		List< List< String > > keys = messageKeys( message, pairs );
+		if ( keys == null ) {
+			for( SessionEntry entry : sessions.values() ) {
+				if ( correlate( entry.session, message, pairs ) ) {
+					return entry.session;
+				}
+			}
+			return null;
+		}
+
+		ConcurrentMap< List< String >, List< SessionThread > > index = operationIndex( message.operationName() );
+		List< SessionThread > candidates;
+		for( List< String > key : keys ) {
+			candidates = index.get( key );
+			if ( candidates != null ) {
+				for( SessionThread s : candidates ) {
+					if ( correlate( s, message, pairs ) ) {
+						return s;
+					}
+				}
+			}
+		}
+		if ( keys.isEmpty() ) {
+			return null;
+		}
+
+		/*
+		 * A correlation variable may have been replaced as a whole (e.g., by a deep copy
+		 * of one of its ancestors) without notifying us. If the message can not start a
+		 * new session, look for its session among all the running ones before giving up.
+		 * The session is indexed again with its current values, but its state is not
+		 * changed: it belongs to the session thread, which may be running.
+		 */
+		if ( interpreter().getSessionStarter( message.operationName() ) == null ) {
+			for( SessionEntry entry : sessions.values() ) {
+				if ( correlate( entry.session, message, pairs ) ) {
+					entry.index();
+					return entry.session;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private static boolean correlate( SessionThread session, CommMessage message, List< CorrelationPair > pairs )
 	{
 		Value sessionValue;
 		Value messageValue;
-		CorrelationPair cpair;
-		int i;
-		List< CorrelationPair > pairs;
-		boolean matches = true;
-		for( CorrelationSet cset : interpreter().correlationSets() ) {
-			pairs = cset.getOperationCorrelationPairs( message.operationName() );
-			if ( pairs == null ) {
-				matches = false;
+		for( CorrelationPair cpair : pairs ) {
+			sessionValue = cpair.sessionPath().getValueOrNull( session.state().root() );
+			if ( sessionValue == null ) {
+				return false;
 			} else {
-				for( i = 0; i < pairs.size() && matches; i++ ) {
-					cpair = pairs.get( i );
-					sessionValue = cpair.sessionPath().getValueOrNull( session.state().root() );
-					if ( sessionValue == null ) {
-						matches = false;
-					} else {
-						messageValue = cpair.messagePath().getValueOrNull( message.value() );
-						if ( messageValue == null ) {
-							matches = false;
-						} else {
-							// TODO: Value.equals is type insensitive, fix this with an additional check.
-							matches = sessionValue.equals( messageValue );
-						}
+				messageValue = cpair.messagePath().getValueOrNull( message.value() );
+				if ( messageValue == null ) {
+					return false;
+				} else {
+					// TODO: Value.equals is type insensitive, fix this with an additional check.
+					if ( !sessionValue.isDefined() || !messageValue.isDefined() || !sessionValue.equals( messageValue ) ) {
+						return false;
 					}
 				}
 			}
+		}
 
-			if ( matches ) {
-				// The correlation set matched.
-				return true;
-			} else {
-				// The correlation set did not match, let us try another one.
-				matches = true;
+		return true;
+	}
+
+	/**
+	 * Installs notifying values for the correlation variables of the session
+	 * of the given entry and indexes it.
+	 * Must be called before the session starts running.
+	 */
+	private void track( SessionEntry entry )
+	{
+		Value root = entry.session.state().root();
+		Value value;
+		Value csetValue;
+		for( CorrelationSet cset : interpreter().correlationSets() ) {
+			for( VariablePath path : cset.correlationVariablePaths() ) {
+				value = path.getValue( root );
+				csetValue = Value.createCSetValue( entry );
+				csetValue.refCopy( value );
+				path.replaceValue( root, csetValue );
 			}
 		}
+		entry.index();
+	}
 
-		// We could not find any correlation set matching.
-		return false;
+	private void addSession( SessionThread session )
+	{
+		SessionEntry entry = new SessionEntry( session );
+		sessions.put( session, entry );
+		if ( session.isInitialisingThread() ) {
+			initialisingSession = session;
+		}
+		track( entry );
+	}
+
+	public void onSingleExecutionSessionStart( SessionThread session )
+	{
+		addSession( session );
+	}
+
+	public void onSessionStart( SessionThread session, Interpreter.SessionStarter starter, CommMessage message )
+	{
+		initCorrelationValues( session, starter, message );
+		addSession( session );
+	}
+
+	public void onSessionExecuted( SessionThread session )
+	{
+		if ( session == initialisingSession ) {
+			initialisingSession = null;
+		}
+		SessionEntry entry = sessions.remove( session );
+		if ( entry != null ) {
+			entry.dispose();
+		}
+	}
+
+	public void onSessionError( SessionThread session, FaultException fault )
+	{
+		onSessionExecuted( session );
 	}
 }
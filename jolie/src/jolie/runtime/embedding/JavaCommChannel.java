@@ -70,7 +70,7 @@ public class JavaCommChannel extends CommChannel implements PollableCommChannel
 	public void send( CommMessage message )
 		throws IOException
 	{
-		sendImpl( message );
+		measuredSendImpl( message );
 	}
 
 	protected void sendImpl( CommMessage message )
@@ -37,6 +37,12 @@ class TypeImpl extends Type
 	private final Set< Entry< String, Type > > subTypeSet;
 	private final Set< String > subTypeKeySet;
 
+	// Sub types, precomputed for checking and casting
+	private final String[] subTypeNames;
+	private final Type[] subTypes;
+	private final int[] subTypeMinOccurs;
+	private final int[] subTypeMaxOccurs;
+
 	public TypeImpl(
 		NativeType nativeType,
 		Range cardinality,
@@ -48,9 +54,26 @@ class TypeImpl extends Type
 		if ( undefinedSubTypes ) {
 			subTypeSet = null;
 			subTypeKeySet = null;
+			this.subTypeNames = null;
+			this.subTypes = null;
+			subTypeMinOccurs = null;
+			subTypeMaxOccurs = null;
 		} else {
 			subTypeSet = subTypes.entrySet();
 			subTypeKeySet = subTypes.keySet();
+			int size = subTypes.size();
+			this.subTypeNames = new String[ size ];
+			this.subTypes = new Type[ size ];
+			subTypeMinOccurs = new int[ size ];
+			subTypeMaxOccurs = new int[ size ];
+			int i = 0;
+			for( Entry< String, Type > entry : subTypeSet ) {
+				this.subTypeNames[ i ] = entry.getKey();
+				this.subTypes[ i ] = entry.getValue();
+				subTypeMinOccurs[ i ] = entry.getValue().cardinality().min();
+				subTypeMaxOccurs[ i ] = entry.getValue().cardinality().max();
+				i++;
+			}
 		}
 	}
 	
@@ -73,90 +96,98 @@ class TypeImpl extends Type
 		}
 	}
 
-	protected Value cast( Value value, StringBuilder pathBuilder )
+	protected Value cast( Value value, Path path )
 		throws TypeCastingException
 	{
-		castNativeType( value, pathBuilder );
-		if ( subTypeSet != null ) {
-			for( Entry< String, Type > entry : subTypeSet ) {
-				castSubType( entry.getKey(), entry.getValue(), value, new StringBuilder( pathBuilder ) );
+		castNativeType( value, path );
+		if ( subTypes != null ) {
+			for( int i = 0; i < subTypes.length; i++ ) {
+				castSubType( i, value, path );
 			}
 		}
 		
 		return value;
 	}
 
-	private void castSubType( String typeName, Type type, Value value, StringBuilder pathBuilder )
+	private void castSubType( int index, Value value, Path parentPath )
 		throws TypeCastingException
 	{
-		pathBuilder.append( '.' );
-		pathBuilder.append( typeName );
-
+		String typeName = subTypeNames[ index ];
 		boolean hasChildren = value.hasChildren( typeName );
-		if ( hasChildren == false && type.cardinality().min() > 0 ) {
-			throw new TypeCastingException( "Undefined required child node: " + pathBuilder.toString() );
+		if ( hasChildren == false && subTypeMinOccurs[ index ] > 0 ) {
+			throw new TypeCastingException( "Undefined required child node: " + new Path( parentPath, typeName ) );
 		} else if ( hasChildren ) {
 			ValueVector vector = value.getChildren( typeName );
 			int size = vector.size();
-			if ( type.cardinality().min() > size || type.cardinality().max() < size ) {
+			if ( subTypeMinOccurs[ index ] > size || subTypeMaxOccurs[ index ] < size ) {
 				throw new TypeCastingException(
-					"Child node " + pathBuilder.toString() + " has a wrong number of occurencies. Permitted range is [" +
-					type.cardinality().min() + "," + type.cardinality().max() + "], found " + size
+					"Child node " + new Path( parentPath, typeName ) + " has a wrong number of occurencies. Permitted range is [" +
+					subTypeMinOccurs[ index ] + "," + subTypeMaxOccurs[ index ] + "], found " + size
 				);
 			}
 
+			Path path = new Path( parentPath, typeName );
 			for( Value v : vector ) {
-				type.cast( v, pathBuilder );
+				subTypes[ index ].cast( v, path );
 			}
 		}
 	}
 
-	protected void check( Value value, StringBuilder pathBuilder )
+	protected void check( Value value, Path path )
 		throws TypeCheckingException
 	{
 		if ( checkNativeType( value, nativeType ) == false ) {
-			throw new TypeCheckingException( "Invalid native type for node " + pathBuilder.toString() + ": expected " + nativeType + ", found " + (( value.valueObject() == null ) ? "void" : value.valueObject().getClass().getName()) );
+			throw new TypeCheckingException( "Invalid native type for node " + path + ": expected " + nativeType + ", found " + (( value.valueObject() == null ) ? "void" : value.valueObject().getClass().getName()) );
 		}
 
-		if ( subTypeSet != null ) {
-			for( Entry< String, Type > entry : subTypeSet ) {
-				checkSubType( entry.getKey(), entry.getValue(), value, new StringBuilder( pathBuilder ) );
+		if ( subTypes != null ) {
+			int foundChildren = 0;
+			for( int i = 0; i < subTypes.length; i++ ) {
+				if ( checkSubType( i, value, path ) ) {
+					foundChildren++;
+				}
 			}
-			// TODO make this more performant
-			for( String childName : value.children().keySet() ) {
-				if ( subTypeKeySet.contains( childName ) == false ) {
-					throw new TypeCheckingException( "Unexpected child node: " + pathBuilder.toString() + "." + childName );
+			// Look for unexpected children only if there are more children than the checked ones
+			if ( value.hasChildren() && value.children().size() > foundChildren ) {
+				for( String childName : value.children().keySet() ) {
+					if ( subTypeKeySet.contains( childName ) == false ) {
+						throw new TypeCheckingException( "Unexpected child node: " + path + "." + childName );
+					}
 				}
 			}
 		}
 	}
 
-	private void checkSubType( String typeName, Type type, Value value, StringBuilder pathBuilder )
+	/**
+	 * Checks the children of value matching the sub type at the given index.
+	 * @return <code>true</code> if value has an entry for the children of the sub type
+	 */
+	private boolean checkSubType( int index, Value value, Path parentPath )
 		throws TypeCheckingException
 	{
-		pathBuilder.append( '.' );
-		pathBuilder.append( typeName );
-
+		String typeName = subTypeNames[ index ];
 		boolean hasChildren = value.hasChildren( typeName );
-		if ( hasChildren == false && type.cardinality().min() > 0 ) {
-			throw new TypeCheckingException( "Undefined required child node: " + pathBuilder.toString() );
+		if ( hasChildren == false && subTypeMinOccurs[ index ] > 0 ) {
+			throw new TypeCheckingException( "Undefined required child node: " + new Path( parentPath, typeName ) );
 		} else if ( hasChildren ) {
 			ValueVector vector = value.getChildren( typeName );
 			int size = vector.size();
-			if ( type.cardinality().min() > size || type.cardinality().max() < size ) {
+			if ( subTypeMinOccurs[ index ] > size || subTypeMaxOccurs[ index ] < size ) {
 				throw new TypeCheckingException(
-					"Child node " + pathBuilder.toString() + " has a wrong number of occurencies. Permitted range is [" +
-					type.cardinality().min() + "," + type.cardinality().max() + "], found " + size
+					"Child node " + new Path( parentPath, typeName ) + " has a wrong number of occurencies. Permitted range is [" +
+					subTypeMinOccurs[ index ] + "," + subTypeMaxOccurs[ index ] + "], found " + size
 				);
 			}
 
+			Path path = new Path( parentPath, typeName );
 			for( Value v : vector ) {
-				type.check( v, pathBuilder );
+				subTypes[ index ].check( v, path );
 			}
 		}
+		return hasChildren;
 	}
 
-	private void castNativeType( Value value, StringBuilder pathBuilder )
+	private void castNativeType( Value value, Path path )
 		throws TypeCastingException
 	{
 		if ( checkNativeType( value, nativeType ) == false ) {
@@ -165,81 +196,81 @@ class TypeImpl extends Type
 				try {
 					value.setValue( value.doubleValueStrict() );
 				} catch( TypeCastingException e ) {
-					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + pathBuilder.toString() );
+					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + path );
 				}
 			} else if ( nativeType == NativeType.BYTE ) {
 				try {
 					value.setValue( value.byteValueStrict() );
 				} catch( TypeCastingException e ) {
-					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + pathBuilder.toString() );
+					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + path );
 				}
 			} else if ( nativeType == NativeType.INT16 ) {
 				try {
 					value.setValue( value.int16ValueStrict() );
 				} catch( TypeCastingException e ) {
-					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + pathBuilder.toString() );
+					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + path );
 				}
 			} else if ( nativeType == NativeType.UINT16 ) {
 				try {
 					value.setValue( value.uInt16ValueStrict() );
 				} catch( TypeCastingException e ) {
-					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + pathBuilder.toString() );
+					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + path );
 				}
 			} else if ( nativeType == NativeType.INT ) {
 				try {
 					value.setValue( value.intValueStrict() );
 				} catch( TypeCastingException e ) {
-					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + pathBuilder.toString() );
+					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + path );
 				}
 			} else if ( nativeType == NativeType.UINT32 ) {
 				try {
 					value.setValue( value.uInt32ValueStrict());
 				} catch( TypeCastingException e ) {
-					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + pathBuilder.toString() );
+					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + path );
 				}
 			} else if ( nativeType == NativeType.LONG ) {
 				try {
 					value.setValue( value.longValueStrict() );
 				} catch( TypeCastingException e ) {
-					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + pathBuilder.toString() );
+					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + path );
 				}
 			} else if ( nativeType == NativeType.UINT64 ) {
 				try {
 					value.setValue( value.uInt64ValueStrict());
 				} catch( TypeCastingException e ) {
-					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + pathBuilder.toString() );
+					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + path );
 				}
 			} else if ( nativeType == NativeType.BOOL ) {
 				try {
 					value.setValue( value.boolValueStrict() );
 				} catch( TypeCastingException e ) {
-					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + pathBuilder.toString() );
+					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + path );
 				}
 			} else if ( nativeType == NativeType.STRING ) {
 				try {
 					value.setValue( value.strValueStrict() );
 				} catch( TypeCastingException e ) {
-					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + pathBuilder.toString() );
+					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + path );
 				}
 			} else if ( nativeType == NativeType.VOID ) {
 				if ( value.valueObject() != null ) {
 					throw new TypeCastingException(
 						"Expected " + NativeType.VOID.id() + ", found " +
 						value.valueObject().getClass().getSimpleName() +
-						": " + pathBuilder.toString()
+						": " + path
 					);
 				}
 			} else if ( nativeType == NativeType.RAW ) {
 				try {
 					value.setValue( value.byteArrayValueStrict() );
 				} catch( TypeCastingException e ) {
-					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + pathBuilder.toString() );
+					throw new TypeCastingException( "Cannot cast node value to " + nativeType.id() + ": " + path );
 				}
 			} else {
 				throw new TypeCastingException(
 					"Expected " + nativeType.id() + ", found " +
 					value.valueObject().getClass().getSimpleName() +
-					": " + pathBuilder.toString()
+					": " + path
 				);
 			}
 		}
@@ -323,25 +354,60 @@ public abstract class Type implements Cloneable
 		return create( nativeType, cardinality, false, subTypes );
 	}
 
+	/**
+	 * The path of a node being checked or casted, used for error messages.
+	 * Its string representation is built only when requested.
+	 */
+	protected static class Path
+	{
+		private static final Path ROOT = new Path( null, "#Message" );
+
+		private final Path parent;
+		private final String name;
+
+		protected Path( Path parent, String name )
+		{
+			this.parent = parent;
+			this.name = name;
+		}
+
+		private void appendTo( StringBuilder builder )
+		{
+			if ( parent != null ) {
+				parent.appendTo( builder );
+				builder.append( '.' );
+			}
+			builder.append( name );
+		}
+
+		@Override
+		public String toString()
+		{
+			StringBuilder builder = new StringBuilder();
+			appendTo( builder );
+			return builder.toString();
+		}
+	}
+
 	public void check( Value value )
 		throws TypeCheckingException
 	{
-		check( value, new StringBuilder( "#Message" ) );
+		check( value, Path.ROOT );
 	}
 
 	public Value cast( Value value )
 		throws TypeCastingException
 	{
-		return cast( value, new StringBuilder( "#Message" ) );
+		return cast( value, Path.ROOT );
 	}
 
 	public abstract void cutChildrenFromValue( Value value );
 	protected abstract NativeType nativeType();
 	protected abstract Range cardinality();
 	protected abstract Set< Entry< String, Type > > subTypeSet();
-	protected abstract void check( Value value, StringBuilder pathBuilder )
+	protected abstract void check( Value value, Path path )
 		throws TypeCheckingException;
-	protected abstract Value cast( Value value, StringBuilder pathBuilder )
+	protected abstract Value cast( Value value, Path path )
 		throws TypeCastingException;
 
 	public static class TypeLink extends Type
@@ -386,16 +452,16 @@ public abstract class Type implements Cloneable
 			return cardinality;
 		}
 
-		protected void check( Value value, StringBuilder pathBuilder )
+		protected void check( Value value, Path path )
 			throws TypeCheckingException
 		{
-			linkedType.check( value, pathBuilder );
+			linkedType.check( value, path );
 		}
 
-		protected Value cast( Value value, StringBuilder pathBuilder )
+		protected Value cast( Value value, Path path )
 			throws TypeCastingException
 		{
-			return linkedType.cast( value, pathBuilder );
+			return linkedType.cast( value, path );
 		}
 	}
 }
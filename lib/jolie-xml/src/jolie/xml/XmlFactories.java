@@ -0,0 +1,164 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.xml;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+
+/**
+ * XML factories shared by all the protocols handling XML messages.
+ *
+ * Looking up a factory implementation is expensive, so this is done once.
+ * The StAX factories are never reconfigured after their creation and can be
+ * used concurrently. DOM builders and transformers are not thread-safe:
+ * they are lent to one user at a time and kept in a pool when given back.
+ * @author Fabrizio Montesi
+ */
+public class XmlFactories
+{
+	private static final int POOL_SIZE = 32;
+
+	private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+	private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+	private static final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+	private static final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+
+	private static final BlockingQueue< DocumentBuilder > documentBuilders =
+		new ArrayBlockingQueue< DocumentBuilder >( POOL_SIZE );
+	private static final BlockingQueue< Transformer > transformers =
+		new ArrayBlockingQueue< Transformer >( POOL_SIZE );
+
+	static {
+		documentBuilderFactory.setNamespaceAware( true );
+	}
+
+	private XmlFactories() {}
+
+	/**
+	 * Creates a namespace-aware reader for the XML document in the passed stream.
+	 * The encoding of the document is detected from its content.
+	 * @param istream the stream to read the document from
+	 * @return a new reader
+	 * @throws XMLStreamException if the reader can not be created
+	 */
+	public static XMLStreamReader createXMLStreamReader( InputStream istream )
+		throws XMLStreamException
+	{
+		return inputFactory.createXMLStreamReader( istream );
+	}
+
+	/**
+	 * Creates a writer of XML documents to the passed stream.
+	 * @param ostream the stream to write the document to
+	 * @param encoding the character encoding to use
+	 * @return a new writer
+	 * @throws XMLStreamException if the writer can not be created
+	 */
+	public static XMLStreamWriter createXMLStreamWriter( OutputStream ostream, String encoding )
+		throws XMLStreamException
+	{
+		return outputFactory.createXMLStreamWriter( ostream, encoding );
+	}
+
+	/**
+	 * Creates a writer of XML documents to the passed character stream.
+	 * @param writer the character stream to write the document to
+	 * @return a new writer
+	 * @throws XMLStreamException if the writer can not be created
+	 */
+	public static XMLStreamWriter createXMLStreamWriter( Writer writer )
+		throws XMLStreamException
+	{
+		return outputFactory.createXMLStreamWriter( writer );
+	}
+
+	/**
+	 * Takes a namespace-aware DOM builder from the pool, creating it if the pool is empty.
+	 * The builder must be given back with {@link #releaseDocumentBuilder(DocumentBuilder)}.
+	 * @return a DOM builder
+	 * @throws ParserConfigurationException if a new builder can not be created
+	 */
+	public static DocumentBuilder acquireDocumentBuilder()
+		throws ParserConfigurationException
+	{
+		DocumentBuilder builder = documentBuilders.poll();
+		if ( builder == null ) {
+			synchronized( documentBuilderFactory ) {
+				builder = documentBuilderFactory.newDocumentBuilder();
+			}
+		}
+		return builder;
+	}
+
+	/**
+	 * Gives back a DOM builder obtained through {@link #acquireDocumentBuilder()}.
+	 * @param builder the builder to give back
+	 */
+	public static void releaseDocumentBuilder( DocumentBuilder builder )
+	{
+		builder.reset();
+		documentBuilders.offer( builder );
+	}
+
+	/**
+	 * Takes a transformer from the pool, creating it if the pool is empty.
+	 * The transformer must be given back with {@link #releaseTransformer(Transformer)}.
+	 * @return a transformer
+	 * @throws TransformerConfigurationException if a new transformer can not be created
+	 */
+	public static Transformer acquireTransformer()
+		throws TransformerConfigurationException
+	{
+		Transformer transformer = transformers.poll();
+		if ( transformer == null ) {
+			synchronized( transformerFactory ) {
+				transformer = transformerFactory.newTransformer();
+			}
+		}
+		return transformer;
+	}
+
+	/**
+	 * Gives back a transformer obtained through {@link #acquireTransformer()}.
+	 * Its output properties are reset.
+	 * @param transformer the transformer to give back
+	 */
+	public static void releaseTransformer( Transformer transformer )
+	{
+		transformer.reset();
+		transformers.offer( transformer );
+	}
+}
@@ -34,6 +34,10 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import jolie.lang.Constants;
 import jolie.runtime.Value;
 import org.w3c.dom.Document;
@@ -80,6 +84,47 @@ public class XmlUtils
 		_valueToDocument( value, root, document );
 	}
 
+	/**
+	 * Writes the content of a jolie.Value object to an XML stream: its string value
+	 * becomes text and its children become elements, carrying their attributes.
+	 * The element representing the value itself must have already been started.
+	 * @param value the source Value
+	 * @param writer the XML stream receiving the transformation
+	 * @throws XMLStreamException if the stream can not be written
+	 */
+	public static void valueToXmlStream( Value value, XMLStreamWriter writer )
+		throws XMLStreamException
+	{
+		writer.writeCharacters( value.strValue() );
+		for( Entry< String, ValueVector > entry : value.children().entrySet() ) {
+			if ( !entry.getKey().startsWith( "@" ) ) {
+				for( Value val : entry.getValue() ) {
+					writer.writeStartElement( entry.getKey() );
+					attributesToXmlStream( val, writer );
+					valueToXmlStream( val, writer );
+					writer.writeEndElement();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the attributes of a jolie.Value object to the element just started in an XML stream.
+	 * @param value the Value holding the attributes
+	 * @param writer the XML stream receiving the attributes
+	 * @throws XMLStreamException if the stream can not be written
+	 */
+	public static void attributesToXmlStream( Value value, XMLStreamWriter writer )
+		throws XMLStreamException
+	{
+		for( Entry< String, ValueVector > attrEntry : getAttributesOrNull( value ).entrySet() ) {
+			writer.writeAttribute(
+				attrEntry.getKey(),
+				attrEntry.getValue().first().strValue()
+			);
+		}
+	}
+
 	/**
 	 * Transforms a jolie.Value object to an XML Document instance following a given XML Type Definition.
 	 * @see Document
@@ -315,6 +360,31 @@ documentToValue( document, value, true );
 	}
         
 
+	/**
+	 * Reads an XML element to a Value representation, as {@link #documentToValue(Document, Value, boolean)}
+	 * would do with a document having that element as root.
+	 * If the reader is not positioned on the start of an element, the next element is read.
+	 * The reader is left on the end of the element.
+	 * @param reader the source XML stream
+	 * @param value the Value receiving the JOLIE representation of the element
+	 * @param includeAttributes <code>true</code> if attributes are to be read too
+	 * @throws XMLStreamException if the stream can not be read or holds no element
+	 */
+	public static void xmlStreamToValue( XMLStreamReader reader, Value value, boolean includeAttributes )
+		throws XMLStreamException
+	{
+		while( reader.getEventType() != XMLStreamConstants.START_ELEMENT ) {
+			if ( reader.hasNext() == false ) {
+				throw new XMLStreamException( "No element found" );
+			}
+			reader.next();
+		}
+		if ( includeAttributes ) {
+			setAttributes( value, reader );
+		}
+		elementContentToValue( value, reader, includeAttributes );
+	}
+
 	/*
 	 * author: Claudio Guidi
 	 * 7/1/2011
@@ -361,6 +431,19 @@ documentToValue( document, value, true );
 		}
 	}
 
+	private static void setAttributes( Value value, XMLStreamReader reader )
+	{
+		// DOM sees namespace declarations as attributes, and so do we
+		String prefix;
+		for( int i = 0; i < reader.getNamespaceCount(); i++ ) {
+			prefix = reader.getNamespacePrefix( i );
+			getAttribute( value, ( prefix == null || prefix.length() == 0 ) ? "xmlns" : prefix ).setValue( reader.getNamespaceURI( i ) );
+		}
+		for( int i = 0; i < reader.getAttributeCount(); i++ ) {
+			getAttribute( value, reader.getAttributeLocalName( i ) ).setValue( reader.getAttributeValue( i ) );
+		}
+	}
+
 	/*
 	 * author Claudio Guidi
 	 * 7/1/2011
@@ -423,6 +506,33 @@ documentToValue( document, value, true );
 		}
 	}
 
+	private static void elementContentToValue( Value value, XMLStreamReader reader, boolean includeAttributes )
+		throws XMLStreamException
+	{
+		int event;
+		Value childValue;
+		StringBuilder builder = new StringBuilder();
+		while( (event=reader.next()) != XMLStreamConstants.END_ELEMENT ) {
+			switch( event ) {
+			case XMLStreamConstants.START_ELEMENT:
+				childValue = value.getNewChild( reader.getLocalName() );
+				if ( includeAttributes ) {
+					setAttributes( childValue, reader );
+				}
+				elementContentToValue( childValue, reader, includeAttributes );
+				break;
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.SPACE:
+				builder.append( reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength() );
+				break;
+			}
+		}
+		if ( builder.length() > 0 ) {
+			value.setValue( builder.toString() );
+		}
+	}
+
 	private static void elementsToSubValues( Value value, NodeList list, boolean includeAttributes )
 	{
 		Node node;
@@ -0,0 +1,319 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.lang.parse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache of the tokens of included files, shared by all the parsers
+ * running in the same virtual machine.
+ *
+ * The tokens of an included file are keyed by a hash of its content, so an
+ * include file read by many programs (e.g., by the services embedded by a
+ * program) is scanned only once. The parsing of the tokens is not cached,
+ * as its result depends on what the including program has already defined
+ * (constants, types, interfaces).
+ *
+ * The tokens can also be stored in a directory, set with {@link #setDirectory(File)},
+ * so that they are reused by other executions.
+ * @author Fabrizio Montesi
+ */
+public class IncludeCache
+{
+	private static final int MAGIC = 0x4A4F4C54; // "JOLT"
+	private static final int VERSION = 1; // Must be incremented for every change to the Scanner
+	private static final int MAX_ENTRIES = 256;
+	private static final String FILE_EXTENSION = ".tokens";
+
+	private static final IncludeCache instance = new IncludeCache();
+
+	private final Map< String, TokenStream > entries =
+		new LinkedHashMap< String, TokenStream >( 16, 0.75f, true ) {
+			@Override
+			protected boolean removeEldestEntry( Map.Entry< String, TokenStream > eldest )
+			{
+				return size() > MAX_ENTRIES;
+			}
+		};
+	private volatile File directory = null;
+
+	private IncludeCache() {}
+
+	/**
+	 * Returns the cache shared by the parsers of this virtual machine.
+	 * @return the cache shared by the parsers of this virtual machine
+	 */
+	public static IncludeCache getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Sets the directory where the tokens of included files are stored.
+	 * @param directory the directory to use, or <code>null</code> to keep
+	 * the tokens in memory only
+	 */
+	public void setDirectory( File directory )
+	{
+		if ( directory != null ) {
+			directory.mkdirs();
+		}
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns a scanner for the passed include file, which is read and closed.
+	 * @param istream the content of the include file
+	 * @param source the source of the include file
+	 * @return a scanner returning the tokens of the include file
+	 * @throws IOException if the include file can not be read
+	 */
+	Scanner newScanner( InputStream istream, URI source )
+		throws IOException
+	{
+		byte[] content;
+		try {
+			content = readAll( istream );
+		} finally {
+			istream.close();
+		}
+		String key = hash( content );
+		TokenStream tokenStream;
+		synchronized( entries ) {
+			tokenStream = entries.get( key );
+		}
+
+		if ( tokenStream == null ) {
+			File file = ( directory == null ) ? null : new File( directory, key + FILE_EXTENSION );
+			if ( file != null && file.isFile() ) {
+				tokenStream = readTokenStream( file );
+			}
+			if ( tokenStream == null ) {
+				tokenStream = scan( content, source );
+				if ( tokenStream == null ) {
+					// Not cached: the parser will stop at the scanning error
+					return new Scanner( new ByteArrayInputStream( content ), source );
+				}
+				if ( file != null ) {
+					writeTokenStream( tokenStream, file );
+				}
+			}
+			synchronized( entries ) {
+				entries.put( key, tokenStream );
+			}
+		}
+		return new CachedScanner( tokenStream, source );
+	}
+
+	private static byte[] readAll( InputStream istream )
+		throws IOException
+	{
+		ByteArrayOutputStream ostream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[ 8192 ];
+		int n;
+		while( (n = istream.read( buffer )) != -1 ) {
+			ostream.write( buffer, 0, n );
+		}
+		return ostream.toByteArray();
+	}
+
+	private static String hash( byte[] content )
+	{
+		byte[] digest;
+		try {
+			digest = MessageDigest.getInstance( "SHA-1" ).digest( content );
+		} catch( NoSuchAlgorithmException e ) {
+			// Every Java platform is required to support SHA-1
+			throw new IllegalStateException( e );
+		}
+		StringBuilder builder = new StringBuilder( digest.length * 2 );
+		for( byte b : digest ) {
+			builder.append( Character.forDigit( (b >> 4) & 0xF, 16 ) );
+			builder.append( Character.forDigit( b & 0xF, 16 ) );
+		}
+		return builder.toString();
+	}
+
+	/*
+	 * Returns null if the content contains a scanning error.
+	 */
+	private static TokenStream scan( byte[] content, URI source )
+		throws IOException
+	{
+		Scanner scanner = new Scanner( new ByteArrayInputStream( content ), source );
+		List< Scanner.Token > tokens = new ArrayList< Scanner.Token >();
+		List< Integer > lines = new ArrayList< Integer >();
+		Scanner.Token token;
+		do {
+			token = scanner.getToken();
+			if ( token.is( Scanner.TokenType.ERROR ) ) {
+				return null;
+			}
+			tokens.add( token );
+			lines.add( scanner.line() );
+		} while( !token.isEOF() );
+
+		int[] linesArray = new int[ lines.size() ];
+		for( int i = 0; i < linesArray.length; i++ ) {
+			linesArray[ i ] = lines.get( i );
+		}
+		return new TokenStream( tokens.toArray( new Scanner.Token[ tokens.size() ] ), linesArray );
+	}
+
+	/*
+	 * Returns null if the file can not be read or has been written by another version.
+	 */
+	private static TokenStream readTokenStream( File file )
+	{
+		DataInputStream istream = null;
+		try {
+			istream = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+			if ( istream.readInt() != MAGIC || istream.readInt() != VERSION ) {
+				return null;
+			}
+			int size = istream.readInt();
+			Scanner.Token[] tokens = new Scanner.Token[ size ];
+			int[] lines = new int[ size ];
+			for( int i = 0; i < size; i++ ) {
+				Scanner.TokenType type = Scanner.TokenType.valueOf( istream.readUTF() );
+				String content = istream.readUTF();
+				boolean isUnreservedKeyword = istream.readBoolean();
+				tokens[ i ] = new Scanner.Token( type, content, isUnreservedKeyword );
+				lines[ i ] = istream.readInt();
+			}
+			if ( size == 0 || !tokens[ size - 1 ].isEOF() ) {
+				return null;
+			}
+			return new TokenStream( tokens, lines );
+		} catch( IOException e ) {
+			return null;
+		} catch( IllegalArgumentException e ) {
+			return null;
+		} finally {
+			if ( istream != null ) {
+				try {
+					istream.close();
+				} catch( IOException e ) {}
+			}
+		}
+	}
+
+	/*
+	 * The file is written under a temporary name and then renamed,
+	 * so that concurrent executions never read a partial file.
+	 * Failures are ignored: the tokens are still cached in memory.
+	 */
+	private static void writeTokenStream( TokenStream tokenStream, File file )
+	{
+		File tmpFile = null;
+		try {
+			tmpFile = File.createTempFile( file.getName(), ".tmp", file.getParentFile() );
+			DataOutputStream ostream = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmpFile ) ) );
+			try {
+				ostream.writeInt( MAGIC );
+				ostream.writeInt( VERSION );
+				ostream.writeInt( tokenStream.tokens.length );
+				for( int i = 0; i < tokenStream.tokens.length; i++ ) {
+					Scanner.Token token = tokenStream.tokens[ i ];
+					ostream.writeUTF( token.type().name() );
+					ostream.writeUTF( token.content() );
+					ostream.writeBoolean( token.isUnreservedKeyword() );
+					ostream.writeInt( tokenStream.lines[ i ] );
+				}
+			} finally {
+				ostream.close();
+			}
+			if ( tmpFile.renameTo( file ) ) {
+				tmpFile = null;
+			}
+		} catch( IOException e ) {
+		} finally {
+			if ( tmpFile != null ) {
+				tmpFile.delete();
+			}
+		}
+	}
+
+	/*
+	 * The scanned tokens of an include file, each with the line
+	 * the scanner was at after reading it. Never modified.
+	 */
+	private static class TokenStream
+	{
+		private final Scanner.Token[] tokens;
+		private final int[] lines;
+
+		private TokenStream( Scanner.Token[] tokens, int[] lines )
+		{
+			this.tokens = tokens;
+			this.lines = lines;
+		}
+	}
+
+	/*
+	 * A scanner returning the tokens of a TokenStream, ending with EOF.
+	 */
+	private static class CachedScanner extends Scanner
+	{
+		private final TokenStream tokenStream;
+		private int index = -1;
+
+		private CachedScanner( TokenStream tokenStream, URI source )
+			throws IOException
+		{
+			super( new ByteArrayInputStream( new byte[ 0 ] ), source );
+			this.tokenStream = tokenStream;
+		}
+
+		@Override
+		public Token getToken()
+		{
+			if ( index < tokenStream.tokens.length - 1 ) {
+				index++;
+			}
+			return tokenStream.tokens[ index ];
+		}
+
+		@Override
+		public int line()
+		{
+			return ( index < 0 ) ? 1 : tokenStream.lines[ index ];
+		}
+	}
+}
@@ -105,6 +105,8 @@ import jolie.lang.parse.ast.expression.InstanceOfExpressionNode;
 import jolie.lang.parse.ast.types.TypeDefinitionLink;
 import jolie.lang.parse.ast.types.TypeInlineDefinition;
 import jolie.util.Pair;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /** Builds an optimized version of an OL parse tree.
@@ -114,8 +116,14 @@ import jolie.util.Pair;
 public class OLParseTreeOptimizer
 {	
 	/**
-	 * TODO Optimize expressions and conditions
+	 * Besides flattening compositions, the optimizer folds the expressions
+	 * and conditions whose operands are constants (e.g., constants defined
+	 * with -C) and removes the branches of if, while and for statements
+	 * whose conditions are constant and false.
 	 *
+	 * Folding follows the semantics of the runtime operations on values,
+	 * and is performed only on int, long, double, string and bool constants
+	 * for which the result is known to be the same.
 	 */
 	private static class OptimizerVisitor implements OLVisitor
 	{
@@ -309,16 +317,36 @@ public class OLParseTreeOptimizer
 		{
 			IfStatement stm = new IfStatement( n.context() );
 			OLSyntaxNode condition;
+			OLSyntaxNode elseProcess = n.elseProcess();
 			for( Pair< OLSyntaxNode, OLSyntaxNode > pair : n.children() ) {
 				pair.key().accept( this );
 				condition = currNode;
-				pair.value().accept( this );
-				stm.addChild( new Pair< OLSyntaxNode, OLSyntaxNode >( condition, currNode ) );
+				if ( condition instanceof ConstantBoolExpression ) {
+					if ( ((ConstantBoolExpression)condition).value() ) {
+						/*
+						 * if ( true ) A else B === A
+						 */
+						elseProcess = pair.value();
+						break;
+					}
+					/*
+					 * if ( false ) A else B === B
+					 */
+				} else {
+					pair.value().accept( this );
+					stm.addChild( new Pair< OLSyntaxNode, OLSyntaxNode >( condition, currNode ) );
+				}
 			}
-			
-			if ( n.elseProcess() != null ) {
-				n.elseProcess().accept( this );
+
+			if ( elseProcess != null ) {
+				elseProcess.accept( this );
+				if ( stm.children().isEmpty() ) {
+					return;
+				}
 				stm.setElseProcess( currNode );
+			} else if ( stm.children().isEmpty() ) {
+				currNode = new NullProcessStatement( n.context() );
+				return;
 			}
 			
 			currNode = stm;
@@ -337,22 +365,42 @@ public class OLParseTreeOptimizer
 		
 		public void visit( WhileStatement n )
 		{
-			currNode = new WhileStatement(
-				n.context(),
-				optimizeNode( n.condition() ),
-				optimizeNode( n.body() )
-			);
+			OLSyntaxNode condition = optimizeNode( n.condition() );
+			if ( isFalse( condition ) ) {
+				currNode = new NullProcessStatement( n.context() );
+			} else {
+				currNode = new WhileStatement(
+					n.context(),
+					condition,
+					optimizeNode( n.body() )
+				);
+			}
 		}
 		
 		public void visit( ForStatement n )
 		{
-			currNode = new ForStatement(
-				n.context(),
-				optimizeNode( n.init() ),
-				optimizeNode( n.condition() ),
-				optimizeNode( n.post() ),
-				optimizeNode( n.body() )
-			);
+			OLSyntaxNode init = optimizeNode( n.init() );
+			OLSyntaxNode condition = optimizeNode( n.condition() );
+			if ( isFalse( condition ) ) {
+				/*
+				 * for( init, false, post ) A === init
+				 */
+				currNode = init;
+			} else {
+				currNode = new ForStatement(
+					n.context(),
+					init,
+					condition,
+					optimizeNode( n.post() ),
+					optimizeNode( n.body() )
+				);
+			}
+		}
+
+		private static boolean isFalse( OLSyntaxNode condition )
+		{
+			return condition instanceof ConstantBoolExpression
+				&& ((ConstantBoolExpression)condition).value() == false;
 		}
 		
 		public void visit( ForEachStatement n )
@@ -561,12 +609,18 @@ public class OLParseTreeOptimizer
 		public void visit( OrConditionNode n )
 		{
 			if ( n.children().size() > 1 ) {
-				OrConditionNode ret = new OrConditionNode( n.context() );
-				for( OLSyntaxNode child : n.children() ) {
-					child.accept( this );
-					ret.addChild( currNode );
+				List< OLSyntaxNode > children = optimizeConditions( n.children(), true );
+				if ( children.size() == 1 ) {
+					currNode = children.get( 0 );
+				} else if ( children.isEmpty() ) {
+					currNode = new ConstantBoolExpression( n.context(), false );
+				} else {
+					OrConditionNode ret = new OrConditionNode( n.context() );
+					for( OLSyntaxNode child : children ) {
+						ret.addChild( child );
+					}
+					currNode = ret;
 				}
-				currNode = ret;
 			} else {
 				n.children().get( 0 ).accept( this );
 			}
@@ -575,21 +629,64 @@ public class OLParseTreeOptimizer
 		public void visit( AndConditionNode n )
 		{
 			if ( n.children().size() > 1 ) {
-				AndConditionNode ret = new AndConditionNode( n.context() );
-				for( OLSyntaxNode child : n.children() ) {
-					child.accept( this );
-					ret.addChild( currNode );
+				List< OLSyntaxNode > children = optimizeConditions( n.children(), false );
+				if ( children.size() == 1 ) {
+					currNode = children.get( 0 );
+				} else if ( children.isEmpty() ) {
+					currNode = new ConstantBoolExpression( n.context(), true );
+				} else {
+					AndConditionNode ret = new AndConditionNode( n.context() );
+					for( OLSyntaxNode child : children ) {
+						ret.addChild( child );
+					}
+					currNode = ret;
 				}
-				currNode = ret;
 			} else {
 				n.children().get( 0 ).accept( this );
 			}
 		}
 
+		/*
+		 * Optimizes the children of an or (if shortCircuit is true)
+		 * or of an and (if shortCircuit is false) condition.
+		 * Constants not deciding the result are removed,
+		 * and the children after a constant deciding the result
+		 * are removed as they are never evaluated.
+		 * A single child can not be used as the result of the whole
+		 * condition, as it is not necessarily a bool:
+		 * it is kept only if the result is decided by a constant.
+		 */
+		private List< OLSyntaxNode > optimizeConditions( List< OLSyntaxNode > conditions, boolean shortCircuit )
+		{
+			List< OLSyntaxNode > ret = new ArrayList< OLSyntaxNode >( conditions.size() );
+			for( OLSyntaxNode condition : conditions ) {
+				condition.accept( this );
+				if ( currNode instanceof ConstantBoolExpression ) {
+					if ( ((ConstantBoolExpression)currNode).value() == shortCircuit ) {
+						ret.add( currNode );
+						return ret;
+					}
+				} else {
+					ret.add( currNode );
+				}
+			}
+			if ( ret.size() == 1 ) {
+				/*
+				 * Keep the composition, which converts the result to a bool.
+				 */
+				ret.add( new ConstantBoolExpression( ret.get( 0 ).context(), !shortCircuit ) );
+			}
+			return ret;
+		}
+
 		public void visit( NotExpressionNode n )
 		{
 			n.expression().accept( this );
-			currNode = new NotExpressionNode( n.context(), currNode );
+			if ( currNode instanceof ConstantBoolExpression ) {
+				currNode = new ConstantBoolExpression( n.context(), !((ConstantBoolExpression)currNode).value() );
+			} else {
+				currNode = new NotExpressionNode( n.context(), currNode );
+			}
 		}
 
 		public void visit( CompareConditionNode n )
@@ -597,7 +694,15 @@ public class OLParseTreeOptimizer
 			n.leftExpression().accept( this );
 			OLSyntaxNode leftExpression = currNode;
 			n.rightExpression().accept( this );
-			currNode = new CompareConditionNode( n.context(), leftExpression, currNode, n.opType() );
+			Boolean result = null;
+			if ( isFoldable( leftExpression ) && isFoldable( currNode ) ) {
+				result = compare( n.opType(), constantValue( leftExpression ), constantValue( currNode ) );
+			}
+			if ( result == null ) {
+				currNode = new CompareConditionNode( n.context(), leftExpression, currNode, n.opType() );
+			} else {
+				currNode = new ConstantBoolExpression( n.context(), result );
+			}
 		}
 
 		public void visit( ConstantIntegerExpression n ) { currNode = n; }
@@ -626,18 +731,22 @@ public class OLParseTreeOptimizer
 		public void visit( ProductExpressionNode n )
 		{
 			if ( n.operands().size() > 1 ) {
-				ProductExpressionNode ret = new ProductExpressionNode( n.context() );
-				for( Pair< Constants.OperandType, OLSyntaxNode > pair : n.operands() ) {
-					pair.value().accept( this );
-					if ( pair.key() == Constants.OperandType.MULTIPLY ) {
-						ret.multiply( currNode );
-					} else if ( pair.key() == Constants.OperandType.DIVIDE ) {
-						ret.divide( currNode );
-					} else if ( pair.key() == Constants.OperandType.MODULUS ) {
-						ret.modulo( currNode );
+				List< Pair< Constants.OperandType, OLSyntaxNode > > operands = optimizeOperands( n.context(), n.operands() );
+				if ( operands.size() == 1 ) {
+					currNode = operands.get( 0 ).value();
+				} else {
+					ProductExpressionNode ret = new ProductExpressionNode( n.context() );
+					for( Pair< Constants.OperandType, OLSyntaxNode > pair : operands ) {
+						if ( pair.key() == Constants.OperandType.MULTIPLY ) {
+							ret.multiply( pair.value() );
+						} else if ( pair.key() == Constants.OperandType.DIVIDE ) {
+							ret.divide( pair.value() );
+						} else if ( pair.key() == Constants.OperandType.MODULUS ) {
+							ret.modulo( pair.value() );
+						}
 					}
+					currNode = ret;
 				}
-				currNode = ret;
 			} else {
 				n.operands().iterator().next().value().accept( this );
 			}
@@ -646,21 +755,188 @@ public class OLParseTreeOptimizer
 		public void visit( SumExpressionNode n )
 		{
 			if ( n.operands().size() > 1 ) {
-				SumExpressionNode ret = new SumExpressionNode( n.context() );
-				for( Pair< Constants.OperandType, OLSyntaxNode > pair : n.operands() ) {
-					pair.value().accept( this );
-					if ( pair.key() == Constants.OperandType.ADD ) {
-						ret.add( currNode );
-					} else {
-						ret.subtract( currNode );
+				List< Pair< Constants.OperandType, OLSyntaxNode > > operands = optimizeOperands( n.context(), n.operands() );
+				if ( operands.size() == 1 ) {
+					currNode = operands.get( 0 ).value();
+				} else {
+					SumExpressionNode ret = new SumExpressionNode( n.context() );
+					for( Pair< Constants.OperandType, OLSyntaxNode > pair : operands ) {
+						if ( pair.key() == Constants.OperandType.ADD ) {
+							ret.add( pair.value() );
+						} else {
+							ret.subtract( pair.value() );
+						}
 					}
+					currNode = ret;
 				}
-				currNode = ret;
 			} else {
 				n.operands().iterator().next().value().accept( this );
 			}
 		}
 
+		/*
+		 * Optimizes the operands of a sum or product expression.
+		 * Operands are evaluated from left to right, starting from the value
+		 * of the first one (whose operand type is ignored), so the leading
+		 * constant operands are folded into a single one.
+		 */
+		private List< Pair< Constants.OperandType, OLSyntaxNode > > optimizeOperands(
+			ParsingContext context,
+			List< Pair< Constants.OperandType, OLSyntaxNode > > operands
+		) {
+			List< Pair< Constants.OperandType, OLSyntaxNode > > ret =
+				new ArrayList< Pair< Constants.OperandType, OLSyntaxNode > >( operands.size() );
+			Object value = null; // The value of the folded operands
+			boolean folding = true;
+			for( Pair< Constants.OperandType, OLSyntaxNode > pair : operands ) {
+				pair.value().accept( this );
+				if ( folding && isFoldable( currNode ) ) {
+					Object result = ( value == null ) ?
+						constantValue( currNode )
+						: evaluate( pair.key(), value, constantValue( currNode ) );
+					if ( result != null ) {
+						value = result;
+						continue;
+					}
+				}
+				if ( folding && value != null ) {
+					ret.add( new Pair< Constants.OperandType, OLSyntaxNode >( operands.get( 0 ).key(), constantNode( context, value ) ) );
+				}
+				folding = false;
+				ret.add( new Pair< Constants.OperandType, OLSyntaxNode >( pair.key(), currNode ) );
+			}
+			if ( folding ) {
+				ret.add( new Pair< Constants.OperandType, OLSyntaxNode >( operands.get( 0 ).key(), constantNode( context, value ) ) );
+			}
+			return ret;
+		}
+
+		private static boolean isFoldable( OLSyntaxNode n )
+		{
+			return n instanceof ConstantIntegerExpression
+				|| n instanceof ConstantLongExpression
+				|| n instanceof ConstantDoubleExpression
+				|| n instanceof ConstantStringExpression
+				|| n instanceof ConstantBoolExpression;
+		}
+
+		private static Object constantValue( OLSyntaxNode n )
+		{
+			if ( n instanceof ConstantIntegerExpression ) {
+				return ((ConstantIntegerExpression)n).value();
+			} else if ( n instanceof ConstantLongExpression ) {
+				return ((ConstantLongExpression)n).value();
+			} else if ( n instanceof ConstantDoubleExpression ) {
+				return ((ConstantDoubleExpression)n).value();
+			} else if ( n instanceof ConstantStringExpression ) {
+				return ((ConstantStringExpression)n).value();
+			}
+			return ((ConstantBoolExpression)n).value();
+		}
+
+		private static OLSyntaxNode constantNode( ParsingContext context, Object value )
+		{
+			if ( value instanceof Integer ) {
+				return new ConstantIntegerExpression( context, (Integer)value );
+			} else if ( value instanceof Long ) {
+				return new ConstantLongExpression( context, (Long)value );
+			} else if ( value instanceof Double ) {
+				return new ConstantDoubleExpression( context, (Double)value );
+			} else if ( value instanceof String ) {
+				return new ConstantStringExpression( context, ((String)value).intern() );
+			}
+			return new ConstantBoolExpression( context, (Boolean)value );
+		}
+
+		/*
+		 * Returns the result of the operation, or null if it can not be folded.
+		 * Multiplications are never folded: Value.multiply does not
+		 * change a defined value, and folding must not change the result.
+		 */
+		private static Object evaluate( Constants.OperandType type, Object left, Object right )
+		{
+			if ( type == Constants.OperandType.ADD ) {
+				if ( left instanceof String || right instanceof String ) {
+					return left.toString() + right.toString();
+				} else if ( left instanceof Integer && right instanceof Integer ) {
+					return (Integer)left + (Integer)right;
+				} else if ( left instanceof Long && right instanceof Long ) {
+					return (Long)left + (Long)right;
+				} else if ( left instanceof Double && right instanceof Double ) {
+					return (Double)left + (Double)right;
+				} else if ( left instanceof Boolean && right instanceof Boolean ) {
+					return (Boolean)left || (Boolean)right;
+				}
+			} else if ( type == Constants.OperandType.SUBTRACT ) {
+				if ( left instanceof Integer && right instanceof Integer ) {
+					return (Integer)left - (Integer)right;
+				} else if ( left instanceof Long && right instanceof Long ) {
+					return (Long)left - (Long)right;
+				} else if ( left instanceof Double && right instanceof Double ) {
+					return (Double)left - (Double)right;
+				}
+			} else if ( type == Constants.OperandType.DIVIDE ) {
+				if ( left instanceof Integer && right instanceof Integer && (Integer)right != 0 ) {
+					return (Integer)left / (Integer)right;
+				} else if ( left instanceof Long && right instanceof Long && (Long)right != 0L ) {
+					return (Long)left / (Long)right;
+				} else if ( left instanceof Double && right instanceof Double ) {
+					return (Double)left / (Double)right;
+				}
+			} else if ( type == Constants.OperandType.MODULUS ) {
+				if ( left instanceof Integer && right instanceof Integer && (Integer)right != 0 ) {
+					return (Integer)left % (Integer)right;
+				} else if ( left instanceof Long && right instanceof Long && (Long)right != 0L ) {
+					return (Long)left % (Long)right;
+				} else if ( left instanceof Double && right instanceof Double ) {
+					return (Double)left % (Double)right;
+				}
+			}
+			return null;
+		}
+
+		/*
+		 * Returns the result of the comparison, or null if it can not be folded.
+		 */
+		private static Boolean compare( Scanner.TokenType opType, Object left, Object right )
+		{
+			if ( opType == Scanner.TokenType.EQUAL || opType == Scanner.TokenType.NOT_EQUAL ) {
+				Boolean equal = null;
+				if ( left instanceof String ) {
+					equal = left.equals( right.toString() );
+				} else if ( left instanceof Double && right instanceof Double ) {
+					equal = ((Double)left).doubleValue() == ((Double)right).doubleValue();
+				} else if ( left.getClass() == right.getClass() ) {
+					equal = left.equals( right );
+				}
+				if ( equal == null ) {
+					return null;
+				}
+				return ( opType == Scanner.TokenType.EQUAL ) ? equal : !equal;
+			}
+
+			double l, r;
+			if ( left instanceof Double && right instanceof Double ) {
+				l = (Double)left;
+				r = (Double)right;
+			} else if ( left instanceof Integer && right instanceof Integer ) {
+				l = (Integer)left;
+				r = (Integer)right;
+			} else {
+				return null;
+			}
+			if ( opType == Scanner.TokenType.LANGLE ) {
+				return l < r;
+			} else if ( opType == Scanner.TokenType.RANGLE ) {
+				return l > r;
+			} else if ( opType == Scanner.TokenType.MINOR_OR_EQUAL ) {
+				return l <= r;
+			} else if ( opType == Scanner.TokenType.MAJOR_OR_EQUAL ) {
+				return l >= r;
+			}
+			return null;
+		}
+
 		public void visit( VariableExpressionNode n )
 		{
 			currNode = new VariableExpressionNode(
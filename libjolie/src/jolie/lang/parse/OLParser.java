@@ -627,7 +627,7 @@ public class OLParser extends AbstractParser
 
 			origIncludePaths = includePaths;
 			try {
-				setScanner( new Scanner( includeFile.getInputStream(), new URI( "file:" + includeStr ) ) );
+				setScanner( IncludeCache.getInstance().newScanner( includeFile.getInputStream(), new URI( "file:" + includeStr ) ) );
 			} catch( URISyntaxException e ) {
 				throw new IOException( e );
 			}
@@ -255,6 +255,15 @@ public class Scanner
 			return type;
 		}
 
+		/**
+		 * Returns <code>true</code> if this token is an unreserved keyword.
+		 * @return <code>true</code> if this token is an unreserved keyword
+		 */
+		public boolean isUnreservedKeyword()
+		{
+			return isUnreservedKeyword;
+		}
+
 		/**
 		 * Returns <code>true</code> if this token can be considered as a valid
 		 * value for a constant, <code>false</code> otherwise.
@@ -0,0 +1,130 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.lang.parse.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import jolie.lang.Constants;
+import jolie.lang.parse.CorrelationFunctionInfo;
+import jolie.lang.parse.ast.Program;
+import jolie.lang.parse.util.impl.CompiledProgramReader;
+import jolie.lang.parse.util.impl.CompiledProgramWriter;
+
+/**
+ * A program in the compiled (.olc) format produced by joliec.
+ *
+ * The format is a versioned binary encoding of the program syntax tree.
+ * A compiled program may also carry the results of its semantic verification,
+ * so that an interpreter loading it does not need to verify it again.
+ * @author Fabrizio Montesi
+ */
+public class CompiledProgram
+{
+	private final Program program;
+	private final Constants.ExecutionMode executionMode;
+	private final Map< String, Boolean > isConstantMap;
+	private final CorrelationFunctionInfo correlationFunctionInfo;
+
+	/**
+	 * Creates a compiled program which has not been verified.
+	 * @param program the program syntax tree
+	 */
+	public CompiledProgram( Program program )
+	{
+		this( program, null, null, null );
+	}
+
+	/**
+	 * Creates a compiled program carrying the results of its semantic verification.
+	 * @param program the program syntax tree, after its verification
+	 * @param executionMode the execution mode found by the verifier
+	 * @param isConstantMap the constant variables found by the verifier
+	 * @param correlationFunctionInfo the correlation function found by the verifier
+	 */
+	public CompiledProgram(
+		Program program,
+		Constants.ExecutionMode executionMode,
+		Map< String, Boolean > isConstantMap,
+		CorrelationFunctionInfo correlationFunctionInfo
+	) {
+		this.program = program;
+		this.executionMode = executionMode;
+		this.isConstantMap = isConstantMap;
+		this.correlationFunctionInfo = correlationFunctionInfo;
+	}
+
+	public Program program()
+	{
+		return program;
+	}
+
+	/**
+	 * Returns <code>true</code> if this program carries the results of its
+	 * semantic verification.
+	 * @return <code>true</code> if this program has been verified
+	 */
+	public boolean isVerified()
+	{
+		return correlationFunctionInfo != null;
+	}
+
+	public Constants.ExecutionMode executionMode()
+	{
+		return executionMode;
+	}
+
+	public Map< String, Boolean > isConstantMap()
+	{
+		return isConstantMap;
+	}
+
+	public CorrelationFunctionInfo correlationFunctionInfo()
+	{
+		return correlationFunctionInfo;
+	}
+
+	/**
+	 * Writes this program to the passed stream, which is not closed.
+	 * @param ostream the stream to write to
+	 * @throws IOException if writing fails
+	 */
+	public void writeTo( OutputStream ostream )
+		throws IOException
+	{
+		new CompiledProgramWriter( ostream ).write( this );
+	}
+
+	/**
+	 * Reads a compiled program from the passed stream, which is not closed.
+	 * @param istream the stream to read from
+	 * @return the read program
+	 * @throws IOException if reading fails, or if the stream does not contain
+	 * a program in a supported version of the compiled format
+	 */
+	public static CompiledProgram readFrom( InputStream istream )
+		throws IOException
+	{
+		return new CompiledProgramReader( istream ).read();
+	}
+}
@@ -87,6 +87,37 @@ public class ParsingUtils
 		return program;
 	}
 
+	/**
+	 * Parses and verifies a program, keeping the results of its verification
+	 * so that they can be saved together with the program.
+	 * @see CompiledProgram
+	 */
+	public static CompiledProgram compileProgram(
+		InputStream inputStream,
+		URI source,
+		String[] includePaths,
+		ClassLoader classLoader,
+		Map< String, Scanner.Token > definedConstants
+	)
+		throws IOException, ParserException
+	{
+		OLParser olParser = new OLParser( new Scanner( inputStream, source ), includePaths, classLoader );
+		olParser.putConstants( definedConstants );
+		Program program = olParser.parse();
+		OLParseTreeOptimizer optimizer = new OLParseTreeOptimizer( program );
+		program = optimizer.optimize();
+		SemanticVerifier semanticVerifier = new SemanticVerifier( program );
+		if ( !semanticVerifier.validate() ) {
+			throw new IOException( "Input file semantically invalid" );
+		}
+		return new CompiledProgram(
+			program,
+			semanticVerifier.executionMode(),
+			semanticVerifier.isConstantMap(),
+			semanticVerifier.correlationFunctionInfo()
+		);
+	}
+
 	/**
 	 * Creates a {@link ProgramInspector} for the specified {@link jolie.lang.parse.ast.Program}.
 	 * @param program the {@link jolie.lang.parse.ast.Program} to inspect
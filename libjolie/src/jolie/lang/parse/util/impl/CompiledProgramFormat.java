@@ -0,0 +1,140 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.lang.parse.util.impl;
+
+/**
+ * Constants of the compiled program format.
+ *
+ * A compiled program starts with {@link #MAGIC}, the format {@link #VERSION}
+ * and a flags byte. The program node follows, then, if {@link #FLAG_VERIFIED}
+ * is set, the results of the semantic verification.
+ *
+ * Each node is written as its tag, its parsing context and its fields.
+ * Every written node gets the next index of a node table, so a node
+ * reachable more than once (e.g., a type or an operation declaration) is
+ * written only the first time and then referred to by {@link #REFERENCE}
+ * and its index. Strings (including the sources of parsing contexts) are
+ * written through a string table in the same way.
+ * Integers used as sizes, indexes and lines are written as variable-length
+ * quantities. Enumeration constants are written as their names.
+ *
+ * {@link #VERSION} must be incremented for every change to the encoding.
+ * @author Fabrizio Montesi
+ */
+final class CompiledProgramFormat
+{
+	static final int MAGIC = 0x4A4F4C43; // "JOLC"
+	static final int VERSION = 1;
+	static final int JAVA_SERIALIZATION_MAGIC = 0xACED;
+
+	static final int FLAG_VERIFIED = 1;
+
+	// String table entries
+	static final int NULL_STRING = 0;
+	static final int NEW_STRING = 1;
+	static final int FIRST_STRING_REFERENCE = 2;
+
+	// Node tags
+	static final int NULL = 0;
+	static final int REFERENCE = 1;
+	static final int UNDEFINED_TYPE = 2;
+	static final int PROGRAM = 3;
+	static final int ONE_WAY_OPERATION_DECLARATION = 4;
+	static final int REQUEST_RESPONSE_OPERATION_DECLARATION = 5;
+	static final int DEFINITION = 6;
+	static final int PARALLEL = 7;
+	static final int SEQUENCE = 8;
+	static final int NDCHOICE = 9;
+	static final int ONE_WAY_OPERATION = 10;
+	static final int REQUEST_RESPONSE_OPERATION = 11;
+	static final int NOTIFICATION_OPERATION = 12;
+	static final int SOLICIT_RESPONSE_OPERATION = 13;
+	static final int LINK_IN = 14;
+	static final int LINK_OUT = 15;
+	static final int ASSIGN = 16;
+	static final int ADD_ASSIGN = 17;
+	static final int SUBTRACT_ASSIGN = 18;
+	static final int MULTIPLY_ASSIGN = 19;
+	static final int DIVIDE_ASSIGN = 20;
+	static final int IF = 21;
+	static final int DEFINITION_CALL = 22;
+	static final int WHILE = 23;
+	static final int OR_CONDITION = 24;
+	static final int AND_CONDITION = 25;
+	static final int NOT_EXPRESSION = 26;
+	static final int COMPARE_CONDITION = 27;
+	static final int CONSTANT_BYTE = 28;
+	static final int CONSTANT_INTEGER16 = 29;
+	static final int CONSTANT_UINTEGER16 = 30;
+	static final int CONSTANT_INTEGER = 31;
+	static final int CONSTANT_UINTEGER32 = 32;
+	static final int CONSTANT_UINTEGER64 = 33;
+	static final int CONSTANT_DOUBLE = 34;
+	static final int CONSTANT_BOOL = 35;
+	static final int CONSTANT_LONG = 36;
+	static final int CONSTANT_STRING = 37;
+	static final int PRODUCT_EXPRESSION = 38;
+	static final int SUM_EXPRESSION = 39;
+	static final int VARIABLE_EXPRESSION = 40;
+	static final int NULL_PROCESS = 41;
+	static final int SCOPE = 42;
+	static final int INSTALL = 43;
+	static final int COMPENSATE = 44;
+	static final int THROW = 45;
+	static final int EXIT = 46;
+	static final int EXECUTION_INFO = 47;
+	static final int CORRELATION_SET = 48;
+	static final int INPUT_PORT = 49;
+	static final int OUTPUT_PORT = 50;
+	static final int POINTER = 51;
+	static final int DEEP_COPY = 52;
+	static final int RUN = 53;
+	static final int UNDEF = 54;
+	static final int VALUE_VECTOR_SIZE = 55;
+	static final int PRE_INCREMENT = 56;
+	static final int POST_INCREMENT = 57;
+	static final int PRE_DECREMENT = 58;
+	static final int POST_DECREMENT = 59;
+	static final int FOR = 60;
+	static final int FOR_EACH = 61;
+	static final int SPAWN = 62;
+	static final int IS_TYPE = 63;
+	static final int INSTANCE_OF = 64;
+	static final int TYPE_CAST = 65;
+	static final int SYNCHRONIZED = 66;
+	static final int CURRENT_HANDLER = 67;
+	static final int EMBEDDED_SERVICE = 68;
+	static final int INSTALL_FIXED_VARIABLE = 69;
+	static final int VARIABLE_PATH = 70;
+	static final int TYPE_INLINE_DEFINITION = 71;
+	static final int TYPE_DEFINITION_LINK = 72;
+	static final int INTERFACE_DEFINITION = 73;
+	static final int DOCUMENTATION_COMMENT = 74;
+	static final int FRESH_VALUE = 75;
+	static final int COURIER_DEFINITION = 76;
+	static final int COURIER_CHOICE = 77;
+	static final int NOTIFICATION_FORWARD = 78;
+	static final int SOLICIT_RESPONSE_FORWARD = 79;
+	static final int INTERFACE_EXTENDER_DEFINITION = 80;
+
+	private CompiledProgramFormat() {}
+}
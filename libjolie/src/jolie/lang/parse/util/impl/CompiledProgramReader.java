@@ -0,0 +1,843 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.lang.parse.util.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import jolie.lang.Constants;
+import jolie.lang.NativeType;
+import jolie.lang.parse.CorrelationFunctionInfo;
+import jolie.lang.parse.CorrelationFunctionInfo.CorrelationPairInfo;
+import jolie.lang.parse.Scanner;
+import jolie.lang.parse.ast.*;
+import jolie.lang.parse.ast.courier.CourierChoiceStatement;
+import jolie.lang.parse.ast.courier.CourierDefinitionNode;
+import jolie.lang.parse.ast.courier.NotificationForwardStatement;
+import jolie.lang.parse.ast.courier.SolicitResponseForwardStatement;
+import jolie.lang.parse.ast.expression.*;
+import jolie.lang.parse.ast.types.TypeDefinition;
+import jolie.lang.parse.ast.types.TypeDefinitionLink;
+import jolie.lang.parse.ast.types.TypeDefinitionUndefined;
+import jolie.lang.parse.ast.types.TypeInlineDefinition;
+import jolie.lang.parse.ast.types.UInt16;
+import jolie.lang.parse.ast.types.UInt32;
+import jolie.lang.parse.ast.types.UInt64;
+import jolie.lang.parse.context.ParsingContext;
+import jolie.lang.parse.context.URIParsingContext;
+import jolie.lang.parse.util.CompiledProgram;
+import jolie.util.Pair;
+import jolie.util.Range;
+
+import static jolie.lang.parse.util.impl.CompiledProgramFormat.*;
+
+/**
+ * Reads a {@link CompiledProgram} in the format described by {@link CompiledProgramFormat}.
+ *
+ * The whole stream is read in memory before decoding it.
+ * @author Fabrizio Montesi
+ */
+public class CompiledProgramReader
+{
+	private static final Charset charset = Charset.forName( "UTF-8" );
+
+	private final InputStream istream;
+	private final List< OLSyntaxNode > nodes = new ArrayList< OLSyntaxNode >();
+	private final List< String > strings = new ArrayList< String >();
+	private final Map< String, URI > sources = new HashMap< String, URI >();
+	private byte[] buffer;
+	private int size = 0;
+	private int position = 0;
+
+	public CompiledProgramReader( InputStream istream )
+	{
+		this.istream = istream;
+	}
+
+	/**
+	 * Reads a program. The stream is read until its end, but it is not closed.
+	 * @return the read program
+	 * @throws IOException if reading fails, or if the stream does not contain
+	 * a program in a supported version of the compiled format
+	 */
+	public CompiledProgram read()
+		throws IOException
+	{
+		readStream();
+		if ( size >= 2 && (((buffer[ 0 ] & 0xFF) << 8) | (buffer[ 1 ] & 0xFF)) == JAVA_SERIALIZATION_MAGIC ) {
+			throw new IOException( "Input compiled program was created by an older version of joliec: it must be compiled again" );
+		}
+		if ( size < 4 || readInt() != MAGIC ) {
+			throw new IOException( "Input compiled program is not a JOLIE program" );
+		}
+		int version = readVarInt();
+		if ( version != VERSION ) {
+			throw new IOException( "Unsupported compiled program format version " + version + " (supported version: " + VERSION + ")" );
+		}
+		int flags = readByte();
+		Program program = readNode( Program.class );
+		if ( program == null ) {
+			throw malformed();
+		}
+		if ( (flags & FLAG_VERIFIED) == 0 ) {
+			return new CompiledProgram( program );
+		}
+
+		Constants.ExecutionMode executionMode = readEnum( Constants.ExecutionMode.class );
+		int n = readVarInt();
+		Map< String, Boolean > isConstantMap = new HashMap< String, Boolean >();
+		for( int i = 0; i < n; i++ ) {
+			isConstantMap.put( readString(), readBoolean() );
+		}
+		return new CompiledProgram( program, executionMode, isConstantMap, readCorrelationFunctionInfo() );
+	}
+
+	private CorrelationFunctionInfo readCorrelationFunctionInfo()
+		throws IOException
+	{
+		CorrelationFunctionInfo info = new CorrelationFunctionInfo();
+		int n = readVarInt();
+		for( int i = 0; i < n; i++ ) {
+			info.correlationSets().add( readNode( CorrelationSetInfo.class ) );
+		}
+
+		n = readVarInt();
+		for( int i = 0; i < n; i++ ) {
+			info.operationCorrelationSetMap().put( readString(), readNode( CorrelationSetInfo.class ) );
+		}
+
+		n = readVarInt();
+		for( int i = 0; i < n; i++ ) {
+			String operationName = readString();
+			int pairs = readVarInt();
+			for( int k = 0; k < pairs; k++ ) {
+				info.putCorrelationPair(
+					operationName,
+					new CorrelationPairInfo( readNode( VariablePathNode.class ), readNode( VariablePathNode.class ) )
+				);
+			}
+		}
+
+		n = readVarInt();
+		for( int i = 0; i < n; i++ ) {
+			CorrelationSetInfo cset = readNode( CorrelationSetInfo.class );
+			int operations = readVarInt();
+			for( int k = 0; k < operations; k++ ) {
+				info.correlationSetOperations().put( cset, readString() );
+			}
+		}
+		return info;
+	}
+
+	private void readStream()
+		throws IOException
+	{
+		buffer = new byte[ Math.max( istream.available(), 8192 ) ];
+		int r;
+		while( (r = istream.read( buffer, size, buffer.length - size )) != -1 ) {
+			size += r;
+			if ( size == buffer.length ) {
+				byte[] newBuffer = new byte[ buffer.length * 2 ];
+				System.arraycopy( buffer, 0, newBuffer, 0, size );
+				buffer = newBuffer;
+			}
+		}
+	}
+
+	private static IOException malformed()
+	{
+		return new IOException( "Malformed compiled program" );
+	}
+
+	private void require( int n )
+		throws IOException
+	{
+		if ( n < 0 || position + n > size ) {
+			throw new EOFException( "Truncated compiled program" );
+		}
+	}
+
+	private int readByte()
+		throws IOException
+	{
+		require( 1 );
+		return buffer[ position++ ] & 0xFF;
+	}
+
+	private boolean readBoolean()
+		throws IOException
+	{
+		return readByte() != 0;
+	}
+
+	private int readInt()
+		throws IOException
+	{
+		require( 4 );
+		int i = ((buffer[ position ] & 0xFF) << 24)
+			| ((buffer[ position + 1 ] & 0xFF) << 16)
+			| ((buffer[ position + 2 ] & 0xFF) << 8)
+			| (buffer[ position + 3 ] & 0xFF);
+		position += 4;
+		return i;
+	}
+
+	private long readLong()
+		throws IOException
+	{
+		long high = readInt();
+		return (high << 32) | (readInt() & 0xFFFFFFFFL);
+	}
+
+	private int readVarInt()
+		throws IOException
+	{
+		int i = 0;
+		int b;
+		int shift = 0;
+		do {
+			if ( shift > 28 ) {
+				throw malformed();
+			}
+			b = readByte();
+			i |= (b & 0x7F) << shift;
+			shift += 7;
+		} while( (b & 0x80) != 0 );
+		return i;
+	}
+
+	private String readString()
+		throws IOException
+	{
+		int entry = readVarInt();
+		if ( entry == NULL_STRING ) {
+			return null;
+		} else if ( entry == NEW_STRING ) {
+			int length = readVarInt();
+			require( length );
+			String str = new String( buffer, position, length, charset );
+			position += length;
+			strings.add( str );
+			return str;
+		}
+		int index = entry - FIRST_STRING_REFERENCE;
+		if ( index < 0 || index >= strings.size() ) {
+			throw malformed();
+		}
+		return strings.get( index );
+	}
+
+	private URI readURI()
+		throws IOException
+	{
+		String str = readString();
+		if ( str == null ) {
+			return null;
+		}
+		URI uri = sources.get( str );
+		if ( uri == null ) {
+			try {
+				uri = URI.create( str );
+			} catch( IllegalArgumentException e ) {
+				throw new IOException( "Malformed compiled program: " + e.getMessage() );
+			}
+			sources.put( str, uri );
+		}
+		return uri;
+	}
+
+	private < E extends Enum< E > > E readEnum( Class< E > enumClass )
+		throws IOException
+	{
+		String name = readString();
+		if ( name == null ) {
+			return null;
+		}
+		try {
+			return Enum.valueOf( enumClass, name );
+		} catch( IllegalArgumentException e ) {
+			throw new IOException( "Malformed compiled program: unknown " + enumClass.getSimpleName() + " " + name );
+		}
+	}
+
+	private Range readRange()
+		throws IOException
+	{
+		int min = readVarInt();
+		return new Range( min, readVarInt() );
+	}
+
+	private ParsingContext readContext()
+		throws IOException
+	{
+		URI source = readURI();
+		if ( source == null ) {
+			return null;
+		}
+		return new URIParsingContext( source, readVarInt() );
+	}
+
+	private < T extends OLSyntaxNode > T readNode( Class< T > nodeClass )
+		throws IOException
+	{
+		OLSyntaxNode n = readNode();
+		if ( n != null && !nodeClass.isInstance( n ) ) {
+			throw new IOException( "Malformed compiled program: unexpected " + n.getClass().getSimpleName() );
+		}
+		return nodeClass.cast( n );
+	}
+
+	private OLSyntaxNode readNode()
+		throws IOException
+	{
+		int tag = readByte();
+		if ( tag == NULL ) {
+			return null;
+		} else if ( tag == UNDEFINED_TYPE ) {
+			return TypeDefinitionUndefined.getInstance();
+		} else if ( tag == REFERENCE ) {
+			int index = readVarInt();
+			if ( index < 0 || index >= nodes.size() || nodes.get( index ) == null ) {
+				throw malformed();
+			}
+			return nodes.get( index );
+		}
+
+		// Reserve the index of the node, which is stored as soon as it is created
+		int index = nodes.size();
+		nodes.add( null );
+		OLSyntaxNode n = readNode( tag, index, readContext() );
+		nodes.set( index, n );
+		return n;
+	}
+
+	private List< OLSyntaxNode > readNodes()
+		throws IOException
+	{
+		int n = readVarInt();
+		List< OLSyntaxNode > list = new ArrayList< OLSyntaxNode >( n );
+		for( int i = 0; i < n; i++ ) {
+			list.add( readNode() );
+		}
+		return list;
+	}
+
+	private List< Pair< OLSyntaxNode, OLSyntaxNode > > readNodePairs()
+		throws IOException
+	{
+		int n = readVarInt();
+		List< Pair< OLSyntaxNode, OLSyntaxNode > > list = new ArrayList< Pair< OLSyntaxNode, OLSyntaxNode > >( n );
+		for( int i = 0; i < n; i++ ) {
+			OLSyntaxNode key = readNode();
+			list.add( new Pair< OLSyntaxNode, OLSyntaxNode >( key, readNode() ) );
+		}
+		return list;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private static Pair< String, OLSyntaxNode >[] newFaultHandlerArray( int size )
+	{
+		return (Pair< String, OLSyntaxNode >[]) new Pair< ?, ? >[ size ];
+	}
+
+	private InstallFunctionNode readInstallFunction()
+		throws IOException
+	{
+		if ( !readBoolean() ) {
+			return null;
+		}
+		Pair< String, OLSyntaxNode >[] pairs = newFaultHandlerArray( readVarInt() );
+		for( int i = 0; i < pairs.length; i++ ) {
+			String faultName = readString();
+			pairs[ i ] = new Pair< String, OLSyntaxNode >( faultName, readNode() );
+		}
+		return new InstallFunctionNode( pairs );
+	}
+
+	private void readPortContent( PortInfo port )
+		throws IOException
+	{
+		int n = readVarInt();
+		for( int i = 0; i < n; i++ ) {
+			port.addInterface( readNode( InterfaceDefinition.class ) );
+		}
+		readOperations( port );
+	}
+
+	private void readOperations( OperationCollector collector )
+		throws IOException
+	{
+		int n = readVarInt();
+		for( int i = 0; i < n; i++ ) {
+			collector.addOperation( readNode( OperationDeclaration.class ) );
+		}
+	}
+
+	private OLSyntaxNode readNode( int tag, int index, ParsingContext context )
+		throws IOException
+	{
+		switch( tag ) {
+		case PROGRAM: {
+			Program n = new Program( context );
+			for( OLSyntaxNode child : readNodes() ) {
+				n.addChild( child );
+			}
+			return n;
+		}
+		case ONE_WAY_OPERATION_DECLARATION: {
+			OneWayOperationDeclaration n = new OneWayOperationDeclaration( context, readString() );
+			n.setDocumentation( readString() );
+			n.setRequestType( readNode( TypeDefinition.class ) );
+			return n;
+		}
+		case REQUEST_RESPONSE_OPERATION_DECLARATION: {
+			String id = readString();
+			String documentation = readString();
+			TypeDefinition requestType = readNode( TypeDefinition.class );
+			TypeDefinition responseType = readNode( TypeDefinition.class );
+			int faultCount = readVarInt();
+			Map< String, TypeDefinition > faults = new HashMap< String, TypeDefinition >();
+			for( int i = 0; i < faultCount; i++ ) {
+				String faultName = readString();
+				faults.put( faultName, readNode( TypeDefinition.class ) );
+			}
+			RequestResponseOperationDeclaration n =
+				new RequestResponseOperationDeclaration( context, id, requestType, responseType, faults );
+			n.setDocumentation( documentation );
+			return n;
+		}
+		case DEFINITION: {
+			String id = readString();
+			return new DefinitionNode( context, id, readNode() );
+		}
+		case PARALLEL: {
+			ParallelStatement n = new ParallelStatement( context );
+			for( OLSyntaxNode child : readNodes() ) {
+				n.addChild( child );
+			}
+			return n;
+		}
+		case SEQUENCE: {
+			SequenceStatement n = new SequenceStatement( context );
+			for( OLSyntaxNode child : readNodes() ) {
+				n.addChild( child );
+			}
+			return n;
+		}
+		case NDCHOICE: {
+			NDChoiceStatement n = new NDChoiceStatement( context );
+			for( Pair< OLSyntaxNode, OLSyntaxNode > child : readNodePairs() ) {
+				n.addChild( child );
+			}
+			return n;
+		}
+		case ONE_WAY_OPERATION: {
+			String id = readString();
+			return new OneWayOperationStatement( context, id, readNode( VariablePathNode.class ) );
+		}
+		case REQUEST_RESPONSE_OPERATION: {
+			String id = readString();
+			VariablePathNode inputVarPath = readNode( VariablePathNode.class );
+			OLSyntaxNode outputExpression = readNode();
+			return new RequestResponseOperationStatement( context, id, inputVarPath, outputExpression, readNode() );
+		}
+		case NOTIFICATION_OPERATION: {
+			String id = readString();
+			String outputPortId = readString();
+			return new NotificationOperationStatement( context, id, outputPortId, readNode() );
+		}
+		case SOLICIT_RESPONSE_OPERATION: {
+			String id = readString();
+			String outputPortId = readString();
+			OLSyntaxNode outputExpression = readNode();
+			VariablePathNode inputVarPath = readNode( VariablePathNode.class );
+			return new SolicitResponseOperationStatement(
+				context, id, outputPortId, outputExpression, inputVarPath, readInstallFunction()
+			);
+		}
+		case LINK_IN:
+			return new LinkInStatement( context, readString() );
+		case LINK_OUT:
+			return new LinkOutStatement( context, readString() );
+		case ASSIGN: {
+			VariablePathNode path = readNode( VariablePathNode.class );
+			return new AssignStatement( context, path, readNode() );
+		}
+		case ADD_ASSIGN: {
+			VariablePathNode path = readNode( VariablePathNode.class );
+			return new AddAssignStatement( context, path, readNode() );
+		}
+		case SUBTRACT_ASSIGN: {
+			VariablePathNode path = readNode( VariablePathNode.class );
+			return new SubtractAssignStatement( context, path, readNode() );
+		}
+		case MULTIPLY_ASSIGN: {
+			VariablePathNode path = readNode( VariablePathNode.class );
+			return new MultiplyAssignStatement( context, path, readNode() );
+		}
+		case DIVIDE_ASSIGN: {
+			VariablePathNode path = readNode( VariablePathNode.class );
+			return new DivideAssignStatement( context, path, readNode() );
+		}
+		case IF: {
+			IfStatement n = new IfStatement( context );
+			for( Pair< OLSyntaxNode, OLSyntaxNode > child : readNodePairs() ) {
+				n.addChild( child );
+			}
+			n.setElseProcess( readNode() );
+			return n;
+		}
+		case DEFINITION_CALL:
+			return new DefinitionCallStatement( context, readString() );
+		case WHILE: {
+			OLSyntaxNode condition = readNode();
+			return new WhileStatement( context, condition, readNode() );
+		}
+		case OR_CONDITION: {
+			OrConditionNode n = new OrConditionNode( context );
+			for( OLSyntaxNode child : readNodes() ) {
+				n.addChild( child );
+			}
+			return n;
+		}
+		case AND_CONDITION: {
+			AndConditionNode n = new AndConditionNode( context );
+			for( OLSyntaxNode child : readNodes() ) {
+				n.addChild( child );
+			}
+			return n;
+		}
+		case NOT_EXPRESSION:
+			return new NotExpressionNode( context, readNode() );
+		case COMPARE_CONDITION: {
+			OLSyntaxNode left = readNode();
+			OLSyntaxNode right = readNode();
+			return new CompareConditionNode( context, left, right, readEnum( Scanner.TokenType.class ) );
+		}
+		case CONSTANT_BYTE:
+			return new ConstantByteExpression( context, (byte)readByte() );
+		case CONSTANT_INTEGER16:
+			return new ConstantInteger16Expression( context, (short)readInt() );
+		case CONSTANT_UINTEGER16:
+			return new ConstantUInteger16Expression( context, new UInt16( readInt() ) );
+		case CONSTANT_INTEGER:
+			return new ConstantIntegerExpression( context, readInt() );
+		case CONSTANT_UINTEGER32:
+			return new ConstantUInteger32Expression( context, new UInt32( readLong() ) );
+		case CONSTANT_UINTEGER64: {
+			long top = readLong();
+			return new ConstantUInteger64Expression( context, new UInt64( top, readLong() ) );
+		}
+		case CONSTANT_DOUBLE:
+			return new ConstantDoubleExpression( context, Double.longBitsToDouble( readLong() ) );
+		case CONSTANT_BOOL:
+			return new ConstantBoolExpression( context, readBoolean() );
+		case CONSTANT_LONG:
+			return new ConstantLongExpression( context, readLong() );
+		case CONSTANT_STRING:
+			return new ConstantStringExpression( context, readString() );
+		case PRODUCT_EXPRESSION: {
+			ProductExpressionNode n = new ProductExpressionNode( context );
+			int operands = readVarInt();
+			for( int i = 0; i < operands; i++ ) {
+				Constants.OperandType type = readEnum( Constants.OperandType.class );
+				OLSyntaxNode operand = readNode();
+				if ( type == Constants.OperandType.MULTIPLY ) {
+					n.multiply( operand );
+				} else if ( type == Constants.OperandType.DIVIDE ) {
+					n.divide( operand );
+				} else if ( type == Constants.OperandType.MODULUS ) {
+					n.modulo( operand );
+				} else {
+					throw malformed();
+				}
+			}
+			return n;
+		}
+		case SUM_EXPRESSION: {
+			SumExpressionNode n = new SumExpressionNode( context );
+			int operands = readVarInt();
+			for( int i = 0; i < operands; i++ ) {
+				Constants.OperandType type = readEnum( Constants.OperandType.class );
+				OLSyntaxNode operand = readNode();
+				if ( type == Constants.OperandType.ADD ) {
+					n.add( operand );
+				} else if ( type == Constants.OperandType.SUBTRACT ) {
+					n.subtract( operand );
+				} else {
+					throw malformed();
+				}
+			}
+			return n;
+		}
+		case VARIABLE_EXPRESSION:
+			return new VariableExpressionNode( context, readNode( VariablePathNode.class ) );
+		case NULL_PROCESS:
+			return new NullProcessStatement( context );
+		case SCOPE: {
+			String id = readString();
+			return new Scope( context, id, readNode() );
+		}
+		case INSTALL:
+			return new InstallStatement( context, readInstallFunction() );
+		case COMPENSATE:
+			return new CompensateStatement( context, readString() );
+		case THROW: {
+			String id = readString();
+			return new ThrowStatement( context, id, readNode() );
+		}
+		case EXIT:
+			return new ExitStatement( context );
+		case EXECUTION_INFO:
+			return new ExecutionInfo( context, readEnum( Constants.ExecutionMode.class ) );
+		case CORRELATION_SET: {
+			int variableCount = readVarInt();
+			List< CorrelationSetInfo.CorrelationVariableInfo > variables = new LinkedList< CorrelationSetInfo.CorrelationVariableInfo >();
+			for( int i = 0; i < variableCount; i++ ) {
+				VariablePathNode path = readNode( VariablePathNode.class );
+				int aliasCount = readVarInt();
+				List< CorrelationSetInfo.CorrelationAliasInfo > aliases = new LinkedList< CorrelationSetInfo.CorrelationAliasInfo >();
+				for( int k = 0; k < aliasCount; k++ ) {
+					String guardName = readString();
+					aliases.add( new CorrelationSetInfo.CorrelationAliasInfo( guardName, readNode( VariablePathNode.class ) ) );
+				}
+				variables.add( new CorrelationSetInfo.CorrelationVariableInfo( path, aliases ) );
+			}
+			return new CorrelationSetInfo( context, variables );
+		}
+		case INPUT_PORT: {
+			String id = readString();
+			String documentation = readString();
+			URI location = readURI();
+			String protocolId = readString();
+			OLSyntaxNode protocolConfiguration = readNode();
+			InputPortInfo.AggregationItemInfo[] aggregationList = new InputPortInfo.AggregationItemInfo[ readVarInt() ];
+			for( int i = 0; i < aggregationList.length; i++ ) {
+				String[] outputPortList = new String[ readVarInt() ];
+				for( int k = 0; k < outputPortList.length; k++ ) {
+					outputPortList[ k ] = readString();
+				}
+				aggregationList[ i ] = new InputPortInfo.AggregationItemInfo(
+					outputPortList, readNode( InterfaceExtenderDefinition.class )
+				);
+			}
+			int redirectionCount = readVarInt();
+			Map< String, String > redirectionMap = new HashMap< String, String >();
+			for( int i = 0; i < redirectionCount; i++ ) {
+				String name = readString();
+				redirectionMap.put( name, readString() );
+			}
+			InputPortInfo n = new InputPortInfo(
+				context, id, location, protocolId, protocolConfiguration,
+				aggregationList, redirectionMap, readBoolean()
+			);
+			n.setDocumentation( documentation );
+			readPortContent( n );
+			return n;
+		}
+		case OUTPUT_PORT: {
+			OutputPortInfo n = new OutputPortInfo( context, readString() );
+			n.setDocumentation( readString() );
+			n.setLocation( readURI() );
+			n.setProtocolId( readString() );
+			n.setProtocolConfiguration( readNode() );
+			n.setMessageBus( readBoolean() );
+			readPortContent( n );
+			return n;
+		}
+		case POINTER: {
+			VariablePathNode left = readNode( VariablePathNode.class );
+			return new PointerStatement( context, left, readNode( VariablePathNode.class ) );
+		}
+		case DEEP_COPY: {
+			VariablePathNode left = readNode( VariablePathNode.class );
+			return new DeepCopyStatement( context, left, readNode( VariablePathNode.class ) );
+		}
+		case RUN:
+			return new RunStatement( context, readNode() );
+		case UNDEF:
+			return new UndefStatement( context, readNode( VariablePathNode.class ) );
+		case VALUE_VECTOR_SIZE:
+			return new ValueVectorSizeExpressionNode( context, readNode( VariablePathNode.class ) );
+		case PRE_INCREMENT:
+			return new PreIncrementStatement( context, readNode( VariablePathNode.class ) );
+		case POST_INCREMENT:
+			return new PostIncrementStatement( context, readNode( VariablePathNode.class ) );
+		case PRE_DECREMENT:
+			return new PreDecrementStatement( context, readNode( VariablePathNode.class ) );
+		case POST_DECREMENT:
+			return new PostDecrementStatement( context, readNode( VariablePathNode.class ) );
+		case FOR: {
+			OLSyntaxNode init = readNode();
+			OLSyntaxNode condition = readNode();
+			OLSyntaxNode post = readNode();
+			return new ForStatement( context, init, condition, post, readNode() );
+		}
+		case FOR_EACH: {
+			VariablePathNode keyPath = readNode( VariablePathNode.class );
+			VariablePathNode targetPath = readNode( VariablePathNode.class );
+			return new ForEachStatement( context, keyPath, targetPath, readNode() );
+		}
+		case SPAWN: {
+			VariablePathNode indexVariablePath = readNode( VariablePathNode.class );
+			OLSyntaxNode upperBoundExpression = readNode();
+			VariablePathNode inVariablePath = readNode( VariablePathNode.class );
+			return new SpawnStatement( context, indexVariablePath, upperBoundExpression, inVariablePath, readNode() );
+		}
+		case IS_TYPE: {
+			IsTypeExpressionNode.CheckType type = readEnum( IsTypeExpressionNode.CheckType.class );
+			return new IsTypeExpressionNode( context, type, readNode( VariablePathNode.class ) );
+		}
+		case INSTANCE_OF: {
+			OLSyntaxNode expression = readNode();
+			return new InstanceOfExpressionNode( context, expression, readNode( TypeDefinition.class ) );
+		}
+		case TYPE_CAST: {
+			NativeType type = readEnum( NativeType.class );
+			return new TypeCastExpressionNode( context, type, readNode() );
+		}
+		case SYNCHRONIZED: {
+			String id = readString();
+			return new SynchronizedStatement( context, id, readNode() );
+		}
+		case CURRENT_HANDLER:
+			return new CurrentHandlerStatement( context );
+		case EMBEDDED_SERVICE: {
+			Constants.EmbeddedServiceType type = readEnum( Constants.EmbeddedServiceType.class );
+			String servicePath = readString();
+			return new EmbeddedServiceNode( context, type, servicePath, readString() );
+		}
+		case INSTALL_FIXED_VARIABLE:
+			return new InstallFixedVariableExpressionNode( context, readNode( VariablePathNode.class ) );
+		case VARIABLE_PATH: {
+			VariablePathNode n = new VariablePathNode( context, readEnum( VariablePathNode.Type.class ) );
+			for( Pair< OLSyntaxNode, OLSyntaxNode > node : readNodePairs() ) {
+				n.append( node );
+			}
+			return n;
+		}
+		case TYPE_INLINE_DEFINITION: {
+			String id = readString();
+			Range cardinality = readRange();
+			TypeInlineDefinition n = new TypeInlineDefinition( context, id, readEnum( NativeType.class ), cardinality );
+			n.setUntypedSubTypes( readBoolean() );
+			// Sub types may refer to this type
+			nodes.set( index, n );
+			int subTypes = readVarInt();
+			for( int i = 0; i < subTypes; i++ ) {
+				n.putSubType( readNode( TypeDefinition.class ) );
+			}
+			return n;
+		}
+		case TYPE_DEFINITION_LINK: {
+			String id = readString();
+			Range cardinality = readRange();
+			TypeDefinitionLink n = new TypeDefinitionLink( context, id, cardinality, readString() );
+			// The linked type may refer to this type
+			nodes.set( index, n );
+			TypeDefinition linkedType = readNode( TypeDefinition.class );
+			if ( linkedType != null ) {
+				n.setLinkedType( linkedType );
+			}
+			return n;
+		}
+		case INTERFACE_DEFINITION: {
+			InterfaceDefinition n = new InterfaceDefinition( context, readString() );
+			n.setDocumentation( readString() );
+			readOperations( n );
+			return n;
+		}
+		case DOCUMENTATION_COMMENT:
+			return new DocumentationComment( context, readString() );
+		case FRESH_VALUE:
+			return new FreshValueExpressionNode( context );
+		case COURIER_DEFINITION: {
+			String inputPortName = readString();
+			return new CourierDefinitionNode( context, inputPortName, readNode() );
+		}
+		case COURIER_CHOICE: {
+			CourierChoiceStatement n = new CourierChoiceStatement( context );
+			int branches = readVarInt();
+			for( int i = 0; i < branches; i++ ) {
+				InterfaceDefinition iface = readNode( InterfaceDefinition.class );
+				VariablePathNode inputPath = readNode( VariablePathNode.class );
+				n.interfaceOneWayBranches().add(
+					new CourierChoiceStatement.InterfaceOneWayBranch( iface, inputPath, readNode() )
+				);
+			}
+			branches = readVarInt();
+			for( int i = 0; i < branches; i++ ) {
+				InterfaceDefinition iface = readNode( InterfaceDefinition.class );
+				VariablePathNode inputPath = readNode( VariablePathNode.class );
+				VariablePathNode outputPath = readNode( VariablePathNode.class );
+				n.interfaceRequestResponseBranches().add(
+					new CourierChoiceStatement.InterfaceRequestResponseBranch( iface, inputPath, outputPath, readNode() )
+				);
+			}
+			branches = readVarInt();
+			for( int i = 0; i < branches; i++ ) {
+				String operation = readString();
+				VariablePathNode inputPath = readNode( VariablePathNode.class );
+				n.operationOneWayBranches().add(
+					new CourierChoiceStatement.OperationOneWayBranch( operation, inputPath, readNode() )
+				);
+			}
+			branches = readVarInt();
+			for( int i = 0; i < branches; i++ ) {
+				String operation = readString();
+				VariablePathNode inputPath = readNode( VariablePathNode.class );
+				VariablePathNode outputPath = readNode( VariablePathNode.class );
+				n.operationRequestResponseBranches().add(
+					new CourierChoiceStatement.OperationRequestResponseBranch( operation, inputPath, outputPath, readNode() )
+				);
+			}
+			return n;
+		}
+		case NOTIFICATION_FORWARD: {
+			String outputPortName = readString();
+			return new NotificationForwardStatement( context, outputPortName, readNode( VariablePathNode.class ) );
+		}
+		case SOLICIT_RESPONSE_FORWARD: {
+			String outputPortName = readString();
+			VariablePathNode outputPath = readNode( VariablePathNode.class );
+			return new SolicitResponseForwardStatement( context, outputPortName, outputPath, readNode( VariablePathNode.class ) );
+		}
+		case INTERFACE_EXTENDER_DEFINITION: {
+			InterfaceExtenderDefinition n = new InterfaceExtenderDefinition( context, readString() );
+			n.setDocumentation( readString() );
+			readOperations( n );
+			n.setDefaultOneWayOperation( readNode( OneWayOperationDeclaration.class ) );
+			n.setDefaultRequestResponseOperation( readNode( RequestResponseOperationDeclaration.class ) );
+			return n;
+		}
+		default:
+			throw new IOException( "Malformed compiled program: unknown node tag " + tag );
+		}
+	}
+}
@@ -0,0 +1,897 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.lang.parse.util.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import jolie.lang.Constants;
+import jolie.lang.parse.CorrelationFunctionInfo;
+import jolie.lang.parse.CorrelationFunctionInfo.CorrelationPairInfo;
+import jolie.lang.parse.OLVisitor;
+import jolie.lang.parse.ast.*;
+import jolie.lang.parse.ast.courier.CourierChoiceStatement;
+import jolie.lang.parse.ast.courier.CourierDefinitionNode;
+import jolie.lang.parse.ast.courier.NotificationForwardStatement;
+import jolie.lang.parse.ast.courier.SolicitResponseForwardStatement;
+import jolie.lang.parse.ast.expression.*;
+import jolie.lang.parse.ast.types.TypeDefinition;
+import jolie.lang.parse.ast.types.TypeDefinitionLink;
+import jolie.lang.parse.ast.types.TypeDefinitionUndefined;
+import jolie.lang.parse.ast.types.TypeInlineDefinition;
+import jolie.lang.parse.context.ParsingContext;
+import jolie.lang.parse.util.CompiledProgram;
+import jolie.util.Pair;
+import jolie.util.Range;
+
+import static jolie.lang.parse.util.impl.CompiledProgramFormat.*;
+
+/**
+ * Writes a {@link CompiledProgram} in the format described by {@link CompiledProgramFormat}.
+ *
+ * The program is encoded in memory and then written to the stream at once.
+ * @author Fabrizio Montesi
+ */
+public class CompiledProgramWriter implements OLVisitor
+{
+	private static final Charset charset = Charset.forName( "UTF-8" );
+
+	private final OutputStream ostream;
+	private final Map< OLSyntaxNode, Integer > nodes = new IdentityHashMap< OLSyntaxNode, Integer >();
+	private final Map< String, Integer > strings = new HashMap< String, Integer >();
+	private byte[] buffer = new byte[ 8192 ];
+	private int size = 0;
+
+	public CompiledProgramWriter( OutputStream ostream )
+	{
+		this.ostream = ostream;
+	}
+
+	/**
+	 * Writes the passed program. The stream is flushed but not closed.
+	 * @param compiledProgram the program to write
+	 * @throws IOException if writing to the stream fails
+	 */
+	public void write( CompiledProgram compiledProgram )
+		throws IOException
+	{
+		writeInt( MAGIC );
+		writeVarInt( VERSION );
+		writeByte( compiledProgram.isVerified() ? FLAG_VERIFIED : 0 );
+		writeNode( compiledProgram.program() );
+		if ( compiledProgram.isVerified() ) {
+			writeEnum( compiledProgram.executionMode() );
+			writeVarInt( compiledProgram.isConstantMap().size() );
+			for( Entry< String, Boolean > entry : compiledProgram.isConstantMap().entrySet() ) {
+				writeString( entry.getKey() );
+				writeBoolean( entry.getValue() );
+			}
+			writeCorrelationFunctionInfo( compiledProgram.correlationFunctionInfo() );
+		}
+		ostream.write( buffer, 0, size );
+		ostream.flush();
+	}
+
+	private void writeCorrelationFunctionInfo( CorrelationFunctionInfo info )
+	{
+		writeNodes( info.correlationSets() );
+
+		writeVarInt( info.operationCorrelationSetMap().size() );
+		for( Entry< String, CorrelationSetInfo > entry : info.operationCorrelationSetMap().entrySet() ) {
+			writeString( entry.getKey() );
+			writeNode( entry.getValue() );
+		}
+
+		// In a verified program, only the operations correlating on a set have pairs
+		writeVarInt( info.operationCorrelationSetMap().size() );
+		for( String operationName : info.operationCorrelationSetMap().keySet() ) {
+			Collection< CorrelationPairInfo > pairs = info.getOperationCorrelationPairs( operationName );
+			writeString( operationName );
+			writeVarInt( pairs.size() );
+			for( CorrelationPairInfo pair : pairs ) {
+				writeNode( pair.sessionPath() );
+				writeNode( pair.messagePath() );
+			}
+		}
+
+		writeVarInt( info.correlationSetOperations().keySet().size() );
+		for( CorrelationSetInfo cset : info.correlationSetOperations().keySet() ) {
+			Collection< String > operations = info.correlationSetOperations().get( cset );
+			writeNode( cset );
+			writeVarInt( operations.size() );
+			for( String operationName : operations ) {
+				writeString( operationName );
+			}
+		}
+	}
+
+	private void ensureCapacity( int n )
+	{
+		if ( size + n > buffer.length ) {
+			byte[] newBuffer = new byte[ Math.max( size + n, buffer.length * 2 ) ];
+			System.arraycopy( buffer, 0, newBuffer, 0, size );
+			buffer = newBuffer;
+		}
+	}
+
+	private void writeByte( int b )
+	{
+		ensureCapacity( 1 );
+		buffer[ size++ ] = (byte)b;
+	}
+
+	private void writeBoolean( boolean b )
+	{
+		writeByte( b ? 1 : 0 );
+	}
+
+	private void writeInt( int i )
+	{
+		ensureCapacity( 4 );
+		buffer[ size++ ] = (byte)(i >>> 24);
+		buffer[ size++ ] = (byte)(i >>> 16);
+		buffer[ size++ ] = (byte)(i >>> 8);
+		buffer[ size++ ] = (byte)i;
+	}
+
+	private void writeLong( long l )
+	{
+		writeInt( (int)(l >>> 32) );
+		writeInt( (int)l );
+	}
+
+	/*
+	 * Seven bits per byte, the highest bit is set if more bytes follow.
+	 * Negative numbers take five bytes.
+	 */
+	private void writeVarInt( int i )
+	{
+		ensureCapacity( 5 );
+		while( (i & ~0x7F) != 0 ) {
+			buffer[ size++ ] = (byte)((i & 0x7F) | 0x80);
+			i >>>= 7;
+		}
+		buffer[ size++ ] = (byte)i;
+	}
+
+	private void writeString( String str )
+	{
+		if ( str == null ) {
+			writeVarInt( NULL_STRING );
+			return;
+		}
+		Integer index = strings.get( str );
+		if ( index != null ) {
+			writeVarInt( FIRST_STRING_REFERENCE + index );
+		} else {
+			strings.put( str, strings.size() );
+			writeVarInt( NEW_STRING );
+			byte[] bytes = str.getBytes( charset );
+			writeVarInt( bytes.length );
+			ensureCapacity( bytes.length );
+			System.arraycopy( bytes, 0, buffer, size, bytes.length );
+			size += bytes.length;
+		}
+	}
+
+	private void writeURI( URI uri )
+	{
+		writeString( ( uri == null ) ? null : uri.toString() );
+	}
+
+	private void writeEnum( Enum< ? > e )
+	{
+		writeString( ( e == null ) ? null : e.name() );
+	}
+
+	private void writeRange( Range range )
+	{
+		writeVarInt( range.min() );
+		writeVarInt( range.max() );
+	}
+
+	private void writeContext( ParsingContext context )
+	{
+		if ( context == null ) {
+			writeURI( null );
+		} else {
+			writeURI( context.source() );
+			writeVarInt( context.line() );
+		}
+	}
+
+	private void writeHeader( int tag, OLSyntaxNode n )
+	{
+		writeByte( tag );
+		writeContext( n.context() );
+	}
+
+	private void writeNode( OLSyntaxNode n )
+	{
+		if ( n == null ) {
+			writeByte( NULL );
+		} else if ( n instanceof TypeDefinitionUndefined ) {
+			writeByte( UNDEFINED_TYPE );
+		} else {
+			Integer index = nodes.get( n );
+			if ( index == null ) {
+				nodes.put( n, nodes.size() );
+				n.accept( this );
+			} else {
+				writeByte( REFERENCE );
+				writeVarInt( index );
+			}
+		}
+	}
+
+	private void writeNodes( Collection< ? extends OLSyntaxNode > children )
+	{
+		writeVarInt( children.size() );
+		for( OLSyntaxNode child : children ) {
+			writeNode( child );
+		}
+	}
+
+	private void writeNodePairs( List< Pair< OLSyntaxNode, OLSyntaxNode > > pairs )
+	{
+		writeVarInt( pairs.size() );
+		for( Pair< OLSyntaxNode, OLSyntaxNode > pair : pairs ) {
+			writeNode( pair.key() );
+			writeNode( pair.value() );
+		}
+	}
+
+	private void writeOperands( List< Pair< Constants.OperandType, OLSyntaxNode > > operands )
+	{
+		writeVarInt( operands.size() );
+		for( Pair< Constants.OperandType, OLSyntaxNode > operand : operands ) {
+			writeEnum( operand.key() );
+			writeNode( operand.value() );
+		}
+	}
+
+	private void writeInstallFunction( InstallFunctionNode f )
+	{
+		if ( f == null ) {
+			writeBoolean( false );
+			return;
+		}
+		writeBoolean( true );
+		writeVarInt( f.pairs().length );
+		for( Pair< String, OLSyntaxNode > pair : f.pairs() ) {
+			writeString( pair.key() );
+			writeNode( pair.value() );
+		}
+	}
+
+	private void writePortContent( PortInfo n )
+	{
+		writeNodes( n.getInterfaceList() );
+		writeNodes( n.operations() );
+	}
+
+	private void writeTypeDefinition( int tag, TypeDefinition n )
+	{
+		writeHeader( tag, n );
+		writeString( n.id() );
+		writeRange( n.cardinality() );
+	}
+
+	public void visit( Program n )
+	{
+		writeHeader( PROGRAM, n );
+		writeNodes( n.children() );
+	}
+
+	public void visit( OneWayOperationDeclaration decl )
+	{
+		writeHeader( ONE_WAY_OPERATION_DECLARATION, decl );
+		writeString( decl.id() );
+		writeString( decl.getDocumentation() );
+		writeNode( decl.requestType() );
+	}
+
+	public void visit( RequestResponseOperationDeclaration decl )
+	{
+		writeHeader( REQUEST_RESPONSE_OPERATION_DECLARATION, decl );
+		writeString( decl.id() );
+		writeString( decl.getDocumentation() );
+		writeNode( decl.requestType() );
+		writeNode( decl.responseType() );
+		writeVarInt( decl.faults().size() );
+		for( Entry< String, TypeDefinition > fault : decl.faults().entrySet() ) {
+			writeString( fault.getKey() );
+			writeNode( fault.getValue() );
+		}
+	}
+
+	public void visit( DefinitionNode n )
+	{
+		writeHeader( DEFINITION, n );
+		writeString( n.id() );
+		writeNode( n.body() );
+	}
+
+	public void visit( ParallelStatement n )
+	{
+		writeHeader( PARALLEL, n );
+		writeNodes( n.children() );
+	}
+
+	public void visit( SequenceStatement n )
+	{
+		writeHeader( SEQUENCE, n );
+		writeNodes( n.children() );
+	}
+
+	public void visit( NDChoiceStatement n )
+	{
+		writeHeader( NDCHOICE, n );
+		writeNodePairs( n.children() );
+	}
+
+	public void visit( OneWayOperationStatement n )
+	{
+		writeHeader( ONE_WAY_OPERATION, n );
+		writeString( n.id() );
+		writeNode( n.inputVarPath() );
+	}
+
+	public void visit( RequestResponseOperationStatement n )
+	{
+		writeHeader( REQUEST_RESPONSE_OPERATION, n );
+		writeString( n.id() );
+		writeNode( n.inputVarPath() );
+		writeNode( n.outputExpression() );
+		writeNode( n.process() );
+	}
+
+	public void visit( NotificationOperationStatement n )
+	{
+		writeHeader( NOTIFICATION_OPERATION, n );
+		writeString( n.id() );
+		writeString( n.outputPortId() );
+		writeNode( n.outputExpression() );
+	}
+
+	public void visit( SolicitResponseOperationStatement n )
+	{
+		writeHeader( SOLICIT_RESPONSE_OPERATION, n );
+		writeString( n.id() );
+		writeString( n.outputPortId() );
+		writeNode( n.outputExpression() );
+		writeNode( n.inputVarPath() );
+		writeInstallFunction( n.handlersFunction() );
+	}
+
+	public void visit( LinkInStatement n )
+	{
+		writeHeader( LINK_IN, n );
+		writeString( n.id() );
+	}
+
+	public void visit( LinkOutStatement n )
+	{
+		writeHeader( LINK_OUT, n );
+		writeString( n.id() );
+	}
+
+	public void visit( AssignStatement n )
+	{
+		writeHeader( ASSIGN, n );
+		writeNode( n.variablePath() );
+		writeNode( n.expression() );
+	}
+
+	public void visit( AddAssignStatement n )
+	{
+		writeHeader( ADD_ASSIGN, n );
+		writeNode( n.variablePath() );
+		writeNode( n.expression() );
+	}
+
+	public void visit( SubtractAssignStatement n )
+	{
+		writeHeader( SUBTRACT_ASSIGN, n );
+		writeNode( n.variablePath() );
+		writeNode( n.expression() );
+	}
+
+	public void visit( MultiplyAssignStatement n )
+	{
+		writeHeader( MULTIPLY_ASSIGN, n );
+		writeNode( n.variablePath() );
+		writeNode( n.expression() );
+	}
+
+	public void visit( DivideAssignStatement n )
+	{
+		writeHeader( DIVIDE_ASSIGN, n );
+		writeNode( n.variablePath() );
+		writeNode( n.expression() );
+	}
+
+	public void visit( IfStatement n )
+	{
+		writeHeader( IF, n );
+		writeNodePairs( n.children() );
+		writeNode( n.elseProcess() );
+	}
+
+	public void visit( DefinitionCallStatement n )
+	{
+		writeHeader( DEFINITION_CALL, n );
+		writeString( n.id() );
+	}
+
+	public void visit( WhileStatement n )
+	{
+		writeHeader( WHILE, n );
+		writeNode( n.condition() );
+		writeNode( n.body() );
+	}
+
+	public void visit( OrConditionNode n )
+	{
+		writeHeader( OR_CONDITION, n );
+		writeNodes( n.children() );
+	}
+
+	public void visit( AndConditionNode n )
+	{
+		writeHeader( AND_CONDITION, n );
+		writeNodes( n.children() );
+	}
+
+	public void visit( NotExpressionNode n )
+	{
+		writeHeader( NOT_EXPRESSION, n );
+		writeNode( n.expression() );
+	}
+
+	public void visit( CompareConditionNode n )
+	{
+		writeHeader( COMPARE_CONDITION, n );
+		writeNode( n.leftExpression() );
+		writeNode( n.rightExpression() );
+		writeEnum( n.opType() );
+	}
+
+	public void visit( ConstantByteExpression n )
+	{
+		writeHeader( CONSTANT_BYTE, n );
+		writeByte( n.value() );
+	}
+
+	public void visit( ConstantInteger16Expression n )
+	{
+		writeHeader( CONSTANT_INTEGER16, n );
+		writeInt( n.value() );
+	}
+
+	public void visit( ConstantUInteger16Expression n )
+	{
+		writeHeader( CONSTANT_UINTEGER16, n );
+		writeInt( n.value().intValue() );
+	}
+
+	public void visit( ConstantIntegerExpression n )
+	{
+		writeHeader( CONSTANT_INTEGER, n );
+		writeInt( n.value() );
+	}
+
+	public void visit( ConstantUInteger32Expression n )
+	{
+		writeHeader( CONSTANT_UINTEGER32, n );
+		writeLong( n.value().longValue() );
+	}
+
+	public void visit( ConstantUInteger64Expression n )
+	{
+		writeHeader( CONSTANT_UINTEGER64, n );
+		writeLong( n.value().top() );
+		writeLong( n.value().bottom() );
+	}
+
+	public void visit( ConstantDoubleExpression n )
+	{
+		writeHeader( CONSTANT_DOUBLE, n );
+		writeLong( Double.doubleToLongBits( n.value() ) );
+	}
+
+	public void visit( ConstantBoolExpression n )
+	{
+		writeHeader( CONSTANT_BOOL, n );
+		writeBoolean( n.value() );
+	}
+
+	public void visit( ConstantLongExpression n )
+	{
+		writeHeader( CONSTANT_LONG, n );
+		writeLong( n.value() );
+	}
+
+	public void visit( ConstantStringExpression n )
+	{
+		writeHeader( CONSTANT_STRING, n );
+		writeString( n.value() );
+	}
+
+	public void visit( ProductExpressionNode n )
+	{
+		writeHeader( PRODUCT_EXPRESSION, n );
+		writeOperands( n.operands() );
+	}
+
+	public void visit( SumExpressionNode n )
+	{
+		writeHeader( SUM_EXPRESSION, n );
+		writeOperands( n.operands() );
+	}
+
+	public void visit( VariableExpressionNode n )
+	{
+		writeHeader( VARIABLE_EXPRESSION, n );
+		writeNode( n.variablePath() );
+	}
+
+	public void visit( NullProcessStatement n )
+	{
+		writeHeader( NULL_PROCESS, n );
+	}
+
+	public void visit( Scope n )
+	{
+		writeHeader( SCOPE, n );
+		writeString( n.id() );
+		writeNode( n.body() );
+	}
+
+	public void visit( InstallStatement n )
+	{
+		writeHeader( INSTALL, n );
+		writeInstallFunction( n.handlersFunction() );
+	}
+
+	public void visit( CompensateStatement n )
+	{
+		writeHeader( COMPENSATE, n );
+		writeString( n.id() );
+	}
+
+	public void visit( ThrowStatement n )
+	{
+		writeHeader( THROW, n );
+		writeString( n.id() );
+		writeNode( n.expression() );
+	}
+
+	public void visit( ExitStatement n )
+	{
+		writeHeader( EXIT, n );
+	}
+
+	public void visit( ExecutionInfo n )
+	{
+		writeHeader( EXECUTION_INFO, n );
+		writeEnum( n.mode() );
+	}
+
+	public void visit( CorrelationSetInfo n )
+	{
+		writeHeader( CORRELATION_SET, n );
+		writeVarInt( n.variables().size() );
+		for( CorrelationSetInfo.CorrelationVariableInfo variable : n.variables() ) {
+			writeNode( variable.correlationVariablePath() );
+			writeVarInt( variable.aliases().size() );
+			for( CorrelationSetInfo.CorrelationAliasInfo alias : variable.aliases() ) {
+				writeString( alias.guardName() );
+				writeNode( alias.variablePath() );
+			}
+		}
+	}
+
+	public void visit( InputPortInfo n )
+	{
+		writeHeader( INPUT_PORT, n );
+		writeString( n.id() );
+		writeString( n.getDocumentation() );
+		writeURI( n.location() );
+		writeString( n.protocolId() );
+		writeNode( n.protocolConfiguration() );
+		writeVarInt( n.aggregationList().length );
+		for( InputPortInfo.AggregationItemInfo item : n.aggregationList() ) {
+			writeVarInt( item.outputPortList().length );
+			for( String outputPortName : item.outputPortList() ) {
+				writeString( outputPortName );
+			}
+			writeNode( item.interfaceExtender() );
+		}
+		writeVarInt( n.redirectionMap().size() );
+		for( Entry< String, String > entry : n.redirectionMap().entrySet() ) {
+			writeString( entry.getKey() );
+			writeString( entry.getValue() );
+		}
+		writeBoolean( n.messageBus() );
+		writePortContent( n );
+	}
+
+	public void visit( OutputPortInfo n )
+	{
+		writeHeader( OUTPUT_PORT, n );
+		writeString( n.id() );
+		writeString( n.getDocumentation() );
+		writeURI( n.location() );
+		writeString( n.protocolId() );
+		writeNode( n.protocolConfiguration() );
+		writeBoolean( n.messageBus() );
+		writePortContent( n );
+	}
+
+	public void visit( PointerStatement n )
+	{
+		writeHeader( POINTER, n );
+		writeNode( n.leftPath() );
+		writeNode( n.rightPath() );
+	}
+
+	public void visit( DeepCopyStatement n )
+	{
+		writeHeader( DEEP_COPY, n );
+		writeNode( n.leftPath() );
+		writeNode( n.rightPath() );
+	}
+
+	public void visit( RunStatement n )
+	{
+		writeHeader( RUN, n );
+		writeNode( n.expression() );
+	}
+
+	public void visit( UndefStatement n )
+	{
+		writeHeader( UNDEF, n );
+		writeNode( n.variablePath() );
+	}
+
+	public void visit( ValueVectorSizeExpressionNode n )
+	{
+		writeHeader( VALUE_VECTOR_SIZE, n );
+		writeNode( n.variablePath() );
+	}
+
+	public void visit( PreIncrementStatement n )
+	{
+		writeHeader( PRE_INCREMENT, n );
+		writeNode( n.variablePath() );
+	}
+
+	public void visit( PostIncrementStatement n )
+	{
+		writeHeader( POST_INCREMENT, n );
+		writeNode( n.variablePath() );
+	}
+
+	public void visit( PreDecrementStatement n )
+	{
+		writeHeader( PRE_DECREMENT, n );
+		writeNode( n.variablePath() );
+	}
+
+	public void visit( PostDecrementStatement n )
+	{
+		writeHeader( POST_DECREMENT, n );
+		writeNode( n.variablePath() );
+	}
+
+	public void visit( ForStatement n )
+	{
+		writeHeader( FOR, n );
+		writeNode( n.init() );
+		writeNode( n.condition() );
+		writeNode( n.post() );
+		writeNode( n.body() );
+	}
+
+	public void visit( ForEachStatement n )
+	{
+		writeHeader( FOR_EACH, n );
+		writeNode( n.keyPath() );
+		writeNode( n.targetPath() );
+		writeNode( n.body() );
+	}
+
+	public void visit( SpawnStatement n )
+	{
+		writeHeader( SPAWN, n );
+		writeNode( n.indexVariablePath() );
+		writeNode( n.upperBoundExpression() );
+		writeNode( n.inVariablePath() );
+		writeNode( n.body() );
+	}
+
+	public void visit( IsTypeExpressionNode n )
+	{
+		writeHeader( IS_TYPE, n );
+		writeEnum( n.type() );
+		writeNode( n.variablePath() );
+	}
+
+	public void visit( InstanceOfExpressionNode n )
+	{
+		writeHeader( INSTANCE_OF, n );
+		writeNode( n.expression() );
+		writeNode( n.type() );
+	}
+
+	public void visit( TypeCastExpressionNode n )
+	{
+		writeHeader( TYPE_CAST, n );
+		writeEnum( n.type() );
+		writeNode( n.expression() );
+	}
+
+	public void visit( SynchronizedStatement n )
+	{
+		writeHeader( SYNCHRONIZED, n );
+		writeString( n.id() );
+		writeNode( n.body() );
+	}
+
+	public void visit( CurrentHandlerStatement n )
+	{
+		writeHeader( CURRENT_HANDLER, n );
+	}
+
+	public void visit( EmbeddedServiceNode n )
+	{
+		writeHeader( EMBEDDED_SERVICE, n );
+		writeEnum( n.type() );
+		writeString( n.servicePath() );
+		writeString( n.portId() );
+	}
+
+	public void visit( InstallFixedVariableExpressionNode n )
+	{
+		writeHeader( INSTALL_FIXED_VARIABLE, n );
+		writeNode( n.variablePath() );
+	}
+
+	public void visit( VariablePathNode n )
+	{
+		writeHeader( VARIABLE_PATH, n );
+		writeEnum( n.type() );
+		writeNodePairs( n.path() );
+	}
+
+	public void visit( TypeInlineDefinition n )
+	{
+		writeTypeDefinition( TYPE_INLINE_DEFINITION, n );
+		writeEnum( n.nativeType() );
+		writeBoolean( n.untypedSubTypes() );
+		if ( n.hasSubTypes() ) {
+			writeVarInt( n.subTypes().size() );
+			for( Entry< String, TypeDefinition > entry : n.subTypes() ) {
+				writeNode( entry.getValue() );
+			}
+		} else {
+			writeVarInt( 0 );
+		}
+	}
+
+	public void visit( TypeDefinitionLink n )
+	{
+		writeTypeDefinition( TYPE_DEFINITION_LINK, n );
+		writeString( n.linkedTypeName() );
+		writeNode( n.linkedType() );
+	}
+
+	public void visit( InterfaceDefinition n )
+	{
+		writeHeader( INTERFACE_DEFINITION, n );
+		writeString( n.name() );
+		writeString( n.getDocumentation() );
+		writeNodes( n.operationsMap().values() );
+	}
+
+	public void visit( DocumentationComment n )
+	{
+		writeHeader( DOCUMENTATION_COMMENT, n );
+		writeString( n.comment() );
+	}
+
+	public void visit( FreshValueExpressionNode n )
+	{
+		writeHeader( FRESH_VALUE, n );
+	}
+
+	public void visit( CourierDefinitionNode n )
+	{
+		writeHeader( COURIER_DEFINITION, n );
+		writeString( n.inputPortName() );
+		writeNode( n.body() );
+	}
+
+	public void visit( CourierChoiceStatement n )
+	{
+		writeHeader( COURIER_CHOICE, n );
+		writeVarInt( n.interfaceOneWayBranches().size() );
+		for( CourierChoiceStatement.InterfaceOneWayBranch branch : n.interfaceOneWayBranches() ) {
+			writeNode( branch.interfaceDefinition );
+			writeNode( branch.inputVariablePath );
+			writeNode( branch.body );
+		}
+		writeVarInt( n.interfaceRequestResponseBranches().size() );
+		for( CourierChoiceStatement.InterfaceRequestResponseBranch branch : n.interfaceRequestResponseBranches() ) {
+			writeNode( branch.interfaceDefinition );
+			writeNode( branch.inputVariablePath );
+			writeNode( branch.outputVariablePath );
+			writeNode( branch.body );
+		}
+		writeVarInt( n.operationOneWayBranches().size() );
+		for( CourierChoiceStatement.OperationOneWayBranch branch : n.operationOneWayBranches() ) {
+			writeString( branch.operation );
+			writeNode( branch.inputVariablePath );
+			writeNode( branch.body );
+		}
+		writeVarInt( n.operationRequestResponseBranches().size() );
+		for( CourierChoiceStatement.OperationRequestResponseBranch branch : n.operationRequestResponseBranches() ) {
+			writeString( branch.operation );
+			writeNode( branch.inputVariablePath );
+			writeNode( branch.outputVariablePath );
+			writeNode( branch.body );
+		}
+	}
+
+	public void visit( NotificationForwardStatement n )
+	{
+		writeHeader( NOTIFICATION_FORWARD, n );
+		writeString( n.outputPortName() );
+		writeNode( n.outputVariablePath() );
+	}
+
+	public void visit( SolicitResponseForwardStatement n )
+	{
+		writeHeader( SOLICIT_RESPONSE_FORWARD, n );
+		writeString( n.outputPortName() );
+		writeNode( n.outputVariablePath() );
+		writeNode( n.inputVariablePath() );
+	}
+
+	public void visit( InterfaceExtenderDefinition n )
+	{
+		writeHeader( INTERFACE_EXTENDER_DEFINITION, n );
+		writeString( n.name() );
+		writeString( n.getDocumentation() );
+		writeNodes( n.operationsMap().values() );
+		writeNode( n.defaultOneWayOperation() );
+		writeNode( n.defaultRequestResponseOperation() );
+	}
+}
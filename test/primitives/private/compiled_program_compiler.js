@@ -0,0 +1,82 @@
+/***************************************************************************
+ *   Copyright (C) 2009 by Fabrizio Montesi <famontesi@gmail.com>          *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+/*
+ * Compiles the program at request to request + "c", as joliec does,
+ * resolving includes from the directory of the program and then from
+ * request.includePath.
+ */
+function compile( request )
+{
+	var source = request.strValue();
+	var includePaths = java.lang.reflect.Array.newInstance( java.lang.Class.forName( "java.lang.String" ), 2 );
+	includePaths[ 0 ] = new java.io.File( source ).getParent();
+	includePaths[ 1 ] = request.getFirstChild( "includePath" ).strValue();
+	var istream = new java.io.FileInputStream( source );
+	var program;
+	try {
+		program = Packages.jolie.lang.parse.util.ParsingUtils.compileProgram(
+			istream,
+			java.net.URI.create( "file:" + source ),
+			includePaths,
+			Packages.jolie.Interpreter.getInstance().getClassLoader(),
+			new java.util.HashMap()
+		);
+	} finally {
+		istream.close();
+	}
+	var ostream = new java.io.BufferedOutputStream( new java.io.FileOutputStream( source + "c" ) );
+	try {
+		program.writeTo( ostream );
+	} finally {
+		ostream.close();
+	}
+}
+
+/*
+ * Writes a Java serialization stream to request,
+ * as older versions of joliec did.
+ */
+function writeSerializedProgram( request )
+{
+	var ostream = new java.io.ObjectOutputStream( new java.io.FileOutputStream( request.strValue() ) );
+	try {
+		ostream.writeObject( new java.util.ArrayList() );
+	} finally {
+		ostream.close();
+	}
+}
+
+/*
+ * Writes the header of a compiled program in an unsupported
+ * version of the format to request.
+ */
+function writeUnsupportedProgram( request )
+{
+	var ostream = new java.io.DataOutputStream( new java.io.FileOutputStream( request.strValue() ) );
+	try {
+		ostream.writeInt( 0x4A4F4C43 ); // "JOLC"
+		ostream.writeByte( 127 ); // The version
+		ostream.writeByte( 0 ); // The flags
+	} finally {
+		ostream.close();
+	}
+}
@@ -0,0 +1,57 @@
+/***************************************************************************
+ *   Copyright (C) 2009 by Fabrizio Montesi <famontesi@gmail.com>          *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+/*
+ * Writes request.requests to a new connection to request.location at once,
+ * without waiting for responses, and returns everything read back until
+ * the server closes the connection. If the server does not close it within
+ * ten seconds, what was read is returned followed by NOT_CLOSED.
+ */
+var NOT_CLOSED = "\n(connection not closed)";
+
+function pipeline( request )
+{
+	var uri = new java.net.URI( request.getFirstChild( "location" ).strValue() );
+	var socket = new java.net.Socket( uri.getHost(), uri.getPort() );
+	try {
+		socket.setSoTimeout( 10000 );
+		var text = new java.lang.String( request.getFirstChild( "requests" ).strValue() );
+		var ostream = socket.getOutputStream();
+		ostream.write( text.getBytes( "ISO-8859-1" ) );
+		ostream.flush();
+		var istream = socket.getInputStream();
+		var buffer = new java.io.ByteArrayOutputStream();
+		var b;
+		try {
+			while( (b = istream.read()) != -1 ) {
+				buffer.write( b );
+			}
+		} catch( e ) {
+			if ( e instanceof java.net.SocketTimeoutException ) {
+				return buffer.toString( "ISO-8859-1" ) + NOT_CLOSED;
+			}
+			throw e;
+		}
+		return buffer.toString( "ISO-8859-1" );
+	} finally {
+		socket.close();
+	}
+}
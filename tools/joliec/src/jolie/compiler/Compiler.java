@@ -21,15 +21,15 @@
 
 package jolie.compiler;
 
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import jolie.CommandLineException;
 import jolie.CommandLineParser;
 import jolie.lang.parse.ParserException;
-import jolie.lang.parse.ast.Program;
+import jolie.lang.parse.util.CompiledProgram;
 import jolie.lang.parse.util.ParsingUtils;
 
 /**
@@ -51,17 +51,14 @@ public class Compiler
 	public void compile( OutputStream ostream )
 		throws IOException, ParserException
 	{
-		Program program = ParsingUtils.parseProgram(
+		CompiledProgram program = ParsingUtils.compileProgram(
 			cmdParser.programStream(),
 			URI.create( "file:" + cmdParser.programFilepath() ),
 			cmdParser.includePaths(), classLoader, cmdParser.definedConstants()
 		);
-		//GZIPOutputStream gzipstream = new GZIPOutputStream( ostream );
-		ObjectOutputStream oos = new ObjectOutputStream( ostream );
-		oos.writeObject( program );
-		ostream.flush();
-		ostream.close();
-		//gzipstream.close();
+		OutputStream bufferedStream = new BufferedOutputStream( ostream );
+		program.writeTo( bufferedStream );
+		bufferedStream.close();
 	}
 	
 	public void compile()